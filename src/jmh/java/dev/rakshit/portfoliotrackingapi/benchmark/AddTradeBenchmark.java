@@ -0,0 +1,70 @@
+package dev.rakshit.portfoliotrackingapi.benchmark;
+
+import dev.rakshit.portfoliotrackingapi.PortfolioTrackingApiApplication;
+import dev.rakshit.portfoliotrackingapi.models.Trade;
+import dev.rakshit.portfoliotrackingapi.service.PortfolioTrackingService;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures PortfolioTrackingService.addTrade on the in-memory H2 db, with and without write-behind of holdings.
+ * The application is started once per trial without the web server. Skewed trades are added in order and
+ * added again from the first one once all of them are added, so holdings only grow and every trade stays valid.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class AddTradeBenchmark {
+
+    @Param({"false", "true"})
+    private boolean writeBehind;
+
+    @Param({"100000"})
+    private int trades;
+
+    @Param({"2000"})
+    private int tickers;
+
+    @Param({"1.1"})
+    private double skew;
+
+    private ConfigurableApplicationContext context;
+
+    private PortfolioTrackingService portfolioTrackingService;
+
+    private List<Trade> tradeList;
+
+    private int cursor;
+
+    @Setup
+    public void setUp() {
+        context = new SpringApplicationBuilder(PortfolioTrackingApiApplication.class)
+                .web(WebApplicationType.NONE)
+                .run("--logging.level.root=WARN",
+                        "--spring.jmx.enabled=false",
+                        "--portfolio.holdings.write-behind.enabled=" + writeBehind);
+        portfolioTrackingService = context.getBean(PortfolioTrackingService.class);
+        tradeList = TradeGenerator.generateSkewed(trades, tickers, skew);
+    }
+
+    @TearDown
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public Trade addTrade() {
+        Trade trade = TradeGenerator.copyWithoutId(tradeList.get(cursor));
+        cursor = (cursor + 1) % tradeList.size();
+        return portfolioTrackingService.addTrade(trade);
+    }
+
+}
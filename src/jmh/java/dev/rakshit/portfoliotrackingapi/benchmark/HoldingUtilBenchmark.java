@@ -0,0 +1,132 @@
+package dev.rakshit.portfoliotrackingapi.benchmark;
+
+import dev.rakshit.portfoliotrackingapi.exceptions.InvalidTransactionException;
+import dev.rakshit.portfoliotrackingapi.models.Holding;
+import dev.rakshit.portfoliotrackingapi.models.Trade;
+import dev.rakshit.portfoliotrackingapi.util.HoldingUtil;
+import org.openjdk.jmh.annotations.*;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Measures the holding calculations of HoldingUtil on skewed trades. Single trade operations are applied to
+ * copies of the holdings left by all the trades, so their cost includes copying a holding. Only operations
+ * which are valid on those holdings are measured. Run with -prof gc to get the allocation rate of each.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = {"-Xms3g", "-Xmx3g"})
+public class HoldingUtilBenchmark {
+
+    private static final int OPERATIONS = 4096;
+
+    @Param({"1000", "100000", "10000000"})
+    private int trades;
+
+    @Param({"2000"})
+    private int tickers;
+
+    @Param({"1.1"})
+    private double skew;
+
+    private List<Trade> tradeList;
+
+    private final Holding[] addHoldings = new Holding[OPERATIONS];
+    private final Trade[] addTrades = new Trade[OPERATIONS];
+    private final Holding[] deleteHoldings = new Holding[OPERATIONS];
+    private final Trade[] deleteTrades = new Trade[OPERATIONS];
+    private final Holding[] updateHoldings = new Holding[OPERATIONS];
+    private final Trade[] oldTrades = new Trade[OPERATIONS];
+    private final Trade[] newTrades = new Trade[OPERATIONS];
+
+    private int cursor;
+
+    @Setup
+    public void setUp() {
+        tradeList = TradeGenerator.generateSkewed(trades, tickers, skew);
+        Map<String, Holding> holdings = HoldingUtil.getHoldingsFromTrades(tradeList).stream()
+                .collect(Collectors.toMap(Holding::getTicker, Function.identity()));
+        Random random = new Random(7);
+        int added = 0;
+        int deleted = 0;
+        int updated = 0;
+        while (OPERATIONS > added || OPERATIONS > deleted || OPERATIONS > updated) {
+            Trade trade = tradeList.get(random.nextInt(tradeList.size()));
+            Holding holding = holdings.get(trade.getTicker());
+            if (null == holding) {
+                continue;
+            }
+            Trade newTrade = TradeGenerator.copyWithoutId(trade);
+            newTrade.setTradeId(trade.getTradeId());
+            newTrade.setPrice(trade.getPrice().add(BigDecimal.ONE));
+            newTrade.setShares(trade.getShares().add(BigInteger.ONE));
+            if (OPERATIONS > added && isValid(() -> HoldingUtil.addTradeToHolding(copy(holding), trade))) {
+                addHoldings[added] = holding;
+                addTrades[added++] = trade;
+            }
+            if (OPERATIONS > deleted && isValid(() -> HoldingUtil.deleteTradeFromHolding(copy(holding), trade))) {
+                deleteHoldings[deleted] = holding;
+                deleteTrades[deleted++] = trade;
+            }
+            if (OPERATIONS > updated && isValid(() -> HoldingUtil.updateTradeInHolding(copy(holding), trade, null, newTrade))) {
+                updateHoldings[updated] = holding;
+                oldTrades[updated] = trade;
+                newTrades[updated++] = newTrade;
+            }
+        }
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.NANOSECONDS)
+    public Holding addTradeToHolding() {
+        int index = next();
+        return HoldingUtil.addTradeToHolding(copy(addHoldings[index]), addTrades[index]);
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.NANOSECONDS)
+    public Holding deleteTradeFromHolding() {
+        int index = next();
+        return HoldingUtil.deleteTradeFromHolding(copy(deleteHoldings[index]), deleteTrades[index]);
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.NANOSECONDS)
+    public List<Holding> updateTradeInHolding() {
+        int index = next();
+        return HoldingUtil.updateTradeInHolding(copy(updateHoldings[index]), oldTrades[index], null, newTrades[index]);
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public List<Holding> getHoldingsFromTrades() {
+        return HoldingUtil.getHoldingsFromTrades(tradeList);
+    }
+
+    private int next() {
+        return cursor++ & (OPERATIONS - 1);
+    }
+
+    private static Holding copy(Holding holding) {
+        return holding.toBuilder().build();
+    }
+
+    private static boolean isValid(Runnable operation) {
+        try {
+            operation.run();
+            return true;
+        } catch (InvalidTransactionException invalidTransactionException) {
+            return false;
+        }
+    }
+
+}
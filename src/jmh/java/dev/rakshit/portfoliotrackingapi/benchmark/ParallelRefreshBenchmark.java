@@ -0,0 +1,53 @@
+package dev.rakshit.portfoliotrackingapi.benchmark;
+
+import dev.rakshit.portfoliotrackingapi.models.HoldingCheckpoint;
+import dev.rakshit.portfoliotrackingapi.models.Trade;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+import static dev.rakshit.portfoliotrackingapi.util.HoldingUtil.getCheckpointsFromTrades;
+
+/**
+ * Measures how the parallel rebuild of holdings scales with the parallelism of the refresh pool.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class ParallelRefreshBenchmark {
+
+    @Param({"1", "2", "4", "8", "16"})
+    private int parallelism;
+
+    @Param({"1000000"})
+    private int trades;
+
+    @Param({"2000"})
+    private int tickers;
+
+    private List<Trade> tradeList;
+
+    private ForkJoinPool pool;
+
+    @Setup
+    public void setUp() {
+        tradeList = TradeGenerator.generate(trades, tickers);
+        pool = new ForkJoinPool(parallelism);
+    }
+
+    @TearDown
+    public void tearDown() {
+        pool.shutdown();
+    }
+
+    @Benchmark
+    public List<HoldingCheckpoint> rebuildCheckpoints() {
+        return getCheckpointsFromTrades(tradeList, pool);
+    }
+
+}
@@ -0,0 +1,75 @@
+package dev.rakshit.portfoliotrackingapi.benchmark;
+
+import dev.rakshit.portfoliotrackingapi.PortfolioTrackingApiApplication;
+import dev.rakshit.portfoliotrackingapi.models.RefreshMode;
+import dev.rakshit.portfoliotrackingapi.models.Trade;
+import dev.rakshit.portfoliotrackingapi.repository.TradeJdbcRepository;
+import dev.rakshit.portfoliotrackingapi.service.HoldingCheckpointService;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares rebuilding all the holdings from trades read into memory and folded in parallel with rebuilding them
+ * inside the db by set based statements, on the in-memory H2 db. The application is started once per trial
+ * without the web server and the skewed trades are inserted before the first iteration.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = {"-Xms3g", "-Xmx3g"})
+public class SqlRefreshBenchmark {
+
+    private static final int CHUNK_SIZE = 100000;
+
+    @Param({"PARALLEL", "SQL"})
+    private RefreshMode mode;
+
+    @Param({"1000000"})
+    private int trades;
+
+    @Param({"2000"})
+    private int tickers;
+
+    @Param({"1.1"})
+    private double skew;
+
+    private ConfigurableApplicationContext context;
+
+    private HoldingCheckpointService holdingCheckpointService;
+
+    @Setup
+    public void setUp() {
+        context = new SpringApplicationBuilder(PortfolioTrackingApiApplication.class)
+                .web(WebApplicationType.NONE)
+                .run("--logging.level.root=WARN",
+                        "--spring.jmx.enabled=false");
+        holdingCheckpointService = context.getBean(HoldingCheckpointService.class);
+        TradeJdbcRepository tradeJdbcRepository = context.getBean(TradeJdbcRepository.class);
+        List<Trade> tradeList = TradeGenerator.generateSkewed(trades, tickers, skew);
+        for (int from = 0; from < tradeList.size(); from += CHUNK_SIZE) {
+            tradeJdbcRepository.saveAll(tradeList.subList(from, Math.min(tradeList.size(), from + CHUNK_SIZE)));
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public void rebuildHoldings() {
+        if (RefreshMode.SQL == mode) {
+            holdingCheckpointService.rebuildHoldingsInDb();
+        } else {
+            holdingCheckpointService.rebuildHoldings();
+        }
+    }
+
+}
@@ -0,0 +1,126 @@
+package dev.rakshit.portfoliotrackingapi.benchmark;
+
+import dev.rakshit.portfoliotrackingapi.models.Trade;
+import dev.rakshit.portfoliotrackingapi.models.TransactionType;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Generates reproducible trades for benchmarks. Every third trade is a SELL of a share bought earlier,
+ * so that holdings never go negative when trades are replayed in execution order.
+ */
+public class TradeGenerator {
+
+    private static final LocalDateTime START = LocalDateTime.of(2020, 1, 1, 9, 0);
+
+    /**
+     * Private Constructor to prevent creation of objects of utility class
+     */
+    private TradeGenerator() {
+    }
+
+    /**
+     * Generates trades spread evenly over the tickers
+     *
+     * @param count   Number of trades to be generated
+     * @param tickers Number of distinct tickers
+     * @return Trades ordered by trade id and time
+     */
+    public static List<Trade> generate(int count, int tickers) {
+        Random random = new Random(42);
+        long[] heldShares = new long[tickers];
+        List<Trade> trades = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            int ticker = random.nextInt(tickers);
+            boolean sell = 2 == i % 3 && 0 < heldShares[ticker];
+            trades.add(Trade.builder()
+                    .tradeId((long) i + 1)
+                    .ticker("TICKER" + ticker)
+                    .transactionType(sell ? TransactionType.SELL : TransactionType.BUY)
+                    .price(BigDecimal.valueOf(100 + random.nextInt(10000), 2))
+                    .shares(BigInteger.valueOf(sell ? 1 : 1 + random.nextInt(100)))
+                    .lastUpdated(START.plusSeconds(i))
+                    .build());
+            heldShares[ticker] += sell ? -1 : trades.get(i).getShares().longValue();
+        }
+        return trades;
+    }
+
+    /**
+     * Generates trades whose tickers follow a Zipf distribution, so that a few tickers get most of the trades
+     * as in a real portfolio. A SELL of a ticker with no shares left is generated as a BUY, so trades are always
+     * valid when applied in order. Tickers, prices, shares and times are shared between trades,
+     * so that millions of trades fit in memory.
+     *
+     * @param count   Number of trades to be generated
+     * @param tickers Number of distinct tickers
+     * @param skew    Exponent of the distribution. 0 spreads trades evenly, 1 gives the first ticker
+     *                about twice the trades of the second
+     * @return Trades ordered by trade id and time
+     */
+    public static List<Trade> generateSkewed(int count, int tickers, double skew) {
+        Random random = new Random(42);
+        double[] cumulativeWeights = new double[tickers];
+        double totalWeight = 0;
+        for (int i = 0; i < tickers; i++) {
+            totalWeight += 1 / Math.pow(i + 1, skew);
+            cumulativeWeights[i] = totalWeight;
+        }
+        String[] tickerNames = new String[tickers];
+        for (int i = 0; i < tickers; i++) {
+            tickerNames[i] = "TICKER" + i;
+        }
+        BigDecimal[] prices = new BigDecimal[10000];
+        for (int i = 0; i < prices.length; i++) {
+            prices[i] = BigDecimal.valueOf(100 + i, 2);
+        }
+        BigInteger[] shares = new BigInteger[101];
+        for (int i = 0; i < shares.length; i++) {
+            shares[i] = BigInteger.valueOf(i);
+        }
+        long[] heldShares = new long[tickers];
+        List<Trade> trades = new ArrayList<>(count);
+        LocalDateTime lastUpdated = START;
+        for (int i = 0; i < count; i++) {
+            int searchIndex = Arrays.binarySearch(cumulativeWeights, random.nextDouble() * totalWeight);
+            int ticker = Math.min(tickers - 1, 0 > searchIndex ? -searchIndex - 1 : searchIndex);
+            boolean sell = 2 == i % 3 && 0 < heldShares[ticker];
+            int tradeShares = sell
+                    ? 1 + random.nextInt((int) Math.min(10, heldShares[ticker]))
+                    : 1 + random.nextInt(100);
+            heldShares[ticker] += sell ? -tradeShares : tradeShares;
+            if (0 == i % 60) {
+                lastUpdated = START.plusSeconds(i);
+            }
+            trades.add(Trade.builder()
+                    .tradeId((long) i + 1)
+                    .ticker(tickerNames[ticker])
+                    .transactionType(sell ? TransactionType.SELL : TransactionType.BUY)
+                    .price(prices[random.nextInt(prices.length)])
+                    .shares(shares[tradeShares])
+                    .lastUpdated(lastUpdated)
+                    .build());
+        }
+        return trades;
+    }
+
+    /**
+     * Copies trade without it's trade id, so that it can be added as a new trade
+     */
+    public static Trade copyWithoutId(Trade trade) {
+        return Trade.builder()
+                .ticker(trade.getTicker())
+                .transactionType(trade.getTransactionType())
+                .price(trade.getPrice())
+                .shares(trade.getShares())
+                .lastUpdated(trade.getLastUpdated())
+                .build();
+    }
+
+}
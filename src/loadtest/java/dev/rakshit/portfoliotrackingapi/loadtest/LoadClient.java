@@ -0,0 +1,222 @@
+package dev.rakshit.portfoliotrackingapi.loadtest;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import dev.rakshit.portfoliotrackingapi.models.Trade;
+import dev.rakshit.portfoliotrackingapi.models.TransactionType;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Sends the requests of one client thread over keep-alive connections. Tickers are drawn from a Zipf distribution.
+ * Trades added by the client are remembered, so that it updates and deletes only it's own trades.
+ * Responses are read fully, so that connections are reused.
+ */
+public class LoadClient {
+
+    private static final int BATCH_SIZE = 100;
+    private static final int REMEMBERED_TRADES = 1000;
+
+    private final String baseUrl;
+    private final ObjectMapper objectMapper;
+    private final Random random;
+    private final double[] cumulativeWeights;
+    private final AtomicLong maxTradeId;
+    private final Deque<Trade> addedTrades = new ArrayDeque<>();
+    private long sentTrades;
+
+    /**
+     * @param cumulativeWeights Cumulative Zipf weights of the tickers, from getCumulativeWeights
+     * @param maxTradeId        Largest trade id known to exist, shared by all clients
+     */
+    public LoadClient(String baseUrl, ObjectMapper objectMapper, long seed, double[] cumulativeWeights, AtomicLong maxTradeId) {
+        this.baseUrl = baseUrl;
+        this.objectMapper = objectMapper;
+        this.random = new Random(seed);
+        this.cumulativeWeights = cumulativeWeights;
+        this.maxTradeId = maxTradeId;
+    }
+
+    /**
+     * Sends the request of an operation
+     *
+     * @return HTTP status of the response
+     */
+    public int execute(Operation operation) throws IOException {
+        switch (operation) {
+            case ADD_TRADE:
+                return addTrade(newTrade());
+            case ADD_TRADES_BATCH:
+                List<Trade> trades = new ArrayList<>(BATCH_SIZE);
+                for (int i = 0; i < BATCH_SIZE; i++) {
+                    trades.add(newTrade());
+                }
+                return send("POST", "/trades/batch", objectMapper.writeValueAsBytes(trades)).status;
+            case UPDATE_TRADE:
+                if (addedTrades.isEmpty()) {
+                    return addTrade(newTrade());
+                }
+                Trade trade = addedTrades.peekLast();
+                trade.setPrice(randomPrice());
+                trade.setLastUpdated(null);
+                return send("POST", "/trades", objectMapper.writeValueAsBytes(trade)).status;
+            case DELETE_TRADE:
+                if (addedTrades.isEmpty()) {
+                    return addTrade(newTrade());
+                }
+                return send("DELETE", "/trades/" + addedTrades.pollLast().getTradeId(), null).status;
+            case GET_TRADE:
+                return send("GET", "/trades/" + (1 + (long) (random.nextDouble() * Math.max(1, maxTradeId.get()))), null).status;
+            case GET_TRADES:
+                return send("GET", "/trades?ticker=" + randomTicker() + "&limit=100", null).status;
+            case EXPORT_TRADES:
+                return send("GET", "/trades/export?format=CSV", null).status;
+            case GET_HOLDING:
+                return send("GET", "/holdings/" + randomTicker(), null).status;
+            case GET_HOLDINGS:
+                return send("GET", "/holdings", null).status;
+            case REFRESH_HOLDING:
+                return send("GET", "/holdings/" + randomTicker() + "/refresh", null).status;
+            case REFRESH_HOLDINGS:
+                return send("GET", "/holdings/refresh", null).status;
+            case GET_PORTFOLIO:
+                return send("GET", "/portfolio?limit=10", null).status;
+            case GET_RETURNS:
+                return send("GET", "/returns", null).status;
+            default:
+                throw new IllegalArgumentException("Unknown operation : " + operation);
+        }
+    }
+
+    /**
+     * Adds BUYs of 1000 shares in one batch, covering every ticker if count allows,
+     * so that later sells and deletes rarely run out of shares. Trades are added one at a time
+     * if the batch route is not served, as on the reactive stack
+     *
+     * @param count Number of trades to be added
+     * @return HTTP status of the batch response, or 200 once all trades are added one at a time
+     */
+    public int seed(int count) throws IOException {
+        List<Trade> trades = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            trades.add(Trade.builder()
+                    .ticker(0 == i % 10 ? "TICKER" + i % cumulativeWeights.length : randomTicker())
+                    .transactionType(TransactionType.BUY)
+                    .price(randomPrice())
+                    .shares(BigInteger.valueOf(1000))
+                    .build());
+        }
+        int status = send("POST", "/trades/batch", objectMapper.writeValueAsBytes(trades)).status;
+        if (404 == status || 405 == status) {
+            for (Trade trade : trades) {
+                status = addTrade(trade);
+                if (201 != status) {
+                    return status;
+                }
+            }
+            return 200;
+        }
+        maxTradeId.accumulateAndGet(count, Math::max);
+        return status;
+    }
+
+    /**
+     * Gives the cumulative weights of tickers following a Zipf distribution
+     *
+     * @param tickers Number of tickers
+     * @param skew    Exponent of the distribution, 0 gives every ticker the same weight
+     */
+    public static double[] getCumulativeWeights(int tickers, double skew) {
+        double[] cumulativeWeights = new double[tickers];
+        double totalWeight = 0;
+        for (int i = 0; i < tickers; i++) {
+            totalWeight += 1 / Math.pow(i + 1, skew);
+            cumulativeWeights[i] = totalWeight;
+        }
+        return cumulativeWeights;
+    }
+
+    private int addTrade(Trade trade) throws IOException {
+        Response response = send("POST", "/trades", objectMapper.writeValueAsBytes(trade));
+        if (201 == response.status) {
+            Trade addedTrade = objectMapper.readValue(response.body, Trade.class);
+            maxTradeId.accumulateAndGet(addedTrade.getTradeId(), Math::max);
+            addedTrades.addLast(addedTrade);
+            if (REMEMBERED_TRADES < addedTrades.size()) {
+                addedTrades.pollFirst();
+            }
+        }
+        return response.status;
+    }
+
+    /**
+     * Gives a BUY, or every third trade a SELL of 1 share
+     */
+    private Trade newTrade() {
+        boolean sell = 2 == sentTrades++ % 3;
+        return Trade.builder()
+                .ticker(randomTicker())
+                .transactionType(sell ? TransactionType.SELL : TransactionType.BUY)
+                .price(randomPrice())
+                .shares(BigInteger.valueOf(sell ? 1 : 1 + random.nextInt(10)))
+                .build();
+    }
+
+    private String randomTicker() {
+        double totalWeight = cumulativeWeights[cumulativeWeights.length - 1];
+        int searchIndex = Arrays.binarySearch(cumulativeWeights, random.nextDouble() * totalWeight);
+        return "TICKER" + Math.min(cumulativeWeights.length - 1, 0 > searchIndex ? -searchIndex - 1 : searchIndex);
+    }
+
+    private BigDecimal randomPrice() {
+        return BigDecimal.valueOf(100 + random.nextInt(10000), 2);
+    }
+
+    private Response send(String method, String path, byte[] body) throws IOException {
+        HttpURLConnection connection = (HttpURLConnection) new URL(baseUrl + path).openConnection();
+        connection.setRequestMethod(method);
+        if (null != body) {
+            connection.setDoOutput(true);
+            connection.setRequestProperty("Content-Type", "application/json");
+            try (OutputStream outputStream = connection.getOutputStream()) {
+                outputStream.write(body);
+            }
+        }
+        int status = connection.getResponseCode();
+        InputStream inputStream = 400 <= status ? connection.getErrorStream() : connection.getInputStream();
+        ByteArrayOutputStream responseBody = new ByteArrayOutputStream();
+        if (null != inputStream) {
+            try (InputStream responseStream = inputStream) {
+                byte[] buffer = new byte[8192];
+                for (int read = responseStream.read(buffer); -1 != read; read = responseStream.read(buffer)) {
+                    responseBody.write(buffer, 0, read);
+                }
+            }
+        }
+        return new Response(status, responseBody.toByteArray());
+    }
+
+    private static class Response {
+        private final int status;
+        private final byte[] body;
+
+        private Response(int status, byte[] body) {
+            this.status = status;
+            this.body = body;
+        }
+    }
+
+}
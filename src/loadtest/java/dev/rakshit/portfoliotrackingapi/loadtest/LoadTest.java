@@ -0,0 +1,350 @@
+package dev.rakshit.portfoliotrackingapi.loadtest;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import dev.rakshit.portfoliotrackingapi.PortfolioTrackingApiApplication;
+import dev.rakshit.portfoliotrackingapi.util.VirtualThreadUtil;
+import org.HdrHistogram.Histogram;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Closed loop HTTP load test of the API. Boots the application on a random port, unless --url is given, seeds it
+ * with trades and then runs the operation mix at each of the given client thread counts. Every client sends its next
+ * request as soon as the previous one is answered, so the throughput reported is the one sustained at that
+ * concurrency. Latencies are recorded per operation in HdrHistograms and reported as p50, p99 and p99.9 in ms.
+ * The scaling curve at the end shows writes per second against the latency of GET /holdings.
+ * With --stacks, the whole curve is measured on each web stack in turn, for example servlet and reactive,
+ * and the stacks are compared side by side. Results are also written as JSON to --output.
+ * With --virtual-clients=true the clients run on virtual threads, for connection counts in the thousands.
+ */
+public class LoadTest {
+
+    private static final long HIGHEST_LATENCY_MICROS = TimeUnit.MINUTES.toMicros(1);
+    private static final ObjectMapper OBJECT_MAPPER = Jackson2ObjectMapperBuilder.json().build();
+    private static final String VIRTUAL_STACK = "virtual";
+    /**
+     * Clients share this many results, so that thousands of clients do not need a set of histograms each
+     */
+    private static final int MAX_CLIENT_RESULTS = 64;
+
+    private final LoadTestOptions options;
+    private final AtomicLong maxTradeId = new AtomicLong();
+    private final AtomicLong clientThreads = new AtomicLong();
+    private final double[] cumulativeWeights;
+    private final Map<Operation, Integer> mix;
+    private final int totalWeight;
+    private final ThreadFactory clientThreadFactory;
+
+    public LoadTest(LoadTestOptions options) {
+        this.options = options;
+        this.clientThreadFactory = options.isVirtualClients()
+                ? VirtualThreadUtil.getThreadFactory("load-client-")
+                : runnable -> new Thread(runnable, "load-client-" + clientThreads.getAndIncrement());
+        this.cumulativeWeights = LoadClient.getCumulativeWeights(options.getTickers(), options.getSkew());
+        this.mix = options.getMix();
+        this.totalWeight = mix.values().stream().mapToInt(Integer::intValue).sum();
+    }
+
+    public static void main(String[] args) throws Exception {
+        LoadTestOptions options = new LoadTestOptions(args);
+        int maxThreads = 1;
+        for (int threads : options.getThreads()) {
+            maxThreads = Math.max(maxThreads, threads);
+        }
+        System.setProperty("http.maxConnections", String.valueOf(maxThreads));
+        if (null != options.getUrl()) {
+            writeResults(options, new LoadTest(options).run(options.getUrl()));
+            return;
+        }
+        Map<String, List<StepResult>> resultsByStack = new LinkedHashMap<>();
+        List<String> stacks = options.getStacks().isEmpty() ? Collections.singletonList(null) : options.getStacks();
+        for (String stack : stacks) {
+            List<String> appArgs = new ArrayList<>();
+            appArgs.add("--server.port=0");
+            appArgs.add("--logging.level.root=WARN");
+            if (VIRTUAL_STACK.equals(stack)) {
+                appArgs.add("--spring.main.web-application-type=servlet");
+                appArgs.add("--portfolio.threads.virtual=true");
+            } else if (null != stack) {
+                appArgs.add("--spring.main.web-application-type=" + stack);
+            }
+            options.getAppProperties().forEach(property -> appArgs.add("--" + property));
+            ConfigurableApplicationContext context = new SpringApplicationBuilder(PortfolioTrackingApiApplication.class)
+                    .run(appArgs.toArray(new String[0]));
+            try {
+                String url = "http://localhost:" + ((WebServerApplicationContext) context).getWebServer().getPort();
+                resultsByStack.put(stack, new LoadTest(options).run(url));
+            } finally {
+                context.close();
+            }
+        }
+        if (1 == resultsByStack.size()) {
+            writeResults(options, resultsByStack.values().iterator().next());
+            return;
+        }
+        printComparison(resultsByStack);
+        writeResults(options, resultsByStack);
+    }
+
+    /**
+     * Seeds the application and measures each thread count of the scaling curve
+     *
+     * @param url Base URL of the application
+     * @return Results of each thread count
+     */
+    public List<StepResult> run(String url) throws Exception {
+        System.out.printf("Load test of %s with mix %s over %d tickers, skew %.2f%n", url, mix, options.getTickers(), options.getSkew());
+        int seedStatus = new LoadClient(url, OBJECT_MAPPER, 0, cumulativeWeights, maxTradeId).seed(options.getSeedTrades());
+        if (200 != seedStatus) {
+            throw new IllegalStateException("Seeding trades failed with status : " + seedStatus);
+        }
+        List<StepResult> results = new ArrayList<>();
+        for (int threads : options.getThreads()) {
+            runStep(url, threads, options.getWarmup());
+            StepResult result = runStep(url, threads, options.getDuration());
+            result.print();
+            results.add(result);
+        }
+        printScalingCurve(results);
+        return results;
+    }
+
+    /**
+     * Runs the mix on a number of client threads for some seconds
+     */
+    private StepResult runStep(String url, int threads, int seconds) throws InterruptedException {
+        StepResult result = new StepResult(threads, seconds);
+        if (0 >= seconds) {
+            return result;
+        }
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(seconds);
+        CountDownLatch done = new CountDownLatch(threads);
+        List<ClientResult> clientResults = new ArrayList<>();
+        for (int index = 0; index < Math.min(threads, MAX_CLIENT_RESULTS); index++) {
+            clientResults.add(new ClientResult());
+        }
+        for (int index = 0; index < threads; index++) {
+            int clientIndex = index;
+            ClientResult clientResult = clientResults.get(index % clientResults.size());
+            LoadClient client = new LoadClient(url, OBJECT_MAPPER, 31L * threads + index, cumulativeWeights, maxTradeId);
+            clientThreadFactory.newThread(() -> {
+                try {
+                    runClient(client, clientResult, deadline, new Random(clientIndex));
+                } finally {
+                    done.countDown();
+                }
+            }).start();
+        }
+        done.await();
+        clientResults.forEach(result::add);
+        return result;
+    }
+
+    private void runClient(LoadClient client, ClientResult result, long deadline, Random random) {
+        while (System.nanoTime() < deadline) {
+            Operation operation = nextOperation(random);
+            long start = System.nanoTime();
+            int status;
+            try {
+                status = client.execute(operation);
+            } catch (IOException ioException) {
+                status = 0;
+            }
+            result.record(operation, status, TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - start));
+        }
+    }
+
+    private Operation nextOperation(Random random) {
+        int pick = random.nextInt(totalWeight);
+        for (Map.Entry<Operation, Integer> entry : mix.entrySet()) {
+            pick -= entry.getValue();
+            if (0 > pick) {
+                return entry.getKey();
+            }
+        }
+        throw new IllegalStateException("Weights of the mix changed");
+    }
+
+    private void printScalingCurve(List<StepResult> results) {
+        System.out.println();
+        System.out.println("Scaling curve");
+        System.out.printf("%8s %12s %12s %14s %14s %14s%n", "threads", "requests/s", "writes/s",
+                "holdings p50", "holdings p99", "holdings p99.9");
+        for (StepResult result : results) {
+            Histogram holdings = result.histograms.get(Operation.GET_HOLDINGS);
+            System.out.printf("%8d %12.1f %12.1f %14s %14s %14s%n", result.threads, result.getThroughput(),
+                    result.getWriteThroughput(), percentile(holdings, 50), percentile(holdings, 99), percentile(holdings, 99.9));
+        }
+    }
+
+    /**
+     * Prints the throughput and p99 latency of all operations of each stack side by side, per thread count
+     */
+    private static void printComparison(Map<String, List<StepResult>> resultsByStack) {
+        System.out.println();
+        System.out.println("Stacks compared, requests/s and p99 ms of all operations");
+        StringBuilder header = new StringBuilder(String.format("%8s", "threads"));
+        resultsByStack.keySet().forEach(stack -> header.append(String.format(" %16s %16s", stack + " req/s", stack + " p99")));
+        System.out.println(header);
+        List<List<StepResult>> columns = new ArrayList<>(resultsByStack.values());
+        for (int step = 0; step < columns.get(0).size(); step++) {
+            StringBuilder row = new StringBuilder(String.format("%8d", columns.get(0).get(step).threads));
+            for (List<StepResult> results : columns) {
+                StepResult result = results.get(step);
+                row.append(String.format(" %16.1f %16s", result.getThroughput(), percentile(result.getAll(), 99)));
+            }
+            System.out.println(row);
+        }
+    }
+
+    private static void writeResults(LoadTestOptions options, List<StepResult> results) throws IOException {
+        writeResults(options, toJson(results));
+    }
+
+    /**
+     * Writes the results of each stack under it's name
+     */
+    private static void writeResults(LoadTestOptions options, Map<String, List<StepResult>> resultsByStack) throws IOException {
+        ObjectNode stacks = OBJECT_MAPPER.createObjectNode();
+        resultsByStack.forEach((stack, results) -> stacks.set(stack, toJson(results)));
+        writeResults(options, stacks);
+    }
+
+    private static void writeResults(LoadTestOptions options, JsonNode results) throws IOException {
+        File output = new File(options.getOutput());
+        if (null != output.getParentFile()) {
+            output.getParentFile().mkdirs();
+        }
+        OBJECT_MAPPER.writer(SerializationFeature.INDENT_OUTPUT).writeValue(output, results);
+        System.out.println("Results are saved to " + output.getPath());
+    }
+
+    private static ArrayNode toJson(List<StepResult> results) {
+        ArrayNode steps = OBJECT_MAPPER.createArrayNode();
+        for (StepResult result : results) {
+            ObjectNode step = steps.addObject();
+            step.put("threads", result.threads);
+            step.put("seconds", result.seconds);
+            step.put("requestsPerSecond", result.getThroughput());
+            step.put("writesPerSecond", result.getWriteThroughput());
+            ObjectNode operations = step.putObject("operations");
+            result.histograms.forEach((operation, histogram) -> {
+                ObjectNode operationNode = operations.putObject(operation.name());
+                operationNode.put("count", histogram.getTotalCount());
+                operationNode.put("rejected", result.rejected.get(operation)[0]);
+                operationNode.put("failed", result.failed.get(operation)[0]);
+                operationNode.put("p50Millis", histogram.getValueAtPercentile(50) / 1000.0);
+                operationNode.put("p99Millis", histogram.getValueAtPercentile(99) / 1000.0);
+                operationNode.put("p999Millis", histogram.getValueAtPercentile(99.9) / 1000.0);
+                operationNode.put("maxMillis", histogram.getMaxValue() / 1000.0);
+            });
+        }
+        return steps;
+    }
+
+    private static String percentile(Histogram histogram, double percentile) {
+        if (null == histogram || 0 == histogram.getTotalCount()) {
+            return "-";
+        }
+        return String.format("%.3f", histogram.getValueAtPercentile(percentile) / 1000.0);
+    }
+
+    /**
+     * Latencies and outcomes recorded by the client threads sharing it, one at a time
+     */
+    private static class ClientResult {
+        final Map<Operation, Histogram> histograms = new EnumMap<>(Operation.class);
+        final Map<Operation, long[]> rejected = new EnumMap<>(Operation.class);
+        final Map<Operation, long[]> failed = new EnumMap<>(Operation.class);
+
+        /**
+         * @param status HTTP status, 0 if no response was received. 4xx responses are counted as rejected,
+         *               5xx responses and missing responses as failed
+         */
+        private synchronized void record(Operation operation, int status, long latencyMicros) {
+            histograms.computeIfAbsent(operation, key -> new Histogram(HIGHEST_LATENCY_MICROS, 3))
+                    .recordValue(Math.min(latencyMicros, HIGHEST_LATENCY_MICROS));
+            rejected.computeIfAbsent(operation, key -> new long[1])[0] += 400 <= status && 500 > status ? 1 : 0;
+            failed.computeIfAbsent(operation, key -> new long[1])[0] += 0 == status || 500 <= status ? 1 : 0;
+        }
+    }
+
+    /**
+     * Latencies and outcomes of all clients at one thread count
+     */
+    private static class StepResult extends ClientResult {
+        private final int threads;
+        private final int seconds;
+
+        private StepResult(int threads, int seconds) {
+            this.threads = threads;
+            this.seconds = seconds;
+        }
+
+        private void add(ClientResult clientResult) {
+            clientResult.histograms.forEach((operation, histogram) ->
+                    histograms.computeIfAbsent(operation, key -> new Histogram(HIGHEST_LATENCY_MICROS, 3)).add(histogram));
+            clientResult.rejected.forEach((operation, count) -> rejected.computeIfAbsent(operation, key -> new long[1])[0] += count[0]);
+            clientResult.failed.forEach((operation, count) -> failed.computeIfAbsent(operation, key -> new long[1])[0] += count[0]);
+        }
+
+        private double getThroughput() {
+            return histograms.values().stream().mapToLong(Histogram::getTotalCount).sum() / (double) seconds;
+        }
+
+        private double getWriteThroughput() {
+            return histograms.entrySet().stream()
+                    .filter(entry -> entry.getKey().isWrite())
+                    .mapToLong(entry -> entry.getValue().getTotalCount())
+                    .sum() / (double) seconds;
+        }
+
+        /**
+         * Latencies of all operations together
+         */
+        private Histogram getAll() {
+            Histogram all = new Histogram(HIGHEST_LATENCY_MICROS, 3);
+            histograms.values().forEach(all::add);
+            return all;
+        }
+
+        private void print() {
+            Histogram all = getAll();
+            System.out.println();
+            System.out.printf("%d threads, %d s : %.1f requests/s, %.1f writes/s%n", threads, seconds, getThroughput(), getWriteThroughput());
+            System.out.printf("%-18s %10s %9s %7s %10s %10s %10s %10s%n", "operation", "count", "rejected", "failed",
+                    "p50 ms", "p99 ms", "p99.9 ms", "max ms");
+            histograms.forEach((operation, histogram) -> printRow(operation.name(), histogram,
+                    rejected.get(operation)[0], failed.get(operation)[0]));
+            printRow("ALL", all, rejected.values().stream().mapToLong(count -> count[0]).sum(),
+                    failed.values().stream().mapToLong(count -> count[0]).sum());
+        }
+
+        private static void printRow(String name, Histogram histogram, long rejected, long failed) {
+            System.out.printf("%-18s %10d %9d %7d %10s %10s %10s %10.3f%n", name, histogram.getTotalCount(), rejected, failed,
+                    percentile(histogram, 50), percentile(histogram, 99), percentile(histogram, 99.9),
+                    histogram.getMaxValue() / 1000.0);
+        }
+    }
+
+}
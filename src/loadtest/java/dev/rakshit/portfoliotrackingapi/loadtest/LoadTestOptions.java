@@ -0,0 +1,120 @@
+package dev.rakshit.portfoliotrackingapi.loadtest;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/**
+ * Options of the load test, given as --name=value arguments. Arguments starting with --app. are passed on
+ * to the application booted by the load test, for example --app.portfolio.trades.write-mode=SEQUENCED
+ */
+public class LoadTestOptions {
+
+    private static final String APP_PREFIX = "app.";
+
+    private final Map<String, String> values = new HashMap<>();
+    private final List<String> appProperties = new ArrayList<>();
+
+    public LoadTestOptions(String[] args) {
+        for (String arg : args) {
+            if (!arg.startsWith("--") || !arg.contains("=")) {
+                throw new IllegalArgumentException("Arguments should be --name=value, found : " + arg);
+            }
+            String name = arg.substring(2, arg.indexOf('='));
+            String value = arg.substring(arg.indexOf('=') + 1);
+            if (name.startsWith(APP_PREFIX)) {
+                appProperties.add(name.substring(APP_PREFIX.length()) + "=" + value);
+            } else {
+                values.put(name, value);
+            }
+        }
+    }
+
+    /**
+     * Base URL of a running application. The load test boots the application on a random port if it is not given
+     */
+    public String getUrl() {
+        return values.get("url");
+    }
+
+    /**
+     * Client thread counts measured one after the other, giving the scaling curve
+     */
+    public int[] getThreads() {
+        return Arrays.stream(values.getOrDefault("threads", "1,2,4,8,16").split(","))
+                .mapToInt(threads -> Integer.parseInt(threads.trim()))
+                .toArray();
+    }
+
+    /**
+     * Web stacks measured one after the other on a booted application, servlet, virtual or reactive. virtual is the
+     * servlet stack running requests on virtual threads, which needs Java 21 or later.
+     * The stack configured in the application is measured if none is given
+     */
+    public List<String> getStacks() {
+        return Arrays.stream(values.getOrDefault("stacks", "").split(","))
+                .map(String::trim)
+                .filter(stack -> !stack.isEmpty())
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * Runs the clients on virtual threads, so that thousands of connections can be held open without as many
+     * platform threads. Needs Java 21 or later
+     */
+    public boolean isVirtualClients() {
+        return Boolean.parseBoolean(values.getOrDefault("virtual-clients", "false"));
+    }
+
+    /**
+     * Seconds measured at each thread count
+     */
+    public int getDuration() {
+        return Integer.parseInt(values.getOrDefault("duration", "10"));
+    }
+
+    /**
+     * Seconds run at each thread count before measuring
+     */
+    public int getWarmup() {
+        return Integer.parseInt(values.getOrDefault("warmup", "3"));
+    }
+
+    public Map<Operation, Integer> getMix() {
+        return Operation.parseMix(values.getOrDefault("mix", Operation.DEFAULT_MIX));
+    }
+
+    public int getTickers() {
+        return Integer.parseInt(values.getOrDefault("tickers", "200"));
+    }
+
+    /**
+     * Zipf exponent of the tickers traded and read. 0 spreads requests evenly over the tickers
+     */
+    public double getSkew() {
+        return Double.parseDouble(values.getOrDefault("skew", "1.1"));
+    }
+
+    /**
+     * Trades added in one batch before the first measurement, so that reads have data and sells have shares
+     */
+    public int getSeedTrades() {
+        return Integer.parseInt(values.getOrDefault("seed-trades", "10000"));
+    }
+
+    /**
+     * File to which the results are written as JSON
+     */
+    public String getOutput() {
+        return values.getOrDefault("output", "target/loadtest-result.json");
+    }
+
+    public List<String> getAppProperties() {
+        return Collections.unmodifiableList(appProperties);
+    }
+
+}
@@ -0,0 +1,67 @@
+package dev.rakshit.portfoliotrackingapi.loadtest;
+
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * Requests the load test can send, one per endpoint of PortfolioTrackingController.
+ * Write operations are the ones which add, change or rebuild trades and holdings.
+ */
+public enum Operation {
+    ADD_TRADE(true),
+    ADD_TRADES_BATCH(true),
+    UPDATE_TRADE(true),
+    DELETE_TRADE(true),
+    GET_TRADE(false),
+    GET_TRADES(false),
+    EXPORT_TRADES(false),
+    GET_HOLDING(false),
+    GET_HOLDINGS(false),
+    REFRESH_HOLDING(true),
+    REFRESH_HOLDINGS(true),
+    GET_PORTFOLIO(false),
+    GET_RETURNS(false);
+
+    /**
+     * Mix used when none is given, mostly single trades and holding reads
+     */
+    public static final String DEFAULT_MIX = "ADD_TRADE=30,UPDATE_TRADE=5,DELETE_TRADE=5,GET_TRADE=5,GET_TRADES=5," +
+            "GET_HOLDING=20,GET_HOLDINGS=15,GET_PORTFOLIO=5,GET_RETURNS=10";
+
+    private final boolean write;
+
+    Operation(boolean write) {
+        this.write = write;
+    }
+
+    public boolean isWrite() {
+        return write;
+    }
+
+    /**
+     * Parses a mix of operations
+     *
+     * @param mix Comma separated OPERATION=weight pairs, for example ADD_TRADE=20,GET_HOLDINGS=80
+     * @return Weights by operation, without the operations of weight 0
+     */
+    public static Map<Operation, Integer> parseMix(String mix) {
+        Map<Operation, Integer> weights = new EnumMap<>(Operation.class);
+        for (String entry : mix.split(",")) {
+            String[] operationAndWeight = entry.trim().split("=");
+            if (2 != operationAndWeight.length) {
+                throw new IllegalArgumentException("Mix entry should be OPERATION=weight, found : " + entry);
+            }
+            int weight = Integer.parseInt(operationAndWeight[1].trim());
+            if (0 > weight) {
+                throw new IllegalArgumentException("Weight of " + operationAndWeight[0] + " should not be negative");
+            }
+            if (0 < weight) {
+                weights.put(Operation.valueOf(operationAndWeight[0].trim()), weight);
+            }
+        }
+        if (weights.isEmpty()) {
+            throw new IllegalArgumentException("Mix should have at least one operation with weight greater than 0");
+        }
+        return weights;
+    }
+}
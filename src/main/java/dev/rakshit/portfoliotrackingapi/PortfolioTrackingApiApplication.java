@@ -2,8 +2,13 @@ package dev.rakshit.portfoliotrackingapi;
 
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.boot.autoconfigure.r2dbc.R2dbcAutoConfiguration;
 
-@SpringBootApplication
+/**
+ * R2DBC is only used by the reactive stack, which builds it's own connection pool in ReactiveConfig.
+ * Spring Boot backs off the JDBC DataSource used by JPA when an R2DBC ConnectionFactory bean is present
+ */
+@SpringBootApplication(exclude = R2dbcAutoConfiguration.class)
 public class PortfolioTrackingApiApplication {
 
 	public static void main(String[] args) {
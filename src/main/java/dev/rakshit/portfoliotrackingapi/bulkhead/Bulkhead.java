@@ -0,0 +1,174 @@
+package dev.rakshit.portfoliotrackingapi.bulkhead;
+
+import dev.rakshit.portfoliotrackingapi.exceptions.ServiceUnavailableException;
+import dev.rakshit.portfoliotrackingapi.exceptions.TooManyRequestsException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+import java.time.Duration;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Bounds the requests of one kind running at once and the db connections they hold. Requests past max-concurrent
+ * wait their turn in a queue of queue-capacity, first come first served, for up to max-wait. A request finding
+ * the queue full is rejected right away with TooManyRequestsException, one waiting longer than max-wait with
+ * ServiceUnavailableException. Connections are taken from a budget of max-connections in the same way.
+ * A bulkhead of UNBOUNDED max-concurrent only bounds the connections, such as when requests run on virtual threads.
+ * Requests waiting, running and rejected, the time spent waiting and the connections held are published
+ * under portfolio.bulkhead, tagged with the name of the bulkhead.
+ */
+public class Bulkhead {
+
+    public static final String METRIC_NAME = "portfolio.bulkhead";
+    public static final int UNBOUNDED = Integer.MAX_VALUE;
+
+    private final String name;
+    private final int maxConcurrent;
+    private final int queueCapacity;
+    private final long maxWaitNanos;
+    private final int maxConnections;
+    private final Semaphore permits;
+    private final Semaphore connections;
+    private final AtomicInteger queued = new AtomicInteger();
+    private final Timer waitTimer;
+    private final Counter queueFullCounter;
+    private final Counter timedOutCounter;
+    private final Counter connectionTimedOutCounter;
+
+    /**
+     * @param name           Name of the bulkhead, such as read or write
+     * @param maxConcurrent  Requests running at once
+     * @param queueCapacity  Requests which can wait for one of the running requests to finish
+     * @param maxWait        Time for which a request waits to run or for a connection
+     * @param maxConnections Connections held at once by the running requests
+     * @param meterRegistry  Registry the metrics are published to
+     */
+    public Bulkhead(String name, int maxConcurrent, int queueCapacity, Duration maxWait, int maxConnections,
+                    MeterRegistry meterRegistry) {
+        if (0 >= maxConcurrent || 0 > queueCapacity || 0 >= maxConnections || maxWait.isNegative()) {
+            throw new IllegalArgumentException(
+                    "Concurrent requests and connections should be greater than 0, queue capacity and wait cannot be negative");
+        }
+        this.name = name;
+        this.maxConcurrent = maxConcurrent;
+        this.queueCapacity = queueCapacity;
+        this.maxWaitNanos = maxWait.toNanos();
+        this.maxConnections = maxConnections;
+        this.permits = new Semaphore(maxConcurrent, true);
+        this.connections = new Semaphore(maxConnections, true);
+        Gauge.builder(METRIC_NAME + ".queued", queued, AtomicInteger::get)
+                .description("Requests waiting to run")
+                .tag("bulkhead", name)
+                .register(meterRegistry);
+        Gauge.builder(METRIC_NAME + ".active", this, Bulkhead::getActive)
+                .description("Requests running")
+                .tag("bulkhead", name)
+                .register(meterRegistry);
+        Gauge.builder(METRIC_NAME + ".connections", this, Bulkhead::getActiveConnections)
+                .description("Db connections held by running requests")
+                .tag("bulkhead", name)
+                .register(meterRegistry);
+        this.waitTimer = Timer.builder(METRIC_NAME + ".wait")
+                .description("Time requests waited to run")
+                .tag("bulkhead", name)
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+        this.queueFullCounter = rejectedCounter(meterRegistry, "QUEUE_FULL");
+        this.timedOutCounter = rejectedCounter(meterRegistry, "TIMED_OUT");
+        this.connectionTimedOutCounter = rejectedCounter(meterRegistry, "CONNECTION_TIMED_OUT");
+    }
+
+    /**
+     * Takes a place among the running requests, waiting in the queue if they are all taken.
+     * Every successful call should be followed by a call to exit
+     */
+    public void enter() {
+        if (acquire(permits, 0L)) {
+            waitTimer.record(0L, TimeUnit.NANOSECONDS);
+            return;
+        }
+        if (queued.incrementAndGet() > queueCapacity) {
+            queued.decrementAndGet();
+            queueFullCounter.increment();
+            throw new TooManyRequestsException(String.format("Too many %s requests are waiting, please retry", name));
+        }
+        long start = System.nanoTime();
+        boolean acquired;
+        try {
+            acquired = acquire(permits, maxWaitNanos);
+        } finally {
+            queued.decrementAndGet();
+        }
+        waitTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        if (!acquired) {
+            timedOutCounter.increment();
+            throw new ServiceUnavailableException(String.format("Too many %s requests are running, please retry", name));
+        }
+    }
+
+    /**
+     * Gives up the place taken by enter
+     */
+    public void exit() {
+        permits.release();
+    }
+
+    /**
+     * Takes a connection from the budget of the bulkhead, waiting up to max-wait if all of them are held.
+     * Every successful call should be followed by a call to releaseConnection
+     */
+    public void acquireConnection() {
+        if (!acquire(connections, maxWaitNanos)) {
+            connectionTimedOutCounter.increment();
+            throw new ServiceUnavailableException(String.format("No db connection is free for %s requests, please retry", name));
+        }
+    }
+
+    /**
+     * Gives back a connection taken by acquireConnection
+     */
+    public void releaseConnection() {
+        connections.release();
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public int getQueued() {
+        return queued.get();
+    }
+
+    public int getActive() {
+        return maxConcurrent - permits.availablePermits();
+    }
+
+    public int getActiveConnections() {
+        return maxConnections - connections.availablePermits();
+    }
+
+    /**
+     * Acquires a permit honouring the order of the threads already waiting, unlike Semaphore.tryAcquire()
+     */
+    private static boolean acquire(Semaphore semaphore, long timeoutNanos) {
+        try {
+            return semaphore.tryAcquire(timeoutNanos, TimeUnit.NANOSECONDS);
+        } catch (InterruptedException interruptedException) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    private Counter rejectedCounter(MeterRegistry meterRegistry, String reason) {
+        return Counter.builder(METRIC_NAME + ".rejected")
+                .description("Requests rejected by the bulkhead")
+                .tag("bulkhead", name)
+                .tag("reason", reason)
+                .register(meterRegistry);
+    }
+
+}
@@ -0,0 +1,72 @@
+package dev.rakshit.portfoliotrackingapi.bulkhead;
+
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Takes each connection opened by a request from the connection budget of it's bulkhead and gives it back when
+ * the connection is closed, so that writes cannot hold the connections of the pool reads need. Connections opened
+ * outside requests, such as by the trade lanes or snapshots, only wait on the pool.
+ */
+public class BulkheadDataSource extends DelegatingDataSource {
+
+    public BulkheadDataSource(DataSource dataSource) {
+        super(dataSource);
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        Bulkhead bulkhead = BulkheadFilter.getCurrentBulkhead().orElse(null);
+        if (null == bulkhead) {
+            return super.getConnection();
+        }
+        bulkhead.acquireConnection();
+        try {
+            return release(super.getConnection(), bulkhead);
+        } catch (SQLException | RuntimeException exception) {
+            bulkhead.releaseConnection();
+            throw exception;
+        }
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        Bulkhead bulkhead = BulkheadFilter.getCurrentBulkhead().orElse(null);
+        if (null == bulkhead) {
+            return super.getConnection(username, password);
+        }
+        bulkhead.acquireConnection();
+        try {
+            return release(super.getConnection(username, password), bulkhead);
+        } catch (SQLException | RuntimeException exception) {
+            bulkhead.releaseConnection();
+            throw exception;
+        }
+    }
+
+    /**
+     * Wraps connection to give it back to the budget of bulkhead the first time it is closed
+     */
+    private static Connection release(Connection connection, Bulkhead bulkhead) {
+        AtomicBoolean closed = new AtomicBoolean();
+        return (Connection) Proxy.newProxyInstance(BulkheadDataSource.class.getClassLoader(), new Class<?>[]{Connection.class},
+                (proxy, method, args) -> {
+                    try {
+                        return method.invoke(connection, args);
+                    } catch (InvocationTargetException invocationTargetException) {
+                        throw invocationTargetException.getCause();
+                    } finally {
+                        if ("close".equals(method.getName()) && closed.compareAndSet(false, true)) {
+                            bulkhead.releaseConnection();
+                        }
+                    }
+                });
+    }
+
+}
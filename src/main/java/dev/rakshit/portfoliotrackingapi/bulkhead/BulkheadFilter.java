@@ -0,0 +1,104 @@
+package dev.rakshit.portfoliotrackingapi.bulkhead;
+
+import dev.rakshit.portfoliotrackingapi.exceptions.ServiceUnavailableException;
+import dev.rakshit.portfoliotrackingapi.exceptions.TooManyRequestsException;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.util.AntPathMatcher;
+import org.springframework.util.PathMatcher;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.util.UrlPathHelper;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Runs reads and writes in separate bulkheads, so that a burst of writes cannot take the request threads and
+ * db connections reads need. GET requests are reads except the paths in write-paths, such as rebuilding holdings,
+ * every other request is a write. Actuator endpoints are left out, so that health checks are answered under load.
+ * A request which cannot enter it's bulkhead is answered at once with 429 if the queue is full and 503 if it waited
+ * too long, along with a Retry-After header. Requests handled asynchronously leave the bulkhead once the request
+ * thread is released.
+ */
+@Slf4j
+public class BulkheadFilter extends OncePerRequestFilter {
+
+    private static final ThreadLocal<Bulkhead> CURRENT_BULKHEAD = new ThreadLocal<>();
+    private static final String RETRY_AFTER_SECONDS = "1";
+
+    private final Bulkhead readBulkhead;
+    private final Bulkhead writeBulkhead;
+    private final List<String> writePaths;
+    private final PathMatcher pathMatcher = new AntPathMatcher();
+    private final UrlPathHelper urlPathHelper = new UrlPathHelper();
+
+    /**
+     * @param readBulkhead  Bulkhead of reads
+     * @param writeBulkhead Bulkhead of writes
+     * @param writePaths    Path patterns of GET requests run as writes
+     */
+    public BulkheadFilter(Bulkhead readBulkhead, Bulkhead writeBulkhead, String... writePaths) {
+        this.readBulkhead = readBulkhead;
+        this.writeBulkhead = writeBulkhead;
+        this.writePaths = Arrays.asList(writePaths);
+    }
+
+    /**
+     * Gives the bulkhead of the request running on the current thread
+     *
+     * @return Bulkhead and Optional.empty() if the thread is not running a request
+     */
+    public static Optional<Bulkhead> getCurrentBulkhead() {
+        return Optional.ofNullable(CURRENT_BULKHEAD.get());
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        return pathMatcher.match("/actuator/**", urlPathHelper.getPathWithinApplication(request));
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+            throws ServletException, IOException {
+        Bulkhead bulkhead = isWrite(request) ? writeBulkhead : readBulkhead;
+        try {
+            bulkhead.enter();
+        } catch (TooManyRequestsException tooManyRequestsException) {
+            reject(response, HttpStatus.TOO_MANY_REQUESTS, tooManyRequestsException);
+            return;
+        } catch (ServiceUnavailableException serviceUnavailableException) {
+            reject(response, HttpStatus.SERVICE_UNAVAILABLE, serviceUnavailableException);
+            return;
+        }
+        CURRENT_BULKHEAD.set(bulkhead);
+        try {
+            filterChain.doFilter(request, response);
+        } finally {
+            CURRENT_BULKHEAD.remove();
+            bulkhead.exit();
+        }
+    }
+
+    private boolean isWrite(HttpServletRequest request) {
+        if (!HttpMethod.GET.matches(request.getMethod()) && !HttpMethod.HEAD.matches(request.getMethod())) {
+            return true;
+        }
+        String path = urlPathHelper.getPathWithinApplication(request);
+        return writePaths.stream().anyMatch(pattern -> pathMatcher.match(pattern, path));
+    }
+
+    private void reject(HttpServletResponse response, HttpStatus status, RuntimeException exception) throws IOException {
+        log.debug("Rejected request : {}", exception.getMessage());
+        response.setHeader(HttpHeaders.RETRY_AFTER, RETRY_AFTER_SECONDS);
+        response.sendError(status.value(), exception.getMessage());
+    }
+
+}
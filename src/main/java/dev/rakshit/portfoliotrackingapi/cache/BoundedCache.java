@@ -0,0 +1,167 @@
+package dev.rakshit.portfoliotrackingapi.cache;
+
+import java.time.Duration;
+import java.util.Optional;
+
+/**
+ * Thread safe in-memory cache holding at most maxSize entries. When full, adding a new key evicts
+ * an entry chosen by the eviction policy of the implementation. Keeps hit, miss, put and eviction counts.
+ *
+ * @param <K> Type of the keys
+ * @param <V> Type of the values
+ */
+public abstract class BoundedCache<K, V> {
+
+    protected final int maxSize;
+
+    private long hitCount;
+    private long missCount;
+    private long putCount;
+    private long evictionCount;
+
+    protected BoundedCache(int maxSize) {
+        this.maxSize = maxSize;
+    }
+
+    /**
+     * Creates cache with the given eviction policy
+     *
+     * @param policy  Eviction policy to be used
+     * @param maxSize Maximum entries to be held. Nothing is cached if it is zero
+     * @return Empty cache
+     */
+    public static <K, V> BoundedCache<K, V> create(EvictionPolicy policy, int maxSize) {
+        if (0 > maxSize) {
+            throw new IllegalArgumentException("Cache size cannot be less than zero");
+        }
+        return EvictionPolicy.LFU == policy ? new LfuCache<>(maxSize) : new LruCache<>(maxSize);
+    }
+
+    /**
+     * Creates cache whose entries expire once they are older than timeToLive. When full, the oldest entry is evicted
+     *
+     * @param maxSize    Maximum entries to be held. Nothing is cached if it is zero
+     * @param timeToLive Time for which an entry is kept after it is written
+     * @return Empty cache
+     */
+    public static <K, V> BoundedCache<K, V> createExpiring(int maxSize, Duration timeToLive) {
+        if (0 > maxSize) {
+            throw new IllegalArgumentException("Cache size cannot be less than zero");
+        }
+        return new ExpiringCache<>(maxSize, timeToLive, System::nanoTime);
+    }
+
+    /**
+     * Gets value of a key and counts it as a hit or a miss
+     *
+     * @param key Key to be looked up
+     * @return Value of the key and Optional.empty() if key is not cached
+     */
+    public synchronized Optional<V> get(K key) {
+        V value = lookup(key);
+        if (null == value) {
+            missCount++;
+        } else {
+            hitCount++;
+        }
+        return Optional.ofNullable(value);
+    }
+
+    /**
+     * Adds or replaces value of a key
+     *
+     * @param key   Key to be cached
+     * @param value Value of the key
+     */
+    public synchronized void put(K key, V value) {
+        putCount++;
+        if (0 < maxSize) {
+            store(key, value);
+        }
+    }
+
+    /**
+     * Adds value of a key only if the key is not cached already
+     *
+     * @param key   Key to be cached
+     * @param value Value of the key
+     * @return Value already cached for the key and Optional.empty() if value was added
+     */
+    public synchronized Optional<V> putIfAbsent(K key, V value) {
+        V cachedValue = lookup(key);
+        if (null == cachedValue) {
+            put(key, value);
+        }
+        return Optional.ofNullable(cachedValue);
+    }
+
+    public synchronized void remove(K key) {
+        delete(key);
+    }
+
+    /**
+     * Removes a key only if it is still cached with the given value
+     *
+     * @param key   Key to be removed
+     * @param value Value the key is expected to have
+     */
+    public synchronized void remove(K key, V value) {
+        if (value.equals(lookup(key))) {
+            delete(key);
+        }
+    }
+
+    public synchronized void clear() {
+        deleteAll();
+    }
+
+    public synchronized int size() {
+        return count();
+    }
+
+    public synchronized long getHitCount() {
+        return hitCount;
+    }
+
+    public synchronized long getMissCount() {
+        return missCount;
+    }
+
+    public synchronized long getPutCount() {
+        return putCount;
+    }
+
+    public synchronized long getEvictionCount() {
+        return evictionCount;
+    }
+
+    /**
+     * To be called by implementations whenever an entry is evicted to make room for a new one
+     */
+    protected void onEviction() {
+        evictionCount++;
+    }
+
+    /**
+     * Gets value of a key and records the access for the eviction policy
+     *
+     * @param key Key to be looked up
+     * @return Value of the key and null if key is not cached
+     */
+    protected abstract V lookup(K key);
+
+    /**
+     * Adds or replaces value of a key, evicting an entry if the cache is full
+     *
+     * @param key   Key to be cached
+     * @param value Value of the key
+     */
+    protected abstract void store(K key, V value);
+
+    protected abstract void delete(K key);
+
+    protected abstract void deleteAll();
+
+    protected abstract int count();
+
+}
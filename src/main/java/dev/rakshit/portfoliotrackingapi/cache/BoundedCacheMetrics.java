@@ -0,0 +1,49 @@
+package dev.rakshit.portfoliotrackingapi.cache;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.binder.cache.CacheMeterBinder;
+
+/**
+ * Publishes the counts of a BoundedCache as the standard cache.gets, cache.puts, cache.evictions
+ * and cache.size metrics, tagged with the name of the cache
+ */
+public class BoundedCacheMetrics extends CacheMeterBinder {
+
+    private final BoundedCache<?, ?> cache;
+
+    public BoundedCacheMetrics(BoundedCache<?, ?> cache, String cacheName) {
+        super(cache, cacheName, Tags.empty());
+        this.cache = cache;
+    }
+
+    @Override
+    protected Long size() {
+        return (long) cache.size();
+    }
+
+    @Override
+    protected long hitCount() {
+        return cache.getHitCount();
+    }
+
+    @Override
+    protected Long missCount() {
+        return cache.getMissCount();
+    }
+
+    @Override
+    protected Long evictionCount() {
+        return cache.getEvictionCount();
+    }
+
+    @Override
+    protected long putCount() {
+        return cache.getPutCount();
+    }
+
+    @Override
+    protected void bindImplementationSpecificMetrics(MeterRegistry registry) {
+    }
+
+}
@@ -0,0 +1,6 @@
+package dev.rakshit.portfoliotrackingapi.cache;
+
+public enum EvictionPolicy {
+    LRU,
+    LFU
+}
@@ -0,0 +1,91 @@
+package dev.rakshit.portfoliotrackingapi.cache;
+
+import java.time.Duration;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.function.LongSupplier;
+
+/**
+ * Expires entries once they are older than the time to live and evicts the oldest entry when full. Entries are kept
+ * in the order they were written, which is the order they expire in, so expired entries are dropped from the head
+ * of the map on every write and lookups stay constant time whatever the number of entries
+ */
+class ExpiringCache<K, V> extends BoundedCache<K, V> {
+
+    private final long timeToLiveNanos;
+    private final LongSupplier nanoTime;
+    private final LinkedHashMap<K, Entry<V>> entries = new LinkedHashMap<>();
+
+    ExpiringCache(int maxSize, Duration timeToLive, LongSupplier nanoTime) {
+        super(maxSize);
+        this.timeToLiveNanos = timeToLive.toNanos();
+        this.nanoTime = nanoTime;
+    }
+
+    @Override
+    protected V lookup(K key) {
+        Entry<V> entry = entries.get(key);
+        if (null == entry) {
+            return null;
+        }
+        if (isExpired(entry, nanoTime.getAsLong())) {
+            entries.remove(key);
+            return null;
+        }
+        return entry.value;
+    }
+
+    @Override
+    protected void store(K key, V value) {
+        long now = nanoTime.getAsLong();
+        removeExpired(now);
+        entries.remove(key);
+        entries.put(key, new Entry<>(value, now));
+        if (entries.size() > maxSize) {
+            Iterator<Entry<V>> iterator = entries.values().iterator();
+            iterator.next();
+            iterator.remove();
+            onEviction();
+        }
+    }
+
+    @Override
+    protected void delete(K key) {
+        entries.remove(key);
+    }
+
+    @Override
+    protected void deleteAll() {
+        entries.clear();
+    }
+
+    @Override
+    protected int count() {
+        removeExpired(nanoTime.getAsLong());
+        return entries.size();
+    }
+
+    private void removeExpired(long now) {
+        Iterator<Entry<V>> iterator = entries.values().iterator();
+        while (iterator.hasNext() && isExpired(iterator.next(), now)) {
+            iterator.remove();
+        }
+    }
+
+    private boolean isExpired(Entry<V> entry, long now) {
+        return now - entry.writtenAt >= timeToLiveNanos;
+    }
+
+    private static class Entry<V> {
+
+        private final V value;
+        private final long writtenAt;
+
+        private Entry(V value, long writtenAt) {
+            this.value = value;
+            this.writtenAt = writtenAt;
+        }
+
+    }
+
+}
@@ -0,0 +1,230 @@
+package dev.rakshit.portfoliotrackingapi.cache;
+
+import dev.rakshit.portfoliotrackingapi.models.Holding;
+import dev.rakshit.portfoliotrackingapi.repository.HoldingJdbcRepository;
+import dev.rakshit.portfoliotrackingapi.repository.HoldingRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.stream.Collectors;
+
+/**
+ * Write-through cache in front of HoldingRepository. Holdings are written to db first and cached after,
+ * so the cache never has a holding which is not in db. Cached holdings are copied in and out,
+ * so callers are free to modify the holdings they get. Inside a transaction, holdings are cached only once
+ * it commits, so a rolled back write never leaves it's holding in the cache. A holding is loaded, saved or deleted
+ * by one JDBC statement, saved by a MERGE checking it's version, so the cached copies carry the version written
+ * to db and no holding is tracked in the persistence context. When portfolio.holdings.write-behind.enabled is true,
+ * holdings are saved into a HoldingWriteBehind instead, which is read ahead of the cache and db.
+ * Every put or removal by a write advances the ticker's HoldingGenerations first, and a holding loaded on a cache miss
+ * is dropped again if the generation moved while it was loaded, so a read racing a write never caches a stale holding.
+ */
+@Component
+public class HoldingCache {
+
+    @Autowired
+    private HoldingRepository holdingRepository;
+
+    @Autowired
+    private HoldingJdbcRepository holdingJdbcRepository;
+
+    @Autowired
+    private BoundedCache<String, Holding> holdingStore;
+
+    @Autowired
+    private HoldingGenerations holdingGenerations;
+
+    @Autowired(required = false)
+    private HoldingWriteBehind holdingWriteBehind;
+
+    /**
+     * Gets holding by ticker, loading it from db on a cache miss. A loaded holding is cached only if no write
+     * of it's ticker was cached while it was loaded, as it may have been read before the write committed.
+     * The holding is never the one tracked in the persistence context, so changing it writes nothing to db until it is saved
+     *
+     * @param ticker Ticker of the holding
+     * @return Holding of the ticker and Optional.empty() if no holding is present
+     */
+    public Optional<Holding> findById(String ticker) {
+        if (null != holdingWriteBehind) {
+            Optional<Optional<Holding>> dirtyHolding = holdingWriteBehind.findDirty(ticker);
+            if (dirtyHolding.isPresent()) {
+                return dirtyHolding.get();
+            }
+        }
+        Optional<Holding> cachedHolding = holdingStore.get(ticker);
+        if (cachedHolding.isPresent()) {
+            return cachedHolding.map(HoldingCache::copy);
+        }
+        long generation = holdingGenerations.get(ticker);
+        Optional<Holding> holding = holdingJdbcRepository.findById(ticker);
+        holding.ifPresent(loadedHolding -> {
+            Holding copiedHolding = copy(loadedHolding);
+            holdingStore.putIfAbsent(ticker, copiedHolding);
+            if (generation != holdingGenerations.get(ticker)) {
+                holdingStore.remove(ticker, copiedHolding);
+            }
+        });
+        return holding;
+    }
+
+    /**
+     * Gets all holdings, with the ones not yet written behind to db in place of the ones in db
+     *
+     * @return List of all holdings
+     */
+    public List<Holding> findAll() {
+        if (null == holdingWriteBehind) {
+            return holdingRepository.findAll();
+        }
+        Map<String, Optional<Holding>> dirtyHoldings = holdingWriteBehind.getDirtyHoldings();
+        Map<String, Holding> holdings = new LinkedHashMap<>();
+        holdingRepository.findAll().forEach(holding -> holdings.put(holding.getTicker(), holding));
+        dirtyHoldings.forEach((ticker, dirtyHolding) -> {
+            if (dirtyHolding.isPresent()) {
+                holdings.put(ticker, dirtyHolding.get());
+            } else {
+                holdings.remove(ticker);
+            }
+        });
+        return new ArrayList<>(holdings.values());
+    }
+
+    /**
+     * Saves holding into db and caches it. Throws OptimisticLockingFailureException
+     * if the holding was changed in db after it was read. With write-behind, the holding is
+     * only marked dirty once the transaction commits
+     *
+     * @param holding Holding to be saved
+     * @return Holding saved into db
+     */
+    public Holding save(Holding holding) {
+        if (null != holdingWriteBehind) {
+            Holding dirtyHolding = copy(holding);
+            afterCommit(() -> holdingWriteBehind.save(dirtyHolding));
+            return holding;
+        }
+        holdingJdbcRepository.saveOfVersion(holding);
+        Holding cachedHolding = copy(holding);
+        afterCommit(() -> put(cachedHolding));
+        return holding;
+    }
+
+    /**
+     * Saves holdings into db and caches them. Throws ObjectOptimisticLockingFailureException
+     * if any of the holdings was changed in db after it was read
+     *
+     * @param holdings Holdings to be saved
+     * @return Holdings saved into db
+     */
+    public List<Holding> saveAll(List<Holding> holdings) {
+        if (null != holdingWriteBehind) {
+            List<Holding> dirtyHoldings = holdings.stream()
+                    .map(HoldingCache::copy)
+                    .collect(Collectors.toList());
+            afterCommit(() -> dirtyHoldings.forEach(holdingWriteBehind::save));
+            return holdings;
+        }
+        List<Holding> savedHoldings = holdingRepository.saveAll(holdings);
+        holdingRepository.flush();
+        List<Holding> cachedHoldings = savedHoldings.stream()
+                .map(HoldingCache::copy)
+                .collect(Collectors.toList());
+        afterCommit(() -> cachedHoldings.forEach(this::put));
+        return savedHoldings;
+    }
+
+    /**
+     * Deletes holding from db and from cache. Throws OptimisticLockingFailureException
+     * if the holding was changed in db after it was read
+     *
+     * @param holding Holding to be deleted
+     */
+    public void delete(Holding holding) {
+        evict(holding.getTicker());
+        if (null != holdingWriteBehind) {
+            Holding deletedHolding = copy(holding);
+            afterCommit(() -> holdingWriteBehind.delete(deletedHolding));
+            return;
+        }
+        holdingJdbcRepository.deleteOfVersion(holding);
+        afterCommit(() -> evict(holding.getTicker()));
+    }
+
+    /**
+     * Drops the cached holding of a ticker. To be called when the holding is written to db without this cache
+     *
+     * @param ticker Ticker of the holding
+     */
+    public void evict(String ticker) {
+        holdingGenerations.advance(ticker);
+        holdingStore.remove(ticker);
+    }
+
+    /**
+     * Drops all cached holdings. To be called when holdings are written to db without this cache
+     */
+    public void evictAll() {
+        holdingGenerations.advanceAll();
+        holdingStore.clear();
+    }
+
+    /**
+     * Writes the holdings of tickers not yet written behind to db. To be called, holding the locks of the tickers,
+     * before their holdings are read from or written to db without this cache
+     *
+     * @param tickers Tickers whose holdings are to be written
+     */
+    public void flush(Collection<String> tickers) {
+        if (null != holdingWriteBehind) {
+            holdingWriteBehind.flush(tickers);
+        }
+    }
+
+    /**
+     * Writes all the holdings not yet written behind to db. To be called, holding all the ticker locks,
+     * before holdings are read from or written to db without this cache
+     */
+    public void flushAll() {
+        if (null != holdingWriteBehind) {
+            holdingWriteBehind.flush();
+        }
+    }
+
+    /**
+     * Caches a holding written to db, advancing the generation of it's ticker first
+     */
+    private void put(Holding holding) {
+        holdingGenerations.advance(holding.getTicker());
+        holdingStore.put(holding.getTicker(), holding);
+    }
+
+    /**
+     * Runs action once the current transaction commits, or right away if there is no transaction
+     */
+    private static void afterCommit(Runnable action) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            action.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                action.run();
+            }
+        });
+    }
+
+    private static Holding copy(Holding holding) {
+        return holding.toBuilder().build();
+    }
+
+}
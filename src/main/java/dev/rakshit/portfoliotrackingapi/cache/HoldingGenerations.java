@@ -0,0 +1,51 @@
+package dev.rakshit.portfoliotrackingapi.cache;
+
+import dev.rakshit.portfoliotrackingapi.lock.TickerLocks;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Generations of the cached holdings, counted per stripe of TickerLocks, so memory used does not grow with
+ * the number of tickers. A generation is advanced before a holding is put into or removed from the cache by a write,
+ * so a holding loaded from db on a cache miss can tell whether a write of it's ticker was cached while it was loaded.
+ * Tickers sharing a stripe only make a loaded holding skip the cache more often.
+ */
+public class HoldingGenerations {
+
+    private final TickerLocks tickerLocks;
+    private final AtomicLongArray generations;
+
+    public HoldingGenerations(TickerLocks tickerLocks) {
+        this.tickerLocks = tickerLocks;
+        this.generations = new AtomicLongArray(tickerLocks.getStripes());
+    }
+
+    /**
+     * Gives the generation of a ticker, to be read before it's holding is loaded from db
+     *
+     * @param ticker Ticker of the holding
+     * @return Generation of the stripe of the ticker
+     */
+    public long get(String ticker) {
+        return generations.get(tickerLocks.stripeOf(ticker));
+    }
+
+    /**
+     * Advances the generation of a ticker, to be called before it's cached holding is put or removed by a write
+     *
+     * @param ticker Ticker of the holding
+     */
+    public void advance(String ticker) {
+        generations.incrementAndGet(tickerLocks.stripeOf(ticker));
+    }
+
+    /**
+     * Advances the generations of all tickers, to be called before the cache is cleared
+     */
+    public void advanceAll() {
+        for (int stripe = 0; stripe < generations.length(); stripe++) {
+            generations.incrementAndGet(stripe);
+        }
+    }
+
+}
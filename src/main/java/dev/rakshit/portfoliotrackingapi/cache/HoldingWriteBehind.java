@@ -0,0 +1,389 @@
+package dev.rakshit.portfoliotrackingapi.cache;
+
+import dev.rakshit.portfoliotrackingapi.lock.TickerLocks;
+import dev.rakshit.portfoliotrackingapi.models.Holding;
+import dev.rakshit.portfoliotrackingapi.models.Trade;
+import dev.rakshit.portfoliotrackingapi.repository.HoldingJdbcRepository;
+import dev.rakshit.portfoliotrackingapi.repository.TradeJdbcRepository;
+import dev.rakshit.portfoliotrackingapi.util.HoldingUtil;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.TimeGauge;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.ConcurrencyFailureException;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Write-behind store of holdings. Holdings saved here are authoritative over db until they are flushed.
+ * Changes of a ticker are coalesced, so only the latest holding of a ticker is written however many times it
+ * changed in between. Dirty holdings are flushed in JDBC batches every flush-interval, as soon as max-dirty
+ * tickers are dirty, and once more on shutdown. A flush holds the ticker locks of the holdings it writes,
+ * so it never overlaps a write of the same tickers. Holdings are written only if their version is unchanged in db,
+ * so anyone writing holdings to db without this store should flush it's tickers first.
+ */
+@Slf4j
+public class HoldingWriteBehind implements MeterBinder {
+
+    private final TransactionTemplate transactionTemplate;
+    private final TickerLocks tickerLocks;
+    private final HoldingJdbcRepository holdingJdbcRepository;
+    private final TradeJdbcRepository tradeJdbcRepository;
+    private final BoundedCache<String, Holding> holdingStore;
+    private final HoldingGenerations holdingGenerations;
+    private final Duration flushInterval;
+    private final int maxDirty;
+    private final Map<String, DirtyHolding> dirtyHoldings = new HashMap<>();
+    private final AtomicBoolean flushRequested = new AtomicBoolean();
+    private final AtomicLong flushedHoldings = new AtomicLong();
+    private final AtomicLong droppedHoldings = new AtomicLong();
+    private ScheduledExecutorService flusher;
+    private volatile boolean running;
+    private volatile Timer flushTimer;
+
+    /**
+     * @param tradeJdbcRepository Trades from which holdings changed in db by someone else are rebuilt
+     * @param holdingStore        Cache of holdings, updated with the versions written on each flush
+     * @param holdingGenerations  Generations of the cached holdings, advanced before the cache is updated
+     * @param flushInterval       Time between flushes
+     * @param maxDirty            Number of dirty tickers which starts a flush before flush-interval
+     */
+    public HoldingWriteBehind(TransactionTemplate transactionTemplate, TickerLocks tickerLocks,
+                              HoldingJdbcRepository holdingJdbcRepository, TradeJdbcRepository tradeJdbcRepository,
+                              BoundedCache<String, Holding> holdingStore, HoldingGenerations holdingGenerations,
+                              Duration flushInterval, int maxDirty) {
+        if (flushInterval.isNegative() || flushInterval.isZero() || 0 >= maxDirty) {
+            throw new IllegalArgumentException("Flush interval and max dirty holdings should be greater than 0");
+        }
+        this.transactionTemplate = transactionTemplate;
+        this.tickerLocks = tickerLocks;
+        this.holdingJdbcRepository = holdingJdbcRepository;
+        this.tradeJdbcRepository = tradeJdbcRepository;
+        this.holdingStore = holdingStore;
+        this.holdingGenerations = holdingGenerations;
+        this.flushInterval = flushInterval;
+        this.maxDirty = maxDirty;
+    }
+
+    /**
+     * Starts flushing dirty holdings every flush-interval
+     */
+    public synchronized void start() {
+        flusher = Executors.newSingleThreadScheduledExecutor(runnable -> new Thread(runnable, "holding-write-behind"));
+        flusher.scheduleWithFixedDelay(this::flushQuietly, flushInterval.toMillis(), flushInterval.toMillis(), TimeUnit.MILLISECONDS);
+        running = true;
+        log.info("Started write-behind of holdings, flushing every {} or {} dirty holdings", flushInterval, maxDirty);
+    }
+
+    /**
+     * Stops the scheduled flushes and writes all the dirty holdings. Holdings saved after this are written right away
+     */
+    public synchronized void shutdown() {
+        running = false;
+        flusher.shutdown();
+        try {
+            flusher.awaitTermination(30, TimeUnit.SECONDS);
+        } catch (InterruptedException interruptedException) {
+            Thread.currentThread().interrupt();
+        }
+        flush();
+        log.info("Stopped write-behind of holdings, {} holdings were written", flushedHoldings.get());
+    }
+
+    /**
+     * Replaces the dirty holding of it's ticker. To be called holding the ticker lock
+     *
+     * @param holding Holding to be written
+     */
+    public void save(Holding holding) {
+        put(holding.getTicker(), copy(holding), holding.getVersion());
+    }
+
+    /**
+     * Marks the holding of it's ticker as deleted. To be called holding the ticker lock
+     *
+     * @param holding Holding to be deleted
+     */
+    public void delete(Holding holding) {
+        put(holding.getTicker(), null, holding.getVersion());
+    }
+
+    /**
+     * Gets the dirty holding of a ticker
+     *
+     * @param ticker Ticker of the holding
+     * @return Optional.empty() if the ticker has no unflushed change, else the latest holding of the ticker,
+     * which is Optional.empty() if the holding was deleted
+     */
+    public synchronized Optional<Optional<Holding>> findDirty(String ticker) {
+        DirtyHolding dirtyHolding = dirtyHoldings.get(ticker);
+        if (null == dirtyHolding) {
+            return Optional.empty();
+        }
+        return Optional.of(Optional.ofNullable(dirtyHolding.holding).map(HoldingWriteBehind::copy));
+    }
+
+    /**
+     * Gets the latest holdings of all the tickers with unflushed changes
+     *
+     * @return Holdings by ticker, Optional.empty() for the ones deleted
+     */
+    public synchronized Map<String, Optional<Holding>> getDirtyHoldings() {
+        Map<String, Optional<Holding>> holdings = new HashMap<>();
+        dirtyHoldings.forEach((ticker, dirtyHolding) ->
+                holdings.put(ticker, Optional.ofNullable(dirtyHolding.holding).map(HoldingWriteBehind::copy)));
+        return holdings;
+    }
+
+    /**
+     * Gets the number of tickers with unflushed changes
+     */
+    public synchronized int getDirtyCount() {
+        return dirtyHoldings.size();
+    }
+
+    /**
+     * Gets how long the oldest unflushed change has been waiting
+     */
+    public synchronized Duration getLag() {
+        long now = System.nanoTime();
+        return Duration.ofNanos(dirtyHoldings.values().stream()
+                .mapToLong(dirtyHolding -> now - dirtyHolding.dirtySince)
+                .max()
+                .orElse(0L));
+    }
+
+    /**
+     * Writes all the dirty holdings to db
+     */
+    public void flush() {
+        Set<String> tickers;
+        synchronized (this) {
+            tickers = new LinkedHashSet<>(dirtyHoldings.keySet());
+        }
+        flush(tickers);
+    }
+
+    /**
+     * Writes the dirty holdings of the given tickers to db. Changes of holdings which were changed in db by someone
+     * else are dropped, and those holdings are rebuilt from trades. Holdings stay dirty if db could not be written
+     *
+     * @param tickers Tickers whose holdings are to be written
+     */
+    public void flush(Collection<String> tickers) {
+        Set<String> dirtyTickers = new LinkedHashSet<>();
+        synchronized (this) {
+            tickers.stream().filter(dirtyHoldings::containsKey).forEach(dirtyTickers::add);
+        }
+        if (dirtyTickers.isEmpty()) {
+            return;
+        }
+        tickerLocks.withLocks(dirtyTickers, () -> {
+            long start = System.nanoTime();
+            write(dirtyTickers);
+            Timer timer = flushTimer;
+            if (null != timer) {
+                timer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            }
+            return null;
+        });
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder("holdings.write.behind.dirty", this, HoldingWriteBehind::getDirtyCount)
+                .description("Number of holdings changed in memory and not yet written to db")
+                .register(registry);
+        TimeGauge.builder("holdings.write.behind.lag", this, TimeUnit.SECONDS,
+                writeBehind -> writeBehind.getLag().toMillis() / 1000.0)
+                .description("Age of the oldest holding change not yet written to db")
+                .register(registry);
+        FunctionCounter.builder("holdings.write.behind.written", flushedHoldings, AtomicLong::get)
+                .description("Number of holdings written or deleted in db by flushes")
+                .register(registry);
+        FunctionCounter.builder("holdings.write.behind.dropped", droppedHoldings, AtomicLong::get)
+                .description("Number of holdings dropped and rebuilt from trades as they were changed in db by someone else")
+                .register(registry);
+        flushTimer = Timer.builder("holdings.write.behind.flush")
+                .description("Time taken to write dirty holdings to db")
+                .register(registry);
+    }
+
+    /**
+     * Coalesces a change into the dirty holding of a ticker. A holding saved over a deleted one which was never
+     * flushed takes the version of the deleted one, as the row is still in db
+     */
+    private void put(String ticker, Holding holding, Long version) {
+        int dirtyCount;
+        synchronized (this) {
+            DirtyHolding current = dirtyHoldings.get(ticker);
+            if (null != holding && null == holding.getVersion() && null != current && null == current.holding) {
+                holding.setVersion(current.version);
+            }
+            dirtyHoldings.put(ticker, new DirtyHolding(holding, null == holding ? version : holding.getVersion(),
+                    null == current ? System.nanoTime() : current.dirtySince));
+            dirtyCount = dirtyHoldings.size();
+        }
+        if (!running) {
+            flush(Collections.singleton(ticker));
+        } else if (maxDirty <= dirtyCount && flushRequested.compareAndSet(false, true)) {
+            flusher.execute(this::flushQuietly);
+        }
+    }
+
+    /**
+     * Writes the dirty holdings of tickers whose locks are held. Holdings are removed from the dirty ones
+     * only once written, so readers always find either the dirty holding or the one in db. If any holding of the
+     * batch was changed in db by someone else, the batch is rolled back and it's holdings are written one by one,
+     * so that only the changed ones are dropped
+     */
+    private void write(Set<String> tickers) {
+        Map<String, DirtyHolding> flushing = new HashMap<>();
+        synchronized (this) {
+            tickers.forEach(ticker -> Optional.ofNullable(dirtyHoldings.get(ticker))
+                    .ifPresent(dirtyHolding -> flushing.put(ticker, dirtyHolding)));
+        }
+        List<Holding> savedHoldings = new ArrayList<>();
+        List<Holding> deletedHoldings = new ArrayList<>();
+        flushing.forEach((ticker, dirtyHolding) -> {
+            if (null != dirtyHolding.holding) {
+                savedHoldings.add(copy(dirtyHolding.holding));
+            } else if (null != dirtyHolding.version) {
+                deletedHoldings.add(Holding.builder().ticker(ticker).version(dirtyHolding.version).build());
+            }
+        });
+        try {
+            transactionTemplate.execute(status -> {
+                holdingJdbcRepository.saveAllOfVersion(savedHoldings);
+                holdingJdbcRepository.deleteAllOfVersion(deletedHoldings);
+                return null;
+            });
+        } catch (ConcurrencyFailureException | DataIntegrityViolationException exception) {
+            log.warn("Holdings of some of the tickers : {} were changed in db by someone else, writing them one by one",
+                    flushing.keySet());
+            flushing.forEach(this::writeOne);
+            return;
+        }
+        flushing.keySet().forEach(this::evict);
+        savedHoldings.forEach(holding -> holdingStore.put(holding.getTicker(), copy(holding)));
+        flushedHoldings.addAndGet(savedHoldings.size() + deletedHoldings.size());
+        synchronized (this) {
+            flushing.forEach(dirtyHoldings::remove);
+        }
+    }
+
+    /**
+     * Writes the dirty holding of a ticker whose lock is held in it's own transaction. If the holding was changed
+     * in db by someone else, it's unflushed change is dropped and the holding is rebuilt from trades
+     */
+    private void writeOne(String ticker, DirtyHolding dirtyHolding) {
+        Holding holding = null == dirtyHolding.holding ? null : copy(dirtyHolding.holding);
+        try {
+            transactionTemplate.execute(status -> {
+                if (null != holding) {
+                    holdingJdbcRepository.saveOfVersion(holding);
+                } else if (null != dirtyHolding.version) {
+                    holdingJdbcRepository.deleteOfVersion(
+                            Holding.builder().ticker(ticker).version(dirtyHolding.version).build());
+                }
+                return null;
+            });
+            evict(ticker);
+            if (null != holding) {
+                holdingStore.put(ticker, copy(holding));
+            }
+            flushedHoldings.incrementAndGet();
+        } catch (ConcurrencyFailureException | DataIntegrityViolationException exception) {
+            log.error("Holding of ticker : {} was changed in db by someone else, dropping it's unflushed change " +
+                    "and rebuilding it from trades", ticker, exception);
+            evict(ticker);
+            droppedHoldings.incrementAndGet();
+            try {
+                rebuild(ticker);
+            } catch (RuntimeException rebuildException) {
+                log.error("Could not rebuild holding of ticker : {} from trades, refresh it to rebuild it",
+                        ticker, rebuildException);
+            }
+        }
+        synchronized (this) {
+            dirtyHoldings.remove(ticker, dirtyHolding);
+        }
+    }
+
+    /**
+     * Replaces the holding of a ticker whose lock is held in db with the one obtained by replaying
+     * all of it's trades in execution order, whatever it's version is
+     */
+    private void rebuild(String ticker) {
+        transactionTemplate.execute(status -> {
+            List<Trade> trades = tradeJdbcRepository.findByTickerAndLastUpdatedAfter(ticker, null);
+            Optional<Holding> holding = HoldingUtil.getHoldingsFromTrades(trades).stream().findFirst();
+            if (holding.isPresent()) {
+                holdingJdbcRepository.saveAll(Collections.singletonList(holding.get()));
+            } else {
+                holdingJdbcRepository.deleteAllById(Collections.singletonList(ticker));
+            }
+            return null;
+        });
+    }
+
+    /**
+     * Flushes on the flusher thread, where a failure should not stop the next flushes
+     */
+    private void flushQuietly() {
+        flushRequested.set(false);
+        try {
+            flush();
+        } catch (RuntimeException exception) {
+            log.error("Could not write {} dirty holdings, they will be written on the next flush", getDirtyCount(), exception);
+        }
+    }
+
+    /**
+     * Drops the cached holding of a ticker written to db, advancing it's generation first, so a holding of it
+     * loaded from db before the write is not cached after it
+     */
+    private void evict(String ticker) {
+        holdingGenerations.advance(ticker);
+        holdingStore.remove(ticker);
+    }
+
+    private static Holding copy(Holding holding) {
+        return holding.toBuilder().build();
+    }
+
+    /**
+     * Latest holding of a ticker along with the version it had in db and the time of it's first unflushed change
+     */
+    private static class DirtyHolding {
+        private final Holding holding;
+        private final Long version;
+        private final long dirtySince;
+
+        private DirtyHolding(Holding holding, Long version, long dirtySince) {
+            this.holding = holding;
+            this.version = version;
+            this.dirtySince = dirtySince;
+        }
+    }
+
+}
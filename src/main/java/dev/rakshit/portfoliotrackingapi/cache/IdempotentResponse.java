@@ -0,0 +1,29 @@
+package dev.rakshit.portfoliotrackingapi.cache;
+
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Response of a request with an Idempotency-Key, kept along with the hash of the request,
+ * so that a request reusing the key with another body is not answered with it
+ *
+ * @param <T> Type of the response
+ */
+public class IdempotentResponse<T> {
+
+    private final String requestHash;
+    private final CompletableFuture<T> response;
+
+    public IdempotentResponse(String requestHash, CompletableFuture<T> response) {
+        this.requestHash = requestHash;
+        this.response = response;
+    }
+
+    public String getRequestHash() {
+        return requestHash;
+    }
+
+    public CompletableFuture<T> getResponse() {
+        return response;
+    }
+
+}
@@ -0,0 +1,108 @@
+package dev.rakshit.portfoliotrackingapi.cache;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.Map;
+
+/**
+ * Evicts the least frequently used entry, and the least recently added one among equally used entries.
+ * Keys are kept in buckets by use count so that lookups and evictions do not scan the cache
+ */
+class LfuCache<K, V> extends BoundedCache<K, V> {
+
+    private final Map<K, Entry<V>> entries = new HashMap<>();
+    private final Map<Integer, LinkedHashSet<K>> keysByFrequency = new HashMap<>();
+    private int minFrequency;
+
+    LfuCache(int maxSize) {
+        super(maxSize);
+    }
+
+    @Override
+    protected V lookup(K key) {
+        Entry<V> entry = entries.get(key);
+        if (null == entry) {
+            return null;
+        }
+        touch(key, entry);
+        return entry.value;
+    }
+
+    @Override
+    protected void store(K key, V value) {
+        Entry<V> entry = entries.get(key);
+        if (null != entry) {
+            entry.value = value;
+            touch(key, entry);
+            return;
+        }
+        if (entries.size() >= maxSize) {
+            evict();
+        }
+        entries.put(key, new Entry<>(value));
+        keysByFrequency.computeIfAbsent(1, frequency -> new LinkedHashSet<>()).add(key);
+        minFrequency = 1;
+    }
+
+    @Override
+    protected void delete(K key) {
+        Entry<V> entry = entries.remove(key);
+        if (null != entry) {
+            removeFromBucket(key, entry.frequency);
+        }
+    }
+
+    @Override
+    protected void deleteAll() {
+        entries.clear();
+        keysByFrequency.clear();
+        minFrequency = 0;
+    }
+
+    @Override
+    protected int count() {
+        return entries.size();
+    }
+
+    /**
+     * Moves key to the bucket of the next use count
+     */
+    private void touch(K key, Entry<V> entry) {
+        removeFromBucket(key, entry.frequency);
+        if (minFrequency == entry.frequency && !keysByFrequency.containsKey(minFrequency)) {
+            minFrequency++;
+        }
+        entry.frequency++;
+        keysByFrequency.computeIfAbsent(entry.frequency, frequency -> new LinkedHashSet<>()).add(key);
+    }
+
+    private void evict() {
+        if (!keysByFrequency.containsKey(minFrequency)) {
+            minFrequency = Collections.min(keysByFrequency.keySet());
+        }
+        Iterator<K> keys = keysByFrequency.get(minFrequency).iterator();
+        K key = keys.next();
+        delete(key);
+        onEviction();
+    }
+
+    private void removeFromBucket(K key, int frequency) {
+        LinkedHashSet<K> keys = keysByFrequency.get(frequency);
+        keys.remove(key);
+        if (keys.isEmpty()) {
+            keysByFrequency.remove(frequency);
+        }
+    }
+
+    private static class Entry<V> {
+        private V value;
+        private int frequency = 1;
+
+        private Entry(V value) {
+            this.value = value;
+        }
+    }
+
+}
@@ -0,0 +1,52 @@
+package dev.rakshit.portfoliotrackingapi.cache;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Evicts the least recently used entry
+ */
+class LruCache<K, V> extends BoundedCache<K, V> {
+
+    private final LinkedHashMap<K, V> entries;
+
+    LruCache(int maxSize) {
+        super(maxSize);
+        entries = new LinkedHashMap<K, V>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<K, V> eldest) {
+                if (size() > LruCache.this.maxSize) {
+                    onEviction();
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    @Override
+    protected V lookup(K key) {
+        return entries.get(key);
+    }
+
+    @Override
+    protected void store(K key, V value) {
+        entries.put(key, value);
+    }
+
+    @Override
+    protected void delete(K key) {
+        entries.remove(key);
+    }
+
+    @Override
+    protected void deleteAll() {
+        entries.clear();
+    }
+
+    @Override
+    protected int count() {
+        return entries.size();
+    }
+
+}
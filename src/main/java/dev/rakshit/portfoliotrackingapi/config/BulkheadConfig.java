@@ -0,0 +1,84 @@
+package dev.rakshit.portfoliotrackingapi.config;
+
+import dev.rakshit.portfoliotrackingapi.bulkhead.Bulkhead;
+import dev.rakshit.portfoliotrackingapi.bulkhead.BulkheadDataSource;
+import dev.rakshit.portfoliotrackingapi.bulkhead.BulkheadFilter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import javax.sql.DataSource;
+import java.time.Duration;
+
+/**
+ * Reads and writes run in separate bulkheads unless portfolio.bulkhead.enabled is false. Each bulkhead bounds the
+ * requests running at once, the requests waiting for them and the db connections they hold. When requests run on
+ * virtual threads (portfolio.threads.virtual) the requests running at once are not bounded, as they no longer use up
+ * a pool of threads, and only the connection budgets keep reads and writes apart
+ */
+@Configuration
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
+@ConditionalOnProperty(name = "portfolio.bulkhead.enabled", havingValue = "true", matchIfMissing = true)
+public class BulkheadConfig {
+
+    @Bean
+    public Bulkhead readBulkhead(
+            MeterRegistry meterRegistry,
+            @Value("${portfolio.bulkhead.read.max-concurrent:100}") int maxConcurrent,
+            @Value("${portfolio.bulkhead.read.queue-capacity:50}") int queueCapacity,
+            @Value("${portfolio.bulkhead.read.max-wait:PT1S}") Duration maxWait,
+            @Value("${portfolio.bulkhead.read.max-connections:6}") int maxConnections,
+            @Value("${portfolio.threads.virtual:false}") boolean virtualThreads
+    ) {
+        return new Bulkhead("read", getMaxConcurrent(maxConcurrent, virtualThreads), queueCapacity, maxWait, maxConnections,
+                meterRegistry);
+    }
+
+    @Bean
+    public Bulkhead writeBulkhead(
+            MeterRegistry meterRegistry,
+            @Value("${portfolio.bulkhead.write.max-concurrent:20}") int maxConcurrent,
+            @Value("${portfolio.bulkhead.write.queue-capacity:30}") int queueCapacity,
+            @Value("${portfolio.bulkhead.write.max-wait:PT1S}") Duration maxWait,
+            @Value("${portfolio.bulkhead.write.max-connections:4}") int maxConnections,
+            @Value("${portfolio.threads.virtual:false}") boolean virtualThreads
+    ) {
+        return new Bulkhead("write", getMaxConcurrent(maxConcurrent, virtualThreads), queueCapacity, maxWait, maxConnections,
+                meterRegistry);
+    }
+
+    @Bean
+    public BulkheadFilter bulkheadFilter(
+            Bulkhead readBulkhead,
+            Bulkhead writeBulkhead,
+            @Value("${portfolio.bulkhead.write.paths:/holdings/refresh,/holdings/*/refresh}") String[] writePaths
+    ) {
+        return new BulkheadFilter(readBulkhead, writeBulkhead, writePaths);
+    }
+
+    /**
+     * Connections of the pool are taken from the connection budget of the bulkhead of the request opening them
+     */
+    @Bean
+    public static BeanPostProcessor bulkheadDataSourcePostProcessor() {
+        return new BeanPostProcessor() {
+            @Override
+            public Object postProcessAfterInitialization(Object bean, String beanName) {
+                return bean instanceof DataSource ? new BulkheadDataSource((DataSource) bean) : bean;
+            }
+        };
+    }
+
+    /**
+     * Skips the bound on requests running at once on virtual threads, where max-concurrent would cap requests at
+     * the number of Tomcat threads they were meant to get past
+     */
+    private static int getMaxConcurrent(int maxConcurrent, boolean virtualThreads) {
+        return virtualThreads ? Bulkhead.UNBOUNDED : maxConcurrent;
+    }
+
+}
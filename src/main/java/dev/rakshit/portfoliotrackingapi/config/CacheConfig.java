@@ -0,0 +1,96 @@
+package dev.rakshit.portfoliotrackingapi.config;
+
+import dev.rakshit.portfoliotrackingapi.cache.BoundedCache;
+import dev.rakshit.portfoliotrackingapi.cache.BoundedCacheMetrics;
+import dev.rakshit.portfoliotrackingapi.cache.EvictionPolicy;
+import dev.rakshit.portfoliotrackingapi.cache.HoldingGenerations;
+import dev.rakshit.portfoliotrackingapi.cache.HoldingWriteBehind;
+import dev.rakshit.portfoliotrackingapi.cache.IdempotentResponse;
+import dev.rakshit.portfoliotrackingapi.lock.TickerLocks;
+import dev.rakshit.portfoliotrackingapi.models.Holding;
+import dev.rakshit.portfoliotrackingapi.models.Trade;
+import dev.rakshit.portfoliotrackingapi.repository.HoldingJdbcRepository;
+import dev.rakshit.portfoliotrackingapi.repository.TradeJdbcRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.ResponseEntity;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+
+@Configuration
+public class CacheConfig {
+
+    /**
+     * Cache of holdings by ticker, bounded by portfolio.holdings.cache.max-size.
+     * Setting the size to zero turns caching off
+     */
+    @Bean
+    public BoundedCache<String, Holding> holdingStore(
+            @Value("${portfolio.holdings.cache.eviction:LRU}") EvictionPolicy eviction,
+            @Value("${portfolio.holdings.cache.max-size:10000}") int maxSize
+    ) {
+        return BoundedCache.create(eviction, maxSize);
+    }
+
+    /**
+     * Generations of the cached holdings, striped like the ticker locks
+     */
+    @Bean
+    public HoldingGenerations holdingGenerations(TickerLocks tickerLocks) {
+        return new HoldingGenerations(tickerLocks);
+    }
+
+    /**
+     * Publishes hits, misses and evictions of the holdings cache to actuator metrics
+     */
+    @Bean
+    public BoundedCacheMetrics holdingStoreMetrics(BoundedCache<String, Holding> holdingStore) {
+        return new BoundedCacheMetrics(holdingStore, "holdings");
+    }
+
+    /**
+     * Responses of POST /trades by Idempotency-Key, along with the hashes of their requests, so that a retried
+     * request gets the original response without touching db. Keys expire after portfolio.trades.idempotency.ttl and the oldest key is evicted beyond
+     * portfolio.trades.idempotency.max-keys. Older keys are still found through the unique column of trades
+     */
+    @Bean
+    public BoundedCache<String, IdempotentResponse<ResponseEntity<Trade>>> tradeResponses(
+            @Value("${portfolio.trades.idempotency.max-keys:100000}") int maxKeys,
+            @Value("${portfolio.trades.idempotency.ttl:PT24H}") Duration timeToLive
+    ) {
+        return BoundedCache.createExpiring(maxKeys, timeToLive);
+    }
+
+    /**
+     * Publishes hits, misses and evictions of the idempotency keys to actuator metrics
+     */
+    @Bean
+    public BoundedCacheMetrics tradeResponsesMetrics(
+            BoundedCache<String, IdempotentResponse<ResponseEntity<Trade>>> tradeResponses) {
+        return new BoundedCacheMetrics(tradeResponses, "trade-responses");
+    }
+
+    /**
+     * Write-behind of holdings, turned on by portfolio.holdings.write-behind.enabled. Dirty holdings are
+     * written to db before the application context is closed
+     */
+    @Bean(initMethod = "start", destroyMethod = "shutdown")
+    @ConditionalOnProperty(name = "portfolio.holdings.write-behind.enabled", havingValue = "true")
+    public HoldingWriteBehind holdingWriteBehind(
+            TransactionTemplate transactionTemplate,
+            TickerLocks tickerLocks,
+            HoldingJdbcRepository holdingJdbcRepository,
+            TradeJdbcRepository tradeJdbcRepository,
+            BoundedCache<String, Holding> holdingStore,
+            HoldingGenerations holdingGenerations,
+            @Value("${portfolio.holdings.write-behind.flush-interval:PT1S}") Duration flushInterval,
+            @Value("${portfolio.holdings.write-behind.max-dirty:1000}") int maxDirty
+    ) {
+        return new HoldingWriteBehind(transactionTemplate, tickerLocks, holdingJdbcRepository, tradeJdbcRepository,
+                holdingStore, holdingGenerations, flushInterval, maxDirty);
+    }
+
+}
@@ -0,0 +1,20 @@
+package dev.rakshit.portfoliotrackingapi.config;
+
+import dev.rakshit.portfoliotrackingapi.lock.TickerLocks;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+public class LockConfig {
+
+    /**
+     * Locks under which holdings are read, changed and written by trade writes.
+     * More stripes let more tickers be written in parallel
+     */
+    @Bean
+    public TickerLocks tickerLocks(@Value("${portfolio.locks.stripes:64}") int stripes) {
+        return new TickerLocks(stripes);
+    }
+
+}
@@ -0,0 +1,77 @@
+package dev.rakshit.portfoliotrackingapi.config;
+
+import dev.rakshit.portfoliotrackingapi.cache.BoundedCache;
+import dev.rakshit.portfoliotrackingapi.cache.BoundedCacheMetrics;
+import dev.rakshit.portfoliotrackingapi.cache.EvictionPolicy;
+import dev.rakshit.portfoliotrackingapi.price.CachingPriceProvider;
+import dev.rakshit.portfoliotrackingapi.price.InMemoryPriceProvider;
+import dev.rakshit.portfoliotrackingapi.price.PriceProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.file.Paths;
+import java.time.Clock;
+import java.time.Duration;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+@Configuration
+public class PriceConfig {
+
+    /**
+     * Offline prices, loaded from portfolio.prices.file if it is set.
+     * Tickers missing from the file get portfolio.prices.default-price, if it is set
+     */
+    @Bean
+    public InMemoryPriceProvider inMemoryPriceProvider(
+            @Value("${portfolio.prices.file:}") String file,
+            @Value("${portfolio.prices.default-price:}") String defaultPrice
+    ) throws IOException {
+        InMemoryPriceProvider priceProvider = new InMemoryPriceProvider(defaultPrice.isEmpty() ? null : new BigDecimal(defaultPrice));
+        if (!file.isEmpty()) {
+            priceProvider.load(Paths.get(file));
+        }
+        return priceProvider;
+    }
+
+    @Bean
+    public BoundedCache<String, CachingPriceProvider.Quote> quoteStore(
+            @Value("${portfolio.prices.cache.max-size:10000}") int maxSize
+    ) {
+        return BoundedCache.create(EvictionPolicy.LRU, maxSize);
+    }
+
+    @Bean
+    public BoundedCacheMetrics quoteStoreMetrics(BoundedCache<String, CachingPriceProvider.Quote> quoteStore) {
+        return new BoundedCacheMetrics(quoteStore, "prices");
+    }
+
+    /**
+     * Thread on which stale quotes are fetched again in the background
+     */
+    @Bean(destroyMethod = "shutdown")
+    public ExecutorService priceRevalidationExecutor() {
+        return Executors.newSingleThreadExecutor();
+    }
+
+    /**
+     * Price provider used by the application, caching the quotes of the offline prices
+     */
+    @Bean
+    @Primary
+    public PriceProvider priceProvider(
+            InMemoryPriceProvider inMemoryPriceProvider,
+            BoundedCache<String, CachingPriceProvider.Quote> quoteStore,
+            ExecutorService priceRevalidationExecutor,
+            @Value("${portfolio.prices.cache.ttl:PT1M}") Duration ttl,
+            @Value("${portfolio.prices.cache.stale-while-revalidate:PT5M}") Duration staleWhileRevalidate
+    ) {
+        return new CachingPriceProvider(inMemoryPriceProvider, quoteStore, ttl, staleWhileRevalidate,
+                priceRevalidationExecutor, Clock.systemUTC());
+    }
+
+}
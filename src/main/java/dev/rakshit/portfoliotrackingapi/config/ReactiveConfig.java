@@ -0,0 +1,30 @@
+package dev.rakshit.portfoliotrackingapi.config;
+
+import dev.rakshit.portfoliotrackingapi.reactive.R2dbcPortfolioStore;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Beans of the reactive stack, used when spring.main.web-application-type is REACTIVE
+ */
+@Configuration
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE)
+public class ReactiveConfig {
+
+    /**
+     * R2DBC access to the tables written by JPA, over a pool of portfolio.reactive.r2dbc.pool-size connections.
+     * Connections are closed when the application context is closed
+     */
+    @Bean(destroyMethod = "shutdown")
+    public R2dbcPortfolioStore r2dbcPortfolioStore(
+            @Value("${portfolio.reactive.r2dbc.url:r2dbc:h2:mem:///testdb}") String url,
+            @Value("${portfolio.reactive.r2dbc.username:${spring.datasource.username:sa}}") String username,
+            @Value("${portfolio.reactive.r2dbc.password:${spring.datasource.password:}}") String password,
+            @Value("${portfolio.reactive.r2dbc.pool-size:20}") int poolSize
+    ) {
+        return new R2dbcPortfolioStore(url, username, password, poolSize);
+    }
+
+}
@@ -0,0 +1,21 @@
+package dev.rakshit.portfoliotrackingapi.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.concurrent.ForkJoinPool;
+
+@Configuration
+public class RefreshConfig {
+
+    /**
+     * Pool on which holdings of different tickers are rebuilt in parallel.
+     * Uses one thread per available processor unless portfolio.refresh.parallelism is set
+     */
+    @Bean(destroyMethod = "shutdown")
+    public ForkJoinPool holdingRefreshPool(@Value("${portfolio.refresh.parallelism:0}") int parallelism) {
+        return new ForkJoinPool(0 < parallelism ? parallelism : Runtime.getRuntime().availableProcessors());
+    }
+
+}
@@ -0,0 +1,39 @@
+package dev.rakshit.portfoliotrackingapi.config;
+
+import dev.rakshit.portfoliotrackingapi.logging.RequestLogFilter;
+import dev.rakshit.portfoliotrackingapi.logging.RequestLogger;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+
+/**
+ * Requests are logged through a RequestLogger unless portfolio.request-log.enabled is false
+ */
+@Configuration
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
+@ConditionalOnProperty(name = "portfolio.request-log.enabled", havingValue = "true", matchIfMissing = true)
+public class RequestLogConfig {
+
+    /**
+     * Writer of request log lines. Lines already queued are written before the application context is closed
+     */
+    @Bean(initMethod = "start", destroyMethod = "shutdown")
+    public RequestLogger requestLogger(
+            @Value("${portfolio.request-log.queue-capacity:10000}") int queueCapacity,
+            @Value("${portfolio.request-log.sample-rate:1}") double sampleRate,
+            @Value("${portfolio.request-log.sample-rates:}") String sampleRates,
+            @Value("${portfolio.request-log.drop-report-interval:PT10S}") Duration dropReportInterval
+    ) {
+        return new RequestLogger(queueCapacity, sampleRate, RequestLogger.parseSampleRates(sampleRates), dropReportInterval);
+    }
+
+    @Bean
+    public RequestLogFilter requestLogFilter(RequestLogger requestLogger) {
+        return new RequestLogFilter(requestLogger);
+    }
+
+}
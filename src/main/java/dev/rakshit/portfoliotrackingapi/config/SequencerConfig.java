@@ -0,0 +1,46 @@
+package dev.rakshit.portfoliotrackingapi.config;
+
+import dev.rakshit.portfoliotrackingapi.cache.HoldingCache;
+import dev.rakshit.portfoliotrackingapi.lock.TickerLocks;
+import dev.rakshit.portfoliotrackingapi.repository.HoldingJdbcRepository;
+import dev.rakshit.portfoliotrackingapi.repository.TradeJdbcRepository;
+import dev.rakshit.portfoliotrackingapi.sequencer.JdbcLaneStore;
+import dev.rakshit.portfoliotrackingapi.sequencer.LaneStore;
+import dev.rakshit.portfoliotrackingapi.sequencer.TradeSequencer;
+import dev.rakshit.portfoliotrackingapi.service.HoldingSnapshotService;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * New trades are added on the lanes of a TradeSequencer when portfolio.trades.write-mode is SEQUENCED
+ */
+@Configuration
+@ConditionalOnProperty(name = "portfolio.trades.write-mode", havingValue = "SEQUENCED")
+public class SequencerConfig {
+
+    @Bean
+    public LaneStore laneStore(TransactionTemplate transactionTemplate, TickerLocks tickerLocks,
+                               TradeJdbcRepository tradeJdbcRepository, HoldingJdbcRepository holdingJdbcRepository,
+                               HoldingCache holdingCache, HoldingSnapshotService holdingSnapshotService) {
+        return new JdbcLaneStore(transactionTemplate, tickerLocks, tradeJdbcRepository, holdingJdbcRepository,
+                holdingCache, holdingSnapshotService);
+    }
+
+    /**
+     * Lanes on which new trades are added. Lanes are drained before the application context is closed
+     */
+    @Bean(initMethod = "start", destroyMethod = "shutdown")
+    public TradeSequencer tradeSequencer(
+            LaneStore laneStore,
+            @Value("${portfolio.trades.sequencer.lanes:4}") int lanes,
+            @Value("${portfolio.trades.sequencer.queue-capacity:10000}") int queueCapacity,
+            @Value("${portfolio.trades.sequencer.group-size:500}") int groupSize,
+            @Value("${portfolio.locks.max-attempts:3}") int maxAttempts
+    ) {
+        return new TradeSequencer(laneStore, lanes, queueCapacity, groupSize, maxAttempts);
+    }
+
+}
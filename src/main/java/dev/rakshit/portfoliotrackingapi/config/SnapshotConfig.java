@@ -0,0 +1,30 @@
+package dev.rakshit.portfoliotrackingapi.config;
+
+import dev.rakshit.portfoliotrackingapi.service.HoldingSnapshotScheduler;
+import dev.rakshit.portfoliotrackingapi.service.HoldingSnapshotService;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+
+/**
+ * Snapshots of holdings for GET /holdings?asOf are taken by the servlet stack unless portfolio.snapshots.enabled
+ * is false. The reactive stack neither takes snapshots nor corrects them for the trades it writes
+ */
+@Configuration
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
+@ConditionalOnProperty(name = "portfolio.snapshots.enabled", havingValue = "true", matchIfMissing = true)
+public class SnapshotConfig {
+
+    @Bean(initMethod = "start", destroyMethod = "shutdown")
+    public HoldingSnapshotScheduler holdingSnapshotScheduler(
+            HoldingSnapshotService holdingSnapshotService,
+            @Value("${portfolio.snapshots.poll-interval:PT1M}") Duration pollInterval
+    ) {
+        return new HoldingSnapshotScheduler(holdingSnapshotService, pollInterval);
+    }
+
+}
@@ -0,0 +1,51 @@
+package dev.rakshit.portfoliotrackingapi.config;
+
+import dev.rakshit.portfoliotrackingapi.util.VirtualThreadUtil;
+import org.apache.coyote.ProtocolHandler;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.boot.web.embedded.tomcat.TomcatProtocolHandlerCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.task.AsyncTaskExecutor;
+import org.springframework.core.task.support.TaskExecutorAdapter;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Servlet requests, and with them the blocking PortfolioTrackingService calls, run on virtual threads instead of
+ * Tomcat worker threads when portfolio.threads.virtual is true. Needs Java 21 or later, the application fails to
+ * start otherwise. Connections to db stay bounded by the size of the JDBC pool, requests past it wait for a connection
+ */
+@Configuration
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
+@ConditionalOnProperty(name = "portfolio.threads.virtual", havingValue = "true")
+public class VirtualThreadConfig {
+
+    /**
+     * Executor starting a virtual thread for each request. Shut down after the web server is stopped
+     */
+    @Bean(destroyMethod = "shutdown")
+    public ExecutorService requestExecutor() {
+        return VirtualThreadUtil.newVirtualThreadPerTaskExecutor("request-");
+    }
+
+    /**
+     * Tomcat hands each request to requestExecutor instead of it's own pool of server.tomcat.threads.max threads
+     */
+    @Bean
+    public TomcatProtocolHandlerCustomizer<ProtocolHandler> virtualThreadProtocolHandlerCustomizer(ExecutorService requestExecutor) {
+        return protocolHandler -> protocolHandler.setExecutor(requestExecutor);
+    }
+
+    /**
+     * Executor of async requests, such as streamed trade exports, so that they run on virtual threads as well
+     */
+    @Bean(name = "applicationTaskExecutor")
+    public AsyncTaskExecutor applicationTaskExecutor() {
+        ThreadFactory threadFactory = VirtualThreadUtil.getThreadFactory("task-");
+        return new TaskExecutorAdapter(task -> threadFactory.newThread(task).start());
+    }
+
+}
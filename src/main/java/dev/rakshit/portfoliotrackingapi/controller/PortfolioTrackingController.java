@@ -1,41 +1,120 @@
 package dev.rakshit.portfoliotrackingapi.controller;
 
+import dev.rakshit.portfoliotrackingapi.cache.BoundedCache;
+import dev.rakshit.portfoliotrackingapi.cache.IdempotentResponse;
 import dev.rakshit.portfoliotrackingapi.exceptions.BadRequestException;
 import dev.rakshit.portfoliotrackingapi.exceptions.NotFoundException;
+import dev.rakshit.portfoliotrackingapi.logging.RequestLogFilter;
+import dev.rakshit.portfoliotrackingapi.models.ExportFormat;
 import dev.rakshit.portfoliotrackingapi.models.Holding;
 import dev.rakshit.portfoliotrackingapi.models.Portfolio;
+import dev.rakshit.portfoliotrackingapi.models.RefreshMode;
 import dev.rakshit.portfoliotrackingapi.models.Trade;
+import dev.rakshit.portfoliotrackingapi.models.TradeBatchResult;
+import dev.rakshit.portfoliotrackingapi.models.TradeFilter;
+import dev.rakshit.portfoliotrackingapi.models.TradePage;
+import dev.rakshit.portfoliotrackingapi.models.TransactionType;
 import dev.rakshit.portfoliotrackingapi.service.PortfolioTrackingService;
-import lombok.extern.slf4j.Slf4j;
+import dev.rakshit.portfoliotrackingapi.service.TradeBatchService;
+import dev.rakshit.portfoliotrackingapi.service.TradeExportService;
+import dev.rakshit.portfoliotrackingapi.util.IdempotencyUtil;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.async.WebAsyncTask;
 
+import javax.servlet.http.HttpServletResponse;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.zip.GZIPOutputStream;
 
-@Slf4j
 @RestController
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
 public class PortfolioTrackingController {
 
+    private static final String NEXT_PAGE_TOKEN = "X-Next-Page-Token";
+    private static final String IDEMPOTENCY_KEY = "Idempotency-Key";
+    private static final MediaType NDJSON = MediaType.parseMediaType("application/x-ndjson");
+    private static final MediaType CSV = MediaType.parseMediaType("text/csv");
+
     @Autowired
     private PortfolioTrackingService portfolioTrackingService;
 
+    @Autowired
+    private TradeBatchService tradeBatchService;
+
+    @Autowired
+    private TradeExportService tradeExportService;
+
+    @Autowired
+    private BoundedCache<String, IdempotentResponse<ResponseEntity<Trade>>> tradeResponses;
+
+    @Value("${portfolio.trades.export.timeout:PT10M}")
+    private Duration exportTimeout;
+
     @PostMapping("/trades")
-    public ResponseEntity<Trade> addOrUpdateTrade(@RequestBody Trade trade) {
-        log.info("Add or update trade request came for user for trade id : {}", trade.getTradeId());
-        portfolioTrackingService.isValidTrade(trade);
-        return Optional.ofNullable(trade.getTradeId())
-                .flatMap(portfolioTrackingService::getTrade)
-                .map(value -> new ResponseEntity<>(portfolioTrackingService.updateTrade(value, trade), HttpStatus.OK))
-                .orElseGet(() -> new ResponseEntity<>(portfolioTrackingService.addTrade(trade), HttpStatus.CREATED));
+    public CompletableFuture<ResponseEntity<Trade>> addOrUpdateTrade(
+            @RequestBody Trade trade,
+            @RequestHeader(value = IDEMPOTENCY_KEY, required = false) String idempotencyKey
+    ) {
+        RequestLogFilter.addField("tradeId", trade.getTradeId());
+        RequestLogFilter.addField("ticker", trade.getTicker());
+        RequestLogFilter.addField("type", trade.getTransactionType());
+        if (null == idempotencyKey) {
+            return writeTrade(trade);
+        }
+        RequestLogFilter.addField("idempotencyKey", idempotencyKey);
+        String requestHash = IdempotencyUtil.getRequestHash(trade);
+        Optional<IdempotentResponse<ResponseEntity<Trade>>> response = tradeResponses.get(idempotencyKey);
+        if (response.isPresent()) {
+            return replay(response.get(), requestHash);
+        }
+        CompletableFuture<ResponseEntity<Trade>> newResponse = new CompletableFuture<>();
+        IdempotentResponse<ResponseEntity<Trade>> idempotentResponse = new IdempotentResponse<>(requestHash, newResponse);
+        response = tradeResponses.putIfAbsent(idempotencyKey, idempotentResponse);
+        if (response.isPresent()) {
+            return replay(response.get(), requestHash);
+        }
+        trade.setIdempotencyKey(idempotencyKey);
+        trade.setRequestHash(requestHash);
+        try {
+            writeTrade(trade).whenComplete((value, failure) -> {
+                if (null == failure) {
+                    newResponse.complete(value);
+                } else {
+                    tradeResponses.remove(idempotencyKey, idempotentResponse);
+                    newResponse.completeExceptionally(failure);
+                }
+            });
+        } catch (RuntimeException runtimeException) {
+            tradeResponses.remove(idempotencyKey, idempotentResponse);
+            newResponse.completeExceptionally(runtimeException);
+            throw runtimeException;
+        }
+        return newResponse;
+    }
+
+    @PostMapping(value = "/trades/batch", consumes = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<TradeBatchResult> addTrades(InputStream trades) {
+        return new ResponseEntity<>(tradeBatchService.addTrades(trades), HttpStatus.OK);
     }
 
     @DeleteMapping("/trades/{id}")
     public ResponseEntity<Trade> deleteTrade(@PathVariable String id) {
-        log.info("Delete trade request came for user for trade id : {}", id);
+        RequestLogFilter.addField("tradeId", id);
         return portfolioTrackingService.deleteTrade(getTradeId(id))
                 .map(trade -> new ResponseEntity<>(trade, HttpStatus.OK))
                 .orElseThrow(() -> new NotFoundException("No Trade found for id : " + id));
@@ -43,51 +122,110 @@ public class PortfolioTrackingController {
 
     @GetMapping("/trades/{id}")
     public ResponseEntity<Trade> getTrade(@PathVariable String id) {
-        log.info("Show trade request came for user for trade id : {}", id);
+        RequestLogFilter.addField("tradeId", id);
         return portfolioTrackingService.getTrade(getTradeId(id))
                 .map(trade -> new ResponseEntity<>(trade, HttpStatus.OK))
                 .orElseThrow(() -> new NotFoundException("No Trade found for id : " + id));
     }
 
     @GetMapping("/trades")
-    public ResponseEntity<List<Trade>> getTrades() {
-        log.info("Show trades request came for user");
-        return Optional.of(portfolioTrackingService.getTrades())
-                .filter(list -> !list.isEmpty())
-                .map(trades -> new ResponseEntity<>(trades, HttpStatus.OK))
-                .orElseThrow(() -> new NotFoundException("No Trade found for user"));
+    public ResponseEntity<List<Trade>> getTrades(
+            @RequestParam(required = false) String ticker,
+            @RequestParam(required = false) TransactionType type,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime to,
+            @RequestParam(required = false) String pageToken,
+            @RequestParam(required = false) Integer limit
+    ) {
+        RequestLogFilter.addField("ticker", ticker);
+        RequestLogFilter.addField("type", type);
+        TradeFilter filter = TradeFilter.builder()
+                .ticker(ticker)
+                .transactionType(type)
+                .from(from)
+                .to(to)
+                .build();
+        TradePage page = portfolioTrackingService.getTrades(filter, pageToken, limit);
+        if (page.getTrades().isEmpty() && null == pageToken) {
+            throw new NotFoundException("No Trade found for user");
+        }
+        HttpHeaders headers = new HttpHeaders();
+        Optional.ofNullable(page.getNextPageToken())
+                .ifPresent(nextPageToken -> headers.set(NEXT_PAGE_TOKEN, nextPageToken));
+        return new ResponseEntity<>(page.getTrades(), headers, HttpStatus.OK);
+    }
+
+    @GetMapping("/trades/export")
+    public WebAsyncTask<Void> exportTrades(
+            @RequestParam(defaultValue = "NDJSON") ExportFormat format,
+            @RequestParam(defaultValue = "false") boolean gzip,
+            HttpServletResponse response
+    ) {
+        RequestLogFilter.addField("format", format);
+        response.setStatus(HttpStatus.OK.value());
+        response.setContentType((ExportFormat.CSV == format ? CSV : NDJSON).toString());
+        response.setHeader(HttpHeaders.CONTENT_DISPOSITION, ContentDisposition.builder("attachment")
+                .filename("trades." + format.name().toLowerCase())
+                .build()
+                .toString());
+        if (gzip) {
+            response.setHeader(HttpHeaders.CONTENT_ENCODING, "gzip");
+        }
+        return new WebAsyncTask<>(exportTimeout.toMillis(), () -> {
+            OutputStream outputStream = response.getOutputStream();
+            if (gzip) {
+                try (GZIPOutputStream gzipOutputStream = new GZIPOutputStream(outputStream)) {
+                    tradeExportService.exportTrades(format, gzipOutputStream);
+                }
+            } else {
+                tradeExportService.exportTrades(format, outputStream);
+            }
+            outputStream.flush();
+            return null;
+        });
     }
 
     @GetMapping("/holdings/{ticker}")
     public ResponseEntity<Holding> getHolding(@PathVariable String ticker) {
-        log.info("Show holding request came for user for ticker : {}", ticker);
+        RequestLogFilter.addField("ticker", ticker);
         return portfolioTrackingService.getHolding(ticker)
                 .map(holding -> new ResponseEntity<>(holding, HttpStatus.OK))
                 .orElseThrow(() -> new NotFoundException(String.format("No Holding found for ticker : %s", ticker)));
     }
 
     @GetMapping("/holdings")
-    public ResponseEntity<List<Holding>> getHoldings() {
-        log.info("Show holdings request came for user");
-        return Optional.of(portfolioTrackingService.getHoldings())
+    public ResponseEntity<List<Holding>> getHoldings(
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime asOf) {
+        RequestLogFilter.addField("asOf", asOf);
+        return Optional.of(null == asOf ? portfolioTrackingService.getHoldings() : portfolioTrackingService.getHoldingsAsOf(asOf))
                 .filter(list -> !list.isEmpty())
                 .map(holdings -> new ResponseEntity<>(holdings, HttpStatus.OK))
                 .orElseThrow(() -> new NotFoundException("User has no securities"));
     }
 
     @GetMapping("/holdings/refresh")
-    public ResponseEntity<List<Holding>> refreshHoldings() {
-        log.info("Refresh holding request came for user");
-        return Optional.of(portfolioTrackingService.refreshHoldings())
+    public ResponseEntity<List<Holding>> refreshHoldings(@RequestParam(required = false) RefreshMode mode) {
+        RequestLogFilter.addField("mode", mode);
+        return Optional.of(portfolioTrackingService.refreshHoldings(mode))
                 .filter(list -> !list.isEmpty())
                 .map(holdings -> new ResponseEntity<>(holdings, HttpStatus.OK))
                 .orElseThrow(() -> new NotFoundException("User has no securities"));
     }
 
+    @GetMapping("/holdings/{ticker}/refresh")
+    public ResponseEntity<Holding> refreshHolding(@PathVariable String ticker) {
+        RequestLogFilter.addField("ticker", ticker);
+        return portfolioTrackingService.refreshHolding(ticker)
+                .map(holding -> new ResponseEntity<>(holding, HttpStatus.OK))
+                .orElseThrow(() -> new NotFoundException(String.format("No Holding found for ticker : %s", ticker)));
+    }
+
     @GetMapping("/portfolio")
-    public ResponseEntity<List<Portfolio>> getPortfolio() {
-        log.info("Show portfolio request came for user");
-        return Optional.of(portfolioTrackingService.getPortfolio())
+    public ResponseEntity<List<Portfolio>> getPortfolio(@RequestParam(required = false) Integer limit) {
+        if (null != limit && 0 >= limit) {
+            throw new BadRequestException("Trade limit should be greater than 0");
+        }
+        return Optional.of(portfolioTrackingService.getPortfolio(limit))
                 .filter(list -> !list.isEmpty())
                 .map(holdings -> new ResponseEntity<>(holdings, HttpStatus.OK))
                 .orElseThrow(() -> new NotFoundException("User has no securities"));
@@ -95,12 +233,30 @@ public class PortfolioTrackingController {
 
     @GetMapping("/returns")
     public ResponseEntity<BigDecimal> getReturns() {
-        log.info("Show returns request came for user");
         return portfolioTrackingService.getReturns()
                 .map(returns -> new ResponseEntity<>(returns, HttpStatus.OK))
                 .orElseThrow(() -> new NotFoundException("User has no securities"));
     }
 
+    private CompletableFuture<ResponseEntity<Trade>> writeTrade(Trade trade) {
+        portfolioTrackingService.isValidTrade(trade);
+        return Optional.ofNullable(trade.getTradeId())
+                .flatMap(portfolioTrackingService::getTrade)
+                .map(value -> CompletableFuture.completedFuture(
+                        new ResponseEntity<>(portfolioTrackingService.updateTrade(value, trade), HttpStatus.OK)))
+                .orElseGet(() -> portfolioTrackingService.submitTrade(trade)
+                        .thenApply(addedTrade -> new ResponseEntity<>(addedTrade, HttpStatus.CREATED)));
+    }
+
+    /**
+     * Gives the response kept for an Idempotency-Key to a retry of the request which used it.
+     * Throws UnprocessableEntityException if the key was used for another trade
+     */
+    private CompletableFuture<ResponseEntity<Trade>> replay(IdempotentResponse<ResponseEntity<Trade>> response, String requestHash) {
+        IdempotencyUtil.checkSameRequest(requestHash, response.getRequestHash());
+        return response.getResponse();
+    }
+
     private Long getTradeId(String id) {
         try {
             return Long.valueOf(id);
@@ -0,0 +1,17 @@
+package dev.rakshit.portfoliotrackingapi.exceptions;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+@ResponseStatus(HttpStatus.CONFLICT)
+public class ConflictException extends RuntimeException {
+
+    public ConflictException(String exception) {
+        super(exception);
+    }
+
+    public ConflictException(String exception, Throwable cause) {
+        super(exception, cause);
+    }
+
+}
@@ -1,13 +1,47 @@
 package dev.rakshit.portfoliotrackingapi.exceptions;
 
+import lombok.Getter;
 import org.springframework.http.HttpStatus;
 import org.springframework.web.bind.annotation.ResponseStatus;
 
+@Getter
 @ResponseStatus(HttpStatus.BAD_REQUEST)
 public class InvalidTransactionException extends RuntimeException {
 
-    public InvalidTransactionException(String exception) {
-        super(exception);
+    private final Reason reason;
+
+    public InvalidTransactionException(Reason reason) {
+        super(reason.getMessage());
+        this.reason = reason;
+    }
+
+    /**
+     * Reasons a trade is rejected for. Rejected trades are counted by reason under
+     * /actuator/metrics/portfolio.trades, so the list is kept fixed
+     */
+    @Getter
+    public enum Reason {
+        TRADE_UNREADABLE("Trade could not be read"),
+        TRADE_EMPTY("Trade cannot be null"),
+        TRADE_ID_GIVEN("Trade id cannot be given for a trade of a batch"),
+        TICKER_EMPTY("Ticker cannot be empty"),
+        TRANSACTION_TYPE_EMPTY("Transaction type cannot be empty"),
+        SHARES_EMPTY("Shares cannot be empty"),
+        PRICE_EMPTY("Price cannot be empty"),
+        SHARES_ZERO("Shares cannot be zero"),
+        SHARES_NEGATIVE("Shares cannot less than zero"),
+        PRICE_ZERO("Price cannot be zero"),
+        PRICE_NEGATIVE("Price cannot less than zero"),
+        NO_SHARES_TO_SELL("No shares available to sell"),
+        HOLDING_OVERFLOW("Invalid Transaction Causing Overflow"),
+        HOLDING_PRICE_NEGATIVE("Invalid Transaction Causing Price Negative"),
+        HOLDING_SHARES_NEGATIVE("Invalid Transaction Causing Shares Negative");
+
+        private final String message;
+
+        Reason(String message) {
+            this.message = message;
+        }
     }
 
 }
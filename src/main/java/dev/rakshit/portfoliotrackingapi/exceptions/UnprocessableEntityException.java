@@ -0,0 +1,17 @@
+package dev.rakshit.portfoliotrackingapi.exceptions;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+@ResponseStatus(HttpStatus.UNPROCESSABLE_ENTITY)
+public class UnprocessableEntityException extends RuntimeException {
+
+    public UnprocessableEntityException(String exception) {
+        super(exception);
+    }
+
+    public UnprocessableEntityException(String exception, Throwable cause) {
+        super(exception, cause);
+    }
+
+}
@@ -0,0 +1,108 @@
+package dev.rakshit.portfoliotrackingapi.lock;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+
+/**
+ * Striped locks by ticker. Each ticker maps to one of a fixed number of locks, so writes to the same ticker
+ * are serialized while writes to tickers on different stripes run in parallel. Memory used does not grow
+ * with the number of tickers. Several tickers are always locked in stripe order, so callers locking
+ * overlapping sets of tickers cannot deadlock.
+ */
+public class TickerLocks {
+
+    private final ReentrantLock[] stripes;
+
+    /**
+     * @param stripes Number of locks, rounded up to a power of two
+     */
+    public TickerLocks(int stripes) {
+        if (0 >= stripes) {
+            throw new IllegalArgumentException("Stripes should be greater than 0");
+        }
+        int size = Integer.highestOneBit(stripes);
+        this.stripes = new ReentrantLock[size < stripes ? size << 1 : size];
+        for (int index = 0; index < this.stripes.length; index++) {
+            this.stripes[index] = new ReentrantLock();
+        }
+    }
+
+    /**
+     * Runs action holding the lock of a ticker
+     *
+     * @param ticker Ticker to be locked
+     * @param action Action to be run
+     * @return Result of the action
+     */
+    public <T> T withLock(String ticker, Supplier<T> action) {
+        ReentrantLock lock = stripes[stripeOf(ticker)];
+        lock.lock();
+        try {
+            return action.get();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Runs action holding the locks of all the given tickers
+     *
+     * @param tickers Tickers to be locked
+     * @param action  Action to be run
+     * @return Result of the action
+     */
+    public <T> T withLocks(Collection<String> tickers, Supplier<T> action) {
+        boolean[] locked = new boolean[stripes.length];
+        tickers.forEach(ticker -> locked[stripeOf(ticker)] = true);
+        return withLocks(locked, action);
+    }
+
+    /**
+     * Runs action holding the locks of all tickers. Blocks every other holder of these locks,
+     * so it is meant for writes which are not known to touch only some tickers
+     *
+     * @param action Action to be run
+     * @return Result of the action
+     */
+    public <T> T withAllLocks(Supplier<T> action) {
+        boolean[] locked = new boolean[stripes.length];
+        Arrays.fill(locked, true);
+        return withLocks(locked, action);
+    }
+
+    private <T> T withLocks(boolean[] locked, Supplier<T> action) {
+        int lockedUpTo = 0;
+        try {
+            for (; lockedUpTo < stripes.length; lockedUpTo++) {
+                if (locked[lockedUpTo]) {
+                    stripes[lockedUpTo].lock();
+                }
+            }
+            return action.get();
+        } finally {
+            for (int index = lockedUpTo - 1; index >= 0; index--) {
+                if (locked[index]) {
+                    stripes[index].unlock();
+                }
+            }
+        }
+    }
+
+    /**
+     * Gives the index of the lock of a ticker
+     *
+     * @param ticker Ticker of the lock
+     * @return Index between 0 and the number of stripes
+     */
+    public int stripeOf(String ticker) {
+        int hash = ticker.hashCode();
+        return (hash ^ (hash >>> 16)) & (stripes.length - 1);
+    }
+
+    public int getStripes() {
+        return stripes.length;
+    }
+
+}
@@ -0,0 +1,34 @@
+package dev.rakshit.portfoliotrackingapi.logging;
+
+import lombok.Builder;
+import lombok.Getter;
+
+import java.util.Map;
+
+/**
+ * One request to be logged. Fields are formatted by the writer of the RequestLogger, not on the request thread
+ */
+@Getter
+@Builder
+public class RequestLogEntry {
+    private final String method;
+    private final String uri;
+    private final int status;
+    private final long latencyMicros;
+    private final Map<String, Object> fields;
+
+    /**
+     * Formats the entry as space separated name=value pairs
+     */
+    public String format() {
+        StringBuilder line = new StringBuilder(128)
+                .append("method=").append(method)
+                .append(" uri=").append(uri)
+                .append(" status=").append(status)
+                .append(" latencyMicros=").append(latencyMicros);
+        if (null != fields) {
+            fields.forEach((name, value) -> line.append(' ').append(name).append('=').append(value));
+        }
+        return line.toString();
+    }
+}
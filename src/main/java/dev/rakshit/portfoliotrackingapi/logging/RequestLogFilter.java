@@ -0,0 +1,103 @@
+package dev.rakshit.portfoliotrackingapi.logging;
+
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.servlet.HandlerMapping;
+
+import javax.servlet.AsyncEvent;
+import javax.servlet.AsyncListener;
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Hands every sampled request to the RequestLogger once it's response is complete, along with the fields
+ * added by the controller through addField. Requests handled asynchronously are logged when they complete.
+ */
+public class RequestLogFilter extends OncePerRequestFilter {
+
+    private static final String FIELDS_ATTRIBUTE = RequestLogFilter.class.getName() + ".fields";
+
+    private final RequestLogger requestLogger;
+
+    public RequestLogFilter(RequestLogger requestLogger) {
+        this.requestLogger = requestLogger;
+    }
+
+    /**
+     * Adds a field to the log line of the current request. Fields with null values are left out
+     *
+     * @param name  Name of the field, for example tradeId
+     * @param value Value of the field
+     */
+    @SuppressWarnings("unchecked")
+    public static void addField(String name, Object value) {
+        RequestAttributes attributes = RequestContextHolder.getRequestAttributes();
+        if (null == attributes || null == value) {
+            return;
+        }
+        Map<String, Object> fields = (Map<String, Object>) attributes.getAttribute(FIELDS_ATTRIBUTE, RequestAttributes.SCOPE_REQUEST);
+        if (null == fields) {
+            fields = new LinkedHashMap<>();
+            attributes.setAttribute(FIELDS_ATTRIBUTE, fields, RequestAttributes.SCOPE_REQUEST);
+        }
+        fields.put(name, value);
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+            throws ServletException, IOException {
+        long start = System.nanoTime();
+        try {
+            filterChain.doFilter(request, response);
+        } finally {
+            if (request.isAsyncStarted()) {
+                request.getAsyncContext().addListener(new AsyncListener() {
+                    @Override
+                    public void onComplete(AsyncEvent event) {
+                        log(request, response, start);
+                    }
+
+                    @Override
+                    public void onTimeout(AsyncEvent event) {
+                    }
+
+                    @Override
+                    public void onError(AsyncEvent event) {
+                    }
+
+                    @Override
+                    public void onStartAsync(AsyncEvent event) {
+                    }
+                });
+            } else {
+                log(request, response, start);
+            }
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private void log(HttpServletRequest request, HttpServletResponse response, long start) {
+        String uri = Optional.ofNullable(request.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE))
+                .map(Object::toString)
+                .orElse("UNKNOWN");
+        if (!requestLogger.isSampled(request.getMethod(), uri, response.getStatus())) {
+            return;
+        }
+        requestLogger.log(RequestLogEntry.builder()
+                .method(request.getMethod())
+                .uri(uri)
+                .status(response.getStatus())
+                .latencyMicros(TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - start))
+                .fields((Map<String, Object>) request.getAttribute(FIELDS_ATTRIBUTE))
+                .build());
+    }
+
+}
@@ -0,0 +1,210 @@
+package dev.rakshit.portfoliotrackingapi.logging;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import lombok.extern.slf4j.Slf4j;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Logs requests on a writer thread of it's own, so request threads never wait on log appenders. Requests are queued
+ * in a bounded queue and dropped when it is full. Dropped lines are counted, and reported by the writer at most once
+ * every drop-report-interval. Each endpoint is sampled at it's own rate, failed requests are always logged.
+ * Lines are written on the logger named dev.rakshit.portfoliotrackingapi.requests
+ */
+@Slf4j
+public class RequestLogger implements MeterBinder {
+
+    private static final Logger REQUEST_LOG = LoggerFactory.getLogger("dev.rakshit.portfoliotrackingapi.requests");
+    private static final int WRITE_BATCH_SIZE = 256;
+    private static final long POLL_MILLIS = 100;
+
+    private final BlockingQueue<RequestLogEntry> queue;
+    private final double defaultSampleRate;
+    private final Map<String, Double> sampleRates;
+    private final long dropReportIntervalNanos;
+    private final AtomicLong droppedLines = new AtomicLong();
+    private final AtomicLong writtenLines = new AtomicLong();
+    private Thread writer;
+    private volatile boolean running;
+    private long reportedDroppedLines;
+    private long lastDropReport = System.nanoTime();
+
+    /**
+     * @param queueCapacity      Largest number of lines waiting to be written
+     * @param defaultSampleRate  Share of requests logged for endpoints having no rate of their own, between 0 and 1
+     * @param sampleRates        Share of requests logged by endpoint, keyed by method and uri pattern like GET /holdings
+     * @param dropReportInterval Least time between two reports of dropped lines
+     */
+    public RequestLogger(int queueCapacity, double defaultSampleRate, Map<String, Double> sampleRates, Duration dropReportInterval) {
+        if (0 >= queueCapacity) {
+            throw new IllegalArgumentException("Queue capacity should be greater than 0");
+        }
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+        this.defaultSampleRate = defaultSampleRate;
+        this.sampleRates = new HashMap<>(sampleRates);
+        this.dropReportIntervalNanos = dropReportInterval.toNanos();
+    }
+
+    /**
+     * Parses sample rates of endpoints
+     *
+     * @param sampleRates Comma separated METHOD uri=rate pairs, for example GET /holdings=0.01,GET /holdings/{ticker}=0.1
+     * @return Rates keyed by method and uri pattern
+     */
+    public static Map<String, Double> parseSampleRates(String sampleRates) {
+        if (null == sampleRates || sampleRates.trim().isEmpty()) {
+            return Collections.emptyMap();
+        }
+        Map<String, Double> rates = new HashMap<>();
+        for (String entry : sampleRates.split(",")) {
+            int separator = entry.lastIndexOf('=');
+            if (0 >= separator) {
+                throw new IllegalArgumentException("Sample rate should be METHOD uri=rate, found : " + entry);
+            }
+            double rate = Double.parseDouble(entry.substring(separator + 1).trim());
+            if (0 > rate || 1 < rate) {
+                throw new IllegalArgumentException("Sample rate should be between 0 and 1, found : " + entry);
+            }
+            rates.put(entry.substring(0, separator).trim().replaceAll("\\s+", " "), rate);
+        }
+        return rates;
+    }
+
+    public synchronized void start() {
+        if (running) {
+            return;
+        }
+        running = true;
+        writer = new Thread(this::write, "request-log-writer");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    /**
+     * Stops the writer once the lines already queued are written
+     */
+    public synchronized void shutdown() {
+        running = false;
+        if (null == writer) {
+            return;
+        }
+        try {
+            writer.join(TimeUnit.SECONDS.toMillis(10));
+        } catch (InterruptedException interruptedException) {
+            Thread.currentThread().interrupt();
+        }
+        writer = null;
+    }
+
+    /**
+     * Tells whether a request is to be logged
+     *
+     * @param method HTTP method of the request
+     * @param uri    Uri pattern matched by the request
+     * @param status HTTP status of the response
+     */
+    public boolean isSampled(String method, String uri, int status) {
+        if (500 <= status) {
+            return true;
+        }
+        double rate = sampleRates.getOrDefault(method + " " + uri, defaultSampleRate);
+        return 1 <= rate || (0 < rate && ThreadLocalRandom.current().nextDouble() < rate);
+    }
+
+    /**
+     * Queues a line without waiting. The line is dropped if the queue is full
+     *
+     * @return false if the line was dropped
+     */
+    public boolean log(RequestLogEntry entry) {
+        if (queue.offer(entry)) {
+            return true;
+        }
+        droppedLines.incrementAndGet();
+        return false;
+    }
+
+    public long getDroppedLines() {
+        return droppedLines.get();
+    }
+
+    public long getWrittenLines() {
+        return writtenLines.get();
+    }
+
+    public int getQueuedLines() {
+        return queue.size();
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder("request.log.queued", queue, BlockingQueue::size)
+                .description("Number of request log lines waiting to be written")
+                .register(registry);
+        FunctionCounter.builder("request.log.written", writtenLines, AtomicLong::get)
+                .description("Number of request log lines written")
+                .register(registry);
+        FunctionCounter.builder("request.log.dropped", droppedLines, AtomicLong::get)
+                .description("Number of request log lines dropped as the queue was full")
+                .register(registry);
+    }
+
+    private void write() {
+        List<RequestLogEntry> batch = new ArrayList<>(WRITE_BATCH_SIZE);
+        while (running || !queue.isEmpty()) {
+            try {
+                RequestLogEntry first = queue.poll(POLL_MILLIS, TimeUnit.MILLISECONDS);
+                if (null != first) {
+                    batch.add(first);
+                    queue.drainTo(batch, WRITE_BATCH_SIZE - 1);
+                    if (REQUEST_LOG.isInfoEnabled()) {
+                        batch.forEach(entry -> REQUEST_LOG.info(entry.format()));
+                    }
+                    writtenLines.addAndGet(batch.size());
+                }
+            } catch (InterruptedException interruptedException) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (RuntimeException exception) {
+                log.error("Could not write request log lines", exception);
+            } finally {
+                batch.clear();
+            }
+            reportDroppedLines(!running);
+        }
+    }
+
+    /**
+     * Logs the number of lines dropped since the last report, if drop-report-interval passed since it
+     *
+     * @param force Whether to report right away
+     */
+    private void reportDroppedLines(boolean force) {
+        long now = System.nanoTime();
+        if (!force && now - lastDropReport < dropReportIntervalNanos) {
+            return;
+        }
+        long dropped = droppedLines.get();
+        if (dropped > reportedDroppedLines) {
+            log.warn("Dropped {} request log lines as the queue was full", dropped - reportedDroppedLines);
+            reportedDroppedLines = dropped;
+        }
+        lastDropReport = now;
+    }
+
+}
@@ -0,0 +1,55 @@
+package dev.rakshit.portfoliotrackingapi.metrics;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.servlet.HandlerMapping;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.util.Optional;
+
+/**
+ * Records the number of repository calls made by each request under portfolio.repository.calls.per.request,
+ * tagged with the method and uri pattern of the request. Only calls made on the request thread are counted,
+ * so trades added on the lanes of SEQUENCED write mode are not.
+ */
+@Component
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
+public class RepositoryCallsFilter extends OncePerRequestFilter {
+
+    public static final String METRIC_NAME = "portfolio.repository.calls.per.request";
+
+    @Autowired
+    private RepositoryMetrics repositoryMetrics;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+            throws ServletException, IOException {
+        repositoryMetrics.startCounting();
+        try {
+            filterChain.doFilter(request, response);
+        } finally {
+            int calls = repositoryMetrics.stopCounting();
+            DistributionSummary.builder(METRIC_NAME)
+                    .description("Repository calls made by a request")
+                    .tag("method", request.getMethod())
+                    .tag("uri", Optional.ofNullable(request.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE))
+                            .map(Object::toString)
+                            .orElse("UNKNOWN"))
+                    .publishPercentileHistogram()
+                    .register(meterRegistry)
+                    .record(calls);
+        }
+    }
+
+}
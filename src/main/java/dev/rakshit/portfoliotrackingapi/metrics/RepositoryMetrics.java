@@ -0,0 +1,94 @@
+package dev.rakshit.portfoliotrackingapi.metrics;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.repository.Repository;
+import org.springframework.stereotype.Component;
+import org.springframework.util.ClassUtils;
+
+import java.lang.reflect.Proxy;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Times every call to the repositories under portfolio.repository, tagged with the repository and method called.
+ * The count of the timer is the number of calls. Calls made on a thread which is counting them,
+ * see startCounting, are also added to the count of that thread.
+ */
+@Aspect
+@Component
+public class RepositoryMetrics {
+
+    public static final String METRIC_NAME = "portfolio.repository";
+
+    private final ThreadLocal<int[]> threadCalls = new ThreadLocal<>();
+    private final Map<Class<?>, String> repositoryNames = new ConcurrentHashMap<>();
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Around("execution(* dev.rakshit.portfoliotrackingapi.repository..*.*(..))" +
+            " || execution(* org.springframework.data.repository.Repository+.*(..))")
+    public Object timeCall(ProceedingJoinPoint joinPoint) throws Throwable {
+        int[] calls = threadCalls.get();
+        if (null != calls) {
+            calls[0]++;
+        }
+        Timer.Sample sample = Timer.start(meterRegistry);
+        String exception = "none";
+        try {
+            return joinPoint.proceed();
+        } catch (Throwable throwable) {
+            exception = throwable.getClass().getSimpleName();
+            throw throwable;
+        } finally {
+            sample.stop(Timer.builder(METRIC_NAME)
+                    .description("Calls to the repositories")
+                    .tag("repository", getRepositoryName(joinPoint.getTarget()))
+                    .tag("method", joinPoint.getSignature().getName())
+                    .tag("exception", exception)
+                    .register(meterRegistry));
+        }
+    }
+
+    /**
+     * Starts counting the repository calls made on the current thread
+     */
+    public void startCounting() {
+        threadCalls.set(new int[1]);
+    }
+
+    /**
+     * Stops counting the repository calls made on the current thread
+     *
+     * @return Number of calls made since startCounting
+     */
+    public int stopCounting() {
+        int[] calls = threadCalls.get();
+        threadCalls.remove();
+        return null == calls ? 0 : calls[0];
+    }
+
+    /**
+     * Gives the name of the repository interface for Spring Data repositories, which are proxies,
+     * and the name of the class for the others
+     */
+    private String getRepositoryName(Object target) {
+        return repositoryNames.computeIfAbsent(target.getClass(), targetClass -> {
+            if (!Proxy.isProxyClass(targetClass)) {
+                return ClassUtils.getUserClass(targetClass).getSimpleName();
+            }
+            return Arrays.stream(targetClass.getInterfaces())
+                    .filter(Repository.class::isAssignableFrom)
+                    .findFirst()
+                    .map(Class::getSimpleName)
+                    .orElse(targetClass.getSimpleName());
+        });
+    }
+
+}
@@ -0,0 +1,89 @@
+package dev.rakshit.portfoliotrackingapi.metrics;
+
+import dev.rakshit.portfoliotrackingapi.exceptions.InvalidTransactionException;
+import dev.rakshit.portfoliotrackingapi.models.Trade;
+import dev.rakshit.portfoliotrackingapi.models.TransactionType;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.Collection;
+import java.util.Optional;
+import java.util.concurrent.CompletionException;
+import java.util.stream.Collectors;
+
+/**
+ * Counts trade writes under portfolio.trades, tagged with the transaction type of the trade, the outcome and
+ * the reason of a rejection. Trades which could not be written for any other reason are counted as FAILED
+ * with the name of the exception as reason.
+ */
+@Component
+public class TradeMetrics {
+
+    public static final String METRIC_NAME = "portfolio.trades";
+    private static final String NONE = "NONE";
+
+    public enum Outcome {
+        ADDED,
+        UPDATED,
+        DELETED,
+        REJECTED,
+        FAILED
+    }
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    /**
+     * Counts a trade written successfully
+     *
+     * @param outcome ADDED, UPDATED or DELETED
+     * @param trade   Trade written
+     */
+    public void recordWritten(Outcome outcome, Trade trade) {
+        counter(outcome, trade, NONE).increment();
+    }
+
+    /**
+     * Counts trades written successfully, incrementing the counter of each transaction type once
+     *
+     * @param outcome ADDED, UPDATED or DELETED
+     * @param trades  Trades written
+     */
+    public void recordWritten(Outcome outcome, Collection<Trade> trades) {
+        trades.stream()
+                .collect(Collectors.groupingBy(trade -> Optional.ofNullable(trade.getTransactionType()), Collectors.counting()))
+                .forEach((type, count) -> counter(outcome, type.orElse(null), NONE).increment(count));
+    }
+
+    /**
+     * Counts a trade which could not be written. InvalidTransactionException is counted as REJECTED
+     * with it's reason, any other failure as FAILED
+     *
+     * @param trade   Trade which could not be written
+     * @param failure Exception the write failed with
+     */
+    public void recordFailed(Trade trade, Throwable failure) {
+        Throwable cause = failure instanceof CompletionException && null != failure.getCause() ? failure.getCause() : failure;
+        if (cause instanceof InvalidTransactionException) {
+            counter(Outcome.REJECTED, trade, ((InvalidTransactionException) cause).getReason().name()).increment();
+        } else {
+            counter(Outcome.FAILED, trade, cause.getClass().getSimpleName()).increment();
+        }
+    }
+
+    private Counter counter(Outcome outcome, Trade trade, String reason) {
+        return counter(outcome, null == trade ? null : trade.getTransactionType(), reason);
+    }
+
+    private Counter counter(Outcome outcome, TransactionType type, String reason) {
+        return Counter.builder(METRIC_NAME)
+                .description("Trades written, by transaction type, outcome and reason of failure")
+                .tag("type", null == type ? NONE : type.name())
+                .tag("outcome", outcome.name())
+                .tag("reason", reason)
+                .register(meterRegistry);
+    }
+
+}
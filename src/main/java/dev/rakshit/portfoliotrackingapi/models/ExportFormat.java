@@ -0,0 +1,6 @@
+package dev.rakshit.portfoliotrackingapi.models;
+
+public enum ExportFormat {
+    NDJSON,
+    CSV
+}
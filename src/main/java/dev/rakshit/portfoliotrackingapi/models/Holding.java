@@ -1,5 +1,6 @@
 package dev.rakshit.portfoliotrackingapi.models;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import io.swagger.annotations.ApiModel;
 import io.swagger.annotations.ApiModelProperty;
 import lombok.AllArgsConstructor;
@@ -11,6 +12,7 @@ import javax.persistence.Column;
 import javax.persistence.Entity;
 import javax.persistence.Id;
 import javax.persistence.Table;
+import javax.persistence.Version;
 import java.math.BigDecimal;
 import java.math.BigInteger;
 import java.time.LocalDateTime;
@@ -19,7 +21,7 @@ import java.time.LocalDateTime;
 @Data
 @Table(name = "holdings")
 @Entity
-@Builder
+@Builder(toBuilder = true)
 @NoArgsConstructor
 @AllArgsConstructor
 @ApiModel(description = "All details about the holding")
@@ -39,4 +41,11 @@ public class Holding {
     @Column(name = "last_updated")
     @ApiModelProperty(notes = "Time when the last trade was executed")
     private LocalDateTime lastUpdated;
-}
\ No newline at end of file
+    /**
+     * Incremented on every write, so that a holding read before a concurrent write cannot overwrite it
+     */
+    @Version
+    @JsonIgnore
+    @Column(name = "version")
+    private Long version;
+}
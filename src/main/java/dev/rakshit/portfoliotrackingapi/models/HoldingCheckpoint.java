@@ -0,0 +1,43 @@
+package dev.rakshit.portfoliotrackingapi.models;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.Id;
+import javax.persistence.Table;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.time.LocalDateTime;
+
+/**
+ * Position of a ticker after replaying all of it's trades applied so far in execution order, used to refresh
+ * its holding without replaying the trades which are already covered. Last updated time is the execution time
+ * of the latest trade covered.
+ */
+@Data
+@Table(name = "holding_checkpoints")
+@Entity
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class HoldingCheckpoint {
+    @Id
+    @Column(name = "ticker")
+    private String ticker;
+    @Column(name = "shares")
+    private BigInteger shares;
+    @Column(name = "total_price", precision = 38, scale = 6)
+    private BigDecimal totalPrice;
+    @Column(name = "average_buy_price", precision = 38, scale = 6)
+    private BigDecimal averageBuyPrice;
+    @Column(name = "last_trade_id")
+    private Long lastTradeId;
+    @Column(name = "stale")
+    private boolean stale;
+    @Column(name = "last_updated")
+    private LocalDateTime lastUpdated;
+}
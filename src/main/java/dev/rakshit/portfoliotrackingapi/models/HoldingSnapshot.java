@@ -0,0 +1,56 @@
+package dev.rakshit.portfoliotrackingapi.models;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.Id;
+import javax.persistence.IdClass;
+import javax.persistence.Index;
+import javax.persistence.Table;
+import java.io.Serializable;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.time.LocalDateTime;
+
+/**
+ * Position of a ticker after all of it's trades executed up to snapshotAt are applied in the order they were
+ * executed. Snapshots are taken of every ticker at once, at the end of each snapshot interval having trades, so that
+ * holdings as of any time can be obtained by applying the trades executed after the latest snapshot before it.
+ * Amounts are kept at the scale of the calculations, so that applying trades to a snapshot gives the same position
+ * as applying them all from the first trade. Tickers whose shares are all sold are kept with zero shares.
+ */
+@Data
+@Table(name = "holding_snapshots", indexes = {
+        @Index(name = "idx_holding_snapshots_ticker_snapshot_at", columnList = "ticker, snapshot_at")
+})
+@Entity
+@IdClass(HoldingSnapshot.Key.class)
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class HoldingSnapshot {
+    @Id
+    @Column(name = "snapshot_at")
+    private LocalDateTime snapshotAt;
+    @Id
+    @Column(name = "ticker")
+    private String ticker;
+    @Column(name = "shares")
+    private BigInteger shares;
+    @Column(name = "total_price", precision = 38, scale = 6)
+    private BigDecimal totalPrice;
+    @Column(name = "average_buy_price", precision = 38, scale = 6)
+    private BigDecimal averageBuyPrice;
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Key implements Serializable {
+        private LocalDateTime snapshotAt;
+        private String ticker;
+    }
+}
@@ -0,0 +1,7 @@
+package dev.rakshit.portfoliotrackingapi.models;
+
+public enum RefreshMode {
+    INCREMENTAL,
+    PARALLEL,
+    SQL
+}
@@ -1,5 +1,6 @@
 package dev.rakshit.portfoliotrackingapi.models;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import io.swagger.annotations.ApiModel;
 import io.swagger.annotations.ApiModelProperty;
 import lombok.AllArgsConstructor;
@@ -13,13 +14,24 @@ import java.math.BigInteger;
 import java.time.LocalDateTime;
 
 @Data
-@Table(name = "trades")
+@Table(name = "trades", uniqueConstraints = {
+        @UniqueConstraint(name = Trade.IDEMPOTENCY_KEY_CONSTRAINT, columnNames = "idempotency_key")
+}, indexes = {
+        @Index(name = "idx_trades_last_updated", columnList = "last_updated, trade_id"),
+        @Index(name = "idx_trades_ticker_last_updated", columnList = "ticker, last_updated, trade_id")
+})
 @Entity
-@Builder
+@Builder(toBuilder = true)
 @NoArgsConstructor
 @AllArgsConstructor
 @ApiModel(description = "All details about the Trade")
 public class Trade {
+    /**
+     * Unique constraint on idempotency_key, named so that a request losing the race for a key can be told apart
+     * from other integrity violations
+     */
+    public static final String IDEMPOTENCY_KEY_CONSTRAINT = "uk_trades_idempotency_key";
+
     @Id
     @Column(name = "trade_id")
     @GeneratedValue(strategy = GenerationType.AUTO)
@@ -38,7 +50,20 @@ public class Trade {
     @ApiModelProperty(notes = "Amount of shares. It should be greater than 0")
     @Column(name = "shares")
     private BigInteger shares;
-    @ApiModelProperty(notes = "Time when the trade was executed")
-    @Column(name = "last_updated")
+    @ApiModelProperty(notes = "Time when the trade was executed. Current time is taken if not given")
+    @Column(name = "last_updated", nullable = false)
     private LocalDateTime lastUpdated;
+    /**
+     * Idempotency-Key header of the request adding the trade, so that a retried request finds the trade it added.
+     * Kept when the trade is updated
+     */
+    @JsonIgnore
+    @Column(name = "idempotency_key", updatable = false)
+    private String idempotencyKey;
+    /**
+     * Hash of the request adding the trade, so that a request reusing it's Idempotency-Key with another body is rejected
+     */
+    @JsonIgnore
+    @Column(name = "request_hash", updatable = false)
+    private String requestHash;
 }
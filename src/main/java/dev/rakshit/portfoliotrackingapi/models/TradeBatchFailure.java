@@ -0,0 +1,22 @@
+package dev.rakshit.portfoliotrackingapi.models;
+
+import io.swagger.annotations.ApiModel;
+import io.swagger.annotations.ApiModelProperty;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@ApiModel(description = "Trade of a batch which could not be added")
+public class TradeBatchFailure {
+    @ApiModelProperty(notes = "Position of the trade in the batch, starting from 0")
+    private int index;
+    @ApiModelProperty(notes = "Ticker of the trade")
+    private String ticker;
+    @ApiModelProperty(notes = "Reason why the trade could not be added")
+    private String reason;
+}
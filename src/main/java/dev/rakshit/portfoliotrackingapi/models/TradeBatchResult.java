@@ -0,0 +1,26 @@
+package dev.rakshit.portfoliotrackingapi.models;
+
+import io.swagger.annotations.ApiModel;
+import io.swagger.annotations.ApiModelProperty;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@ApiModel(description = "Outcome of adding a batch of trades")
+public class TradeBatchResult {
+    @ApiModelProperty(notes = "Number of trades in the batch")
+    private int received;
+    @ApiModelProperty(notes = "Number of trades added")
+    private int added;
+    @ApiModelProperty(notes = "Number of trades which could not be added")
+    private int failed;
+    @ApiModelProperty(notes = "Trades which could not be added, in the order of the batch")
+    private List<TradeBatchFailure> failures;
+}
@@ -0,0 +1,19 @@
+package dev.rakshit.portfoliotrackingapi.models;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * Position in the list of trades ordered by last updated time and trade id.
+ * A page starts right after the trade at this position
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class TradeCursor {
+    private LocalDateTime lastUpdated;
+    private Long tradeId;
+}
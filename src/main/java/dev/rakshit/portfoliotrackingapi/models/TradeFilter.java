@@ -0,0 +1,28 @@
+package dev.rakshit.portfoliotrackingapi.models;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * Filters for listing trades. Filters which are null are not applied
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class TradeFilter {
+    private String ticker;
+    private TransactionType transactionType;
+    /**
+     * Trades executed at or after this time
+     */
+    private LocalDateTime from;
+    /**
+     * Trades executed before this time
+     */
+    private LocalDateTime to;
+}
@@ -0,0 +1,20 @@
+package dev.rakshit.portfoliotrackingapi.models;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class TradePage {
+    private List<Trade> trades;
+    /**
+     * Token of the next page and null if this is the last page
+     */
+    private String nextPageToken;
+}
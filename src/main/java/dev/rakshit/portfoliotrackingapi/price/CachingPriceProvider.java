@@ -0,0 +1,122 @@
+package dev.rakshit.portfoliotrackingapi.price;
+
+import dev.rakshit.portfoliotrackingapi.cache.BoundedCache;
+import lombok.extern.slf4j.Slf4j;
+
+import java.math.BigDecimal;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Caches quotes of another price provider. A quote younger than ttl is served from cache.
+ * A quote older than ttl but within the stale while revalidate window after it is still served,
+ * while it is fetched again in the background. Older or missing quotes are fetched before returning.
+ * Each call makes at most one call to the provider for all of it's missing quotes
+ * and schedules at most one background call for all of it's stale quotes.
+ */
+@Slf4j
+public class CachingPriceProvider implements PriceProvider {
+
+    private final PriceProvider delegate;
+    private final BoundedCache<String, Quote> quotes;
+    private final Duration ttl;
+    private final Duration staleWhileRevalidate;
+    private final Executor executor;
+    private final Clock clock;
+    private final Set<String> revalidating = ConcurrentHashMap.newKeySet();
+
+    public CachingPriceProvider(
+            PriceProvider delegate,
+            BoundedCache<String, Quote> quotes,
+            Duration ttl,
+            Duration staleWhileRevalidate,
+            Executor executor,
+            Clock clock
+    ) {
+        this.delegate = delegate;
+        this.quotes = quotes;
+        this.ttl = ttl;
+        this.staleWhileRevalidate = staleWhileRevalidate;
+        this.executor = executor;
+        this.clock = clock;
+    }
+
+    @Override
+    public Map<String, BigDecimal> getPrices(Collection<String> tickers) {
+        Instant now = clock.instant();
+        Map<String, BigDecimal> prices = new HashMap<>();
+        List<String> missingTickers = new ArrayList<>();
+        List<String> staleTickers = new ArrayList<>();
+        for (String ticker : tickers) {
+            Optional<Quote> quote = quotes.get(ticker);
+            if (!quote.isPresent() || !now.isBefore(quote.get().fetchedAt.plus(ttl).plus(staleWhileRevalidate))) {
+                missingTickers.add(ticker);
+                continue;
+            }
+            prices.put(ticker, quote.get().price);
+            if (!now.isBefore(quote.get().fetchedAt.plus(ttl)) && revalidating.add(ticker)) {
+                staleTickers.add(ticker);
+            }
+        }
+        if (!missingTickers.isEmpty()) {
+            prices.putAll(fetch(missingTickers));
+        }
+        if (!staleTickers.isEmpty()) {
+            revalidate(staleTickers);
+        }
+        return prices;
+    }
+
+    /**
+     * Fetches quotes of stale tickers in the background. Stale quotes are kept if fetching fails
+     *
+     * @param tickers Tickers whose quotes are stale
+     */
+    private void revalidate(List<String> tickers) {
+        try {
+            executor.execute(() -> {
+                try {
+                    fetch(tickers);
+                } catch (RuntimeException runtimeException) {
+                    log.warn("Could not revalidate prices of {} tickers", tickers.size(), runtimeException);
+                } finally {
+                    revalidating.removeAll(tickers);
+                }
+            });
+        } catch (RejectedExecutionException rejectedExecutionException) {
+            revalidating.removeAll(tickers);
+        }
+    }
+
+    private Map<String, BigDecimal> fetch(Collection<String> tickers) {
+        Map<String, BigDecimal> prices = delegate.getPrices(tickers);
+        Instant fetchedAt = clock.instant();
+        prices.forEach((ticker, price) -> quotes.put(ticker, new Quote(price, fetchedAt)));
+        return prices;
+    }
+
+    /**
+     * Price of a ticker along with the time it was fetched
+     */
+    public static class Quote {
+        private final BigDecimal price;
+        private final Instant fetchedAt;
+
+        private Quote(BigDecimal price, Instant fetchedAt) {
+            this.price = price;
+            this.fetchedAt = fetchedAt;
+        }
+    }
+
+}
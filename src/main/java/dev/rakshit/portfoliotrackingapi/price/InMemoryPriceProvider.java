@@ -0,0 +1,62 @@
+package dev.rakshit.portfoliotrackingapi.price;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Offline price provider keeping prices in memory. Prices can be loaded from a properties file
+ * of TICKER=price lines and updated at runtime. Tickers with no price get the default price, if one is set.
+ */
+public class InMemoryPriceProvider implements PriceProvider {
+
+    private final Map<String, BigDecimal> prices = new ConcurrentHashMap<>();
+
+    private final BigDecimal defaultPrice;
+
+    /**
+     * @param defaultPrice Price of tickers with no price of their own. Such tickers are left out if it is null
+     */
+    public InMemoryPriceProvider(BigDecimal defaultPrice) {
+        this.defaultPrice = defaultPrice;
+    }
+
+    /**
+     * Loads prices from a properties file of TICKER=price lines
+     *
+     * @param file Properties file to be loaded
+     * @throws IOException if the file cannot be read
+     */
+    public void load(Path file) throws IOException {
+        Properties properties = new Properties();
+        try (InputStream inputStream = Files.newInputStream(file)) {
+            properties.load(inputStream);
+        }
+        properties.stringPropertyNames()
+                .forEach(ticker -> setPrice(ticker, new BigDecimal(properties.getProperty(ticker).trim())));
+    }
+
+    public void setPrice(String ticker, BigDecimal price) {
+        prices.put(ticker, price);
+    }
+
+    @Override
+    public Map<String, BigDecimal> getPrices(Collection<String> tickers) {
+        Map<String, BigDecimal> tickerPrices = new HashMap<>();
+        tickers.forEach(ticker -> {
+            BigDecimal price = prices.getOrDefault(ticker, defaultPrice);
+            if (null != price) {
+                tickerPrices.put(ticker, price);
+            }
+        });
+        return tickerPrices;
+    }
+
+}
@@ -0,0 +1,33 @@
+package dev.rakshit.portfoliotrackingapi.price;
+
+import java.math.BigDecimal;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Source of current market prices. Implementations should answer for all tickers in one call,
+ * as callers ask for the prices of a whole portfolio at once.
+ */
+public interface PriceProvider {
+
+    /**
+     * Gets current prices of the given tickers
+     *
+     * @param tickers Tickers whose prices are needed
+     * @return Map of ticker to it's current price. Tickers with no known price are left out
+     */
+    Map<String, BigDecimal> getPrices(Collection<String> tickers);
+
+    /**
+     * Gets current price of a ticker
+     *
+     * @param ticker Ticker whose price is needed
+     * @return Current price and Optional.empty() if no price is known
+     */
+    default Optional<BigDecimal> getPrice(String ticker) {
+        return Optional.ofNullable(getPrices(Collections.singletonList(ticker)).get(ticker));
+    }
+
+}
@@ -0,0 +1,346 @@
+package dev.rakshit.portfoliotrackingapi.reactive;
+
+import dev.rakshit.portfoliotrackingapi.models.Holding;
+import dev.rakshit.portfoliotrackingapi.models.Trade;
+import dev.rakshit.portfoliotrackingapi.models.TradeCursor;
+import dev.rakshit.portfoliotrackingapi.models.TradeFilter;
+import dev.rakshit.portfoliotrackingapi.models.TransactionType;
+import io.r2dbc.pool.ConnectionPool;
+import io.r2dbc.pool.ConnectionPoolConfiguration;
+import io.r2dbc.spi.ConnectionFactories;
+import io.r2dbc.spi.ConnectionFactoryOptions;
+import io.r2dbc.spi.Row;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.data.r2dbc.connectionfactory.R2dbcTransactionManager;
+import org.springframework.data.r2dbc.core.DatabaseClient;
+import org.springframework.transaction.reactive.TransactionalOperator;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.time.LocalDateTime;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Reads and writes trades, holdings and checkpoints over R2DBC for the reactive stack, on the same tables as JPA.
+ * Holdings are written with the same version checks as HoldingJdbcRepository, so that writes of both stacks
+ * never overwrite each other. The connection pool is not exposed as a bean, see PortfolioTrackingApiApplication
+ */
+public class R2dbcPortfolioStore {
+
+    private static final String TRADE_COLUMNS = "trade_id, ticker, transaction_type, price, shares, last_updated";
+    private static final String SELECT_TRADE = "SELECT " + TRADE_COLUMNS + " FROM trades WHERE trade_id = :tradeId";
+    private static final String SELECT_TRADE_BY_IDEMPOTENCY_KEY =
+            "SELECT " + TRADE_COLUMNS + ", idempotency_key, request_hash FROM trades WHERE idempotency_key = :idempotencyKey";
+    private static final String SELECT_TRADES_PAGE = "SELECT " + TRADE_COLUMNS + " FROM trades WHERE 1 = 1";
+    private static final String SELECT_TRADES_OF_TICKER =
+            "SELECT " + TRADE_COLUMNS + " FROM trades WHERE ticker = :ticker ORDER BY last_updated, trade_id";
+    private static final String SELECT_TRADES_OF_HOLDINGS =
+            "SELECT " + TRADE_COLUMNS + " FROM trades WHERE ticker IN (SELECT ticker FROM holdings) ORDER BY ticker, trade_id";
+    private static final String SELECT_LATEST_TRADES_OF_HOLDINGS =
+            "SELECT " + TRADE_COLUMNS + " FROM (SELECT " + TRADE_COLUMNS + ", ROW_NUMBER() OVER (" +
+                    "PARTITION BY ticker ORDER BY last_updated DESC NULLS LAST, trade_id DESC) AS trade_rank " +
+                    "FROM trades WHERE ticker IN (SELECT ticker FROM holdings)) " +
+                    "WHERE trade_rank <= :limit ORDER BY ticker, trade_id";
+    private static final String SELECT_NEXT_TRADE_ID = "SELECT NEXT VALUE FOR hibernate_sequence";
+    private static final String INSERT_TRADE =
+            "INSERT INTO trades (" + TRADE_COLUMNS + ", idempotency_key, request_hash) " +
+                    "VALUES (:tradeId, :ticker, :transactionType, :price, :shares, :lastUpdated, :idempotencyKey, :requestHash)";
+    private static final String UPDATE_TRADE =
+            "UPDATE trades SET ticker = :ticker, transaction_type = :transactionType, price = :price, shares = :shares, " +
+                    "last_updated = :lastUpdated WHERE trade_id = :tradeId";
+    private static final String DELETE_TRADE = "DELETE FROM trades WHERE trade_id = :tradeId";
+    private static final String HOLDING_COLUMNS = "ticker, total_price, average_buy_price, shares, last_updated, version";
+    private static final String SELECT_HOLDING = "SELECT " + HOLDING_COLUMNS + " FROM holdings WHERE ticker = :ticker";
+    private static final String SELECT_HOLDINGS = "SELECT " + HOLDING_COLUMNS + " FROM holdings ORDER BY ticker";
+    private static final String INSERT_HOLDING =
+            "INSERT INTO holdings (" + HOLDING_COLUMNS + ") " +
+                    "VALUES (:ticker, :totalPrice, :averageBuyPrice, :shares, :lastUpdated, 0)";
+    private static final String UPDATE_HOLDING_OF_VERSION =
+            "UPDATE holdings SET total_price = :totalPrice, average_buy_price = :averageBuyPrice, shares = :shares, " +
+                    "last_updated = :lastUpdated, version = version + 1 WHERE ticker = :ticker AND version = :version";
+    private static final String DELETE_HOLDING_OF_VERSION =
+            "DELETE FROM holdings WHERE ticker = :ticker AND version = :version";
+    private static final String INVALIDATE_CHECKPOINT =
+            "MERGE INTO holding_checkpoints USING (SELECT CAST(:ticker AS VARCHAR) AS ticker) AS changed " +
+                    "ON holding_checkpoints.ticker = changed.ticker " +
+                    "WHEN MATCHED THEN UPDATE SET stale = TRUE " +
+                    "WHEN NOT MATCHED THEN INSERT (ticker, shares, total_price, average_buy_price, last_trade_id, stale, last_updated) " +
+                    "VALUES (changed.ticker, 0, 0, 0, 0, TRUE, NULL)";
+
+    private final ConnectionPool connectionPool;
+    private final DatabaseClient databaseClient;
+    private final TransactionalOperator transactionalOperator;
+
+    /**
+     * @param url         R2DBC url of the database, for example r2dbc:h2:mem:///testdb
+     * @param username    User of the database
+     * @param password    Password of the user
+     * @param maxPoolSize Largest number of connections opened
+     */
+    public R2dbcPortfolioStore(String url, String username, String password, int maxPoolSize) {
+        ConnectionFactoryOptions options = ConnectionFactoryOptions.parse(url).mutate()
+                .option(ConnectionFactoryOptions.USER, username)
+                .option(ConnectionFactoryOptions.PASSWORD, password)
+                .build();
+        this.connectionPool = new ConnectionPool(ConnectionPoolConfiguration.builder(ConnectionFactories.get(options))
+                .maxSize(maxPoolSize)
+                .initialSize(Math.min(10, maxPoolSize))
+                .build());
+        this.databaseClient = DatabaseClient.create(connectionPool);
+        this.transactionalOperator = TransactionalOperator.create(new R2dbcTransactionManager(connectionPool));
+    }
+
+    /**
+     * Closes all connections of the pool
+     */
+    public void shutdown() {
+        connectionPool.dispose();
+    }
+
+    /**
+     * Runs all the statements of a write in one transaction, which is rolled back if the write fails
+     *
+     * @param write Write to be run
+     * @return Result of the write
+     */
+    public <T> Mono<T> inTransaction(Mono<T> write) {
+        return transactionalOperator.transactional(write);
+    }
+
+    public Mono<Trade> findTrade(Long tradeId) {
+        return databaseClient.execute(SELECT_TRADE)
+                .bind("tradeId", tradeId)
+                .map((row, metadata) -> mapTrade(row))
+                .one();
+    }
+
+    /**
+     * Gets the trade added by a request with the given Idempotency-Key, through the unique index on the key
+     *
+     * @param idempotencyKey Idempotency-Key of the request
+     * @return Trade along with it's key and request hash, empty if no trade was added with the key
+     */
+    public Mono<Trade> findTradeByIdempotencyKey(String idempotencyKey) {
+        return databaseClient.execute(SELECT_TRADE_BY_IDEMPOTENCY_KEY)
+                .bind("idempotencyKey", idempotencyKey)
+                .map((row, metadata) -> {
+                    Trade trade = mapTrade(row);
+                    trade.setIdempotencyKey(row.get("idempotency_key", String.class));
+                    trade.setRequestHash(row.get("request_hash", String.class));
+                    return trade;
+                })
+                .one();
+    }
+
+    /**
+     * Gets a page of trades ordered by last updated time and trade id, like TradeJdbcRepository.findPage
+     *
+     * @param filter Filters to be applied
+     * @param cursor Position after which the page starts. Page starts from the first trade if null
+     * @param limit  Maximum trades in the page
+     * @return Trades of the page
+     */
+    public Flux<Trade> findTradePage(TradeFilter filter, TradeCursor cursor, int limit) {
+        StringBuilder sql = new StringBuilder(SELECT_TRADES_PAGE);
+        Map<String, Object> parameters = new LinkedHashMap<>();
+        if (null != filter.getTicker()) {
+            sql.append(" AND ticker = :ticker");
+            parameters.put("ticker", filter.getTicker());
+        }
+        if (null != filter.getTransactionType()) {
+            sql.append(" AND transaction_type = :transactionType");
+            parameters.put("transactionType", filter.getTransactionType().name());
+        }
+        if (null != filter.getFrom()) {
+            sql.append(" AND last_updated >= :from");
+            parameters.put("from", filter.getFrom());
+        }
+        if (null != filter.getTo()) {
+            sql.append(" AND last_updated < :to");
+            parameters.put("to", filter.getTo());
+        }
+        if (null != cursor) {
+            sql.append(" AND last_updated >= :lastUpdated AND (last_updated > :lastUpdated OR trade_id > :tradeId)");
+            parameters.put("lastUpdated", cursor.getLastUpdated());
+            parameters.put("tradeId", cursor.getTradeId());
+        }
+        sql.append(" ORDER BY last_updated, trade_id LIMIT :limit");
+        parameters.put("limit", limit);
+        DatabaseClient.GenericExecuteSpec spec = databaseClient.execute(sql.toString());
+        for (Map.Entry<String, Object> parameter : parameters.entrySet()) {
+            spec = spec.bind(parameter.getKey(), parameter.getValue());
+        }
+        return spec.map((row, metadata) -> mapTrade(row)).all();
+    }
+
+    /**
+     * Gets all the trades of a ticker in the order they were executed
+     *
+     * @param ticker Ticker of the trades
+     * @return Trades ordered by last updated time and trade id
+     */
+    public Flux<Trade> findTradesOfTicker(String ticker) {
+        return databaseClient.execute(SELECT_TRADES_OF_TICKER)
+                .bind("ticker", ticker)
+                .map((row, metadata) -> mapTrade(row))
+                .all();
+    }
+
+    /**
+     * Gets trades of all tickers having a holding
+     *
+     * @param limit Maximum trades per ticker, keeping the latest ones. All trades are given if null
+     * @return Trades ordered by ticker and trade id
+     */
+    public Flux<Trade> findTradesOfHoldings(Integer limit) {
+        if (null == limit) {
+            return databaseClient.execute(SELECT_TRADES_OF_HOLDINGS)
+                    .map((row, metadata) -> mapTrade(row))
+                    .all();
+        }
+        return databaseClient.execute(SELECT_LATEST_TRADES_OF_HOLDINGS)
+                .bind("limit", limit)
+                .map((row, metadata) -> mapTrade(row))
+                .all();
+    }
+
+    /**
+     * Inserts a new trade with an id taken from the same sequence as the ones generated by JPA, along with the
+     * Idempotency-Key and request hash it was added with. Fails with DataIntegrityViolationException if a trade
+     * with the same key was added after the key was looked up
+     *
+     * @param trade Trade to be inserted. It's trade id is set after inserting
+     * @return Trade inserted
+     */
+    public Mono<Trade> insertTrade(Trade trade) {
+        return databaseClient.execute(SELECT_NEXT_TRADE_ID)
+                .map((row, metadata) -> row.get(0, Long.class))
+                .one()
+                .flatMap(tradeId -> {
+                    trade.setTradeId(tradeId);
+                    DatabaseClient.GenericExecuteSpec spec = bindTrade(databaseClient.execute(INSERT_TRADE), trade);
+                    spec = bindNullable(spec, "idempotencyKey", trade.getIdempotencyKey(), String.class);
+                    return bindNullable(spec, "requestHash", trade.getRequestHash(), String.class).then();
+                })
+                .thenReturn(trade);
+    }
+
+    public Mono<Void> updateTrade(Trade trade) {
+        return bindTrade(databaseClient.execute(UPDATE_TRADE), trade).then();
+    }
+
+    public Mono<Void> deleteTrade(Long tradeId) {
+        return databaseClient.execute(DELETE_TRADE)
+                .bind("tradeId", tradeId)
+                .then();
+    }
+
+    public Mono<Holding> findHolding(String ticker) {
+        return databaseClient.execute(SELECT_HOLDING)
+                .bind("ticker", ticker)
+                .map((row, metadata) -> mapHolding(row))
+                .one();
+    }
+
+    /**
+     * Gets all the holdings ordered by ticker
+     */
+    public Flux<Holding> findHoldings() {
+        return databaseClient.execute(SELECT_HOLDINGS)
+                .map((row, metadata) -> mapHolding(row))
+                .all();
+    }
+
+    /**
+     * Inserts, updates or deletes a holding as it was read. A holding without version is inserted, a holding
+     * with no shares left is deleted. Fails with OptimisticLockingFailureException if the holding was changed
+     * after it was read, and with DataIntegrityViolationException if it was inserted by someone else.
+     *
+     * @param holding Holding to be saved
+     */
+    public Mono<Void> saveHolding(Holding holding) {
+        if (null == holding.getVersion()) {
+            if (BigInteger.ZERO.equals(holding.getShares())) {
+                return Mono.empty();
+            }
+            return bindHolding(databaseClient.execute(INSERT_HOLDING), holding).then();
+        }
+        if (BigInteger.ZERO.equals(holding.getShares())) {
+            return checkVersion(holding, databaseClient.execute(DELETE_HOLDING_OF_VERSION)
+                    .bind("ticker", holding.getTicker())
+                    .bind("version", holding.getVersion())
+                    .fetch()
+                    .rowsUpdated());
+        }
+        return checkVersion(holding, bindHolding(databaseClient.execute(UPDATE_HOLDING_OF_VERSION), holding)
+                .bind("version", holding.getVersion())
+                .fetch()
+                .rowsUpdated());
+    }
+
+    /**
+     * Marks the checkpoint of a ticker as stale, so that the next refresh replays all of it's trades.
+     * A stale empty checkpoint is created if the ticker has none
+     *
+     * @param ticker Ticker whose trade was updated or deleted
+     */
+    public Mono<Void> invalidateCheckpoint(String ticker) {
+        return databaseClient.execute(INVALIDATE_CHECKPOINT)
+                .bind("ticker", ticker)
+                .then();
+    }
+
+    private Mono<Void> checkVersion(Holding holding, Mono<Integer> rowsUpdated) {
+        return rowsUpdated.flatMap(rows -> 0 == rows
+                ? Mono.error(new OptimisticLockingFailureException("Holding was changed after it was read : " + holding.getTicker()))
+                : Mono.empty());
+    }
+
+    private DatabaseClient.GenericExecuteSpec bindTrade(DatabaseClient.GenericExecuteSpec spec, Trade trade) {
+        return bindNullable(spec, "lastUpdated", trade.getLastUpdated(), LocalDateTime.class)
+                .bind("tradeId", trade.getTradeId())
+                .bind("ticker", trade.getTicker())
+                .bind("transactionType", trade.getTransactionType().name())
+                .bind("price", trade.getPrice())
+                .bind("shares", new BigDecimal(trade.getShares()));
+    }
+
+    private DatabaseClient.GenericExecuteSpec bindHolding(DatabaseClient.GenericExecuteSpec spec, Holding holding) {
+        return bindNullable(spec, "lastUpdated", holding.getLastUpdated(), LocalDateTime.class)
+                .bind("ticker", holding.getTicker())
+                .bind("totalPrice", holding.getTotalPrice())
+                .bind("averageBuyPrice", holding.getAverageBuyPrice())
+                .bind("shares", new BigDecimal(holding.getShares()));
+    }
+
+    private static <T> DatabaseClient.GenericExecuteSpec bindNullable(DatabaseClient.GenericExecuteSpec spec, String name,
+                                                                      T value, Class<T> type) {
+        return null == value ? spec.bindNull(name, type) : spec.bind(name, value);
+    }
+
+    private static Trade mapTrade(Row row) {
+        return Trade.builder()
+                .tradeId(row.get("trade_id", Long.class))
+                .ticker(row.get("ticker", String.class))
+                .transactionType(TransactionType.valueOf(row.get("transaction_type", String.class)))
+                .price(row.get("price", BigDecimal.class))
+                .shares(row.get("shares", BigDecimal.class).toBigInteger())
+                .lastUpdated(row.get("last_updated", LocalDateTime.class))
+                .build();
+    }
+
+    private static Holding mapHolding(Row row) {
+        return Holding.builder()
+                .ticker(row.get("ticker", String.class))
+                .totalPrice(row.get("total_price", BigDecimal.class))
+                .averageBuyPrice(row.get("average_buy_price", BigDecimal.class))
+                .shares(row.get("shares", BigDecimal.class).toBigInteger())
+                .lastUpdated(row.get("last_updated", LocalDateTime.class))
+                .version(row.get("version", Long.class))
+                .build();
+    }
+
+}
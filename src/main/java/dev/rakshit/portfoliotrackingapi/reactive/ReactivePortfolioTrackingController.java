@@ -0,0 +1,140 @@
+package dev.rakshit.portfoliotrackingapi.reactive;
+
+import dev.rakshit.portfoliotrackingapi.exceptions.BadRequestException;
+import dev.rakshit.portfoliotrackingapi.exceptions.NotFoundException;
+import dev.rakshit.portfoliotrackingapi.models.Holding;
+import dev.rakshit.portfoliotrackingapi.models.Portfolio;
+import dev.rakshit.portfoliotrackingapi.models.Trade;
+import dev.rakshit.portfoliotrackingapi.models.TradeFilter;
+import dev.rakshit.portfoliotrackingapi.models.TransactionType;
+import dev.rakshit.portfoliotrackingapi.util.IdempotencyUtil;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import reactor.core.publisher.Mono;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Routes of PortfolioTrackingController served without blocking, when the application runs as a reactive
+ * web application. Batch adds, exports and refreshes of holdings are only served by the servlet stack.
+ * Idempotency-Keys of added trades are looked up through the unique column of trades, responses are not kept
+ * in memory as they are on the servlet stack.
+ */
+@RestController
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE)
+public class ReactivePortfolioTrackingController {
+
+    private static final String NEXT_PAGE_TOKEN = "X-Next-Page-Token";
+    private static final String IDEMPOTENCY_KEY = "Idempotency-Key";
+
+    @Autowired
+    private ReactivePortfolioTrackingService reactivePortfolioTrackingService;
+
+    @PostMapping("/trades")
+    public Mono<ResponseEntity<Trade>> addOrUpdateTrade(
+            @RequestBody Trade trade,
+            @RequestHeader(value = IDEMPOTENCY_KEY, required = false) String idempotencyKey
+    ) {
+        if (null != idempotencyKey) {
+            trade.setRequestHash(IdempotencyUtil.getRequestHash(trade));
+            trade.setIdempotencyKey(idempotencyKey);
+        }
+        return Mono.justOrEmpty(trade.getTradeId())
+                .flatMap(reactivePortfolioTrackingService::getTrade)
+                .flatMap(value -> reactivePortfolioTrackingService.updateTrade(trade)
+                        .map(updatedTrade -> new ResponseEntity<>(updatedTrade, HttpStatus.OK)))
+                .switchIfEmpty(Mono.defer(() -> reactivePortfolioTrackingService.addTrade(trade)
+                        .map(addedTrade -> new ResponseEntity<>(addedTrade, HttpStatus.CREATED))));
+    }
+
+    @DeleteMapping("/trades/{id}")
+    public Mono<ResponseEntity<Trade>> deleteTrade(@PathVariable String id) {
+        return reactivePortfolioTrackingService.deleteTrade(getTradeId(id))
+                .map(trade -> new ResponseEntity<>(trade, HttpStatus.OK))
+                .switchIfEmpty(Mono.error(() -> new NotFoundException("No Trade found for id : " + id)));
+    }
+
+    @GetMapping("/trades/{id}")
+    public Mono<ResponseEntity<Trade>> getTrade(@PathVariable String id) {
+        return reactivePortfolioTrackingService.getTrade(getTradeId(id))
+                .map(trade -> new ResponseEntity<>(trade, HttpStatus.OK))
+                .switchIfEmpty(Mono.error(() -> new NotFoundException("No Trade found for id : " + id)));
+    }
+
+    @GetMapping("/trades")
+    public Mono<ResponseEntity<List<Trade>>> getTrades(
+            @RequestParam(required = false) String ticker,
+            @RequestParam(required = false) TransactionType type,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime to,
+            @RequestParam(required = false) String pageToken,
+            @RequestParam(required = false) Integer limit
+    ) {
+        TradeFilter filter = TradeFilter.builder()
+                .ticker(ticker)
+                .transactionType(type)
+                .from(from)
+                .to(to)
+                .build();
+        return reactivePortfolioTrackingService.getTrades(filter, pageToken, limit)
+                .map(page -> {
+                    if (page.getTrades().isEmpty() && null == pageToken) {
+                        throw new NotFoundException("No Trade found for user");
+                    }
+                    HttpHeaders headers = new HttpHeaders();
+                    Optional.ofNullable(page.getNextPageToken())
+                            .ifPresent(nextPageToken -> headers.set(NEXT_PAGE_TOKEN, nextPageToken));
+                    return new ResponseEntity<>(page.getTrades(), headers, HttpStatus.OK);
+                });
+    }
+
+    @GetMapping("/holdings/{ticker}")
+    public Mono<ResponseEntity<Holding>> getHolding(@PathVariable String ticker) {
+        return reactivePortfolioTrackingService.getHolding(ticker)
+                .map(holding -> new ResponseEntity<>(holding, HttpStatus.OK))
+                .switchIfEmpty(Mono.error(() -> new NotFoundException(String.format("No Holding found for ticker : %s", ticker))));
+    }
+
+    @GetMapping("/holdings")
+    public Mono<ResponseEntity<List<Holding>>> getHoldings() {
+        return reactivePortfolioTrackingService.getHoldings()
+                .filter(list -> !list.isEmpty())
+                .map(holdings -> new ResponseEntity<>(holdings, HttpStatus.OK))
+                .switchIfEmpty(Mono.error(() -> new NotFoundException("User has no securities")));
+    }
+
+    @GetMapping("/portfolio")
+    public Mono<ResponseEntity<List<Portfolio>>> getPortfolio(@RequestParam(required = false) Integer limit) {
+        if (null != limit && 0 >= limit) {
+            throw new BadRequestException("Trade limit should be greater than 0");
+        }
+        return reactivePortfolioTrackingService.getPortfolio(limit)
+                .filter(list -> !list.isEmpty())
+                .map(portfolio -> new ResponseEntity<>(portfolio, HttpStatus.OK))
+                .switchIfEmpty(Mono.error(() -> new NotFoundException("User has no securities")));
+    }
+
+    @GetMapping("/returns")
+    public Mono<ResponseEntity<BigDecimal>> getReturns() {
+        return reactivePortfolioTrackingService.getReturns()
+                .map(returns -> new ResponseEntity<>(returns, HttpStatus.OK))
+                .switchIfEmpty(Mono.error(() -> new NotFoundException("User has no securities")));
+    }
+
+    private Long getTradeId(String id) {
+        try {
+            return Long.valueOf(id);
+        } catch (NumberFormatException numberFormatException) {
+            throw new BadRequestException("Trade id should be a number");
+        }
+    }
+
+}
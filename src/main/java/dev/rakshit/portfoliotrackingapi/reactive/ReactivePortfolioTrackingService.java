@@ -0,0 +1,422 @@
+package dev.rakshit.portfoliotrackingapi.reactive;
+
+import dev.rakshit.portfoliotrackingapi.exceptions.BadRequestException;
+import dev.rakshit.portfoliotrackingapi.exceptions.ConflictException;
+import dev.rakshit.portfoliotrackingapi.exceptions.InvalidTransactionException;
+import dev.rakshit.portfoliotrackingapi.exceptions.InvalidTransactionException.Reason;
+import dev.rakshit.portfoliotrackingapi.exceptions.NotFoundException;
+import dev.rakshit.portfoliotrackingapi.metrics.TradeMetrics;
+import dev.rakshit.portfoliotrackingapi.metrics.TradeMetrics.Outcome;
+import dev.rakshit.portfoliotrackingapi.models.Holding;
+import dev.rakshit.portfoliotrackingapi.models.Portfolio;
+import dev.rakshit.portfoliotrackingapi.models.Trade;
+import dev.rakshit.portfoliotrackingapi.models.TradeCursor;
+import dev.rakshit.portfoliotrackingapi.models.TradeFilter;
+import dev.rakshit.portfoliotrackingapi.models.TradePage;
+import dev.rakshit.portfoliotrackingapi.models.TransactionType;
+import dev.rakshit.portfoliotrackingapi.price.PriceProvider;
+import dev.rakshit.portfoliotrackingapi.service.PortfolioTrackingService;
+import dev.rakshit.portfoliotrackingapi.util.FixedPointUtil;
+import dev.rakshit.portfoliotrackingapi.util.HoldingUtil;
+import dev.rakshit.portfoliotrackingapi.util.PageTokenUtil;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.dao.ConcurrencyFailureException;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+import reactor.util.retry.Retry;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.time.LocalDateTime;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import static dev.rakshit.portfoliotrackingapi.util.HoldingUtil.*;
+import static dev.rakshit.portfoliotrackingapi.util.IdempotencyUtil.checkSameRequest;
+
+/**
+ * Non blocking counterpart of PortfolioTrackingService, used when the application runs as a reactive web application.
+ * Nothing is locked while waiting on the database. Each write reads the holdings of it's tickers and writes them back
+ * with a version check in one transaction, and is run again from the start if a holding was changed in between.
+ * Calls are timed under portfolio.service like the ones of PortfolioTrackingService.
+ */
+@Slf4j
+@Service
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE)
+public class ReactivePortfolioTrackingService {
+
+    @Autowired
+    private R2dbcPortfolioStore r2dbcPortfolioStore;
+
+    @Autowired
+    private PortfolioTrackingService portfolioTrackingService;
+
+    @Autowired
+    private PriceProvider priceProvider;
+
+    @Autowired
+    private TradeMetrics tradeMetrics;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${portfolio.trades.page.default-size:100}")
+    private int defaultPageSize;
+
+    @Value("${portfolio.trades.page.max-size:1000}")
+    private int maxPageSize;
+
+    @Value("${portfolio.locks.max-attempts:3}")
+    private int maxWriteAttempts;
+
+    /**
+     * Adds a trade and updates the holding of it's ticker. A trade executed before the latest trade of it's ticker
+     * is inserted first, and the holding is then recomputed from all the trades of the ticker in the order they
+     * were executed, like PortfolioTrackingService does.
+     * A trade with an Idempotency-Key that was already added is returned as it is, without being added again.
+     * The key is looked up again on every attempt, so a request losing the race for the key to another one
+     * gets the trade that one added.
+     *
+     * @param trade trade to be added.
+     * @return Trade that is added. Fails with InvalidTransactionException if trade cannot be added and with
+     * UnprocessableEntityException if it's Idempotency-Key was already used for another trade.
+     */
+    public Mono<Trade> addTrade(Trade trade) {
+        boolean executedNow = null == trade.getLastUpdated();
+        setDefaultLastUpdated(trade);
+        Mono<Trade> write = findTradeOfIdempotencyKey(trade).switchIfEmpty(getHoldingByTicker(trade.getTicker())
+                .flatMap(holding -> {
+                    if (!isTradeInOrder(holding, trade.getLastUpdated(), executedNow)) {
+                        return r2dbcPortfolioStore.insertTrade(trade)
+                                .then(recomputeHolding(holding))
+                                .thenReturn(trade);
+                    }
+                    if (TransactionType.SELL == trade.getTransactionType() && BigInteger.ZERO.equals(holding.getShares())) {
+                        return Mono.error(new InvalidTransactionException(Reason.NO_SHARES_TO_SELL));
+                    }
+                    return r2dbcPortfolioStore.saveHolding(addTradeInOrder(holding, trade))
+                            .then(r2dbcPortfolioStore.insertTrade(trade));
+                }));
+        Mono<Trade> addedTrade = writeHoldings(write)
+                .onErrorResume(exception -> exception instanceof ConflictException && null != trade.getIdempotencyKey(),
+                        exception -> findTradeOfIdempotencyKey(trade).switchIfEmpty(Mono.error(exception)));
+        return timed("addTrade", recordOutcome(Outcome.ADDED, trade, validate(trade).then(addedTrade)));
+    }
+
+    /**
+     * Updates a trade and recomputes the holdings of it's old and new ticker, whatever the time the trade was
+     * executed at. Trade is read again in the transaction, so that it is updated from it's latest state.
+     *
+     * @param newTrade trade to be updated, with the id of the trade it replaces.
+     * @return Trade that is updated. Fails with NotFoundException if no trade is found, and with
+     * InvalidTransactionException if it cannot be updated.
+     */
+    public Mono<Trade> updateTrade(Trade newTrade) {
+        setDefaultLastUpdated(newTrade);
+        Mono<Trade> write = r2dbcPortfolioStore.findTrade(newTrade.getTradeId())
+                .switchIfEmpty(Mono.error(() -> new NotFoundException("No Trade found for id : " + newTrade.getTradeId())))
+                .flatMap(currentTrade -> Mono.zip(getHoldingByTrade(currentTrade), getHoldingByTicker(newTrade.getTicker()))
+                        .flatMap(holdings -> r2dbcPortfolioStore.updateTrade(newTrade)
+                                .thenMany(Flux.just(holdings.getT1(), holdings.getT2()))
+                                .distinct(Holding::getTicker)
+                                .sort(Comparator.comparing(Holding::getTicker))
+                                .concatMap(this::recomputeHolding)
+                                .then(r2dbcPortfolioStore.invalidateCheckpoint(currentTrade.getTicker()))
+                                .then(currentTrade.getTicker().equals(newTrade.getTicker())
+                                        ? Mono.empty()
+                                        : r2dbcPortfolioStore.invalidateCheckpoint(newTrade.getTicker()))))
+                .thenReturn(newTrade);
+        return timed("updateTrade", recordOutcome(Outcome.UPDATED, newTrade, validate(newTrade).then(writeHoldings(write))));
+    }
+
+    /**
+     * Deletes a trade and recomputes the holding of it's ticker, whatever the time the trade was executed at
+     *
+     * @param id trade id corresponding to which, the trade is to be deleted.
+     * @return Trade that is deleted and empty if no trade is found. Fails with InvalidTransactionException
+     * if it cannot be deleted.
+     */
+    public Mono<Trade> deleteTrade(Long id) {
+        Mono<Trade> write = r2dbcPortfolioStore.findTrade(id)
+                .flatMap(trade -> getHoldingByTrade(trade)
+                        .flatMap(holding -> r2dbcPortfolioStore.deleteTrade(id)
+                                .then(recomputeHolding(holding)))
+                        .then(r2dbcPortfolioStore.invalidateCheckpoint(trade.getTicker()))
+                        .thenReturn(trade));
+        return timed("deleteTrade", writeHoldings(write)
+                .doOnSuccess(trade -> {
+                    if (null != trade) {
+                        tradeMetrics.recordWritten(Outcome.DELETED, trade);
+                    }
+                })
+                .doOnError(exception -> tradeMetrics.recordFailed(Trade.builder().tradeId(id).build(), exception)));
+    }
+
+    /**
+     * Gets a trade based on trade id.
+     *
+     * @return Trade based on trade id, empty if not found.
+     */
+    public Mono<Trade> getTrade(Long id) {
+        return timed("getTrade", r2dbcPortfolioStore.findTrade(id));
+    }
+
+    /**
+     * Gets a page of trades ordered by the time they were executed.
+     *
+     * @param filter    Filters to be applied on the trades
+     * @param pageToken Token of the page to be fetched. First page is fetched if null
+     * @param limit     Maximum trades in the page. Default page size is used if null
+     * @return Trades of the page along with the token of the next page.
+     * Fails with BadRequestException if the page token or limit is not valid.
+     */
+    public Mono<TradePage> getTrades(TradeFilter filter, String pageToken, Integer limit) {
+        return timed("getTrades", Mono.defer(() -> {
+            int pageSize = null == limit ? defaultPageSize : limit;
+            if (0 >= pageSize || maxPageSize < pageSize) {
+                return Mono.error(new BadRequestException(String.format("Page size should be between 1 and %d", maxPageSize)));
+            }
+            TradeCursor cursor = null == pageToken ? null : PageTokenUtil.toCursor(pageToken);
+            return r2dbcPortfolioStore.findTradePage(filter, cursor, pageSize + 1)
+                    .collectList()
+                    .map(trades -> {
+                        if (trades.size() <= pageSize) {
+                            return TradePage.builder().trades(trades).build();
+                        }
+                        List<Trade> page = trades.subList(0, pageSize);
+                        Trade lastTrade = page.get(pageSize - 1);
+                        return TradePage.builder()
+                                .trades(page)
+                                .nextPageToken(PageTokenUtil.toPageToken(new TradeCursor(lastTrade.getLastUpdated(), lastTrade.getTradeId())))
+                                .build();
+                    });
+        }));
+    }
+
+    /**
+     * Gets a holdings based on ticker.
+     *
+     * @return Holding based on ticker, empty if not found.
+     */
+    public Mono<Holding> getHolding(String ticker) {
+        return timed("getHolding", r2dbcPortfolioStore.findHolding(ticker));
+    }
+
+    /**
+     * Gets all the holdings present, ordered by ticker.
+     *
+     * @return List of all holdings corresponding to the user.
+     */
+    public Mono<List<Holding>> getHoldings() {
+        return timed("getHoldings", r2dbcPortfolioStore.findHoldings().collectList());
+    }
+
+    /**
+     * Groups all the securities and trades corresponding to it.
+     * Trades of all the securities are fetched together in one query.
+     *
+     * @param tradeLimit Maximum trades per security, keeping the latest ones. All trades are given if null
+     * @return All the securities and trades corresponding to it.
+     */
+    public Mono<List<Portfolio>> getPortfolio(Integer tradeLimit) {
+        return timed("getPortfolio", Mono.zip(
+                r2dbcPortfolioStore.findHoldings().map(Holding::getTicker).collectList(),
+                r2dbcPortfolioStore.findTradesOfHoldings(tradeLimit).collect(Collectors.groupingBy(Trade::getTicker)))
+                .map(result -> result.getT1().stream()
+                        .map(ticker -> Portfolio.builder()
+                                .ticker(ticker)
+                                .trades(result.getT2().getOrDefault(ticker, Collections.emptyList()))
+                                .build())
+                        .collect(Collectors.toList())));
+    }
+
+    /**
+     * Takes all the holdings and calculates the returns. Current prices are fetched from the price provider
+     * on the bounded elastic scheduler, as it may block
+     *
+     * @return Net Return calculated from the holdings and empty if no holding present
+     */
+    public Mono<BigDecimal> getReturns() {
+        return timed("getReturns", r2dbcPortfolioStore.findHoldings().collectList()
+                .filter(holdings -> !holdings.isEmpty())
+                .flatMap(holdings -> Mono.fromCallable(() -> priceProvider.getPrices(holdings.stream()
+                        .map(Holding::getTicker)
+                        .collect(Collectors.toList())))
+                        .subscribeOn(Schedulers.boundedElastic())
+                        .map(prices -> FixedPointUtil.toBigDecimal(holdings.stream()
+                                .filter(holding -> hasPrice(holding, prices))
+                                .mapToLong(holding -> getReturnsByHolding(holding, prices.get(holding.getTicker())))
+                                .reduce(0L, FixedPointUtil::add)))));
+    }
+
+    /**
+     * Runs a write of holdings in one transaction. The write is run again from the start, up to
+     * portfolio.locks.max-attempts times, if a holding was changed by someone else after it was read.
+     * Fails with ConflictException if all attempts fail.
+     *
+     * @param write Write to be run
+     * @return Result of the write
+     */
+    private <T> Mono<T> writeHoldings(Mono<T> write) {
+        return r2dbcPortfolioStore.inTransaction(write)
+                .retryWhen(Retry.max(Math.max(0, maxWriteAttempts - 1))
+                        .filter(exception -> exception instanceof ConcurrencyFailureException
+                                || exception instanceof DataIntegrityViolationException)
+                        .doBeforeRetry(signal -> log.warn("Holding was changed by another request, retrying. Attempt : {}",
+                                signal.totalRetries() + 1))
+                        .onRetryExhaustedThrow((spec, signal) ->
+                                new ConflictException("Holding was changed by another request, please retry", signal.failure())));
+    }
+
+    /**
+     * Recomputes and saves the holding of a ticker from all of it's trades in db, added in the order they were
+     * executed, so the holding is the same whichever trade was changed. Trades are to be written before.
+     * Fails with InvalidTransactionException if a sell of the ticker would sell more shares than held at it's time.
+     *
+     * @param currentHolding Holding of the ticker as read in the transaction, whose version is written over
+     * @return Completes once the holding is saved, or deleted if no shares are left
+     */
+    private Mono<Void> recomputeHolding(Holding currentHolding) {
+        String ticker = currentHolding.getTicker();
+        return r2dbcPortfolioStore.findTradesOfTicker(ticker)
+                .reduceWith(() -> getEmptyHolding(ticker), HoldingUtil::addTradeInOrder)
+                .flatMap(holding -> {
+                    holding.setVersion(currentHolding.getVersion());
+                    return r2dbcPortfolioStore.saveHolding(holding);
+                });
+    }
+
+    /**
+     * Counts the outcome of a write of a trade under portfolio.trades
+     *
+     * @param outcome Outcome counted if the write gives a trade
+     * @param trade   Trade counted if the write fails
+     * @param write   Write to be counted
+     * @return The write, counting it's outcome once it completes
+     */
+    private Mono<Trade> recordOutcome(Outcome outcome, Trade trade, Mono<Trade> write) {
+        return write
+                .doOnSuccess(writtenTrade -> tradeMetrics.recordWritten(outcome, writtenTrade))
+                .doOnError(exception -> tradeMetrics.recordFailed(trade, exception));
+    }
+
+    /**
+     * Records the time from subscription to completion under portfolio.service, tagged like the timers
+     * of @Timed methods. TimedAspect would only time the assembly of the Mono
+     *
+     * @param method Name of the method timed
+     * @param call   Call to be timed
+     */
+    private <T> Mono<T> timed(String method, Mono<T> call) {
+        return Mono.defer(() -> {
+            Timer.Sample sample = Timer.start(meterRegistry);
+            return call
+                    .doOnSuccess(value -> stop(sample, method, "none"))
+                    .doOnError(exception -> stop(sample, method, exception.getClass().getSimpleName()));
+        });
+    }
+
+    private void stop(Timer.Sample sample, String method, String exception) {
+        sample.stop(Timer.builder(PortfolioTrackingService.TIMER_NAME)
+                .tag("class", getClass().getName())
+                .tag("method", method)
+                .tag("exception", exception)
+                .publishPercentileHistogram()
+                .register(meterRegistry));
+    }
+
+    /**
+     * Checks the details of a trade when subscribed. Fails with InvalidTransactionException if trade is not valid
+     *
+     * @param trade Trade to be validated
+     */
+    private Mono<Void> validate(Trade trade) {
+        return Mono.fromRunnable(() -> portfolioTrackingService.isValidTradeDetails(trade));
+    }
+
+    /**
+     * Gets the trade already added with the Idempotency-Key of a trade. Fails with UnprocessableEntityException
+     * if the key was used for another trade
+     *
+     * @param trade Trade to be added
+     * @return Trade added with the same key, empty if the trade has no key or no trade was added with it
+     */
+    private Mono<Trade> findTradeOfIdempotencyKey(Trade trade) {
+        if (null == trade.getIdempotencyKey()) {
+            return Mono.empty();
+        }
+        return r2dbcPortfolioStore.findTradeByIdempotencyKey(trade.getIdempotencyKey())
+                .doOnNext(existingTrade -> {
+                    checkSameRequest(trade.getRequestHash(), existingTrade.getRequestHash());
+                    log.info("Trade with idempotency key : {} was already added with id : {}",
+                            trade.getIdempotencyKey(), existingTrade.getTradeId());
+                });
+    }
+
+    /**
+     * Gives the holding of a trade being updated or deleted. Logs error if no holding is found for it's ticker
+     *
+     * @param trade Trade to be updated or deleted
+     * @return Holding from db if present else a new one, without version
+     */
+    private Mono<Holding> getHoldingByTrade(Trade trade) {
+        return getHoldingByTicker(trade.getTicker())
+                .doOnNext(holding -> {
+                    if (null == holding.getVersion()) {
+                        log.error("No Holding found with ticker : {}", trade.getTicker());
+                    }
+                });
+    }
+
+    /**
+     * Gives the holding of a ticker, or a default holding if no holding is present in db
+     *
+     * @param ticker Ticker of the holding
+     * @return Holding from db if present else a new one, without version
+     */
+    private Mono<Holding> getHoldingByTicker(String ticker) {
+        return r2dbcPortfolioStore.findHolding(ticker)
+                .switchIfEmpty(Mono.fromSupplier(() -> Holding.builder()
+                        .ticker(ticker)
+                        .shares(BigInteger.ZERO)
+                        .totalPrice(BigDecimal.ZERO)
+                        .averageBuyPrice(BigDecimal.ZERO)
+                        .build()));
+    }
+
+    /**
+     * Sets the execution time of a trade to now if it is not given
+     *
+     * @param trade Trade to be updated
+     */
+    private void setDefaultLastUpdated(Trade trade) {
+        if (null == trade.getLastUpdated()) {
+            trade.setLastUpdated(LocalDateTime.now());
+        }
+    }
+
+    /**
+     * Tells whether current price of a holding is known. Logs warning if it is not
+     *
+     * @return true if prices has the price of the holding's ticker
+     */
+    private boolean hasPrice(Holding holding, Map<String, BigDecimal> prices) {
+        if (!prices.containsKey(holding.getTicker())) {
+            log.warn("No price found for ticker : {}, leaving it out of returns", holding.getTicker());
+            return false;
+        }
+        return true;
+    }
+
+}
@@ -0,0 +1,14 @@
+package dev.rakshit.portfoliotrackingapi.repository;
+
+import dev.rakshit.portfoliotrackingapi.models.HoldingCheckpoint;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+
+@Repository
+public interface HoldingCheckpointRepository extends JpaRepository<HoldingCheckpoint, String> {
+
+    List<HoldingCheckpoint> findByStaleTrue();
+
+}
@@ -0,0 +1,388 @@
+package dev.rakshit.portfoliotrackingapi.repository;
+
+import dev.rakshit.portfoliotrackingapi.exceptions.InvalidTransactionException;
+import dev.rakshit.portfoliotrackingapi.exceptions.InvalidTransactionException.Reason;
+import dev.rakshit.portfoliotrackingapi.models.Holding;
+import dev.rakshit.portfoliotrackingapi.models.HoldingCheckpoint;
+import dev.rakshit.portfoliotrackingapi.util.FixedPointUtil;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.math.BigDecimal;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Collectors;
+
+/**
+ * Reads holdings and writes holdings and checkpoints in JDBC batches of portfolio.refresh.batch-size statements.
+ * All checkpoints and holdings can also be rebuilt by set based statements, without reading the trades out of the db.
+ */
+@Repository
+public class HoldingJdbcRepository {
+
+    private static final String MERGE_HOLDING =
+            "MERGE INTO holdings (ticker, total_price, average_buy_price, shares, last_updated, version) KEY (ticker) " +
+                    "VALUES (?, ?, ?, ?, ?, COALESCE((SELECT version + 1 FROM holdings WHERE ticker = ?), 0))";
+    private static final String INSERT_HOLDING =
+            "INSERT INTO holdings (ticker, total_price, average_buy_price, shares, last_updated, version) " +
+                    "VALUES (?, ?, ?, ?, ?, 0)";
+    private static final String UPDATE_HOLDING_OF_VERSION =
+            "UPDATE holdings SET total_price = ?, average_buy_price = ?, shares = ?, last_updated = ?, " +
+                    "version = version + 1 WHERE ticker = ? AND version = ?";
+    private static final String MERGE_HOLDING_OF_VERSION =
+            "MERGE INTO holdings h USING DUAL ON h.ticker = ? " +
+                    "WHEN MATCHED AND h.version = ? THEN UPDATE SET total_price = ?, average_buy_price = ?, shares = ?, " +
+                    "last_updated = ?, version = h.version + 1 " +
+                    "WHEN NOT MATCHED AND CAST(? AS BIGINT) IS NULL THEN INSERT " +
+                    "(ticker, total_price, average_buy_price, shares, last_updated, version) VALUES (?, ?, ?, ?, ?, 0)";
+    private static final String DELETE_HOLDING = "DELETE FROM holdings WHERE ticker = ?";
+    private static final String DELETE_HOLDING_OF_VERSION = "DELETE FROM holdings WHERE ticker = ? AND version = ?";
+    private static final String SELECT_HOLDING_TICKERS = "SELECT ticker FROM holdings";
+    private static final String SELECT_HOLDING =
+            "SELECT ticker, total_price, average_buy_price, shares, last_updated, version FROM holdings WHERE ticker = ?";
+    private static final String SELECT_HOLDINGS_BY_TICKERS =
+            "SELECT ticker, total_price, average_buy_price, shares, last_updated, version FROM holdings WHERE ticker IN (:tickers)";
+    private static final String MERGE_CHECKPOINT =
+            "MERGE INTO holding_checkpoints (ticker, shares, total_price, average_buy_price, last_trade_id, stale, last_updated) " +
+                    "KEY (ticker) VALUES (?, ?, ?, ?, ?, ?, ?)";
+    private static final String DELETE_CHECKPOINTS = "DELETE FROM holding_checkpoints";
+    /**
+     * Trades numbered per ticker in execution order, with the shares held after each of them. Table is local to
+     * the connection and transactional, so it is neither seen by other connections nor commits the rebuild
+     */
+    private static final String CREATE_TRADE_REPLAY =
+            "CREATE LOCAL TEMPORARY TABLE IF NOT EXISTS trade_replay (ticker VARCHAR, seq BIGINT, trade_count BIGINT, " +
+                    "trade_id BIGINT, buy BOOLEAN, buy_units DECIMAL(38, 0), shares DECIMAL(38, 0), " +
+                    "running_shares DECIMAL(38, 0), last_updated TIMESTAMP, PRIMARY KEY (ticker, seq)) TRANSACTIONAL";
+    private static final String DELETE_TRADE_REPLAY = "DELETE FROM trade_replay";
+    private static final String INSERT_TRADE_REPLAY =
+            "INSERT INTO trade_replay SELECT ticker, " +
+                    "ROW_NUMBER() OVER (PARTITION BY ticker ORDER BY last_updated, trade_id), COUNT(*) OVER (PARTITION BY ticker), " +
+                    "trade_id, transaction_type = 'BUY', " +
+                    "CASE WHEN transaction_type = 'BUY' THEN price * " + FixedPointUtil.ONE + " * shares ELSE 0 END, shares, " +
+                    "SUM(CASE WHEN transaction_type = 'BUY' THEN shares ELSE -shares END) " +
+                    "OVER (PARTITION BY ticker ORDER BY last_updated, trade_id), last_updated FROM trades";
+    private static final String SELECT_OVERSOLD_TICKER =
+            "SELECT ticker FROM trade_replay WHERE running_shares < 0 LIMIT 1";
+    /**
+     * Checkpoints of all tickers, replaying the numbered trades of each ticker one after another as
+     * HoldingAccumulator.accept does. Amounts are scaled to whole units of FixedPointUtil and each division
+     * is rounded HALF_EVEN from it's floor and remainder, so the checkpoints are the same to the last unit
+     * as the ones replayed in memory
+     */
+    private static final String INSERT_CHECKPOINTS_FROM_TRADE_REPLAY =
+            "INSERT INTO holding_checkpoints (ticker, shares, total_price, average_buy_price, last_trade_id, stale, last_updated) " +
+                    "WITH RECURSIVE positions (ticker, seq, trade_count, shares, total_units, average_units, last_trade_id, " +
+                    "last_updated) AS (" +
+                    "SELECT ticker, CAST(0 AS BIGINT), trade_count, CAST(0 AS DECIMAL(38, 0)), CAST(0 AS DECIMAL(38, 0)), " +
+                    "CAST(0 AS DECIMAL(38, 0)), CAST(0 AS BIGINT), last_updated FROM trade_replay WHERE seq = 1 " +
+                    "UNION ALL SELECT t.ticker, t.seq, t.trade_count, t.running_shares, " +
+                    "CASE WHEN t.buy THEN p.total_units + t.buy_units " +
+                    "ELSE p.total_units - " + halfEven("p.total_units * t.shares", "p.shares") + " END, " +
+                    "CASE WHEN t.buy THEN " + halfEven("p.total_units + t.buy_units", "t.running_shares") + " " +
+                    "WHEN 0 = t.running_shares THEN 0 ELSE p.average_units END, " +
+                    "GREATEST(p.last_trade_id, t.trade_id), t.last_updated " +
+                    "FROM positions p JOIN trade_replay t ON t.ticker = p.ticker AND t.seq = p.seq + 1) " +
+                    "SELECT ticker, shares, total_units / " + FixedPointUtil.ONE + ", average_units / " + FixedPointUtil.ONE + ", " +
+                    "last_trade_id, FALSE, last_updated FROM positions WHERE seq = trade_count";
+    private static final String MERGE_HOLDINGS_FROM_CHECKPOINTS =
+            "MERGE INTO holdings h USING (SELECT ticker, shares, total_price, average_buy_price, last_updated " +
+                    "FROM holding_checkpoints WHERE shares > 0) c ON h.ticker = c.ticker " +
+                    "WHEN MATCHED THEN UPDATE SET total_price = c.total_price, average_buy_price = c.average_buy_price, " +
+                    "shares = c.shares, last_updated = c.last_updated, version = h.version + 1 " +
+                    "WHEN NOT MATCHED THEN INSERT (ticker, total_price, average_buy_price, shares, last_updated, version) " +
+                    "VALUES (c.ticker, c.total_price, c.average_buy_price, c.shares, c.last_updated, 0)";
+    private static final String DELETE_HOLDINGS_WITHOUT_SHARES =
+            "DELETE FROM holdings WHERE ticker NOT IN (SELECT ticker FROM holding_checkpoints WHERE shares > 0)";
+    private static final String SELECT_LAST_CHECKPOINTED_TRADE_ID =
+            "SELECT COALESCE(MAX(last_trade_id), 0) FROM holding_checkpoints";
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private NamedParameterJdbcTemplate namedParameterJdbcTemplate;
+
+    @Value("${portfolio.refresh.batch-size:500}")
+    private int batchSize;
+
+    public List<String> findAllTickers() {
+        return jdbcTemplate.queryForList(SELECT_HOLDING_TICKERS, String.class);
+    }
+
+    /**
+     * Gets holding of a ticker without tracking it in the persistence context
+     *
+     * @param ticker Ticker of the holding
+     * @return Holding of the ticker and Optional.empty() if no holding is present
+     */
+    public Optional<Holding> findById(String ticker) {
+        return jdbcTemplate.query(SELECT_HOLDING, (resultSet, rowNum) -> mapHolding(resultSet), ticker)
+                .stream()
+                .findFirst();
+    }
+
+    /**
+     * Gets holdings of the given tickers without tracking them in the persistence context
+     *
+     * @param tickers Tickers of the holdings
+     * @return Holdings present for the tickers
+     */
+    public List<Holding> findAllById(Collection<String> tickers) {
+        if (tickers.isEmpty()) {
+            return Collections.emptyList();
+        }
+        return namedParameterJdbcTemplate.query(SELECT_HOLDINGS_BY_TICKERS,
+                Collections.singletonMap("tickers", tickers), (resultSet, rowNum) -> mapHolding(resultSet));
+    }
+
+    /**
+     * Inserts or updates holdings, incrementing the version of the ones updated
+     *
+     * @param holdings Holdings to be saved
+     */
+    public void saveAll(Collection<Holding> holdings) {
+        jdbcTemplate.batchUpdate(MERGE_HOLDING, holdings, batchSize, (preparedStatement, holding) -> {
+            preparedStatement.setString(1, holding.getTicker());
+            preparedStatement.setBigDecimal(2, holding.getTotalPrice());
+            preparedStatement.setBigDecimal(3, holding.getAverageBuyPrice());
+            preparedStatement.setBigDecimal(4, new BigDecimal(holding.getShares()));
+            preparedStatement.setTimestamp(5, Timestamp.valueOf(holding.getLastUpdated()));
+            preparedStatement.setString(6, holding.getTicker());
+        });
+    }
+
+    /**
+     * Writes holdings only if they were not changed in db after they were read. Holdings without a version are
+     * inserted and the others are updated if their version matches the one in db. Versions of the holdings are
+     * set to the ones written. Throws OptimisticLockingFailureException if any holding was changed in db and
+     * DuplicateKeyException if a holding without version was inserted by someone else.
+     *
+     * @param holdings Holdings to be saved
+     */
+    public void saveAllOfVersion(Collection<Holding> holdings) {
+        List<Holding> newHoldings = holdings.stream()
+                .filter(holding -> null == holding.getVersion())
+                .collect(Collectors.toList());
+        List<Holding> changedHoldings = holdings.stream()
+                .filter(holding -> null != holding.getVersion())
+                .collect(Collectors.toList());
+        jdbcTemplate.batchUpdate(INSERT_HOLDING, newHoldings, batchSize, (preparedStatement, holding) -> {
+            preparedStatement.setString(1, holding.getTicker());
+            preparedStatement.setBigDecimal(2, holding.getTotalPrice());
+            preparedStatement.setBigDecimal(3, holding.getAverageBuyPrice());
+            preparedStatement.setBigDecimal(4, new BigDecimal(holding.getShares()));
+            preparedStatement.setTimestamp(5, Timestamp.valueOf(holding.getLastUpdated()));
+        });
+        int[][] updateCounts = jdbcTemplate.batchUpdate(UPDATE_HOLDING_OF_VERSION, changedHoldings, batchSize,
+                (preparedStatement, holding) -> {
+                    preparedStatement.setBigDecimal(1, holding.getTotalPrice());
+                    preparedStatement.setBigDecimal(2, holding.getAverageBuyPrice());
+                    preparedStatement.setBigDecimal(3, new BigDecimal(holding.getShares()));
+                    preparedStatement.setTimestamp(4, Timestamp.valueOf(holding.getLastUpdated()));
+                    preparedStatement.setString(5, holding.getTicker());
+                    preparedStatement.setLong(6, holding.getVersion());
+                });
+        assertAllWritten(changedHoldings, updateCounts);
+        newHoldings.forEach(holding -> holding.setVersion(0L));
+        changedHoldings.forEach(holding -> holding.setVersion(holding.getVersion() + 1));
+    }
+
+    /**
+     * Inserts a holding without version, or updates it if it's version is still the one in db, in one MERGE.
+     * Version of the holding is set to the one written. Throws OptimisticLockingFailureException if the holding
+     * was changed or deleted in db after it was read, or inserted by someone else
+     *
+     * @param holding Holding to be saved
+     */
+    public void saveOfVersion(Holding holding) {
+        BigDecimal shares = new BigDecimal(holding.getShares());
+        Timestamp lastUpdated = Timestamp.valueOf(holding.getLastUpdated());
+        int count = jdbcTemplate.update(MERGE_HOLDING_OF_VERSION, preparedStatement -> {
+            preparedStatement.setString(1, holding.getTicker());
+            setVersion(preparedStatement, 2, holding.getVersion());
+            preparedStatement.setBigDecimal(3, holding.getTotalPrice());
+            preparedStatement.setBigDecimal(4, holding.getAverageBuyPrice());
+            preparedStatement.setBigDecimal(5, shares);
+            preparedStatement.setTimestamp(6, lastUpdated);
+            setVersion(preparedStatement, 7, holding.getVersion());
+            preparedStatement.setString(8, holding.getTicker());
+            preparedStatement.setBigDecimal(9, holding.getTotalPrice());
+            preparedStatement.setBigDecimal(10, holding.getAverageBuyPrice());
+            preparedStatement.setBigDecimal(11, shares);
+            preparedStatement.setTimestamp(12, lastUpdated);
+        });
+        if (0 == count) {
+            throw new OptimisticLockingFailureException(
+                    "Holding of ticker : " + holding.getTicker() + " was changed after it was read");
+        }
+        holding.setVersion(null == holding.getVersion() ? 0L : holding.getVersion() + 1);
+    }
+
+    /**
+     * Deletes a holding only if it was not changed in db after it was read. Holding without version was never
+     * written, so nothing is deleted for it. Throws OptimisticLockingFailureException if the holding was changed
+     * or deleted in db
+     *
+     * @param holding Holding to be deleted
+     */
+    public void deleteOfVersion(Holding holding) {
+        if (null != holding.getVersion()
+                && 0 == jdbcTemplate.update(DELETE_HOLDING_OF_VERSION, holding.getTicker(), holding.getVersion())) {
+            throw new OptimisticLockingFailureException(
+                    "Holding of ticker : " + holding.getTicker() + " was changed after it was read");
+        }
+    }
+
+    /**
+     * Deletes holdings only if they were not changed in db after they were read.
+     * Throws OptimisticLockingFailureException if any holding was changed or deleted in db
+     *
+     * @param holdings Holdings to be deleted
+     */
+    public void deleteAllOfVersion(Collection<Holding> holdings) {
+        List<Holding> closedHoldings = new ArrayList<>(holdings);
+        int[][] deleteCounts = jdbcTemplate.batchUpdate(DELETE_HOLDING_OF_VERSION, closedHoldings, batchSize,
+                (preparedStatement, holding) -> {
+                    preparedStatement.setString(1, holding.getTicker());
+                    preparedStatement.setLong(2, holding.getVersion());
+                });
+        assertAllWritten(closedHoldings, deleteCounts);
+    }
+
+    public void deleteAllById(Collection<String> tickers) {
+        jdbcTemplate.batchUpdate(DELETE_HOLDING, tickers, batchSize,
+                (preparedStatement, ticker) -> preparedStatement.setString(1, ticker));
+    }
+
+    /**
+     * Replaces all the checkpoints with the given ones
+     *
+     * @param checkpoints Checkpoints to be saved
+     */
+    public void replaceCheckpoints(Collection<HoldingCheckpoint> checkpoints) {
+        jdbcTemplate.update(DELETE_CHECKPOINTS);
+        jdbcTemplate.batchUpdate(MERGE_CHECKPOINT, checkpoints, batchSize, (preparedStatement, checkpoint) -> {
+            preparedStatement.setString(1, checkpoint.getTicker());
+            preparedStatement.setBigDecimal(2, new BigDecimal(checkpoint.getShares()));
+            preparedStatement.setBigDecimal(3, checkpoint.getTotalPrice());
+            preparedStatement.setBigDecimal(4, checkpoint.getAverageBuyPrice());
+            preparedStatement.setLong(5, checkpoint.getLastTradeId());
+            preparedStatement.setBoolean(6, checkpoint.isStale());
+            preparedStatement.setTimestamp(7, Timestamp.valueOf(checkpoint.getLastUpdated()));
+        });
+    }
+
+    /**
+     * Replaces all the checkpoints with the positions obtained by replaying all the trades of each ticker in
+     * execution order in the db. Throws InvalidTransactionException with HOLDING_SHARES_NEGATIVE if a trade
+     * sells more shares than are held at it's execution time
+     *
+     * @return Number of checkpoints written
+     */
+    public int replaceCheckpointsFromTrades() {
+        jdbcTemplate.update(CREATE_TRADE_REPLAY);
+        jdbcTemplate.update(DELETE_TRADE_REPLAY);
+        try {
+            jdbcTemplate.update(INSERT_TRADE_REPLAY);
+            if (!jdbcTemplate.queryForList(SELECT_OVERSOLD_TICKER, String.class).isEmpty()) {
+                throw new InvalidTransactionException(Reason.HOLDING_SHARES_NEGATIVE);
+            }
+            jdbcTemplate.update(DELETE_CHECKPOINTS);
+            return jdbcTemplate.update(INSERT_CHECKPOINTS_FROM_TRADE_REPLAY);
+        } finally {
+            jdbcTemplate.update(DELETE_TRADE_REPLAY);
+        }
+    }
+
+    /**
+     * Inserts or updates the holdings of all the checkpoints having shares in one statement, incrementing
+     * the version of the ones updated, and deletes the holdings of all other tickers. Holdings are last updated
+     * at the time of their checkpoint
+     *
+     * @return Number of holdings written and number of holdings deleted
+     */
+    public int[] replaceHoldingsFromCheckpoints() {
+        int written = jdbcTemplate.update(MERGE_HOLDINGS_FROM_CHECKPOINTS);
+        return new int[]{written, jdbcTemplate.update(DELETE_HOLDINGS_WITHOUT_SHARES)};
+    }
+
+    /**
+     * @return Highest trade id covered by the checkpoints and 0 if there is none
+     */
+    public long findLastCheckpointedTradeId() {
+        return jdbcTemplate.queryForObject(SELECT_LAST_CHECKPOINTED_TRADE_ID, Long.class);
+    }
+
+    /**
+     * Gives SQL dividing non negative values rounded HALF_EVEN to a whole number
+     *
+     * @param dividend Dividend
+     * @param divisor  Divisor
+     * @return SQL giving the rounded quotient
+     */
+    private static String halfEven(String dividend, String divisor) {
+        String quotient = "FLOOR((" + dividend + ") / " + divisor + ")";
+        String remainder = "((" + dividend + ") - " + quotient + " * " + divisor + ")";
+        return "(" + quotient + " + " + roundingOf(quotient, remainder, divisor) + ")";
+    }
+
+    /**
+     * Gives SQL adding 1 to the floor of a division of non negative values if it is to be rounded up HALF_EVEN
+     *
+     * @param quotient  Floor of the division
+     * @param remainder Remainder of the division
+     * @param divisor   Divisor
+     * @return SQL giving 1 or 0
+     */
+    private static String roundingOf(String quotient, String remainder, String divisor) {
+        return String.format("CASE WHEN 2 * %2$s > %3$s OR (2 * %2$s = %3$s AND %1$s - 2 * FLOOR(%1$s / 2) = 1) " +
+                "THEN 1 ELSE 0 END", quotient, remainder, divisor);
+    }
+
+    private static void setVersion(PreparedStatement preparedStatement, int index, Long version) throws SQLException {
+        if (null == version) {
+            preparedStatement.setNull(index, Types.BIGINT);
+        } else {
+            preparedStatement.setLong(index, version);
+        }
+    }
+
+    private void assertAllWritten(List<Holding> holdings, int[][] counts) {
+        int index = 0;
+        for (int[] batchCounts : counts) {
+            for (int count : batchCounts) {
+                if (0 == count) {
+                    throw new OptimisticLockingFailureException(
+                            "Holding of ticker : " + holdings.get(index).getTicker() + " was changed after it was read");
+                }
+                index++;
+            }
+        }
+    }
+
+    private Holding mapHolding(ResultSet resultSet) throws SQLException {
+        Timestamp lastUpdated = resultSet.getTimestamp("last_updated");
+        return Holding.builder()
+                .ticker(resultSet.getString("ticker"))
+                .totalPrice(resultSet.getBigDecimal("total_price"))
+                .averageBuyPrice(resultSet.getBigDecimal("average_buy_price"))
+                .shares(resultSet.getBigDecimal("shares").toBigInteger())
+                .lastUpdated(null == lastUpdated ? null : lastUpdated.toLocalDateTime())
+                .version(resultSet.getLong("version"))
+                .build();
+    }
+
+}
@@ -0,0 +1,142 @@
+package dev.rakshit.portfoliotrackingapi.repository;
+
+import dev.rakshit.portfoliotrackingapi.models.HoldingSnapshot;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.math.BigDecimal;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Reads and writes snapshots of holdings with plain JDBC. Snapshots are written in JDBC batches of
+ * portfolio.refresh.batch-size statements.
+ */
+@Repository
+public class HoldingSnapshotJdbcRepository {
+
+    private static final String SELECT_LATEST_SNAPSHOT_AT = "SELECT MAX(snapshot_at) FROM holding_snapshots";
+    private static final String SELECT_LATEST_SNAPSHOT_AT_UP_TO =
+            "SELECT MAX(snapshot_at) FROM holding_snapshots WHERE snapshot_at <= ?";
+    private static final String SELECT_SNAPSHOTS_AT =
+            "SELECT snapshot_at, ticker, shares, total_price, average_buy_price FROM holding_snapshots WHERE snapshot_at = ?";
+    private static final String SELECT_LATEST_SNAPSHOT_OF_TICKER =
+            "SELECT snapshot_at, ticker, shares, total_price, average_buy_price FROM holding_snapshots WHERE ticker = ? " +
+                    "ORDER BY snapshot_at DESC LIMIT 1";
+    private static final String SELECT_LATEST_SNAPSHOT_OF_TICKER_BEFORE =
+            "SELECT snapshot_at, ticker, shares, total_price, average_buy_price FROM holding_snapshots " +
+                    "WHERE ticker = ? AND snapshot_at < ? ORDER BY snapshot_at DESC LIMIT 1";
+    private static final String SELECT_SNAPSHOT_TIMES_FROM =
+            "SELECT DISTINCT snapshot_at FROM holding_snapshots WHERE snapshot_at >= ? ORDER BY snapshot_at";
+    private static final String INSERT_SNAPSHOT =
+            "INSERT INTO holding_snapshots (snapshot_at, ticker, shares, total_price, average_buy_price) VALUES (?, ?, ?, ?, ?)";
+    private static final String MERGE_SNAPSHOT =
+            "MERGE INTO holding_snapshots (snapshot_at, ticker, shares, total_price, average_buy_price) " +
+                    "KEY (snapshot_at, ticker) VALUES (?, ?, ?, ?, ?)";
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Value("${portfolio.refresh.batch-size:500}")
+    private int batchSize;
+
+    /**
+     * @return Time of the latest snapshot and Optional.empty() if no snapshot is taken yet
+     */
+    public Optional<LocalDateTime> findLatestSnapshotAt() {
+        return Optional.ofNullable(jdbcTemplate.queryForObject(SELECT_LATEST_SNAPSHOT_AT, Timestamp.class))
+                .map(Timestamp::toLocalDateTime);
+    }
+
+    /**
+     * @param time Time up to which snapshots are looked at
+     * @return Time of the latest snapshot taken at or before time and Optional.empty() if there is none
+     */
+    public Optional<LocalDateTime> findLatestSnapshotAt(LocalDateTime time) {
+        return Optional.ofNullable(jdbcTemplate.queryForObject(SELECT_LATEST_SNAPSHOT_AT_UP_TO, Timestamp.class,
+                Timestamp.valueOf(time)))
+                .map(Timestamp::toLocalDateTime);
+    }
+
+    /**
+     * @param snapshotAt Time of the snapshot
+     * @return Snapshots of all the tickers taken at snapshotAt
+     */
+    public List<HoldingSnapshot> findBySnapshotAt(LocalDateTime snapshotAt) {
+        return jdbcTemplate.query(SELECT_SNAPSHOTS_AT, (resultSet, rowNum) -> mapSnapshot(resultSet),
+                Timestamp.valueOf(snapshotAt));
+    }
+
+    /**
+     * @param ticker Ticker of the snapshot
+     * @return Latest snapshot of the ticker, read through the index on (ticker, snapshot_at), and Optional.empty()
+     * if it has none
+     */
+    public Optional<HoldingSnapshot> findLatestByTicker(String ticker) {
+        return jdbcTemplate.query(SELECT_LATEST_SNAPSHOT_OF_TICKER, (resultSet, rowNum) -> mapSnapshot(resultSet), ticker)
+                .stream()
+                .findFirst();
+    }
+
+    /**
+     * @param ticker Ticker of the snapshot
+     * @param before Time before which the snapshot was taken
+     * @return Latest snapshot of the ticker taken before the time, read through the index on (ticker, snapshot_at),
+     * and Optional.empty() if it has none
+     */
+    public Optional<HoldingSnapshot> findLatestByTickerBefore(String ticker, LocalDateTime before) {
+        return jdbcTemplate.query(SELECT_LATEST_SNAPSHOT_OF_TICKER_BEFORE, (resultSet, rowNum) -> mapSnapshot(resultSet),
+                ticker, Timestamp.valueOf(before))
+                .stream()
+                .findFirst();
+    }
+
+    /**
+     * @param from Time from which snapshots are looked at
+     * @return Times of the snapshots taken at or after from, in the order they were taken
+     */
+    public List<LocalDateTime> findSnapshotTimesFrom(LocalDateTime from) {
+        return jdbcTemplate.query(SELECT_SNAPSHOT_TIMES_FROM,
+                (resultSet, rowNum) -> resultSet.getTimestamp("snapshot_at").toLocalDateTime(), Timestamp.valueOf(from));
+    }
+
+    public void saveAll(Collection<HoldingSnapshot> snapshots) {
+        jdbcTemplate.batchUpdate(INSERT_SNAPSHOT, snapshots, batchSize, this::setSnapshot);
+    }
+
+    /**
+     * Writes snapshots over the ones taken at the same time for the same ticker, inserting those missing
+     *
+     * @param snapshots Snapshots to be written
+     */
+    public void saveOrReplaceAll(Collection<HoldingSnapshot> snapshots) {
+        jdbcTemplate.batchUpdate(MERGE_SNAPSHOT, snapshots, batchSize, this::setSnapshot);
+    }
+
+    private void setSnapshot(PreparedStatement preparedStatement, HoldingSnapshot snapshot) throws SQLException {
+        preparedStatement.setTimestamp(1, Timestamp.valueOf(snapshot.getSnapshotAt()));
+        preparedStatement.setString(2, snapshot.getTicker());
+        preparedStatement.setBigDecimal(3, new BigDecimal(snapshot.getShares()));
+        preparedStatement.setBigDecimal(4, snapshot.getTotalPrice());
+        preparedStatement.setBigDecimal(5, snapshot.getAverageBuyPrice());
+    }
+
+    private HoldingSnapshot mapSnapshot(ResultSet resultSet) throws SQLException {
+        return HoldingSnapshot.builder()
+                .snapshotAt(resultSet.getTimestamp("snapshot_at").toLocalDateTime())
+                .ticker(resultSet.getString("ticker"))
+                .shares(resultSet.getBigDecimal("shares").toBigInteger())
+                .totalPrice(resultSet.getBigDecimal("total_price"))
+                .averageBuyPrice(resultSet.getBigDecimal("average_buy_price"))
+                .build();
+    }
+
+}
@@ -0,0 +1,286 @@
+package dev.rakshit.portfoliotrackingapi.repository;
+
+import dev.rakshit.portfoliotrackingapi.models.Trade;
+import dev.rakshit.portfoliotrackingapi.models.TradeCursor;
+import dev.rakshit.portfoliotrackingapi.models.TradeFilter;
+import dev.rakshit.portfoliotrackingapi.models.TransactionType;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.support.GeneratedKeyHolder;
+import org.springframework.jdbc.support.KeyHolder;
+import org.springframework.stereotype.Repository;
+
+import java.math.BigDecimal;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Reads and writes trades with plain JDBC for bulk computations and bulk inserts,
+ * so that they are not tracked by the persistence context.
+ */
+@Repository
+public class TradeJdbcRepository {
+
+    private static final String SELECT_TRADES =
+            "SELECT trade_id, ticker, transaction_type, price, shares, last_updated FROM trades";
+    private static final String SELECT_TRADES_BY_TICKERS =
+            "SELECT trade_id, ticker, transaction_type, price, shares, last_updated FROM trades " +
+                    "WHERE ticker IN (:tickers) ORDER BY ticker, trade_id";
+    private static final String SELECT_LATEST_TRADES_BY_TICKERS =
+            "SELECT trade_id, ticker, transaction_type, price, shares, last_updated FROM (" +
+                    "SELECT trade_id, ticker, transaction_type, price, shares, last_updated, ROW_NUMBER() OVER (" +
+                    "PARTITION BY ticker ORDER BY last_updated DESC NULLS LAST, trade_id DESC) AS trade_rank " +
+                    "FROM trades WHERE ticker IN (:tickers)) " +
+                    "WHERE trade_rank <= :limit ORDER BY ticker, trade_id";
+    private static final String SELECT_TRADES_UP_TO =
+            "SELECT trade_id, ticker, transaction_type, price, shares, last_updated FROM trades " +
+                    "WHERE last_updated <= ? ORDER BY last_updated, trade_id";
+    private static final String SELECT_TRADES_BETWEEN =
+            "SELECT trade_id, ticker, transaction_type, price, shares, last_updated FROM trades " +
+                    "WHERE last_updated > ? AND last_updated <= ? ORDER BY last_updated, trade_id";
+    private static final String SELECT_TICKER_TRADES =
+            "SELECT trade_id, ticker, transaction_type, price, shares, last_updated FROM trades " +
+                    "WHERE ticker = ? ORDER BY last_updated, trade_id";
+    private static final String SELECT_TICKER_TRADES_AFTER =
+            "SELECT trade_id, ticker, transaction_type, price, shares, last_updated FROM trades " +
+                    "WHERE ticker = ? AND last_updated > ? ORDER BY last_updated, trade_id";
+    private static final String SELECT_TRADES_PAGE =
+            "SELECT trade_id, ticker, transaction_type, price, shares, last_updated FROM trades WHERE 1 = 1";
+    private static final String SELECT_TRADE_BY_IDEMPOTENCY_KEY =
+            "SELECT trade_id, ticker, transaction_type, price, shares, last_updated, idempotency_key, request_hash " +
+                    "FROM trades WHERE idempotency_key IN (:idempotencyKeys)";
+    private static final String INSERT_TRADE =
+            "INSERT INTO trades (trade_id, ticker, transaction_type, price, shares, last_updated, idempotency_key, request_hash) " +
+                    "VALUES (?, ?, ?, ?, ?, ?, ?, ?)";
+    private static final String INSERT_TRADE_WITH_NEXT_ID =
+            "INSERT INTO trades (trade_id, ticker, transaction_type, price, shares, last_updated, idempotency_key, request_hash) " +
+                    "VALUES (NEXT VALUE FOR hibernate_sequence, ?, ?, ?, ?, ?, ?, ?)";
+    private static final String SELECT_NEXT_TRADE_IDS =
+            "SELECT NEXT VALUE FOR hibernate_sequence FROM SYSTEM_RANGE(1, ?)";
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private NamedParameterJdbcTemplate namedParameterJdbcTemplate;
+
+    @Value("${portfolio.refresh.batch-size:500}")
+    private int batchSize;
+
+    @Value("${portfolio.query.in-batch-size:500}")
+    private int inBatchSize;
+
+    public List<Trade> findAll() {
+        return jdbcTemplate.query(SELECT_TRADES, (resultSet, rowNum) -> mapTrade(resultSet));
+    }
+
+    /**
+     * Gets trades of the given tickers, with one query per portfolio.query.in-batch-size tickers
+     *
+     * @param tickers Tickers whose trades are needed
+     * @param limit   Maximum trades per ticker, keeping the latest ones. All trades are given if null
+     * @return Trades of the tickers ordered by ticker and trade id
+     */
+    public List<Trade> findByTickers(List<String> tickers, Integer limit) {
+        List<Trade> trades = new ArrayList<>();
+        for (int from = 0; from < tickers.size(); from += inBatchSize) {
+            MapSqlParameterSource parameters = new MapSqlParameterSource()
+                    .addValue("tickers", tickers.subList(from, Math.min(from + inBatchSize, tickers.size())))
+                    .addValue("limit", limit);
+            trades.addAll(namedParameterJdbcTemplate.query(
+                    null == limit ? SELECT_TRADES_BY_TICKERS : SELECT_LATEST_TRADES_BY_TICKERS,
+                    parameters, (resultSet, rowNum) -> mapTrade(resultSet)));
+        }
+        return trades;
+    }
+
+    /**
+     * Gets the trades executed in a range of time, read through the index on (last_updated, trade_id)
+     *
+     * @param after Time after which the trades were executed. Trades from the first one are given if null
+     * @param upTo  Time up to which the trades were executed, inclusive
+     * @return Trades of the range ordered by last updated time and trade id
+     */
+    public List<Trade> findByLastUpdated(LocalDateTime after, LocalDateTime upTo) {
+        if (null == after) {
+            return jdbcTemplate.query(SELECT_TRADES_UP_TO, (resultSet, rowNum) -> mapTrade(resultSet),
+                    Timestamp.valueOf(upTo));
+        }
+        return jdbcTemplate.query(SELECT_TRADES_BETWEEN, (resultSet, rowNum) -> mapTrade(resultSet),
+                Timestamp.valueOf(after), Timestamp.valueOf(upTo));
+    }
+
+    /**
+     * Gets the trades of a ticker executed after a time, read through the index on (ticker, last_updated, trade_id)
+     *
+     * @param ticker Ticker whose trades are needed
+     * @param after  Time after which the trades were executed. All trades of the ticker are given if null
+     * @return Trades of the ticker ordered by last updated time and trade id
+     */
+    public List<Trade> findByTickerAndLastUpdatedAfter(String ticker, LocalDateTime after) {
+        if (null == after) {
+            return jdbcTemplate.query(SELECT_TICKER_TRADES, (resultSet, rowNum) -> mapTrade(resultSet), ticker);
+        }
+        return jdbcTemplate.query(SELECT_TICKER_TRADES_AFTER, (resultSet, rowNum) -> mapTrade(resultSet),
+                ticker, Timestamp.valueOf(after));
+    }
+
+    /**
+     * Gets a page of trades ordered by last updated time and trade id. The page starts right after the cursor,
+     * so that with the index on (last_updated, trade_id) every page costs the same as the first one
+     *
+     * @param filter Filters to be applied
+     * @param cursor Position after which the page starts. Page starts from the first trade if null
+     * @param limit  Maximum trades in the page
+     * @return Trades of the page
+     */
+    public List<Trade> findPage(TradeFilter filter, TradeCursor cursor, int limit) {
+        StringBuilder sql = new StringBuilder(SELECT_TRADES_PAGE);
+        MapSqlParameterSource parameters = new MapSqlParameterSource();
+        if (null != filter.getTicker()) {
+            sql.append(" AND ticker = :ticker");
+            parameters.addValue("ticker", filter.getTicker());
+        }
+        if (null != filter.getTransactionType()) {
+            sql.append(" AND transaction_type = :transactionType");
+            parameters.addValue("transactionType", filter.getTransactionType().name());
+        }
+        if (null != filter.getFrom()) {
+            sql.append(" AND last_updated >= :from");
+            parameters.addValue("from", Timestamp.valueOf(filter.getFrom()));
+        }
+        if (null != filter.getTo()) {
+            sql.append(" AND last_updated < :to");
+            parameters.addValue("to", Timestamp.valueOf(filter.getTo()));
+        }
+        if (null != cursor) {
+            sql.append(" AND last_updated >= :lastUpdated AND (last_updated > :lastUpdated OR trade_id > :tradeId)");
+            parameters.addValue("lastUpdated", Timestamp.valueOf(cursor.getLastUpdated()));
+            parameters.addValue("tradeId", cursor.getTradeId());
+        }
+        sql.append(" ORDER BY last_updated, trade_id LIMIT :limit");
+        parameters.addValue("limit", limit);
+        return namedParameterJdbcTemplate.query(sql.toString(), parameters, (resultSet, rowNum) -> mapTrade(resultSet));
+    }
+
+    /**
+     * Gets the trade added by a request with the given Idempotency-Key, through the unique index on the key.
+     * Trade is read along with it's key and the hash of the request which added it
+     *
+     * @param idempotencyKey Idempotency-Key of the request
+     * @return Trade added and Optional.empty() if no trade was added with the key
+     */
+    public Optional<Trade> findByIdempotencyKey(String idempotencyKey) {
+        return findByIdempotencyKeys(Collections.singletonList(idempotencyKey)).stream().findFirst();
+    }
+
+    /**
+     * Gets the trades added by requests with any of the given Idempotency-Keys, in batches of
+     * portfolio.query.in-batch-size keys
+     *
+     * @param idempotencyKeys Idempotency-Keys of the requests
+     * @return Trades added, along with their keys and the hashes of the requests which added them
+     */
+    public List<Trade> findByIdempotencyKeys(List<String> idempotencyKeys) {
+        List<Trade> trades = new ArrayList<>();
+        for (int from = 0; from < idempotencyKeys.size(); from += inBatchSize) {
+            MapSqlParameterSource parameters = new MapSqlParameterSource("idempotencyKeys",
+                    idempotencyKeys.subList(from, Math.min(from + inBatchSize, idempotencyKeys.size())));
+            trades.addAll(namedParameterJdbcTemplate.query(SELECT_TRADE_BY_IDEMPOTENCY_KEY, parameters, (resultSet, rowNum) -> {
+                Trade trade = mapTrade(resultSet);
+                trade.setIdempotencyKey(resultSet.getString("idempotency_key"));
+                trade.setRequestHash(resultSet.getString("request_hash"));
+                return trade;
+            }));
+        }
+        return trades;
+    }
+
+    /**
+     * Tells whether a write failed as a trade with the same Idempotency-Key was added by another request
+     * after the key was looked up
+     *
+     * @param exception Failure of the write
+     * @return true if the unique constraint on idempotency_key was violated
+     */
+    public static boolean isIdempotencyKeyTaken(DataAccessException exception) {
+        return exception instanceof DataIntegrityViolationException
+                && String.valueOf(exception.getMostSpecificCause().getMessage()).toLowerCase()
+                .contains(Trade.IDEMPOTENCY_KEY_CONSTRAINT);
+    }
+
+    /**
+     * Inserts a new trade taking it's trade id from the sequence in the same statement, so that a trade is added
+     * in one round trip to db. Trade id given, if any, is replaced by the one generated
+     *
+     * @param trade Trade to be inserted. It's trade id is set after inserting
+     * @return Trade inserted
+     */
+    public Trade save(Trade trade) {
+        KeyHolder keyHolder = new GeneratedKeyHolder();
+        jdbcTemplate.update(connection -> {
+            PreparedStatement preparedStatement = connection.prepareStatement(INSERT_TRADE_WITH_NEXT_ID, new String[]{"trade_id"});
+            preparedStatement.setString(1, trade.getTicker());
+            preparedStatement.setString(2, trade.getTransactionType().name());
+            preparedStatement.setBigDecimal(3, trade.getPrice());
+            preparedStatement.setBigDecimal(4, new BigDecimal(trade.getShares()));
+            preparedStatement.setTimestamp(5, Timestamp.valueOf(trade.getLastUpdated()));
+            preparedStatement.setString(6, trade.getIdempotencyKey());
+            preparedStatement.setString(7, trade.getRequestHash());
+            return preparedStatement;
+        }, keyHolder);
+        trade.setTradeId(keyHolder.getKey().longValue());
+        return trade;
+    }
+
+    /**
+     * Inserts new trades in JDBC batches. Trade ids are taken from the same sequence as the ones
+     * generated by JPA, so trades added either way are ordered by id in the order they were added
+     *
+     * @param trades Trades to be inserted. Their trade ids are set after inserting
+     */
+    public void saveAll(List<Trade> trades) {
+        if (trades.isEmpty()) {
+            return;
+        }
+        List<Long> tradeIds = jdbcTemplate.queryForList(SELECT_NEXT_TRADE_IDS, Long.class, trades.size());
+        for (int i = 0; i < trades.size(); i++) {
+            trades.get(i).setTradeId(tradeIds.get(i));
+        }
+        jdbcTemplate.batchUpdate(INSERT_TRADE, trades, batchSize, (preparedStatement, trade) -> {
+            preparedStatement.setLong(1, trade.getTradeId());
+            preparedStatement.setString(2, trade.getTicker());
+            preparedStatement.setString(3, trade.getTransactionType().name());
+            preparedStatement.setBigDecimal(4, trade.getPrice());
+            preparedStatement.setBigDecimal(5, new BigDecimal(trade.getShares()));
+            preparedStatement.setTimestamp(6, null == trade.getLastUpdated() ? null : Timestamp.valueOf(trade.getLastUpdated()));
+            preparedStatement.setString(7, trade.getIdempotencyKey());
+            preparedStatement.setString(8, trade.getRequestHash());
+        });
+    }
+
+    private Trade mapTrade(ResultSet resultSet) throws SQLException {
+        Timestamp lastUpdated = resultSet.getTimestamp("last_updated");
+        return Trade.builder()
+                .tradeId(resultSet.getLong("trade_id"))
+                .ticker(resultSet.getString("ticker"))
+                .transactionType(TransactionType.valueOf(resultSet.getString("transaction_type")))
+                .price(resultSet.getBigDecimal("price"))
+                .shares(resultSet.getBigDecimal("shares").toBigInteger())
+                .lastUpdated(null == lastUpdated ? null : lastUpdated.toLocalDateTime())
+                .build();
+    }
+
+}
@@ -2,13 +2,37 @@ package dev.rakshit.portfoliotrackingapi.repository;
 
 import dev.rakshit.portfoliotrackingapi.models.Trade;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.stereotype.Repository;
 
+import javax.persistence.QueryHint;
 import java.util.List;
+import java.util.stream.Stream;
+
+import static org.hibernate.jpa.QueryHints.HINT_FETCH_SIZE;
+import static org.hibernate.jpa.QueryHints.HINT_READONLY;
 
 @Repository
 public interface TradeRepository extends JpaRepository<Trade, Long> {
 
+    String EXPORT_FETCH_SIZE = "500";
+
     List<Trade> findByTicker(String ticker);
 
+    List<Trade> findByTradeIdGreaterThanOrderByTradeId(Long tradeId);
+
+    /**
+     * Streams all trades ordered by trade id, reading them from db EXPORT_FETCH_SIZE rows at a time.
+     * Has to be consumed and closed within a transaction
+     *
+     * @return Stream of all trades
+     */
+    @QueryHints({
+            @QueryHint(name = HINT_FETCH_SIZE, value = EXPORT_FETCH_SIZE),
+            @QueryHint(name = HINT_READONLY, value = "true")
+    })
+    @Query("SELECT t FROM Trade t ORDER BY t.tradeId")
+    Stream<Trade> streamAll();
+
 }
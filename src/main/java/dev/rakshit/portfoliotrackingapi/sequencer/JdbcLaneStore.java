@@ -0,0 +1,77 @@
+package dev.rakshit.portfoliotrackingapi.sequencer;
+
+import dev.rakshit.portfoliotrackingapi.cache.HoldingCache;
+import dev.rakshit.portfoliotrackingapi.lock.TickerLocks;
+import dev.rakshit.portfoliotrackingapi.models.Holding;
+import dev.rakshit.portfoliotrackingapi.models.Trade;
+import dev.rakshit.portfoliotrackingapi.repository.HoldingJdbcRepository;
+import dev.rakshit.portfoliotrackingapi.repository.TradeJdbcRepository;
+import dev.rakshit.portfoliotrackingapi.service.HoldingSnapshotService;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Writes groups of trades and holdings in JDBC batches in one transaction. Holdings are written only if their
+ * version is unchanged in db. Each write holds the ticker locks of it's holdings, so it never overlaps a refresh
+ * or a locked trade write of the same tickers, and drops their cached holdings before releasing the locks.
+ * Holdings not yet written behind to db are written before they are read or written here. Snapshots taken after
+ * the execution time of trades written are corrected in the same transaction.
+ */
+public class JdbcLaneStore implements LaneStore {
+
+    private final TransactionTemplate transactionTemplate;
+    private final TickerLocks tickerLocks;
+    private final TradeJdbcRepository tradeJdbcRepository;
+    private final HoldingJdbcRepository holdingJdbcRepository;
+    private final HoldingCache holdingCache;
+    private final HoldingSnapshotService holdingSnapshotService;
+
+    public JdbcLaneStore(TransactionTemplate transactionTemplate, TickerLocks tickerLocks,
+                         TradeJdbcRepository tradeJdbcRepository, HoldingJdbcRepository holdingJdbcRepository,
+                         HoldingCache holdingCache, HoldingSnapshotService holdingSnapshotService) {
+        this.transactionTemplate = transactionTemplate;
+        this.tickerLocks = tickerLocks;
+        this.tradeJdbcRepository = tradeJdbcRepository;
+        this.holdingJdbcRepository = holdingJdbcRepository;
+        this.holdingCache = holdingCache;
+        this.holdingSnapshotService = holdingSnapshotService;
+    }
+
+    @Override
+    public List<Holding> findHoldings(Collection<String> tickers) {
+        holdingCache.flush(tickers);
+        return holdingJdbcRepository.findAllById(tickers);
+    }
+
+    @Override
+    public List<Trade> findTrades(Collection<String> idempotencyKeys) {
+        return tradeJdbcRepository.findByIdempotencyKeys(new ArrayList<>(idempotencyKeys));
+    }
+
+    @Override
+    public void write(List<Trade> trades, List<Holding> holdings, List<Holding> closedHoldings) {
+        Set<String> tickers = new LinkedHashSet<>();
+        trades.forEach(trade -> tickers.add(trade.getTicker()));
+        tickerLocks.withLocks(tickers, () -> {
+            holdingCache.flush(tickers);
+            try {
+                return transactionTemplate.execute(status -> {
+                    tradeJdbcRepository.saveAll(trades);
+                    holdingSnapshotService.applyTrades(trades, Collections.emptyList());
+                    holdingJdbcRepository.saveAllOfVersion(holdings);
+                    holdingJdbcRepository.deleteAllOfVersion(closedHoldings);
+                    return null;
+                });
+            } finally {
+                tickers.forEach(holdingCache::evict);
+            }
+        });
+    }
+
+}
@@ -0,0 +1,42 @@
+package dev.rakshit.portfoliotrackingapi.sequencer;
+
+import dev.rakshit.portfoliotrackingapi.models.Holding;
+import dev.rakshit.portfoliotrackingapi.models.Trade;
+
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Storage of the trades and holdings written by the lanes of a TradeSequencer
+ */
+public interface LaneStore {
+
+    /**
+     * Gets holdings of the given tickers along with their versions
+     *
+     * @param tickers Tickers of the holdings
+     * @return Holdings present for the tickers
+     */
+    List<Holding> findHoldings(Collection<String> tickers);
+
+    /**
+     * Gets trades already added with any of the given Idempotency-Keys
+     *
+     * @param idempotencyKeys Idempotency-Keys of the trades waiting in a group
+     * @return Trades added with the keys, along with their keys and the hashes of the requests which added them
+     */
+    List<Trade> findTrades(Collection<String> idempotencyKeys);
+
+    /**
+     * Writes a group of trades along with the holdings they changed, all or nothing. Trade ids and holding
+     * versions are set to the ones written. Throws ConcurrencyFailureException or DataIntegrityViolationException
+     * if any holding was changed after it was read, or if the Idempotency-Key of a trade was taken after it was
+     * looked up.
+     *
+     * @param trades         Trades to be added
+     * @param holdings       Holdings to be saved. Holdings without version are new
+     * @param closedHoldings Holdings with no shares left, to be deleted
+     */
+    void write(List<Trade> trades, List<Holding> holdings, List<Holding> closedHoldings);
+
+}
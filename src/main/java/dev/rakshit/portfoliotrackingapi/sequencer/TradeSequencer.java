@@ -0,0 +1,342 @@
+package dev.rakshit.portfoliotrackingapi.sequencer;
+
+import dev.rakshit.portfoliotrackingapi.exceptions.ConflictException;
+import dev.rakshit.portfoliotrackingapi.exceptions.InvalidTransactionException;
+import dev.rakshit.portfoliotrackingapi.exceptions.InvalidTransactionException.Reason;
+import dev.rakshit.portfoliotrackingapi.exceptions.ServiceUnavailableException;
+import dev.rakshit.portfoliotrackingapi.exceptions.UnprocessableEntityException;
+import dev.rakshit.portfoliotrackingapi.models.Holding;
+import dev.rakshit.portfoliotrackingapi.models.Trade;
+import dev.rakshit.portfoliotrackingapi.models.TransactionType;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.ConcurrencyFailureException;
+import org.springframework.dao.DataIntegrityViolationException;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import static dev.rakshit.portfoliotrackingapi.util.HoldingUtil.addTradeInOrder;
+import static dev.rakshit.portfoliotrackingapi.util.IdempotencyUtil.checkSameRequest;
+
+/**
+ * Adds trades on a fixed number of single threaded lanes. Each ticker always goes to the same lane, so the lane
+ * is the only writer of it's tickers' holdings. Lanes keep the holdings of their tickers in memory and apply
+ * trades to them without locking. Trades waiting in a lane are taken together, up to group-size at a time,
+ * and written along with their holdings in one transaction. The future of a trade completes once it's group
+ * is committed. A group is applied again on the holdings read from db if any of them was changed by someone else,
+ * or if a trade was rejected on a holding which was not just read from db. A trade without an execution time is
+ * executed when it's lane first applies it, so trades of a ticker are executed in the order they are applied.
+ * Trades whose Idempotency-Key was already added, or is repeated within the group, are left out of the group before
+ * it is applied, and complete with the trade added with the key.
+ */
+@Slf4j
+public class TradeSequencer {
+
+    private static final long POLL_MILLIS = 100L;
+
+    private final LaneStore laneStore;
+    private final Lane[] lanes;
+    private final int groupSize;
+    private final int maxAttempts;
+    private volatile boolean running;
+
+    /**
+     * @param laneStore     Store of trades and holdings
+     * @param laneCount     Number of lanes, each running on it's own thread
+     * @param queueCapacity Trades which can wait in a lane. Trades submitted to a full lane are rejected
+     * @param groupSize     Maximum trades written in one transaction
+     * @param maxAttempts   Times a group is applied before it's trades are failed with ConflictException
+     */
+    public TradeSequencer(LaneStore laneStore, int laneCount, int queueCapacity, int groupSize, int maxAttempts) {
+        if (0 >= laneCount || 0 >= queueCapacity || 0 >= groupSize || 0 >= maxAttempts) {
+            throw new IllegalArgumentException("Lanes, queue capacity, group size and attempts should be greater than 0");
+        }
+        this.laneStore = laneStore;
+        this.groupSize = groupSize;
+        this.maxAttempts = maxAttempts;
+        this.lanes = new Lane[laneCount];
+        for (int index = 0; index < laneCount; index++) {
+            lanes[index] = new Lane(index, queueCapacity);
+        }
+    }
+
+    /**
+     * Starts the threads of all lanes
+     */
+    public synchronized void start() {
+        running = true;
+        for (Lane lane : lanes) {
+            lane.thread.start();
+        }
+        log.info("Started {} trade lanes", lanes.length);
+    }
+
+    /**
+     * Stops taking trades and waits for the lanes to write the trades already taken.
+     * Trades which could not be written in time are failed
+     */
+    public synchronized void shutdown() {
+        running = false;
+        for (Lane lane : lanes) {
+            try {
+                lane.thread.join(TimeUnit.SECONDS.toMillis(30));
+            } catch (InterruptedException interruptedException) {
+                Thread.currentThread().interrupt();
+            }
+            List<SequencedTrade> pending = new ArrayList<>();
+            lane.queue.drainTo(pending);
+            pending.forEach(item -> item.future.completeExceptionally(
+                    new ServiceUnavailableException("Trade was not added as the service is stopping")));
+        }
+        log.info("Stopped {} trade lanes", lanes.length);
+    }
+
+    /**
+     * Queues trade on the lane of it's ticker
+     *
+     * @param trade Trade to be added
+     * @return Future completing with the added trade once it is written to db. It fails with
+     * InvalidTransactionException if the trade cannot be added and ServiceUnavailableException if the lane is full
+     */
+    public CompletableFuture<Trade> submit(Trade trade) {
+        SequencedTrade item = new SequencedTrade(trade);
+        if (!running || !lanes[laneOf(trade.getTicker())].queue.offer(item)) {
+            item.future.completeExceptionally(
+                    new ServiceUnavailableException("Too many trades are waiting to be added, please retry"));
+        }
+        return item.future;
+    }
+
+    /**
+     * Gives the index of the lane of a ticker
+     *
+     * @param ticker Ticker of the lane
+     * @return Index between 0 and the number of lanes
+     */
+    public int laneOf(String ticker) {
+        int hash = ticker.hashCode();
+        return Math.floorMod(hash ^ (hash >>> 16), lanes.length);
+    }
+
+    /**
+     * Gives the number of trades waiting in all lanes
+     */
+    public int getQueuedTrades() {
+        int queuedTrades = 0;
+        for (Lane lane : lanes) {
+            queuedTrades += lane.queue.size();
+        }
+        return queuedTrades;
+    }
+
+    /**
+     * Single writer of the holdings of it's tickers
+     */
+    private class Lane implements Runnable {
+        private final BlockingQueue<SequencedTrade> queue;
+        private final Thread thread;
+        private final Map<String, Holding> holdings = new HashMap<>();
+
+        private Lane(int index, int queueCapacity) {
+            queue = new ArrayBlockingQueue<>(queueCapacity);
+            thread = new Thread(this, "trade-lane-" + index);
+        }
+
+        @Override
+        public void run() {
+            List<SequencedTrade> group = new ArrayList<>(groupSize);
+            while (running || !queue.isEmpty()) {
+                try {
+                    SequencedTrade first = queue.poll(POLL_MILLIS, TimeUnit.MILLISECONDS);
+                    if (null == first) {
+                        continue;
+                    }
+                    group.add(first);
+                    queue.drainTo(group, groupSize - 1);
+                    write(group);
+                } catch (InterruptedException interruptedException) {
+                    Thread.currentThread().interrupt();
+                    return;
+                } catch (RuntimeException exception) {
+                    log.error("Could not add trades on {}", thread.getName(), exception);
+                    group.forEach(item -> item.future.completeExceptionally(exception));
+                } finally {
+                    group.clear();
+                }
+            }
+        }
+
+        /**
+         * Writes a group, applying it again on the holdings read from db if any of them was changed by someone else
+         */
+        private void write(List<SequencedTrade> group) {
+            Set<String> tickers = group.stream()
+                    .map(item -> item.trade.getTicker())
+                    .collect(Collectors.toCollection(LinkedHashSet::new));
+            for (int attempt = 1; ; attempt++) {
+                try {
+                    applyAndWrite(group, tickers, findStoredTrades(group), true);
+                    return;
+                } catch (ConcurrencyFailureException | DataIntegrityViolationException exception) {
+                    tickers.forEach(holdings::remove);
+                    if (maxAttempts <= attempt) {
+                        ConflictException conflictException =
+                                new ConflictException("Holding was changed by another request, please retry", exception);
+                        group.forEach(item -> item.future.completeExceptionally(conflictException));
+                        return;
+                    }
+                    log.warn("Holding of tickers : {} was changed by another request, retrying. Attempt : {}", tickers, attempt);
+                } catch (RuntimeException exception) {
+                    tickers.forEach(holdings::remove);
+                    throw exception;
+                }
+            }
+        }
+
+        /**
+         * Gets the trades already added with the Idempotency-Keys of a group. They are looked up on every attempt,
+         * as a write fails if another request takes one of the keys in the meantime
+         */
+        private Map<String, Trade> findStoredTrades(List<SequencedTrade> group) {
+            Set<String> idempotencyKeys = group.stream()
+                    .map(item -> item.trade.getIdempotencyKey())
+                    .filter(Objects::nonNull)
+                    .collect(Collectors.toCollection(LinkedHashSet::new));
+            if (idempotencyKeys.isEmpty()) {
+                return Collections.emptyMap();
+            }
+            return laneStore.findTrades(idempotencyKeys).stream()
+                    .collect(Collectors.toMap(Trade::getIdempotencyKey, trade -> trade));
+        }
+
+        /**
+         * Applies trades to copies of the lane's holdings and writes them. Holdings of the lane are replaced
+         * by the copies only once they are written, so a failed write leaves them unchanged
+         *
+         * @param storedTrades    Trades already added by Idempotency-Key, which are not applied again
+         * @param recheckRejected Whether to apply the group again if a trade is rejected on a holding kept in memory
+         */
+        private void applyAndWrite(List<SequencedTrade> group, Set<String> tickers, Map<String, Trade> storedTrades,
+                                   boolean recheckRejected) {
+            List<String> missingTickers = tickers.stream()
+                    .filter(ticker -> !holdings.containsKey(ticker))
+                    .collect(Collectors.toList());
+            if (!missingTickers.isEmpty()) {
+                Map<String, Holding> loadedHoldings = laneStore.findHoldings(missingTickers).stream()
+                        .collect(Collectors.toMap(Holding::getTicker, holding -> holding));
+                missingTickers.forEach(ticker -> holdings.put(ticker, loadedHoldings.getOrDefault(ticker, getEmptyHolding(ticker))));
+            }
+            Map<String, Holding> changedHoldings = new LinkedHashMap<>();
+            Map<String, SequencedTrade> firstOfKeys = new HashMap<>();
+            List<Trade> trades = new ArrayList<>();
+            for (SequencedTrade item : group) {
+                item.failure = null;
+                item.trade.setTradeId(null);
+                String idempotencyKey = item.trade.getIdempotencyKey();
+                if (null != idempotencyKey
+                        && (storedTrades.containsKey(idempotencyKey) || null != firstOfKeys.putIfAbsent(idempotencyKey, item))) {
+                    continue;
+                }
+                Holding holding = changedHoldings.getOrDefault(item.trade.getTicker(),
+                        holdings.get(item.trade.getTicker()).toBuilder().build());
+                try {
+                    if (TransactionType.SELL == item.trade.getTransactionType() && BigInteger.ZERO.equals(holding.getShares())) {
+                        throw new InvalidTransactionException(Reason.NO_SHARES_TO_SELL);
+                    }
+                    if (null == item.trade.getLastUpdated()) {
+                        item.trade.setLastUpdated(LocalDateTime.now());
+                    }
+                    addTradeInOrder(holding, item.trade);
+                    changedHoldings.put(holding.getTicker(), holding);
+                    trades.add(item.trade);
+                } catch (InvalidTransactionException invalidTransactionException) {
+                    item.failure = invalidTransactionException;
+                }
+            }
+            List<String> rejectedTickers = group.stream()
+                    .filter(item -> null != item.failure && !missingTickers.contains(item.trade.getTicker()))
+                    .map(item -> item.trade.getTicker())
+                    .collect(Collectors.toList());
+            if (recheckRejected && !rejectedTickers.isEmpty()) {
+                rejectedTickers.forEach(holdings::remove);
+                applyAndWrite(group, tickers, storedTrades, false);
+                return;
+            }
+            Map<Boolean, List<Holding>> holdingsByClosed = changedHoldings.values().stream()
+                    .collect(Collectors.partitioningBy(holding -> BigInteger.ZERO.equals(holding.getShares())));
+            List<Holding> closedHoldings = holdingsByClosed.get(true).stream()
+                    .filter(holding -> null != holding.getVersion())
+                    .collect(Collectors.toList());
+            if (!trades.isEmpty()) {
+                laneStore.write(trades, holdingsByClosed.get(false), closedHoldings);
+            }
+            holdingsByClosed.get(false).forEach(holding -> holdings.put(holding.getTicker(), holding));
+            holdingsByClosed.get(true).forEach(holding -> holdings.put(holding.getTicker(), getEmptyHolding(holding.getTicker())));
+            group.forEach(item -> complete(item, storedTrades, firstOfKeys));
+        }
+
+        /**
+         * Completes the future of a trade. A trade whose Idempotency-Key was already added, or taken by an earlier
+         * trade of the group, completes like the trade which took the key, unless it was sent with another body
+         */
+        private void complete(SequencedTrade item, Map<String, Trade> storedTrades, Map<String, SequencedTrade> firstOfKeys) {
+            String idempotencyKey = item.trade.getIdempotencyKey();
+            Trade storedTrade = null == idempotencyKey ? null : storedTrades.get(idempotencyKey);
+            SequencedTrade first = null == idempotencyKey ? item : firstOfKeys.getOrDefault(idempotencyKey, item);
+            try {
+                if (null != storedTrade) {
+                    checkSameRequest(item.trade.getRequestHash(), storedTrade.getRequestHash());
+                    item.future.complete(storedTrade);
+                    return;
+                }
+                checkSameRequest(item.trade.getRequestHash(), first.trade.getRequestHash());
+            } catch (UnprocessableEntityException unprocessableEntityException) {
+                item.future.completeExceptionally(unprocessableEntityException);
+                return;
+            }
+            if (null == first.failure) {
+                item.future.complete(first.trade);
+            } else {
+                item.future.completeExceptionally(first.failure);
+            }
+        }
+    }
+
+    private static Holding getEmptyHolding(String ticker) {
+        return Holding.builder()
+                .ticker(ticker)
+                .shares(BigInteger.ZERO)
+                .totalPrice(BigDecimal.ZERO)
+                .averageBuyPrice(BigDecimal.ZERO)
+                .build();
+    }
+
+    /**
+     * Trade waiting in a lane along with the future of the caller
+     */
+    private static class SequencedTrade {
+        private final Trade trade;
+        private final CompletableFuture<Trade> future = new CompletableFuture<>();
+        private InvalidTransactionException failure;
+
+        private SequencedTrade(Trade trade) {
+            this.trade = trade;
+        }
+    }
+
+}
@@ -0,0 +1,259 @@
+package dev.rakshit.portfoliotrackingapi.service;
+
+import dev.rakshit.portfoliotrackingapi.cache.HoldingCache;
+import dev.rakshit.portfoliotrackingapi.lock.TickerLocks;
+import dev.rakshit.portfoliotrackingapi.models.Holding;
+import dev.rakshit.portfoliotrackingapi.models.HoldingCheckpoint;
+import dev.rakshit.portfoliotrackingapi.models.Trade;
+import dev.rakshit.portfoliotrackingapi.repository.HoldingCheckpointRepository;
+import dev.rakshit.portfoliotrackingapi.repository.HoldingJdbcRepository;
+import dev.rakshit.portfoliotrackingapi.repository.HoldingRepository;
+import dev.rakshit.portfoliotrackingapi.repository.TradeJdbcRepository;
+import dev.rakshit.portfoliotrackingapi.repository.TradeRepository;
+import dev.rakshit.portfoliotrackingapi.util.HoldingUtil;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+import static dev.rakshit.portfoliotrackingapi.util.HoldingUtil.*;
+
+/**
+ * Keeps holdings up to date by replaying only the trades added after the last checkpoint of each ticker.
+ * Every trade with id up to the watermark is covered by the checkpoint of its ticker. The watermark is kept
+ * in memory, so the first refresh after a restart scans the trades once and skips the ones already covered.
+ * Refreshes hold the locks of the tickers they may write, so that trades are not written while they are replayed,
+ * and drop the cached holdings of those tickers before releasing the locks.
+ */
+@Slf4j
+@Service
+public class HoldingCheckpointService {
+
+    @Autowired
+    private TradeRepository tradeRepository;
+
+    @Autowired
+    private HoldingRepository holdingRepository;
+
+    @Autowired
+    private HoldingCheckpointRepository holdingCheckpointRepository;
+
+    @Autowired
+    private TradeJdbcRepository tradeJdbcRepository;
+
+    @Autowired
+    private HoldingJdbcRepository holdingJdbcRepository;
+
+    @Autowired
+    private ForkJoinPool holdingRefreshPool;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private TickerLocks tickerLocks;
+
+    @Autowired
+    private HoldingCache holdingCache;
+
+    private final Object refreshLock = new Object();
+
+    private long watermark = 0L;
+
+    /**
+     * Refreshes the holdings of tickers having trades added after their checkpoint
+     * and rebuilds the holdings of tickers whose checkpoint was invalidated.
+     */
+    public void refreshHoldings() {
+        synchronized (refreshLock) {
+            watermark = tickerLocks.withAllLocks(() -> evictingAll(() -> transactionTemplate.execute(status -> {
+                holdingCheckpointRepository.findByStaleTrue()
+                        .forEach(checkpoint -> rebuildCheckpoint(checkpoint.getTicker()));
+                return replayTradesAfter(watermark);
+            })));
+        }
+    }
+
+    /**
+     * Rebuilds the checkpoints and holdings of all tickers by replaying all trades in execution order. Tickers are
+     * rebuilt in parallel on the holding refresh pool and the results are written in JDBC batches.
+     * Holdings of tickers with no shares left are deleted.
+     */
+    public void rebuildHoldings() {
+        synchronized (refreshLock) {
+            watermark = tickerLocks.withAllLocks(() -> evictingAll(() -> transactionTemplate.execute(status -> {
+                List<HoldingCheckpoint> checkpoints = getCheckpointsFromTrades(tradeJdbcRepository.findAll(), holdingRefreshPool);
+                Map<String, Holding> holdings = checkpoints.stream()
+                        .map(HoldingUtil::getHoldingFromCheckpoint)
+                        .filter(Optional::isPresent)
+                        .map(Optional::get)
+                        .collect(Collectors.toMap(Holding::getTicker, Function.identity()));
+                List<String> closedTickers = holdingJdbcRepository.findAllTickers().stream()
+                        .filter(ticker -> !holdings.containsKey(ticker))
+                        .collect(Collectors.toList());
+                holdingJdbcRepository.replaceCheckpoints(checkpoints);
+                holdingJdbcRepository.saveAll(holdings.values());
+                holdingJdbcRepository.deleteAllById(closedTickers);
+                log.info("Rebuilt holdings of {} tickers and deleted {} closed holdings", holdings.size(), closedTickers.size());
+                return checkpoints.stream()
+                        .mapToLong(HoldingCheckpoint::getLastTradeId)
+                        .max()
+                        .orElse(0L);
+            })));
+        }
+    }
+
+    /**
+     * Rebuilds the checkpoints and holdings of all tickers from all trades inside the db. Trades of each ticker
+     * are numbered in execution order and replayed one after another into the checkpoints by a recursive
+     * INSERT ... SELECT, and holdings are merged from the checkpoints by one MERGE, so no trade is read into memory.
+     * Holdings of tickers with no shares left are deleted.
+     */
+    public void rebuildHoldingsInDb() {
+        synchronized (refreshLock) {
+            watermark = tickerLocks.withAllLocks(() -> evictingAll(() -> transactionTemplate.execute(status -> {
+                int checkpoints = holdingJdbcRepository.replaceCheckpointsFromTrades();
+                int[] holdings = holdingJdbcRepository.replaceHoldingsFromCheckpoints();
+                log.info("Rebuilt checkpoints of {} tickers and holdings of {} tickers in db and deleted {} closed holdings",
+                        checkpoints, holdings[0], holdings[1]);
+                return holdingJdbcRepository.findLastCheckpointedTradeId();
+            })));
+        }
+    }
+
+    /**
+     * Rebuilds the checkpoint and holding of a ticker from all of it's trades.
+     *
+     * @param ticker Ticker for which holding is to be rebuilt
+     * @return Holding after rebuilding and Optional.empty() if no shares are left
+     */
+    public Optional<Holding> refreshHolding(String ticker) {
+        synchronized (refreshLock) {
+            return tickerLocks.withLock(ticker, () -> {
+                try {
+                    holdingCache.flush(Collections.singleton(ticker));
+                    return transactionTemplate.execute(status -> rebuildCheckpoint(ticker));
+                } finally {
+                    holdingCache.evict(ticker);
+                }
+            });
+        }
+    }
+
+    /**
+     * Marks the checkpoint of a ticker as stale, so that it gets rebuilt on next refresh.
+     * To be called whenever an already added trade of the ticker is updated or deleted.
+     *
+     * @param ticker Ticker whose checkpoint is to be invalidated
+     */
+    public void invalidateCheckpoint(String ticker) {
+        HoldingCheckpoint checkpoint = holdingCheckpointRepository.findById(ticker)
+                .orElseGet(() -> getEmptyCheckpoint(ticker));
+        checkpoint.setStale(true);
+        holdingCheckpointRepository.save(checkpoint);
+    }
+
+    /**
+     * Runs a refresh of all tickers and drops all cached holdings after it, whether it succeeds or not.
+     * Holdings not yet written behind to db are written before it
+     */
+    private <T> T evictingAll(Supplier<T> refresh) {
+        holdingCache.flushAll();
+        try {
+            return refresh.get();
+        } finally {
+            holdingCache.evictAll();
+        }
+    }
+
+    /**
+     * Applies the trades with id greater than tradeId to the checkpoints of their tickers in execution order.
+     * Trades already covered by the checkpoint of their ticker are skipped. Checkpoint of a ticker having a trade
+     * executed before the latest trade covered is rebuilt from all of it's trades.
+     *
+     * @param tradeId Trade id after which the trades are to be replayed
+     * @return Highest trade id replayed
+     */
+    private long replayTradesAfter(long tradeId) {
+        List<Trade> trades = tradeRepository.findByTradeIdGreaterThanOrderByTradeId(tradeId);
+        if (trades.isEmpty()) {
+            return tradeId;
+        }
+        Map<String, List<Trade>> tradesByTicker = trades.stream()
+                .collect(Collectors.groupingBy(Trade::getTicker));
+        Map<String, HoldingCheckpoint> checkpoints = holdingCheckpointRepository.findAllById(tradesByTicker.keySet())
+                .stream()
+                .collect(Collectors.toMap(HoldingCheckpoint::getTicker, Function.identity()));
+        tradesByTicker.forEach((ticker, tickerTrades) -> {
+            HoldingCheckpoint checkpoint = Optional.ofNullable(checkpoints.get(ticker))
+                    .orElseGet(() -> getEmptyCheckpoint(ticker));
+            Optional<HoldingCheckpoint> newCheckpoint = addTradesToCheckpoint(checkpoint, tickerTrades);
+            if (newCheckpoint.isPresent()) {
+                saveCheckpoint(newCheckpoint.get());
+            } else {
+                rebuildCheckpoint(ticker);
+            }
+        });
+        log.info("Replayed {} trades of {} tickers after trade id : {}", trades.size(), tradesByTicker.size(), tradeId);
+        return trades.get(trades.size() - 1).getTradeId();
+    }
+
+    /**
+     * Rebuilds the checkpoint of a ticker from all of it's trades and saves the holding obtained from it.
+     *
+     * @param ticker Ticker for which checkpoint is to be rebuilt
+     * @return Holding obtained from the checkpoint and Optional.empty() if no shares are left
+     */
+    private Optional<Holding> rebuildCheckpoint(String ticker) {
+        List<Trade> trades = tradeJdbcRepository.findByTickerAndLastUpdatedAfter(ticker, null);
+        if (trades.isEmpty()) {
+            if (holdingCheckpointRepository.existsById(ticker)) {
+                holdingCheckpointRepository.deleteById(ticker);
+            }
+            return saveHolding(ticker, Optional.empty());
+        }
+        return saveCheckpoint(getCheckpointFromTrades(ticker, trades));
+    }
+
+    /**
+     * Saves checkpoint and the holding obtained from it
+     *
+     * @param checkpoint Checkpoint to be saved
+     * @return Holding obtained from the checkpoint and Optional.empty() if no shares are left
+     */
+    private Optional<Holding> saveCheckpoint(HoldingCheckpoint checkpoint) {
+        checkpoint.setStale(false);
+        holdingCheckpointRepository.save(checkpoint);
+        return saveHolding(checkpoint.getTicker(), getHoldingFromCheckpoint(checkpoint));
+    }
+
+    /**
+     * Saves or updates holding in db. Deletes the holding of the ticker from db if no shares are left.
+     * Holding is calculated from trades, so it replaces the one in db whatever it's version is
+     *
+     * @param ticker  Ticker of the holding
+     * @param holding Holding to be saved
+     * @return Holding saved into db and Optional.empty() if no shares are left
+     */
+    private Optional<Holding> saveHolding(String ticker, Optional<Holding> holding) {
+        if (!holding.isPresent()) {
+            if (holdingRepository.existsById(ticker)) {
+                holdingRepository.deleteById(ticker);
+            }
+            return Optional.empty();
+        }
+        Holding newHolding = holding.get();
+        holdingRepository.findById(ticker).ifPresent(currentHolding -> newHolding.setVersion(currentHolding.getVersion()));
+        return Optional.of(holdingRepository.save(newHolding));
+    }
+
+}
@@ -0,0 +1,62 @@
+package dev.rakshit.portfoliotrackingapi.service;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.time.Duration;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Takes snapshots of holdings every poll-interval on a thread of it's own. Snapshots are only taken for intervals
+ * which are over, so polling more often than portfolio.snapshots.interval only shortens the lag after an interval ends.
+ */
+@Slf4j
+public class HoldingSnapshotScheduler {
+
+    private final HoldingSnapshotService holdingSnapshotService;
+    private final Duration pollInterval;
+    private ScheduledExecutorService scheduler;
+
+    /**
+     * @param pollInterval Time between checks for intervals which are over
+     */
+    public HoldingSnapshotScheduler(HoldingSnapshotService holdingSnapshotService, Duration pollInterval) {
+        if (pollInterval.isNegative() || pollInterval.isZero()) {
+            throw new IllegalArgumentException("Poll interval should be greater than 0");
+        }
+        this.holdingSnapshotService = holdingSnapshotService;
+        this.pollInterval = pollInterval;
+    }
+
+    /**
+     * Starts taking snapshots, right away and then every poll-interval
+     */
+    public synchronized void start() {
+        scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> new Thread(runnable, "holding-snapshots"));
+        scheduler.scheduleWithFixedDelay(this::takeSnapshotsQuietly, 0, pollInterval.toMillis(), TimeUnit.MILLISECONDS);
+        log.info("Started snapshots of holdings, polling every {}", pollInterval);
+    }
+
+    /**
+     * Stops taking snapshots, waiting for the one being taken
+     */
+    public synchronized void shutdown() {
+        scheduler.shutdown();
+        try {
+            scheduler.awaitTermination(30, TimeUnit.SECONDS);
+        } catch (InterruptedException interruptedException) {
+            Thread.currentThread().interrupt();
+        }
+        log.info("Stopped snapshots of holdings");
+    }
+
+    private void takeSnapshotsQuietly() {
+        try {
+            holdingSnapshotService.takeSnapshots();
+        } catch (RuntimeException exception) {
+            log.error("Could not take snapshots of holdings, they will be taken on the next poll", exception);
+        }
+    }
+
+}
@@ -0,0 +1,266 @@
+package dev.rakshit.portfoliotrackingapi.service;
+
+import dev.rakshit.portfoliotrackingapi.lock.TickerLocks;
+import dev.rakshit.portfoliotrackingapi.models.Holding;
+import dev.rakshit.portfoliotrackingapi.models.HoldingSnapshot;
+import dev.rakshit.portfoliotrackingapi.models.Trade;
+import dev.rakshit.portfoliotrackingapi.repository.HoldingSnapshotJdbcRepository;
+import dev.rakshit.portfoliotrackingapi.repository.TradeJdbcRepository;
+import dev.rakshit.portfoliotrackingapi.util.HoldingUtil;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PostConstruct;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.TreeMap;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static dev.rakshit.portfoliotrackingapi.util.HoldingUtil.addTradeInOrder;
+
+/**
+ * Gives holdings as they stood at any past time from snapshots of the position of every ticker. A snapshot is taken
+ * at the end of each portfolio.snapshots.interval having trades, so holdings as of a time are obtained from the
+ * latest snapshot before it and the trades of at most one interval after that snapshot, whatever the number of trades.
+ * Trades are applied one after the other with HoldingUtil.addTradeInOrder, in the order they were executed and
+ * then by trade id, as trades added in that order are applied to the holdings. Snapshots taken after the execution
+ * time of a trade which is added, updated or deleted later are taken again by the write of the trade, under the
+ * locks of it's tickers, from the snapshot of the ticker before the trade. Snapshots are taken holding all the
+ * ticker locks, while holdings as of a time are read without any lock, in a read only repeatable read transaction.
+ * As every snapshot stays correct, the holding of a ticker whose past trades are changed is recomputed from it's
+ * latest snapshot and the trades executed after it, rather than from all of it's trades.
+ */
+@Slf4j
+@Service
+public class HoldingSnapshotService {
+
+    private static final LocalDateTime ORIGIN = LocalDateTime.of(1970, 1, 1, 0, 0);
+
+    @Autowired
+    private HoldingSnapshotJdbcRepository holdingSnapshotJdbcRepository;
+
+    @Autowired
+    private TradeJdbcRepository tradeJdbcRepository;
+
+    @Autowired
+    private TickerLocks tickerLocks;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Value("${portfolio.snapshots.interval:P1D}")
+    private Duration interval;
+
+    private TransactionTemplate readOnlyTransactionTemplate;
+
+    @PostConstruct
+    private void init() {
+        readOnlyTransactionTemplate = new TransactionTemplate(transactionManager);
+        readOnlyTransactionTemplate.setReadOnly(true);
+        readOnlyTransactionTemplate.setIsolationLevel(TransactionDefinition.ISOLATION_REPEATABLE_READ);
+    }
+
+    /**
+     * Takes snapshots of all the tickers at the end of each interval having trades, from the latest snapshot
+     * up to the end of the last interval which is over
+     *
+     * @return Number of snapshots taken
+     */
+    public int takeSnapshots() {
+        LocalDateTime end = floor(LocalDateTime.now());
+        return tickerLocks.withAllLocks(() -> transactionTemplate.execute(status -> takeSnapshotsUpTo(end)));
+    }
+
+    private int takeSnapshotsUpTo(LocalDateTime end) {
+        Optional<LocalDateTime> snapshotAt = holdingSnapshotJdbcRepository.findLatestSnapshotAt();
+        if (snapshotAt.isPresent() && !snapshotAt.get().isBefore(end)) {
+            return 0;
+        }
+        Map<String, Holding> positions = getPositionsAt(snapshotAt);
+        int taken = 0;
+        LocalDateTime intervalEnd = null;
+        for (Trade trade : tradeJdbcRepository.findByLastUpdated(snapshotAt.orElse(null), end)) {
+            LocalDateTime tradeIntervalEnd = ceil(trade.getLastUpdated());
+            if (null != intervalEnd && !intervalEnd.equals(tradeIntervalEnd)) {
+                taken += saveSnapshots(positions, intervalEnd);
+            }
+            intervalEnd = tradeIntervalEnd;
+            addTradeInOrder(positions.computeIfAbsent(trade.getTicker(), HoldingUtil::getEmptyHolding), trade);
+        }
+        if (null != intervalEnd) {
+            taken += saveSnapshots(positions, intervalEnd);
+            log.info("Took {} snapshots of holdings up to : {}", taken, intervalEnd);
+        }
+        return taken;
+    }
+
+    /**
+     * Gets holdings as they stood at a time, by applying the trades executed after the latest snapshot taken at or
+     * before it up to the time, in the order they were executed, to the snapshot. Holdings as of now are the same as
+     * the ones kept by adding trades. No ticker lock is taken, the snapshot and the trades are read in a read only
+     * repeatable read transaction, which H2's MVStore serves from a snapshot of the db without blocking writes
+     *
+     * @param asOf Time at which the holdings are needed
+     * @return Holdings having shares at asOf ordered by ticker, with asOf as their last updated time
+     */
+    public List<Holding> getHoldingsAsOf(LocalDateTime asOf) {
+        return readOnlyTransactionTemplate.execute(status -> {
+            Optional<LocalDateTime> snapshotAt = holdingSnapshotJdbcRepository.findLatestSnapshotAt(asOf);
+            Map<String, Holding> positions = getPositionsAt(snapshotAt);
+            tradeJdbcRepository.findByLastUpdated(snapshotAt.orElse(null), asOf)
+                    .forEach(trade -> addTradeInOrder(
+                            positions.computeIfAbsent(trade.getTicker(), HoldingUtil::getEmptyHolding), trade));
+            return positions.values().stream()
+                    .filter(holding -> 0 < holding.getShares().signum())
+                    .map(holding -> holding.toBuilder().lastUpdated(asOf).build())
+                    .sorted(Comparator.comparing(Holding::getTicker))
+                    .collect(Collectors.toList());
+        });
+    }
+
+    /**
+     * Takes again the snapshots taken after the execution time of trades written, for the tickers of the trades.
+     * Trades of each ticker are applied in order from it's snapshot taken before the earliest of the trades, so
+     * snapshots of a ticker are taken again once, whatever the number of it's trades. Trades executed after the
+     * latest snapshot need no correction. Snapshots are never taken past the start of the current interval, so no
+     * snapshot is read for trades executed after it, as trades added now are. To be called in the transaction
+     * writing the trades, once they are written, holding the locks of their tickers. Throws
+     * InvalidTransactionException if the trades of a ticker, applied in order, sell more shares than held
+     *
+     * @param addedTrades   Trades added, or updated trades as they are now
+     * @param removedTrades Trades deleted, or updated trades as they were before
+     */
+    public void applyTrades(Collection<Trade> addedTrades, Collection<Trade> removedTrades) {
+        LocalDateTime intervalStart = floor(LocalDateTime.now());
+        if (Stream.concat(addedTrades.stream(), removedTrades.stream())
+                .allMatch(trade -> trade.getLastUpdated().isAfter(intervalStart))) {
+            return;
+        }
+        Optional<LocalDateTime> snapshotAt = holdingSnapshotJdbcRepository.findLatestSnapshotAt();
+        if (!snapshotAt.isPresent()) {
+            return;
+        }
+        Map<String, LocalDateTime> correctFrom = new TreeMap<>();
+        Stream.concat(addedTrades.stream(), removedTrades.stream())
+                .filter(trade -> !trade.getLastUpdated().isAfter(snapshotAt.get()))
+                .forEach(trade -> correctFrom.merge(trade.getTicker(), trade.getLastUpdated(),
+                        (first, second) -> first.isBefore(second) ? first : second));
+        correctFrom.forEach(this::retakeSnapshots);
+        if (!correctFrom.isEmpty()) {
+            log.info("Corrected snapshots of {} tickers for trades executed up to : {}", correctFrom.size(), snapshotAt.get());
+        }
+    }
+
+    /**
+     * Recomputes the holding of a ticker by applying the trades of the ticker executed after it's latest snapshot,
+     * in the order they were executed, to the snapshot. Gives the same holding as adding all of it's trades in that
+     * order. To be called in the transaction writing trades of the ticker, holding it's lock, once the trades are
+     * written and the snapshots corrected
+     *
+     * @param ticker Ticker whose holding is to be recomputed
+     * @return Holding, last updated at the execution time of it's latest trade, and Optional.empty() if no shares
+     * are left. Throws InvalidTransactionException if a trade sells more shares than held
+     */
+    public Optional<Holding> recomputeHolding(String ticker) {
+        Optional<HoldingSnapshot> snapshot = holdingSnapshotJdbcRepository.findLatestByTicker(ticker);
+        Holding holding = snapshot.map(this::toHolding).orElseGet(() -> HoldingUtil.getEmptyHolding(ticker));
+        List<Trade> trades = tradeJdbcRepository.findByTickerAndLastUpdatedAfter(ticker,
+                snapshot.map(HoldingSnapshot::getSnapshotAt).orElse(null));
+        trades.forEach(trade -> addTradeInOrder(holding, trade));
+        log.debug("Recomputed holding of ticker : {} from {} trades after snapshot : {}", ticker, trades.size(),
+                snapshot.map(HoldingSnapshot::getSnapshotAt).orElse(null));
+        return 0 < holding.getShares().signum() ? Optional.of(holding) : Optional.empty();
+    }
+
+    /**
+     * Takes again the snapshots of a ticker taken at or after from, applying it's trades in order to it's snapshot
+     * taken before from. Snapshots are written at every time a snapshot is taken, including the ones the ticker had
+     * no trade before, so that every later snapshot covers the trades
+     */
+    private void retakeSnapshots(String ticker, LocalDateTime from) {
+        Optional<HoldingSnapshot> snapshot = holdingSnapshotJdbcRepository.findLatestByTickerBefore(ticker, from);
+        Holding position = snapshot.map(this::toHolding).orElseGet(() -> HoldingUtil.getEmptyHolding(ticker));
+        List<Trade> trades = tradeJdbcRepository.findByTickerAndLastUpdatedAfter(ticker,
+                snapshot.map(HoldingSnapshot::getSnapshotAt).orElse(null));
+        List<HoldingSnapshot> snapshots = new ArrayList<>();
+        int applied = 0;
+        for (LocalDateTime snapshotAt : holdingSnapshotJdbcRepository.findSnapshotTimesFrom(from)) {
+            for (; applied < trades.size() && !trades.get(applied).getLastUpdated().isAfter(snapshotAt); applied++) {
+                addTradeInOrder(position, trades.get(applied));
+            }
+            snapshots.add(toSnapshot(position, snapshotAt));
+        }
+        holdingSnapshotJdbcRepository.saveOrReplaceAll(snapshots);
+    }
+
+    /**
+     * @return Positions of all tickers from their snapshots taken at snapshotAt, empty if there is none
+     */
+    private Map<String, Holding> getPositionsAt(Optional<LocalDateTime> snapshotAt) {
+        Map<String, Holding> positions = new HashMap<>();
+        snapshotAt.map(holdingSnapshotJdbcRepository::findBySnapshotAt)
+                .ifPresent(snapshots -> snapshots.forEach(snapshot -> positions.put(snapshot.getTicker(), toHolding(snapshot))));
+        return positions;
+    }
+
+    private int saveSnapshots(Map<String, Holding> positions, LocalDateTime snapshotAt) {
+        List<HoldingSnapshot> snapshots = new ArrayList<>(positions.size());
+        positions.values().forEach(position -> snapshots.add(toSnapshot(position, snapshotAt)));
+        holdingSnapshotJdbcRepository.saveAll(snapshots);
+        return snapshots.size();
+    }
+
+    private Holding toHolding(HoldingSnapshot snapshot) {
+        return Holding.builder()
+                .ticker(snapshot.getTicker())
+                .shares(snapshot.getShares())
+                .totalPrice(snapshot.getTotalPrice())
+                .averageBuyPrice(snapshot.getAverageBuyPrice())
+                .lastUpdated(snapshot.getSnapshotAt())
+                .build();
+    }
+
+    private HoldingSnapshot toSnapshot(Holding position, LocalDateTime snapshotAt) {
+        return HoldingSnapshot.builder()
+                .snapshotAt(snapshotAt)
+                .ticker(position.getTicker())
+                .shares(position.getShares())
+                .totalPrice(position.getTotalPrice())
+                .averageBuyPrice(position.getAverageBuyPrice())
+                .build();
+    }
+
+    /**
+     * @return Start of the interval time falls in. Intervals are counted from midnight of 1970-01-01
+     */
+    private LocalDateTime floor(LocalDateTime time) {
+        long intervalNanos = interval.toNanos();
+        return ORIGIN.plusNanos(Math.floorDiv(Duration.between(ORIGIN, time).toNanos(), intervalNanos) * intervalNanos);
+    }
+
+    /**
+     * @return End of the interval time falls in, which is time itself if it is the end of an interval. Snapshot
+     * taken at the end of an interval covers the trades executed up to and at that time
+     */
+    private LocalDateTime ceil(LocalDateTime time) {
+        LocalDateTime start = floor(time);
+        return start.equals(time) ? start : start.plus(interval);
+    }
+
+}
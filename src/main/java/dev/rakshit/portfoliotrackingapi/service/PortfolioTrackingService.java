@@ -1,111 +1,281 @@
 package dev.rakshit.portfoliotrackingapi.service;
 
+import dev.rakshit.portfoliotrackingapi.cache.HoldingCache;
+import dev.rakshit.portfoliotrackingapi.exceptions.BadRequestException;
+import dev.rakshit.portfoliotrackingapi.exceptions.ConflictException;
 import dev.rakshit.portfoliotrackingapi.exceptions.InvalidTransactionException;
+import dev.rakshit.portfoliotrackingapi.exceptions.InvalidTransactionException.Reason;
+import dev.rakshit.portfoliotrackingapi.exceptions.NotFoundException;
+import dev.rakshit.portfoliotrackingapi.lock.TickerLocks;
+import dev.rakshit.portfoliotrackingapi.metrics.TradeMetrics;
+import dev.rakshit.portfoliotrackingapi.metrics.TradeMetrics.Outcome;
 import dev.rakshit.portfoliotrackingapi.models.Holding;
 import dev.rakshit.portfoliotrackingapi.models.Portfolio;
+import dev.rakshit.portfoliotrackingapi.models.RefreshMode;
 import dev.rakshit.portfoliotrackingapi.models.Trade;
+import dev.rakshit.portfoliotrackingapi.models.TradeCursor;
+import dev.rakshit.portfoliotrackingapi.models.TradeFilter;
+import dev.rakshit.portfoliotrackingapi.models.TradePage;
 import dev.rakshit.portfoliotrackingapi.models.TransactionType;
-import dev.rakshit.portfoliotrackingapi.repository.HoldingRepository;
+import dev.rakshit.portfoliotrackingapi.price.PriceProvider;
+import dev.rakshit.portfoliotrackingapi.repository.TradeJdbcRepository;
 import dev.rakshit.portfoliotrackingapi.repository.TradeRepository;
+import dev.rakshit.portfoliotrackingapi.sequencer.TradeSequencer;
+import dev.rakshit.portfoliotrackingapi.util.FixedPointUtil;
+import dev.rakshit.portfoliotrackingapi.util.PageTokenUtil;
+import io.micrometer.core.annotation.Timed;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.ConcurrencyFailureException;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import java.math.BigDecimal;
 import java.math.BigInteger;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
 
+import static dev.rakshit.portfoliotrackingapi.util.FixedPointUtil.*;
 import static dev.rakshit.portfoliotrackingapi.util.HoldingUtil.*;
+import static dev.rakshit.portfoliotrackingapi.util.IdempotencyUtil.checkSameRequest;
 
 
 @Slf4j
 @Service
 public class PortfolioTrackingService {
 
+    /**
+     * Timer of the public methods, tagged with the method timed. Percentile histograms are published
+     * so that latency percentiles can be aggregated and alerted on
+     */
+    public static final String TIMER_NAME = "portfolio.service";
+
     @Autowired
     private TradeRepository tradeRepository;
 
     @Autowired
-    private HoldingRepository holdingRepository;
+    private TradeJdbcRepository tradeJdbcRepository;
+
+    @Autowired
+    private HoldingCache holdingCache;
+
+    @Autowired
+    private PriceProvider priceProvider;
+
+    @Autowired
+    private HoldingCheckpointService holdingCheckpointService;
+
+    @Autowired
+    private HoldingSnapshotService holdingSnapshotService;
+
+    @Autowired
+    private TickerLocks tickerLocks;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private TradeMetrics tradeMetrics;
+
+    @Autowired(required = false)
+    private TradeSequencer tradeSequencer;
+
+    @Value("${portfolio.refresh.mode:INCREMENTAL}")
+    private RefreshMode defaultRefreshMode;
+
+    @Value("${portfolio.trades.page.default-size:100}")
+    private int defaultPageSize;
+
+    @Value("${portfolio.trades.page.max-size:1000}")
+    private int maxPageSize;
+
+    @Value("${portfolio.locks.max-attempts:3}")
+    private int maxWriteAttempts;
 
     /**
      * Deletes trade from trade table
      *
      * @param trade Trade to be deleted
      */
+    @Timed(value = TIMER_NAME, histogram = true)
     public void deleteTrade(Trade trade) {
         tradeRepository.delete(trade);
     }
 
     /**
-     * Gives holding by trade. Sends a default holding if no holding is present in db
+     * Adds a trade and updates the holdings. Holding of the trade's ticker is read once, checked and written
+     * under the lock of the ticker, in one transaction. A trade executed at or after the trades applied to the
+     * holding is applied to it as it is. Holding is upserted by one MERGE and the trade is inserted by one statement
+     * taking it's trade id from the sequence, so a trade is added in two statements when it's holding is cached.
+     * Holding of a trade executed before the latest trade of it's ticker is recomputed instead, applying the
+     * trades of the ticker in the order they were executed, so the holding is the same whatever the order in which
+     * trades are added.
+     * A trade with an Idempotency-Key is looked up again under the lock, and the trade already added with the key
+     * is returned if another request added it first, even if that request held the lock of another ticker.
      *
-     * @param trade trade for which holding is to be sent
-     * @return Holding from db if present else a new one
+     * @param trade trade to be added.
+     * @return Trade that is added. Throws InvalidTransactionException if trade cannot be added and
+     * UnprocessableEntityException if it's Idempotency-Key was already used for another trade.
      */
-    private Holding getHoldingByTrade(Trade trade) {
-        return holdingRepository.findById(trade.getTicker())
-                .orElse(Holding.builder()
-                        .ticker(trade.getTicker())
-                        .shares(BigInteger.ZERO)
-                        .totalPrice(BigDecimal.ZERO)
-                        .averageBuyPrice(BigDecimal.ZERO)
-                        .build());
+    @Timed(value = TIMER_NAME, histogram = true)
+    public Trade addTrade(Trade trade) {
+        boolean executedNow = null == trade.getLastUpdated();
+        setDefaultLastUpdated(trade);
+        Long tradeId = trade.getTradeId();
+        return recordOutcome(Outcome.ADDED, trade, () -> {
+            try {
+                return Optional.of(writeHoldings(Collections.singletonList(trade.getTicker()), () -> {
+                    trade.setTradeId(tradeId);
+                    Optional<Trade> existingTrade = findTradeOfIdempotencyKey(trade);
+                    if (existingTrade.isPresent()) {
+                        return existingTrade.get();
+                    }
+                    Optional<Holding> currentHolding = holdingCache.findById(trade.getTicker());
+                    if (!isTradeInOrder(currentHolding.orElse(null), trade.getLastUpdated(), executedNow)) {
+                        Trade addedTrade = tradeJdbcRepository.save(trade);
+                        holdingSnapshotService.applyTrades(Collections.singletonList(trade), Collections.emptyList());
+                        recomputeHolding(trade.getTicker(), currentHolding);
+                        return addedTrade;
+                    }
+                    Holding holding = currentHolding.orElseGet(() -> getEmptyHolding(trade.getTicker()));
+                    if (TransactionType.SELL == trade.getTransactionType() && BigInteger.ZERO.equals(holding.getShares())) {
+                        throw new InvalidTransactionException(Reason.NO_SHARES_TO_SELL);
+                    }
+                    saveHolding(addTradeInOrder(holding, trade));
+                    Trade addedTrade = tradeJdbcRepository.save(trade);
+                    holdingSnapshotService.applyTrades(Collections.singletonList(trade), Collections.emptyList());
+                    return addedTrade;
+                }));
+            } catch (DataIntegrityViolationException exception) {
+                return Optional.of(findTradeOfIdempotencyKey(trade).orElseThrow(() -> exception));
+            }
+        }).get();
     }
 
     /**
-     * Adds a trade and updates the holdings
+     * Adds a trade on the lane of it's ticker in SEQUENCED write mode, and right away otherwise. Lanes apply trades
+     * to the holdings they keep in memory as they come, so only trades executed now are added on them, the lane
+     * setting their execution time. Trades having an execution time are added right away, as their holding may
+     * have to be recomputed.
+     * A trade with an Idempotency-Key that was already added is returned as it is, without being added again
      *
      * @param trade trade to be added.
-     * @return Trade that is added. Throws InvalidTransactionException if trade cannot be added.
+     * @return Future completing with the trade once it is added. Fails with InvalidTransactionException
+     * if trade cannot be added and UnprocessableEntityException if it's Idempotency-Key was already used
+     * for another trade.
      */
-    public Trade addTrade(Trade trade) {
-        Holding holding = addTradeToHolding(getHoldingByTrade(trade), trade);
-        saveHolding(holding);
-        return tradeRepository.save(trade);
+    @Timed(value = TIMER_NAME, histogram = true)
+    public CompletableFuture<Trade> submitTrade(Trade trade) {
+        Optional<Trade> existingTrade = findTradeOfIdempotencyKey(trade);
+        if (existingTrade.isPresent()) {
+            return CompletableFuture.completedFuture(existingTrade.get());
+        }
+        if (null == tradeSequencer || null != trade.getLastUpdated()) {
+            return CompletableFuture.completedFuture(addTrade(trade));
+        }
+        CompletableFuture<Trade> future = tradeSequencer.submit(trade);
+        future.whenComplete((addedTrade, failure) -> {
+            if (null == failure) {
+                tradeMetrics.recordWritten(Outcome.ADDED, addedTrade);
+            } else {
+                tradeMetrics.recordFailed(trade, failure);
+            }
+        });
+        return future;
     }
 
     /**
-     * updates a trade and updates the holdings
+     * updates a trade and updates the holdings. Trade is read again under the locks of both tickers,
+     * so that it is updated from it's latest state. Holdings of both tickers are recomputed, whatever the time
+     * the trade was executed at. Holding of each ticker is read once and written over with it's version.
      *
      * @param trade trade to be updated.
      * @return Trade that is updated. Throws InvalidTransactionException if no trade is found or if it cannot be updated.
+     * Throws ConflictException if the ticker of the trade was changed after it was read
      */
+    @Timed(value = TIMER_NAME, histogram = true)
     public Trade updateTrade(Trade trade, Trade newTrade) {
-        assertHoldingPresent(trade.getTicker());
-        List<Holding> holdings = updateTradeInHolding(getHoldingByTrade(trade), trade, getHoldingByTrade(newTrade), newTrade);
-        holdingRepository.saveAll(holdings);
-        return tradeRepository.save(newTrade);
+        setDefaultLastUpdated(newTrade);
+        return recordOutcome(Outcome.UPDATED, newTrade, () -> Optional.of(writeHoldings(Arrays.asList(trade.getTicker(), newTrade.getTicker()), () -> {
+            Trade currentTrade = getTradeToWrite(trade)
+                    .orElseThrow(() -> new NotFoundException("No Trade found for id : " + trade.getTradeId()));
+            String ticker = currentTrade.getTicker();
+            Optional<Holding> holding = getHoldingToWrite(ticker);
+            // currentTrade is managed, so it takes the values of newTrade once that is saved
+            Trade previousTrade = currentTrade.toBuilder().build();
+            Trade updatedTrade = tradeRepository.saveAndFlush(newTrade);
+            holdingSnapshotService.applyTrades(Collections.singletonList(newTrade), Collections.singletonList(previousTrade));
+            recomputeHolding(ticker, holding);
+            if (!ticker.equals(newTrade.getTicker())) {
+                recomputeHolding(newTrade.getTicker(), getHolding(newTrade.getTicker()));
+            }
+            holdingCheckpointService.invalidateCheckpoint(ticker);
+            holdingCheckpointService.invalidateCheckpoint(newTrade.getTicker());
+            return updatedTrade;
+        }))).get();
     }
 
     /**
-     * Checks if trade is valid or not. Throws InvalidTransactionException if trade is not valid.
+     * Checks if trade is valid or not. Throws InvalidTransactionException if trade is not valid,
+     * counting the trade as rejected. Holding is not read here, shares available to sell are checked by
+     * the write of the trade against the holding it reads once while the holding is locked.
      *
      * @param trade Trade to be validated
      */
+    @Timed(value = TIMER_NAME, histogram = true)
     public void isValidTrade(Trade trade) {
-        Optional<Holding> holding = getHolding(trade.getTicker());
-        if (TransactionType.SELL == trade.getTransactionType() && !holding.isPresent()) {
-            throw new InvalidTransactionException("No shares available to sell");
+        try {
+            isValidTradeDetails(trade);
+        } catch (InvalidTransactionException invalidTransactionException) {
+            tradeMetrics.recordFailed(trade, invalidTransactionException);
+            throw invalidTransactionException;
+        }
+    }
+
+    /**
+     * Checks the details of a trade without looking at the holdings.
+     * Throws InvalidTransactionException if trade is not valid. Rejected trades are to be counted by the caller
+     *
+     * @param trade Trade to be validated
+     */
+    @Timed(value = TIMER_NAME, histogram = true)
+    public void isValidTradeDetails(Trade trade) {
+        if (null == trade.getTicker() || trade.getTicker().isEmpty()) {
+            throw new InvalidTransactionException(Reason.TICKER_EMPTY);
+        } else if (null == trade.getTransactionType()) {
+            throw new InvalidTransactionException(Reason.TRANSACTION_TYPE_EMPTY);
+        } else if (null == trade.getShares()) {
+            throw new InvalidTransactionException(Reason.SHARES_EMPTY);
+        } else if (null == trade.getPrice()) {
+            throw new InvalidTransactionException(Reason.PRICE_EMPTY);
         } else if (0 == BigInteger.ZERO.compareTo(trade.getShares())) {
-            throw new InvalidTransactionException("Shares cannot be zero");
+            throw new InvalidTransactionException(Reason.SHARES_ZERO);
         } else if (0 < BigInteger.ZERO.compareTo(trade.getShares())) {
-            throw new InvalidTransactionException("Shares cannot less than zero");
+            throw new InvalidTransactionException(Reason.SHARES_NEGATIVE);
         } else if (0 == BigDecimal.ZERO.compareTo(trade.getPrice())) {
-            throw new InvalidTransactionException("Price cannot be zero");
+            throw new InvalidTransactionException(Reason.PRICE_ZERO);
         } else if (0 < BigDecimal.ZERO.compareTo(trade.getPrice())) {
-            throw new InvalidTransactionException("Price cannot less than zero");
+            throw new InvalidTransactionException(Reason.PRICE_NEGATIVE);
         }
     }
 
     /**
-     * Deletes a trade and updates the holdings
+     * Deletes a trade and recomputes the holding of it's ticker, whatever the time the trade was executed at
      *
      * @param id trade id corresponding to which, the trade is to be deleted.
      * @return Trade that is deleted. Throws InvalidTransactionException if no trade is found or if it cannot be deleted.
      */
+    @Timed(value = TIMER_NAME, histogram = true)
     public Optional<Trade> deleteTrade(Long id) {
 //        getTrade(id).map(trade -> {
 //            assertHoldingPresent(trade.getTicker());
@@ -118,12 +288,118 @@ public class PortfolioTrackingService {
         if (!tradeOptional.isPresent()) {
             return Optional.empty();
         }
-        Trade trade = tradeOptional.get();
-        assertHoldingPresent(trade.getTicker());
-        Holding holding = deleteTradeFromHolding(getHoldingByTrade(trade), trade);
+        return recordOutcome(Outcome.DELETED, tradeOptional.get(), () -> writeHoldings(Collections.singletonList(tradeOptional.get().getTicker()), () -> {
+            Optional<Trade> currentTrade = getTradeToWrite(tradeOptional.get());
+            if (!currentTrade.isPresent()) {
+                return currentTrade;
+            }
+            Trade trade = currentTrade.get();
+            Optional<Holding> holding = getHoldingToWrite(trade.getTicker());
+            deleteTrade(trade);
+            tradeRepository.flush();
+            holdingSnapshotService.applyTrades(Collections.emptyList(), Collections.singletonList(trade));
+            recomputeHolding(trade.getTicker(), holding);
+            holdingCheckpointService.invalidateCheckpoint(trade.getTicker());
+            return currentTrade;
+        }));
+    }
+
+    /**
+     * Recomputes and saves the holding of a ticker after a trade of it executed before it's latest trade is added,
+     * or an already added trade of it is updated or deleted. The trades of the ticker executed after it's latest
+     * snapshot are applied to the snapshot in the order they were executed, so the holding is the one adding all of
+     * it's trades in that order gives, whichever trade was changed. Trades are to be written to db before
+     *
+     * @param ticker         Ticker whose holding is to be recomputed
+     * @param currentHolding Holding of the ticker as read under it's lock, whose version is written over
+     */
+    private void recomputeHolding(String ticker, Optional<Holding> currentHolding) {
+        Holding holding = holdingSnapshotService.recomputeHolding(ticker)
+                .orElseGet(() -> getEmptyHolding(ticker));
+        holding.setVersion(currentHolding.map(Holding::getVersion).orElse(null));
         saveHolding(holding);
-        deleteTrade(trade);
-        return tradeOptional;
+    }
+
+    /**
+     * Runs a write of a trade and counts it's outcome under portfolio.trades
+     *
+     * @param outcome Outcome counted if the write gives a trade
+     * @param trade   Trade counted if the write fails
+     * @param write   Write to be run
+     * @return Result of the write
+     */
+    private Optional<Trade> recordOutcome(Outcome outcome, Trade trade, Supplier<Optional<Trade>> write) {
+        Optional<Trade> writtenTrade;
+        try {
+            writtenTrade = write.get();
+        } catch (RuntimeException exception) {
+            tradeMetrics.recordFailed(trade, exception);
+            throw exception;
+        }
+        writtenTrade.ifPresent(value -> tradeMetrics.recordWritten(outcome, value));
+        return writtenTrade;
+    }
+
+    /**
+     * Runs a write of holdings under the locks of their tickers, in one transaction. The write is run again
+     * with the holdings read from db, up to portfolio.locks.max-attempts times, if a holding was changed
+     * by someone else after it was read. Throws ConflictException if all attempts fail. A write failing
+     * as another request added a trade with the same Idempotency-Key is not run again, it's failure is rethrown.
+     *
+     * @param tickers Tickers of the holdings written
+     * @param write   Write to be run
+     * @return Result of the write
+     */
+    private <T> T writeHoldings(Collection<String> tickers, Supplier<T> write) {
+        return tickerLocks.withLocks(tickers, () -> {
+            for (int attempt = 1; ; attempt++) {
+                try {
+                    return transactionTemplate.execute(status -> write.get());
+                } catch (ConcurrencyFailureException | DataIntegrityViolationException exception) {
+                    tickers.forEach(holdingCache::evict);
+                    if (TradeJdbcRepository.isIdempotencyKeyTaken(exception)) {
+                        throw exception;
+                    }
+                    if (maxWriteAttempts <= attempt) {
+                        throw new ConflictException("Holding was changed by another request, please retry", exception);
+                    }
+                    log.warn("Holding of tickers : {} was changed by another request, retrying. Attempt : {}", tickers, attempt);
+                }
+            }
+        });
+    }
+
+    /**
+     * Gets the trade already added with the Idempotency-Key of a trade, if any.
+     * Throws UnprocessableEntityException if it was added by a request with another body
+     *
+     * @param trade Trade to be added
+     * @return Trade added with the key and Optional.empty() if the trade has no key or it's key was not used
+     */
+    private Optional<Trade> findTradeOfIdempotencyKey(Trade trade) {
+        Optional<Trade> existingTrade = Optional.ofNullable(trade.getIdempotencyKey())
+                .flatMap(tradeJdbcRepository::findByIdempotencyKey);
+        existingTrade.ifPresent(value -> {
+            checkSameRequest(trade.getRequestHash(), value.getRequestHash());
+            log.info("Trade with idempotency key : {} was already added with id : {}",
+                    trade.getIdempotencyKey(), value.getTradeId());
+        });
+        return existingTrade;
+    }
+
+    /**
+     * Reads the latest state of a trade to be updated or deleted.
+     * Throws ConflictException if it's ticker was changed after it was read
+     *
+     * @param trade Trade as read before locking it's ticker
+     * @return Trade from db and Optional.empty() if it was deleted
+     */
+    private Optional<Trade> getTradeToWrite(Trade trade) {
+        Optional<Trade> currentTrade = getTrade(trade.getTradeId());
+        if (currentTrade.isPresent() && !currentTrade.get().getTicker().equals(trade.getTicker())) {
+            throw new ConflictException("Ticker of trade was changed by another request, please retry");
+        }
+        return currentTrade;
     }
 
     /**
@@ -134,10 +410,10 @@ public class PortfolioTrackingService {
      */
     private void saveHolding(Holding holding) {
         if (BigInteger.ZERO.equals(holding.getShares())) {
-            holdingRepository.deleteById(holding.getTicker());
+            holdingCache.delete(holding);
             return;
         }
-        holdingRepository.save(holding);
+        holdingCache.save(holding);
     }
 
     /**
@@ -145,17 +421,37 @@ public class PortfolioTrackingService {
      *
      * @return Trade based on trade id.
      */
+    @Timed(value = TIMER_NAME, histogram = true)
     public Optional<Trade> getTrade(Long id) {
         return tradeRepository.findById(id);
     }
 
     /**
-     * Gets all the trades present.
+     * Gets a page of trades ordered by the time they were executed.
      *
-     * @return List of all trades corresponding to the user.
+     * @param filter    Filters to be applied on the trades
+     * @param pageToken Token of the page to be fetched. First page is fetched if null
+     * @param limit     Maximum trades in the page. Default page size is used if null
+     * @return Trades of the page along with the token of the next page.
+     * Throws BadRequestException if the page token or limit is not valid.
      */
-    public List<Trade> getTrades() {
-        return tradeRepository.findAll();
+    @Timed(value = TIMER_NAME, histogram = true)
+    public TradePage getTrades(TradeFilter filter, String pageToken, Integer limit) {
+        int pageSize = Optional.ofNullable(limit).orElse(defaultPageSize);
+        if (0 >= pageSize || maxPageSize < pageSize) {
+            throw new BadRequestException(String.format("Page size should be between 1 and %d", maxPageSize));
+        }
+        TradeCursor cursor = Optional.ofNullable(pageToken).map(PageTokenUtil::toCursor).orElse(null);
+        List<Trade> trades = tradeJdbcRepository.findPage(filter, cursor, pageSize + 1);
+        if (trades.size() <= pageSize) {
+            return TradePage.builder().trades(trades).build();
+        }
+        trades = trades.subList(0, pageSize);
+        Trade lastTrade = trades.get(pageSize - 1);
+        return TradePage.builder()
+                .trades(trades)
+                .nextPageToken(PageTokenUtil.toPageToken(new TradeCursor(lastTrade.getLastUpdated(), lastTrade.getTradeId())))
+                .build();
     }
 
     /**
@@ -163,8 +459,9 @@ public class PortfolioTrackingService {
      *
      * @return Holding based on ticker.
      */
+    @Timed(value = TIMER_NAME, histogram = true)
     public Optional<Holding> getHolding(String ticker) {
-        return holdingRepository.findById(ticker);
+        return holdingCache.findById(ticker);
     }
 
     /**
@@ -172,92 +469,135 @@ public class PortfolioTrackingService {
      *
      * @return List of all holdings corresponding to the user.
      */
+    @Timed(value = TIMER_NAME, histogram = true)
     public List<Holding> getHoldings() {
-        return holdingRepository.findAll();
+        return holdingCache.findAll();
     }
 
     /**
-     * Refreshes all the holdings by recalculating based on all trades present.
+     * Gets the holdings as they stood at a time, from the nearest snapshot before it and the trades executed after it
      *
-     * @return List of all holdings corresponding to the user.
+     * @param asOf Time at which the holdings are needed
+     * @return List of the holdings having shares at asOf.
      */
-    public List<Holding> refreshHoldings() {
-        return holdingRepository.saveAll(getHoldingsFromTrades(getTrades()));
+    @Timed(value = TIMER_NAME, histogram = true)
+    public List<Holding> getHoldingsAsOf(LocalDateTime asOf) {
+        return holdingSnapshotService.getHoldingsAsOf(asOf);
     }
 
     /**
-     * Groups all the securities and trades corresponding to it.
+     * Refreshes all the holdings. INCREMENTAL mode replays the trades added after the last checkpoint of each ticker,
+     * PARALLEL mode recalculates every ticker from all trades present in parallel, SQL mode recalculates them
+     * inside the db without reading the trades.
      *
-     * @return All the securities and trades corresponding to it.
+     * @param mode Refresh mode to be used. Configured default refresh mode is used if null
+     * @return List of all holdings corresponding to the user.
      */
-    public List<Portfolio> getPortfolio() {
-        return getHoldings().stream().map(Holding::getTicker)
-                .map(this::getPortfolioByTicker)
-                .collect(Collectors.toList());
+    @Timed(value = TIMER_NAME, histogram = true)
+    public List<Holding> refreshHoldings(RefreshMode mode) {
+        switch (Optional.ofNullable(mode).orElse(defaultRefreshMode)) {
+            case PARALLEL:
+                holdingCheckpointService.rebuildHoldings();
+                break;
+            case SQL:
+                holdingCheckpointService.rebuildHoldingsInDb();
+                break;
+            default:
+                holdingCheckpointService.refreshHoldings();
+        }
+        return getHoldings();
     }
 
     /**
-     * Takes all the holdings and calculates the returns
+     * Refreshes a holding by recalculating based on all trades present for it's ticker.
      *
-     * @return Net Return calculated from the holdings and Optional.empty() if no holding present
+     * @return Holding based on ticker and Optional.empty() if no shares are left.
      */
-    public Optional<BigDecimal> getReturns() {
-        return getHoldings().stream()
-                .map(this::getReturnsByHolding)
-                .reduce(BigDecimal::add);
+    @Timed(value = TIMER_NAME, histogram = true)
+    public Optional<Holding> refreshHolding(String ticker) {
+        return holdingCheckpointService.refreshHolding(ticker);
     }
 
     /**
-     * Groups all the trades corresponding to a security.
+     * Groups all the securities and trades corresponding to it.
+     * Trades of all the securities are fetched together instead of one query per security.
      *
-     * @return Security and trades corresponding to it grouped together.
+     * @param tradeLimit Maximum trades per security, keeping the latest ones. All trades are given if null
+     * @return All the securities and trades corresponding to it.
      */
-    private Portfolio getPortfolioByTicker(String ticker) {
-        return Portfolio.builder()
-                .ticker(ticker)
-                .trades(getTradesByTicker(ticker))
-                .build();
+    @Timed(value = TIMER_NAME, histogram = true)
+    public List<Portfolio> getPortfolio(Integer tradeLimit) {
+        List<String> tickers = getHoldings().stream()
+                .map(Holding::getTicker)
+                .collect(Collectors.toList());
+        Map<String, List<Trade>> tradesByTicker = tradeJdbcRepository.findByTickers(tickers, tradeLimit).stream()
+                .collect(Collectors.groupingBy(Trade::getTicker));
+        return tickers.stream()
+                .map(ticker -> Portfolio.builder()
+                        .ticker(ticker)
+                        .trades(tradesByTicker.getOrDefault(ticker, Collections.emptyList()))
+                        .build())
+                .collect(Collectors.toList());
     }
 
     /**
-     * Confirms that Holding is present for a ticker.
-     * Logs error if no holding is found for the given ticker
+     * Takes all the holdings and calculates the returns.
+     * Current prices of all the holdings are fetched in one call to the price provider
      *
-     * @param ticker Ticker for which the holding is to be checked
+     * @return Net Return calculated from the holdings and Optional.empty() if no holding present
      */
-    private void assertHoldingPresent(String ticker) {
-        Optional<Holding> holdingOptional = getHolding(ticker);
-        if (!holdingOptional.isPresent()) {
-            log.error("No Holding found with ticker : {}", ticker);
+    @Timed(value = TIMER_NAME, histogram = true)
+    public Optional<BigDecimal> getReturns() {
+        List<Holding> holdings = getHoldings();
+        if (holdings.isEmpty()) {
+            return Optional.empty();
         }
+        Map<String, BigDecimal> prices = priceProvider.getPrices(holdings.stream()
+                .map(Holding::getTicker)
+                .collect(Collectors.toList()));
+        return Optional.of(toBigDecimal(holdings.stream()
+                .filter(holding -> hasPrice(holding, prices))
+                .mapToLong(holding -> getReturnsByHolding(holding, prices.get(holding.getTicker())))
+                .reduce(0L, FixedPointUtil::add)));
     }
 
     /**
-     * Gets all the trades corresponding to a ticker.
+     * Reads the holding of a ticker whose trade is to be updated or deleted, once per write.
+     * Logs error if no holding is found for the given ticker
      *
-     * @return All the trades corresponding to a ticker.
+     * @param ticker Ticker for which the holding is to be read
+     * @return Holding of the ticker and Optional.empty() if no holding is present
      */
-    private List<Trade> getTradesByTicker(String ticker) {
-        return tradeRepository.findByTicker(ticker);
+    private Optional<Holding> getHoldingToWrite(String ticker) {
+        Optional<Holding> holdingOptional = getHolding(ticker);
+        if (!holdingOptional.isPresent()) {
+            log.error("No Holding found with ticker : {}", ticker);
+        }
+        return holdingOptional;
     }
 
     /**
-     * Takes holding and calculates its return
+     * Sets the execution time of a trade to now if it is not given
      *
-     * @return Net Return calculated from the given holding
+     * @param trade Trade to be updated
      */
-    private BigDecimal getReturnsByHolding(Holding holding) {
-        BigDecimal priceDifference = getCurrentPrice(holding).subtract(holding.getAverageBuyPrice());
-        return priceDifference.multiply(BigDecimal.valueOf(holding.getShares().intValue()));
+    private void setDefaultLastUpdated(Trade trade) {
+        if (null == trade.getLastUpdated()) {
+            trade.setLastUpdated(LocalDateTime.now());
+        }
     }
 
     /**
-     * Takes the holding and tells it's current price using it's ticker
+     * Tells whether current price of a holding is known. Logs warning if it is not
      *
-     * @return Current price of a holding by it's ticker
+     * @return true if prices has the price of the holding's ticker
      */
-    private BigDecimal getCurrentPrice(Holding holding) {
-        return BigDecimal.valueOf(100);
+    private boolean hasPrice(Holding holding, Map<String, BigDecimal> prices) {
+        if (!prices.containsKey(holding.getTicker())) {
+            log.warn("No price found for ticker : {}, leaving it out of returns", holding.getTicker());
+            return false;
+        }
+        return true;
     }
 
 }
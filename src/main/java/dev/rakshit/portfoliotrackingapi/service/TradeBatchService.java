@@ -0,0 +1,398 @@
+package dev.rakshit.portfoliotrackingapi.service;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import dev.rakshit.portfoliotrackingapi.cache.HoldingCache;
+import dev.rakshit.portfoliotrackingapi.exceptions.BadRequestException;
+import dev.rakshit.portfoliotrackingapi.exceptions.InvalidTransactionException;
+import dev.rakshit.portfoliotrackingapi.exceptions.InvalidTransactionException.Reason;
+import dev.rakshit.portfoliotrackingapi.lock.TickerLocks;
+import dev.rakshit.portfoliotrackingapi.metrics.TradeMetrics;
+import dev.rakshit.portfoliotrackingapi.metrics.TradeMetrics.Outcome;
+import dev.rakshit.portfoliotrackingapi.models.Holding;
+import dev.rakshit.portfoliotrackingapi.models.Trade;
+import dev.rakshit.portfoliotrackingapi.models.TradeBatchFailure;
+import dev.rakshit.portfoliotrackingapi.models.TradeBatchResult;
+import dev.rakshit.portfoliotrackingapi.models.TransactionType;
+import dev.rakshit.portfoliotrackingapi.repository.HoldingJdbcRepository;
+import dev.rakshit.portfoliotrackingapi.repository.TradeJdbcRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.TransactionException;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import static dev.rakshit.portfoliotrackingapi.util.HoldingUtil.addTradeInOrder;
+import static dev.rakshit.portfoliotrackingapi.util.HoldingUtil.isTradeInOrder;
+
+/**
+ * Adds batches of new trades. All trades are read and validated first, then the trades of each ticker
+ * are applied to it's holding in memory in time order. Holding of a ticker having trades executed before it's
+ * latest trade is recomputed instead, once the trades are written. Trades and holdings are written in JDBC batches,
+ * with one transaction per group of tickers having about portfolio.trades.batch.transaction-size trades.
+ * Trades of a ticker are never split across transactions, which run holding the locks of their tickers.
+ * A trade which cannot be added is reported as a failure without stopping the rest of the batch, and a ticker
+ * whose trades change it's past holdings into selling more shares than held fails without the rest of it's group.
+ */
+@Slf4j
+@Service
+public class TradeBatchService {
+
+    @Autowired
+    private PortfolioTrackingService portfolioTrackingService;
+
+    @Autowired
+    private TradeJdbcRepository tradeJdbcRepository;
+
+    @Autowired
+    private HoldingJdbcRepository holdingJdbcRepository;
+
+    @Autowired
+    private HoldingCache holdingCache;
+
+    @Autowired
+    private HoldingSnapshotService holdingSnapshotService;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private TickerLocks tickerLocks;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private TradeMetrics tradeMetrics;
+
+    @Value("${portfolio.trades.batch.max-size:100000}")
+    private int maxSize;
+
+    @Value("${portfolio.trades.batch.transaction-size:1000}")
+    private int transactionSize;
+
+    /**
+     * Adds trades read from a JSON array
+     *
+     * @param inputStream Stream having a JSON array of trades
+     * @return Number of trades added and the trades which could not be added.
+     * Throws BadRequestException if the stream is not a JSON array or has more than the allowed trades.
+     */
+    public TradeBatchResult addTrades(InputStream inputStream) {
+        List<TradeBatchItem> items = readTrades(inputStream);
+        items.stream()
+                .filter(TradeBatchItem::isValid)
+                .forEach(this::validateTrade);
+        Map<String, List<TradeBatchItem>> itemsByTicker = items.stream()
+                .filter(TradeBatchItem::isValid)
+                .collect(Collectors.groupingBy(item -> item.trade.getTicker(), LinkedHashMap::new, Collectors.toList()));
+        Map<String, List<TradeBatchItem>> chunk = new LinkedHashMap<>();
+        int chunkTrades = 0;
+        for (Map.Entry<String, List<TradeBatchItem>> entry : itemsByTicker.entrySet()) {
+            chunk.put(entry.getKey(), entry.getValue());
+            chunkTrades += entry.getValue().size();
+            if (chunkTrades >= transactionSize) {
+                addTradesOfTickers(chunk);
+                chunk = new LinkedHashMap<>();
+                chunkTrades = 0;
+            }
+        }
+        if (!chunk.isEmpty()) {
+            addTradesOfTickers(chunk);
+        }
+        List<TradeBatchFailure> failures = items.stream()
+                .filter(item -> !item.isValid())
+                .map(item -> TradeBatchFailure.builder()
+                        .index(item.index)
+                        .ticker(null == item.trade ? null : item.trade.getTicker())
+                        .reason(item.failure)
+                        .build())
+                .collect(Collectors.toList());
+        log.info("Added {} trades of {} tickers from a batch of {} trades", items.size() - failures.size(),
+                itemsByTicker.size(), items.size());
+        return TradeBatchResult.builder()
+                .received(items.size())
+                .added(items.size() - failures.size())
+                .failed(failures.size())
+                .failures(failures)
+                .build();
+    }
+
+    /**
+     * Reads trades one element of the array at a time. An element which is not a valid trade is kept as a failure.
+     *
+     * @param inputStream Stream having a JSON array of trades
+     * @return Trades of the batch in the order of the array
+     */
+    private List<TradeBatchItem> readTrades(InputStream inputStream) {
+        List<TradeBatchItem> items = new ArrayList<>();
+        try (JsonParser parser = objectMapper.getFactory().createParser(inputStream)) {
+            if (JsonToken.START_ARRAY != parser.nextToken()) {
+                throw new BadRequestException("Trades should be a JSON array");
+            }
+            for (JsonToken token = parser.nextToken(); JsonToken.END_ARRAY != token; token = parser.nextToken()) {
+                if (null == token) {
+                    throw new BadRequestException("Trades should be a JSON array");
+                }
+                if (items.size() >= maxSize) {
+                    throw new BadRequestException(String.format("A batch cannot have more than %d trades", maxSize));
+                }
+                JsonNode node = parser.readValueAsTree();
+                TradeBatchItem item = new TradeBatchItem(items.size());
+                try {
+                    item.trade = objectMapper.treeToValue(node, Trade.class);
+                } catch (JsonProcessingException jsonProcessingException) {
+                    reject(item, new InvalidTransactionException(Reason.TRADE_UNREADABLE));
+                }
+                items.add(item);
+            }
+        } catch (IOException ioException) {
+            throw new BadRequestException("Trades should be a JSON array");
+        }
+        return items;
+    }
+
+    private void validateTrade(TradeBatchItem item) {
+        try {
+            if (null == item.trade) {
+                throw new InvalidTransactionException(Reason.TRADE_EMPTY);
+            }
+            if (null != item.trade.getTradeId()) {
+                throw new InvalidTransactionException(Reason.TRADE_ID_GIVEN);
+            }
+            portfolioTrackingService.isValidTradeDetails(item.trade);
+            if (null == item.trade.getLastUpdated()) {
+                item.trade.setLastUpdated(LocalDateTime.now());
+                item.executedNow = true;
+            }
+        } catch (InvalidTransactionException invalidTransactionException) {
+            reject(item, invalidTransactionException);
+        }
+    }
+
+    /**
+     * Marks a trade of the batch as failed and counts it as rejected
+     */
+    private void reject(TradeBatchItem item, InvalidTransactionException invalidTransactionException) {
+        item.failure = invalidTransactionException.getMessage();
+        tradeMetrics.recordFailed(item.trade, invalidTransactionException);
+    }
+
+    /**
+     * Applies trades to the holdings of their tickers and saves the trades and holdings in one transaction.
+     * If a trade executed before the latest trade of it's ticker, or before a snapshot, leaves the holding or the
+     * snapshots of it's ticker selling more shares than held, all trades of that ticker are reported as failures.
+     * The transaction is then rolled back and run again without the trades of such tickers, so that the other
+     * tickers of the group are still added. All trades of the tickers are reported as failures if they could not
+     * be saved.
+     *
+     * @param itemsByTicker Trades to be added grouped by ticker
+     */
+    private void addTradesOfTickers(Map<String, List<TradeBatchItem>> itemsByTicker) {
+        Map<String, List<TradeBatchItem>> addedItems = new LinkedHashMap<>(itemsByTicker);
+        try {
+            withLocksOfTickers(itemsByTicker.keySet(), () -> {
+                Map<String, InvalidTransactionException> rejectedTickers;
+                do {
+                    rejectedTickers = transactionTemplate.execute(status -> {
+                        Map<String, InvalidTransactionException> rejected = writeTradesOfTickers(addedItems);
+                        if (!rejected.isEmpty()) {
+                            status.setRollbackOnly();
+                        }
+                        return rejected;
+                    });
+                    rejectedTickers.forEach((ticker, invalidTransactionException) -> {
+                        log.info("Trades of ticker : {} change it's past holdings : {}", ticker,
+                                invalidTransactionException.getMessage());
+                        addedItems.remove(ticker).stream()
+                                .filter(TradeBatchItem::isValid)
+                                .forEach(item -> {
+                                    item.trade.setTradeId(null);
+                                    reject(item, invalidTransactionException);
+                                });
+                    });
+                } while (!rejectedTickers.isEmpty() && !addedItems.isEmpty());
+            });
+            tradeMetrics.recordWritten(Outcome.ADDED, addedItems.values().stream()
+                    .flatMap(List::stream)
+                    .filter(TradeBatchItem::isValid)
+                    .map(item -> item.trade)
+                    .collect(Collectors.toList()));
+        } catch (DataAccessException | TransactionException exception) {
+            log.error("Could not save trades of tickers : {}", addedItems.keySet(), exception);
+            addedItems.values().stream()
+                    .flatMap(List::stream)
+                    .filter(TradeBatchItem::isValid)
+                    .forEach(item -> {
+                        item.trade.setTradeId(null);
+                        item.failure = "Trade could not be saved";
+                        tradeMetrics.recordFailed(item.trade, exception);
+                    });
+        }
+    }
+
+    /**
+     * Writes trades and the holdings they change, in the transaction of their tickers. Snapshots and recomputed
+     * holdings are checked one ticker at a time, so every ticker whose trades cannot be added is found in one run.
+     * Holdings are written only if all tickers can be added
+     *
+     * @param itemsByTicker Trades to be added grouped by ticker. Trades already failed are skipped
+     * @return Reason the trades of each ticker cannot be added, empty if all of them can be
+     */
+    private Map<String, InvalidTransactionException> writeTradesOfTickers(
+            Map<String, List<TradeBatchItem>> itemsByTicker) {
+        Map<String, Holding> holdings = holdingJdbcRepository.findAllById(itemsByTicker.keySet()).stream()
+                .collect(Collectors.toMap(Holding::getTicker, Function.identity()));
+        Map<String, List<Trade>> tradesByTicker = new LinkedHashMap<>();
+        List<Holding> changedHoldings = new ArrayList<>();
+        List<String> closedTickers = new ArrayList<>();
+        List<String> recomputedTickers = new ArrayList<>();
+        itemsByTicker.forEach((ticker, items) -> {
+            List<TradeBatchItem> sortedItems = items.stream()
+                    .filter(TradeBatchItem::isValid)
+                    .sorted(Comparator.comparing(item -> item.trade.getLastUpdated()))
+                    .collect(Collectors.toList());
+            if (sortedItems.isEmpty()) {
+                return;
+            }
+            List<Trade> trades = new ArrayList<>();
+            tradesByTicker.put(ticker, trades);
+            if (!isInOrder(holdings.get(ticker), sortedItems)) {
+                sortedItems.forEach(item -> trades.add(item.trade));
+                recomputedTickers.add(ticker);
+                return;
+            }
+            Holding holding = Optional.ofNullable(holdings.get(ticker)).orElseGet(() -> getEmptyHolding(ticker));
+            sortedItems.forEach(item -> addTrade(holding, item, trades));
+            if (trades.isEmpty()) {
+                return;
+            }
+            if (BigInteger.ZERO.equals(holding.getShares())) {
+                if (holdings.containsKey(ticker)) {
+                    closedTickers.add(ticker);
+                }
+            } else {
+                changedHoldings.add(holding);
+            }
+        });
+        tradeJdbcRepository.saveAll(tradesByTicker.values().stream()
+                .flatMap(List::stream)
+                .collect(Collectors.toList()));
+        Map<String, InvalidTransactionException> rejectedTickers = new LinkedHashMap<>();
+        tradesByTicker.forEach((ticker, trades) -> {
+            try {
+                holdingSnapshotService.applyTrades(trades, Collections.emptyList());
+            } catch (InvalidTransactionException invalidTransactionException) {
+                rejectedTickers.put(ticker, invalidTransactionException);
+            }
+        });
+        recomputedTickers.stream()
+                .filter(ticker -> !rejectedTickers.containsKey(ticker))
+                .forEach(ticker -> {
+                    try {
+                        Optional<Holding> holding = holdingSnapshotService.recomputeHolding(ticker);
+                        if (holding.isPresent()) {
+                            changedHoldings.add(holding.get());
+                        } else if (holdings.containsKey(ticker)) {
+                            closedTickers.add(ticker);
+                        }
+                    } catch (InvalidTransactionException invalidTransactionException) {
+                        rejectedTickers.put(ticker, invalidTransactionException);
+                    }
+                });
+        if (rejectedTickers.isEmpty()) {
+            holdingJdbcRepository.saveAll(changedHoldings);
+            holdingJdbcRepository.deleteAllById(closedTickers);
+        }
+        return rejectedTickers;
+    }
+
+    /**
+     * Tells whether trades of a ticker, in time order, can be applied to it's holding as it is. Otherwise the holding
+     * is recomputed once the trades are written, applying all the trades of the ticker in the order they were executed
+     */
+    private boolean isInOrder(Holding holding, List<TradeBatchItem> sortedItems) {
+        return isTradeInOrder(holding, sortedItems.get(0).trade.getLastUpdated(),
+                sortedItems.stream().allMatch(item -> item.executedNow));
+    }
+
+    /**
+     * Applies trade to holding. Holding is left unchanged and the trade is marked as failed if it is not valid
+     */
+    private void addTrade(Holding holding, TradeBatchItem item, List<Trade> trades) {
+        try {
+            if (TransactionType.SELL == item.trade.getTransactionType() && BigInteger.ZERO.equals(holding.getShares())) {
+                throw new InvalidTransactionException(Reason.NO_SHARES_TO_SELL);
+            }
+            addTradeInOrder(holding, item.trade);
+            trades.add(item.trade);
+        } catch (InvalidTransactionException invalidTransactionException) {
+            reject(item, invalidTransactionException);
+        }
+    }
+
+    /**
+     * Runs the transactions of a group of tickers holding their locks. Holdings of the tickers not yet written
+     * behind to db are written first, and cached holdings of the tickers are dropped before the locks are released
+     */
+    private void withLocksOfTickers(Collection<String> tickers, Runnable write) {
+        tickerLocks.withLocks(tickers, () -> {
+            holdingCache.flush(tickers);
+            try {
+                write.run();
+                return null;
+            } finally {
+                tickers.forEach(holdingCache::evict);
+            }
+        });
+    }
+
+    private Holding getEmptyHolding(String ticker) {
+        return Holding.builder()
+                .ticker(ticker)
+                .shares(BigInteger.ZERO)
+                .totalPrice(BigDecimal.ZERO)
+                .averageBuyPrice(BigDecimal.ZERO)
+                .build();
+    }
+
+    /**
+     * Trade of a batch along with it's position in the batch and the reason it failed, if it did
+     */
+    private static class TradeBatchItem {
+        private final int index;
+        private Trade trade;
+        private String failure;
+        private boolean executedNow;
+
+        private TradeBatchItem(int index) {
+            this.index = index;
+        }
+
+        private boolean isValid() {
+            return null == failure;
+        }
+    }
+
+}
@@ -0,0 +1,134 @@
+package dev.rakshit.portfoliotrackingapi.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SequenceWriter;
+import dev.rakshit.portfoliotrackingapi.models.ExportFormat;
+import dev.rakshit.portfoliotrackingapi.models.Trade;
+import dev.rakshit.portfoliotrackingapi.repository.TradeRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PostConstruct;
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.time.format.DateTimeFormatter;
+import java.util.Iterator;
+import java.util.stream.Stream;
+
+/**
+ * Writes all trades to a stream as they are read from db. Trades are detached from the persistence context
+ * once written, so memory used does not grow with the number of trades.
+ */
+@Slf4j
+@Service
+public class TradeExportService {
+
+    private static final String CSV_HEADER = "trade_id,ticker,transaction_type,price,shares,last_updated";
+
+    @Autowired
+    private TradeRepository tradeRepository;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    private TransactionTemplate readOnlyTransactionTemplate;
+
+    @PostConstruct
+    private void init() {
+        readOnlyTransactionTemplate = new TransactionTemplate(transactionManager);
+        readOnlyTransactionTemplate.setReadOnly(true);
+    }
+
+    /**
+     * Writes all trades ordered by trade id
+     *
+     * @param format       NDJSON writes one JSON trade per line, CSV writes a header line and one line per trade
+     * @param outputStream Stream to which trades are written. It is flushed but not closed
+     * @return Number of trades written
+     */
+    public long exportTrades(ExportFormat format, OutputStream outputStream) {
+        Writer writer = new BufferedWriter(new OutputStreamWriter(outputStream, StandardCharsets.UTF_8));
+        long count = readOnlyTransactionTemplate.execute(status -> {
+            try (Stream<Trade> trades = tradeRepository.streamAll()) {
+                Iterator<Trade> iterator = trades.iterator();
+                return ExportFormat.CSV == format ? writeCsv(iterator, writer) : writeNdjson(iterator, writer);
+            } catch (IOException ioException) {
+                throw new UncheckedIOException(ioException);
+            }
+        });
+        try {
+            writer.flush();
+        } catch (IOException ioException) {
+            throw new UncheckedIOException(ioException);
+        }
+        log.info("Exported {} trades as {}", count, format);
+        return count;
+    }
+
+    private long writeNdjson(Iterator<Trade> trades, Writer writer) throws IOException {
+        long count = 0;
+        SequenceWriter sequenceWriter = objectMapper.writer().withRootValueSeparator("\n").writeValues(writer);
+        while (trades.hasNext()) {
+            Trade trade = trades.next();
+            sequenceWriter.write(trade);
+            entityManager.detach(trade);
+            count++;
+        }
+        sequenceWriter.flush();
+        if (0 < count) {
+            writer.write('\n');
+        }
+        return count;
+    }
+
+    private long writeCsv(Iterator<Trade> trades, Writer writer) throws IOException {
+        long count = 0;
+        writer.write(CSV_HEADER);
+        writer.write('\n');
+        while (trades.hasNext()) {
+            Trade trade = trades.next();
+            writer.write(String.valueOf(trade.getTradeId()));
+            writer.write(',');
+            writer.write(toCsvValue(trade.getTicker()));
+            writer.write(',');
+            writer.write(String.valueOf(trade.getTransactionType()));
+            writer.write(',');
+            writer.write(trade.getPrice().toPlainString());
+            writer.write(',');
+            writer.write(String.valueOf(trade.getShares()));
+            writer.write(',');
+            writer.write(DateTimeFormatter.ISO_LOCAL_DATE_TIME.format(trade.getLastUpdated()));
+            writer.write('\n');
+            entityManager.detach(trade);
+            count++;
+        }
+        return count;
+    }
+
+    /**
+     * Quotes value if it has a comma, quote or line break
+     */
+    private static String toCsvValue(String value) {
+        if (value.contains(",") || value.contains("\"") || value.contains("\n") || value.contains("\r")) {
+            return "\"" + value.replace("\"", "\"\"") + "\"";
+        }
+        return value;
+    }
+
+}
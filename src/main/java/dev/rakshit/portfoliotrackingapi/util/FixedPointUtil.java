@@ -0,0 +1,127 @@
+package dev.rakshit.portfoliotrackingapi.util;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.math.RoundingMode;
+
+/**
+ * Arithmetic on amounts held as longs scaled by 10^SCALE, e.g. 12.5 is held as 12500000.
+ * Quantities like shares are plain longs. Results are rounded HALF_EVEN to SCALE decimal places
+ * and every operation throws ArithmeticException instead of overflowing silently.
+ */
+public class FixedPointUtil {
+
+    public static final int SCALE = 6;
+
+    public static final long ONE = 1_000_000L;
+
+    private static final RoundingMode ROUNDING_MODE = RoundingMode.HALF_EVEN;
+
+    /**
+     * Private Constructor to prevent creation of objects of utility class
+     */
+    private FixedPointUtil() {
+    }
+
+    /**
+     * Converts BigDecimal to amount, rounding it to SCALE decimal places
+     *
+     * @param value BigDecimal to be converted
+     * @return Amount for the value
+     */
+    public static long toAmount(BigDecimal value) {
+        if (0 == value.scale()) {
+            return Math.multiplyExact(value.longValueExact(), ONE);
+        }
+        if (SCALE >= value.scale()) {
+            return value.movePointRight(SCALE).longValueExact();
+        }
+        return value.setScale(SCALE, ROUNDING_MODE).unscaledValue().longValueExact();
+    }
+
+    /**
+     * Converts BigInteger to quantity
+     *
+     * @param value BigInteger to be converted
+     * @return Quantity for the value
+     */
+    public static long toQuantity(BigInteger value) {
+        return value.longValueExact();
+    }
+
+    /**
+     * Converts amount to BigDecimal with the smallest non negative scale which holds it exactly
+     *
+     * @param amount Amount to be converted
+     * @return BigDecimal for the amount
+     */
+    public static BigDecimal toBigDecimal(long amount) {
+        int scale = SCALE;
+        while (0 < scale && 0 == amount % 10) {
+            amount /= 10;
+            scale--;
+        }
+        return BigDecimal.valueOf(amount, scale);
+    }
+
+    public static long add(long amount1, long amount2) {
+        return Math.addExact(amount1, amount2);
+    }
+
+    public static long subtract(long amount1, long amount2) {
+        return Math.subtractExact(amount1, amount2);
+    }
+
+    /**
+     * Multiplies amount by quantity
+     *
+     * @param amount   Amount to be multiplied
+     * @param quantity Quantity to multiply with
+     * @return Amount multiplied by quantity
+     */
+    public static long multiply(long amount, long quantity) {
+        return Math.multiplyExact(amount, quantity);
+    }
+
+    /**
+     * Divides amount by quantity
+     *
+     * @param amount   Amount to be divided
+     * @param quantity Quantity to divide by
+     * @return Amount divided by quantity, rounded to SCALE decimal places
+     */
+    public static long divide(long amount, long quantity) {
+        long quotient = amount / quantity;
+        long remainder = Math.abs(amount % quantity);
+        if (0 == remainder) {
+            return quotient;
+        }
+        long rest = Math.abs(quantity) - remainder;
+        if (remainder > rest || (remainder == rest && 0 != (quotient & 1))) {
+            return 0 > (amount ^ quantity) ? quotient - 1 : quotient + 1;
+        }
+        return quotient;
+    }
+
+    /**
+     * Multiplies amount by multiplier and divides it by divisor without overflowing in between
+     *
+     * @param amount     Amount to be scaled
+     * @param multiplier Quantity to multiply with
+     * @param divisor    Quantity to divide by
+     * @return amount * multiplier / divisor, rounded to SCALE decimal places
+     */
+    public static long multiplyDivide(long amount, long multiplier, long divisor) {
+        long product;
+        try {
+            product = Math.multiplyExact(amount, multiplier);
+        } catch (ArithmeticException arithmeticException) {
+            return BigDecimal.valueOf(amount)
+                    .multiply(BigDecimal.valueOf(multiplier))
+                    .divide(BigDecimal.valueOf(divisor), 0, ROUNDING_MODE)
+                    .longValueExact();
+        }
+        return divide(product, divisor);
+    }
+
+}
@@ -0,0 +1,135 @@
+package dev.rakshit.portfoliotrackingapi.util;
+
+import dev.rakshit.portfoliotrackingapi.exceptions.InvalidTransactionException;
+import dev.rakshit.portfoliotrackingapi.exceptions.InvalidTransactionException.Reason;
+import dev.rakshit.portfoliotrackingapi.models.Holding;
+import dev.rakshit.portfoliotrackingapi.models.HoldingCheckpoint;
+import dev.rakshit.portfoliotrackingapi.models.Trade;
+import dev.rakshit.portfoliotrackingapi.models.TransactionType;
+
+import java.math.BigInteger;
+import java.time.LocalDateTime;
+import java.util.Optional;
+
+import static dev.rakshit.portfoliotrackingapi.util.FixedPointUtil.*;
+
+/**
+ * Mutable running position of one ticker, kept as primitives so that folding a trade allocates nothing and
+ * never changes the trade. Trades are to be accepted in execution order, and each one changes the position
+ * as HoldingUtil.addTradeInOrder changes a holding, so the position is the holding the write paths keep.
+ */
+public class HoldingAccumulator {
+
+    private String ticker;
+    private long shares;
+    private long totalPrice;
+    private long averageBuyPrice;
+    private long lastTradeId;
+    private LocalDateTime lastTradeAt;
+
+    public HoldingAccumulator() {
+    }
+
+    public HoldingAccumulator(String ticker) {
+        this.ticker = ticker;
+    }
+
+    /**
+     * Gives accumulator starting from the position of a checkpoint
+     *
+     * @param checkpoint Checkpoint to start from
+     * @return Accumulator having the position of the checkpoint
+     */
+    public static HoldingAccumulator of(HoldingCheckpoint checkpoint) {
+        HoldingAccumulator accumulator = new HoldingAccumulator(checkpoint.getTicker());
+        accumulator.shares = toQuantity(checkpoint.getShares());
+        accumulator.totalPrice = toAmount(checkpoint.getTotalPrice());
+        accumulator.averageBuyPrice = toAmount(checkpoint.getAverageBuyPrice());
+        accumulator.lastTradeId = null == checkpoint.getLastTradeId() ? 0L : checkpoint.getLastTradeId();
+        accumulator.lastTradeAt = checkpoint.getLastUpdated();
+        return accumulator;
+    }
+
+    /**
+     * Adds trade executed at or after all the trades accepted so far to the position.
+     * Bought shares are added at their price and sold shares are taken out at the average buy price
+     *
+     * @param trade Trade to be added. Throws InvalidTransactionException with HOLDING_SHARES_NEGATIVE
+     *              if trade sells more shares than held
+     */
+    public void accept(Trade trade) {
+        if (null == ticker) {
+            ticker = trade.getTicker();
+        }
+        long tradeShares = toQuantity(trade.getShares());
+        if (TransactionType.BUY == trade.getTransactionType()) {
+            totalPrice = add(totalPrice, multiply(toAmount(trade.getPrice()), tradeShares));
+            shares = Math.addExact(shares, tradeShares);
+            averageBuyPrice = divide(totalPrice, shares);
+        } else {
+            if (tradeShares > shares) {
+                throw new InvalidTransactionException(Reason.HOLDING_SHARES_NEGATIVE);
+            }
+            totalPrice = subtract(totalPrice, 0 == shares ? 0L : multiplyDivide(totalPrice, tradeShares, shares));
+            shares -= tradeShares;
+            if (0 == shares) {
+                averageBuyPrice = 0L;
+            }
+        }
+        if (null != trade.getTradeId() && lastTradeId < trade.getTradeId()) {
+            lastTradeId = trade.getTradeId();
+        }
+        lastTradeAt = trade.getLastUpdated();
+    }
+
+    public String getTicker() {
+        return ticker;
+    }
+
+    public long getLastTradeId() {
+        return lastTradeId;
+    }
+
+    /**
+     * @return Execution time of the latest trade accepted, null if none was
+     */
+    public LocalDateTime getLastTradeAt() {
+        return lastTradeAt;
+    }
+
+    /**
+     * Gets holding of the position, last updated at the execution time of the latest trade
+     *
+     * @return Optional of holding obtained from the position.
+     * Empty optional is returned if no shares are left
+     */
+    public Optional<Holding> toHolding() {
+        if (0 >= shares) {
+            return Optional.empty();
+        }
+        return Optional.of(Holding.builder()
+                .ticker(ticker)
+                .shares(BigInteger.valueOf(shares))
+                .totalPrice(toBigDecimal(totalPrice))
+                .averageBuyPrice(toBigDecimal(averageBuyPrice))
+                .lastUpdated(lastTradeAt)
+                .build());
+    }
+
+    /**
+     * Gets checkpoint covering the accumulated trades
+     *
+     * @return Checkpoint having the position of this accumulator
+     */
+    public HoldingCheckpoint toCheckpoint() {
+        return HoldingCheckpoint.builder()
+                .ticker(ticker)
+                .shares(BigInteger.valueOf(shares))
+                .totalPrice(toBigDecimal(totalPrice))
+                .averageBuyPrice(toBigDecimal(averageBuyPrice))
+                .lastTradeId(lastTradeId)
+                .lastUpdated(lastTradeAt)
+                .build();
+    }
+
+}
@@ -1,19 +1,49 @@
 package dev.rakshit.portfoliotrackingapi.util;
 
 import dev.rakshit.portfoliotrackingapi.exceptions.InvalidTransactionException;
+import dev.rakshit.portfoliotrackingapi.exceptions.InvalidTransactionException.Reason;
 import dev.rakshit.portfoliotrackingapi.models.Holding;
+import dev.rakshit.portfoliotrackingapi.models.HoldingCheckpoint;
 import dev.rakshit.portfoliotrackingapi.models.Trade;
 import dev.rakshit.portfoliotrackingapi.models.TransactionType;
+import io.micrometer.core.instrument.Metrics;
+import io.micrometer.core.instrument.Timer;
 
 import java.math.BigDecimal;
 import java.math.BigInteger;
-import java.math.MathContext;
 import java.time.LocalDateTime;
 import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.Collector;
 import java.util.stream.Collectors;
 
+import static dev.rakshit.portfoliotrackingapi.util.FixedPointUtil.*;
+
 public class HoldingUtil {
 
+    /**
+     * Timer of the operations, tagged with the operation timed. Timers are registered on the global registry,
+     * which the application's registries are added to, and do nothing when no registry is added
+     */
+    public static final String TIMER_NAME = "portfolio.holding.util";
+
+    private static final Timer ADD_TRADE_TIMER = timer("addTradeToHolding");
+    private static final Timer DELETE_TRADE_TIMER = timer("deleteTradeFromHolding");
+    private static final Timer UPDATE_TRADE_TIMER = timer("updateTradeInHolding");
+    private static final Timer HOLDINGS_FROM_TRADES_TIMER = timer("getHoldingsFromTrades");
+    private static final Timer CHECKPOINTS_FROM_TRADES_TIMER = timer("getCheckpointsFromTrades");
+    private static final Timer CHECKPOINT_FROM_TRADES_TIMER = timer("getCheckpointFromTrades");
+    private static final Timer ADD_TRADES_TO_CHECKPOINT_TIMER = timer("addTradesToCheckpoint");
+    private static final Timer HOLDING_FROM_CHECKPOINT_TIMER = timer("getHoldingFromCheckpoint");
+
+    /**
+     * Order in which trades of a ticker are applied to it's holding. Trades executed at the same time
+     * are applied in the order they were added
+     */
+    public static final Comparator<Trade> EXECUTION_ORDER = Comparator
+            .comparing(Trade::getLastUpdated, Comparator.nullsLast(Comparator.naturalOrder()))
+            .thenComparing(Trade::getTradeId, Comparator.nullsLast(Comparator.naturalOrder()));
+
     private enum TradeType {
         ADD,
         DELETE,
@@ -26,6 +56,14 @@ public class HoldingUtil {
     private HoldingUtil() {
     }
 
+    private static Timer timer(String operation) {
+        return Timer.builder(TIMER_NAME)
+                .description("Time taken by holding calculations")
+                .tag("operation", operation)
+                .publishPercentileHistogram()
+                .register(Metrics.globalRegistry);
+    }
+
     /**
      * Updates holdings price and shares after adding trade to it
      *
@@ -34,7 +72,58 @@ public class HoldingUtil {
      * @return Holding object after updating it's price and shares
      */
     public static Holding addTradeToHolding(Holding holding, Trade trade) {
-        return updateTradeInHolding(TradeType.ADD, holding, trade, null);
+        return ADD_TRADE_TIMER.record(() -> updateTradeInHolding(TradeType.ADD, holding, trade, null));
+    }
+
+    /**
+     * Updates holdings price and shares after adding a trade executed at or after the trades already applied to it,
+     * as addTradeToHolding does. Last updated time of the holding is the execution time of the trade, so that a
+     * trade executed before any of the trades applied can be told apart
+     *
+     * @param holding Holding object to be updated
+     * @param trade   Trade object to be added
+     * @return Holding object after updating it's price and shares. Throws InvalidTransactionException
+     * with HOLDING_SHARES_NEGATIVE if trade sells more shares than held
+     */
+    public static Holding addTradeInOrder(Holding holding, Trade trade) {
+        if (TransactionType.SELL == trade.getTransactionType() && 0 < trade.getShares().compareTo(holding.getShares())) {
+            throw new InvalidTransactionException(Reason.HOLDING_SHARES_NEGATIVE);
+        }
+        addTradeToHolding(holding, trade);
+        holding.setLastUpdated(trade.getLastUpdated());
+        return holding;
+    }
+
+    /**
+     * Tells whether a trade can be added to a holding with addTradeInOrder, that is whether it was executed at or
+     * after all the trades applied to the holding. A ticker having no holding can have older trades whose shares
+     * are all sold, so a trade of it is in order only if it is executed now
+     *
+     * @param holding     Holding of the trade's ticker, null if it has none
+     * @param executedAt  Time at which the trade was executed
+     * @param executedNow Whether the trade was given no execution time and is executed now
+     * @return true if the trade can be added to the holding as it is, and false if the holding is to be recomputed
+     */
+    public static boolean isTradeInOrder(Holding holding, LocalDateTime executedAt, boolean executedNow) {
+        if (null == holding || null == holding.getLastUpdated()) {
+            return executedNow;
+        }
+        return !executedAt.isBefore(holding.getLastUpdated());
+    }
+
+    /**
+     * Gives a holding having no shares
+     *
+     * @param ticker Ticker of the holding
+     * @return Holding with shares and prices as zero
+     */
+    public static Holding getEmptyHolding(String ticker) {
+        return Holding.builder()
+                .ticker(ticker)
+                .shares(BigInteger.ZERO)
+                .totalPrice(BigDecimal.ZERO)
+                .averageBuyPrice(BigDecimal.ZERO)
+                .build();
     }
 
     /**
@@ -45,7 +134,7 @@ public class HoldingUtil {
      * @return Holding object after updating it's price and shares
      */
     public static Holding deleteTradeFromHolding(Holding holding, Trade trade) {
-        return updateTradeInHolding(TradeType.DELETE, holding, trade, null);
+        return DELETE_TRADE_TIMER.record(() -> updateTradeInHolding(TradeType.DELETE, holding, trade, null));
     }
 
     /**
@@ -65,10 +154,13 @@ public class HoldingUtil {
             assert newHolding.getTicker().equals(newTrade.getTicker());
         }
         assert oldHolding.getTicker().equals(oldTrade.getTicker());
-        if (null == newHolding || oldTrade.getTicker().equals(newTrade.getTicker())) {
-            return Collections.singletonList(updateTradeInHolding(oldHolding, oldTrade, newTrade));
-        }
-        return Arrays.asList(deleteTradeFromHolding(oldHolding, oldTrade), addTradeToHolding(newHolding, newTrade));
+        return UPDATE_TRADE_TIMER.record(() -> {
+            if (null == newHolding || oldTrade.getTicker().equals(newTrade.getTicker())) {
+                return Collections.singletonList(updateTradeInHolding(oldHolding, oldTrade, newTrade));
+            }
+            return Arrays.asList(updateTradeInHolding(TradeType.DELETE, oldHolding, oldTrade, null),
+                    updateTradeInHolding(TradeType.ADD, newHolding, newTrade, null));
+        });
     }
 
     /**
@@ -85,27 +177,132 @@ public class HoldingUtil {
     }
 
     /**
-     * Updates all holdings price and shares after updating it based on trades
+     * Updates all holdings price and shares after updating it based on trades.
+     * Trades of each ticker are replayed in execution order, as addTradeInOrder adds them, and are not modified
      *
      * @param trades Trades based on which the holdings will get updated
      * @return Holdings after updating it's price and shares
      */
     public static List<Holding> getHoldingsFromTrades(List<Trade> trades) {
-        return trades.stream()
-                .collect(Collectors.groupingBy(Trade::getTicker))
+        return HOLDINGS_FROM_TRADES_TIMER.record(() -> trades.stream()
+                .collect(groupingByTicker())
                 .values()
                 .stream()
-                .map(HoldingUtil::getTradesCombinedByTicker)
+                .map(HoldingAccumulator::toHolding)
                 .filter(Optional::isPresent)
                 .map(Optional::get)
-                .filter(trade -> !BigInteger.ZERO.equals(trade.getShares()))
-                .map(HoldingUtil::getHoldings)
-                .collect(Collectors.toList());
+                .collect(Collectors.toList()));
+    }
+
+    /**
+     * Gives collector folding trades into one accumulator per ticker. Trades of a ticker are collected first
+     * and folded in execution order, so the collector works for sequential as well as parallel streams
+     *
+     * @return Collector giving map of ticker to accumulator of it's trades
+     */
+    public static Collector<Trade, ?, Map<String, HoldingAccumulator>> groupingByTicker() {
+        return Collectors.groupingBy(Trade::getTicker,
+                Collectors.collectingAndThen(Collectors.toList(), HoldingUtil::accumulateInOrder));
+    }
+
+    /**
+     * Gets checkpoints of all tickers from trades. Trades are grouped by ticker and the trades of each ticker
+     * are replayed in execution order, with parallel streams running on the given pool
+     *
+     * @param trades Trades from which the checkpoints are to be obtained
+     * @param pool   ForkJoinPool on which the checkpoints are computed
+     * @return Checkpoints of all the tickers present in trades
+     */
+    public static List<HoldingCheckpoint> getCheckpointsFromTrades(List<Trade> trades, ForkJoinPool pool) {
+        return CHECKPOINTS_FROM_TRADES_TIMER.record(() -> pool.submit(() -> trades.parallelStream()
+                .collect(Collectors.groupingBy(Trade::getTicker))
+                .values()
+                .parallelStream()
+                .map(HoldingUtil::accumulateInOrder)
+                .map(HoldingAccumulator::toCheckpoint)
+                .collect(Collectors.toList())
+        ).join());
+    }
+
+    /**
+     * Gets checkpoint of a ticker from it's trades, replayed in execution order
+     *
+     * @param ticker Ticker of the checkpoint
+     * @param trades Trades of the ticker
+     * @return Checkpoint covering all the given trades
+     */
+    public static HoldingCheckpoint getCheckpointFromTrades(String ticker, List<Trade> trades) {
+        return CHECKPOINT_FROM_TRADES_TIMER.record(() -> {
+            HoldingAccumulator accumulator = new HoldingAccumulator(ticker);
+            inExecutionOrder(trades).forEach(accumulator::accept);
+            return accumulator.toCheckpoint();
+        });
+    }
+
+    /**
+     * Gives a checkpoint which covers no trades
+     *
+     * @param ticker Ticker of the checkpoint
+     * @return Checkpoint with shares and prices as zero
+     */
+    public static HoldingCheckpoint getEmptyCheckpoint(String ticker) {
+        return new HoldingAccumulator(ticker).toCheckpoint();
+    }
+
+    /**
+     * Gets checkpoint after replaying trades in execution order on the position of a checkpoint.
+     * Trades already covered by the checkpoint are skipped. The others can only be replayed on it if none
+     * of them was executed before the latest trade covered
+     *
+     * @param checkpoint Checkpoint of the trades' ticker
+     * @param trades     Trades to be added
+     * @return Optional of checkpoint covering the given trades along with the ones covered by checkpoint.
+     * Empty optional is returned if a trade was executed before the latest trade covered, and the checkpoint
+     * is then to be rebuilt from all the trades of it's ticker
+     */
+    public static Optional<HoldingCheckpoint> addTradesToCheckpoint(HoldingCheckpoint checkpoint, List<Trade> trades) {
+        return ADD_TRADES_TO_CHECKPOINT_TIMER.record(() -> {
+            HoldingAccumulator accumulator = HoldingAccumulator.of(checkpoint);
+            long lastTradeId = accumulator.getLastTradeId();
+            LocalDateTime lastTradeAt = accumulator.getLastTradeAt();
+            List<Trade> newTrades = inExecutionOrder(trades.stream()
+                    .filter(trade -> trade.getTradeId() > lastTradeId)
+                    .collect(Collectors.toList()));
+            if (null != lastTradeAt && newTrades.stream().anyMatch(trade -> trade.getLastUpdated().isBefore(lastTradeAt))) {
+                return Optional.empty();
+            }
+            newTrades.forEach(accumulator::accept);
+            return Optional.of(accumulator.toCheckpoint());
+        });
+    }
+
+    /**
+     * Gets holding from the position of a checkpoint.
+     * Gives the same holding as getHoldingsFromTrades for the trades covered by the checkpoint
+     *
+     * @param checkpoint Checkpoint from which holding is to be obtained
+     * @return Optional of holding obtained from checkpoint.
+     * Empty optional is returned if no shares are left
+     */
+    public static Optional<Holding> getHoldingFromCheckpoint(HoldingCheckpoint checkpoint) {
+        return HOLDING_FROM_CHECKPOINT_TIMER.record(() -> HoldingAccumulator.of(checkpoint).toHolding());
+    }
+
+    /**
+     * Takes holding and calculates its return
+     *
+     * @param holding      Holding for which return is to be calculated
+     * @param currentPrice Current price of the holding's ticker
+     * @return Net Return calculated from the given holding as a fixed point amount
+     */
+    public static long getReturnsByHolding(Holding holding, BigDecimal currentPrice) {
+        long priceDifference = subtract(toAmount(currentPrice), toAmount(holding.getAverageBuyPrice()));
+        return multiply(priceDifference, toQuantity(holding.getShares()));
     }
 
     /**
      * Updates holdings price and shares after adding, updating or deleting trade
-     * Both trades should be of same ticker
+     * Both trades should be of same ticker. Holding is left unchanged if the transaction is invalid
      *
      * @param tradeType Tells whether trade is to be added, updated or deleted
      * @param holding   Holding to be updated
@@ -119,143 +316,102 @@ public class HoldingUtil {
             Trade trade,
             Trade newTrade
     ) {
-        if (TradeType.UPDATE == tradeType) {
-            updatePriceAndShare(TradeType.DELETE, holding, trade);
-            updatePriceAndShare(TradeType.ADD, holding, newTrade);
-        } else {
-            updatePriceAndShare(tradeType, holding, trade);
+        Position position = new Position(holding);
+        try {
+            if (TradeType.UPDATE == tradeType) {
+                updatePriceAndShare(TradeType.DELETE, position, trade);
+                updatePriceAndShare(TradeType.ADD, position, newTrade);
+            } else {
+                updatePriceAndShare(tradeType, position, trade);
+            }
+        } catch (ArithmeticException arithmeticException) {
+            throw new InvalidTransactionException(Reason.HOLDING_OVERFLOW);
         }
-        if (holding.getTotalPrice().doubleValue() < 0) {
-            throw new InvalidTransactionException("Invalid Transaction Causing Price Negative");
+        if (position.totalPrice < 0) {
+            throw new InvalidTransactionException(Reason.HOLDING_PRICE_NEGATIVE);
         }
-        if (holding.getShares().longValue() < 0) {
-            throw new InvalidTransactionException("Invalid Transaction Causing Shares Negative");
+        if (position.shares < 0) {
+            throw new InvalidTransactionException(Reason.HOLDING_SHARES_NEGATIVE);
         }
+        holding.setTotalPrice(toBigDecimal(position.totalPrice));
+        holding.setShares(BigInteger.valueOf(position.shares));
+        holding.setAverageBuyPrice(toBigDecimal(position.averageBuyPrice));
         holding.setLastUpdated(LocalDateTime.now());
         return holding;
     }
 
     /**
-     * Updates holdings price and shares after adding or deleting trade
+     * Updates position's price and shares after adding or deleting trade.
+     * Deleting a trade is treated as adding the opposite transaction
      *
      * @param tradeType Tells whether trade is to be added or deleted trade
-     * @param holding   Holding to be updated
+     * @param position  Position of the holding to be updated
      * @param trade     Trade to be added or deleted
      */
-    private static void updatePriceAndShare(TradeType tradeType, Holding holding, Trade trade) {
-        BigDecimal tradeShares = BigDecimal.valueOf(trade.getShares().longValue());
-        BigDecimal price = TransactionType.BUY == trade.getTransactionType() ?
-                tradeShares.multiply(trade.getPrice()) :
-                tradeShares.multiply(holding.getTotalPrice())
-                        .divide(BigDecimal.valueOf(holding.getShares().longValue()), MathContext.DECIMAL128);
-        if (TradeType.DELETE == tradeType) {
-            trade.setTransactionType(TransactionType.BUY == trade.getTransactionType() ? TransactionType.SELL : TransactionType.BUY);
-        }
+    private static void updatePriceAndShare(TradeType tradeType, Position position, Trade trade) {
+        long tradeShares = toQuantity(trade.getShares());
+        long price;
         if (TransactionType.BUY == trade.getTransactionType()) {
-            holding.setTotalPrice(holding.getTotalPrice().add(price));
-            holding.setShares(holding.getShares().add(trade.getShares()));
+            price = multiply(toAmount(trade.getPrice()), tradeShares);
+        } else {
+            price = 0 == position.shares ? 0L : multiplyDivide(position.totalPrice, tradeShares, position.shares);
+        }
+        boolean isBuy = (TransactionType.BUY == trade.getTransactionType()) != (TradeType.DELETE == tradeType);
+        if (isBuy) {
+            position.totalPrice = add(position.totalPrice, price);
+            position.shares = Math.addExact(position.shares, tradeShares);
             if (TradeType.DELETE != tradeType) {
-                holding.setAverageBuyPrice(
-                        holding.getTotalPrice().divide(
-                                BigDecimal.valueOf(holding.getShares().intValue()), MathContext.DECIMAL128
-                        )
-                );
+                position.averageBuyPrice = divide(position.totalPrice, position.shares);
             }
         } else {
-            BigDecimal netPrice = holding.getTotalPrice().subtract(price);
-            holding.setTotalPrice(netPrice);
-            BigInteger netShares = holding.getShares().subtract(trade.getShares());
-            holding.setShares(netShares);
-            if (BigInteger.ZERO.equals(holding.getShares())) {
-                holding.setAverageBuyPrice(BigDecimal.ZERO);
+            position.totalPrice = subtract(position.totalPrice, price);
+            position.shares = Math.subtractExact(position.shares, tradeShares);
+            if (0 == position.shares) {
+                position.averageBuyPrice = 0L;
             } else if (TradeType.DELETE == tradeType) {
-                holding.setAverageBuyPrice(
-                        holding.getTotalPrice().divide(
-                                BigDecimal.valueOf(holding.getShares().intValue()), MathContext.DECIMAL128
-                        )
-                );
+                position.averageBuyPrice = divide(position.totalPrice, position.shares);
             }
         }
     }
 
     /**
-     * Combines trades by ticker
+     * Folds trades of a ticker into an accumulator in execution order
      *
-     * @param trades List of trades to be combined
-     * @return Optional of trade combined by ticker i.e one trade per ticker.
-     * Empty optional is returned if list is empty
+     * @param trades Trades of one ticker
+     * @return Accumulator having the position after all the trades
      */
-    private static Optional<Trade> getTradesCombinedByTicker(List<Trade> trades) {
-        return trades.stream()
-                .collect(Collectors.groupingBy(Trade::getTransactionType))
-                .values()
-                .stream()
-                .map(HoldingUtil::getTradesCombinedByTransactionType)
-                .filter(Optional::isPresent)
-                .map(Optional::get)
-                .reduce((t1, t2) -> {
-                    Trade trade1, trade2;
-                    if (TransactionType.BUY == t1.getTransactionType()) {
-                        trade1 = t1;
-                        trade2 = t2;
-                    } else {
-                        trade1 = t2;
-                        trade2 = t1;
-                    }
-                    BigInteger trade1Shares = trade1.getShares();
-                    BigInteger trade2Shares = trade2.getShares();
-                    BigInteger netShares = trade1Shares.subtract(trade2Shares);
-                    BigDecimal netPrice = trade1.getPrice()
-                            .multiply(BigDecimal.valueOf(netShares.intValue()))
-                            .divide(BigDecimal.valueOf(trade1Shares.intValue()), MathContext.DECIMAL128);
-                    LocalDateTime lastUpdated = trade2.getLastUpdated().isAfter(trade1.getLastUpdated()) ? trade2.getLastUpdated() : trade1.getLastUpdated();
-                    return Trade.builder()
-                            .ticker(trade2.getTicker())
-                            .shares(netShares)
-                            .price(netPrice)
-                            .lastUpdated(lastUpdated)
-                            .build();
-                });
+    private static HoldingAccumulator accumulateInOrder(List<Trade> trades) {
+        HoldingAccumulator accumulator = new HoldingAccumulator();
+        inExecutionOrder(trades).forEach(accumulator::accept);
+        return accumulator;
     }
 
     /**
-     * Combines trades by transactionType
+     * Gives trades sorted in the order they were executed, that is by last updated time and then by trade id.
+     * Given list is not modified
      *
-     * @param trades List of trades to be combined
-     * @return Optional of trade combined By transactionType i.e one trade per transactionType.
-     * Empty optional is returned if list is empty
+     * @param trades Trades to be sorted
+     * @return Copy of trades in execution order
      */
-    private static Optional<Trade> getTradesCombinedByTransactionType(List<Trade> trades) {
-        return trades.stream()
-                .sorted(Comparator.comparing(Trade::getLastUpdated))
-                .peek(trade -> trade.setPrice(trade.getPrice().multiply(BigDecimal.valueOf(trade.getShares().intValue()))))
-                .reduce((trade1, trade2) -> {
-                    return Trade.builder()
-                            .ticker(trade2.getTicker())
-                            .shares(trade1.getShares().add(trade2.getShares()))
-                            .price(trade1.getPrice().add(trade2.getPrice()))
-                            .transactionType(trade2.getTransactionType())
-                            .lastUpdated(trade2.getLastUpdated())
-                            .build();
-                });
+    private static List<Trade> inExecutionOrder(List<Trade> trades) {
+        List<Trade> sortedTrades = new ArrayList<>(trades);
+        sortedTrades.sort(EXECUTION_ORDER);
+        return sortedTrades;
     }
 
     /**
-     * Gets holding from trade combined by ticker
-     *
-     * @param trade Trade combined by ticker
-     * @return Holding obtained from trade combined By ticker
+     * Price and shares of a holding while trades are being applied to it
      */
-    private static Holding getHoldings(Trade trade) {
-        BigDecimal averagePrice = trade.getPrice()
-                .divide(BigDecimal.valueOf(trade.getShares().intValue()), MathContext.DECIMAL128);
-        return Holding.builder()
-                .ticker(trade.getTicker())
-                .shares(trade.getShares())
-                .totalPrice(trade.getPrice())
-                .averageBuyPrice(averagePrice)
-                .lastUpdated(LocalDateTime.now())
-                .build();
+    private static class Position {
+        private long totalPrice;
+        private long shares;
+        private long averageBuyPrice;
+
+        private Position(Holding holding) {
+            totalPrice = toAmount(holding.getTotalPrice());
+            shares = toQuantity(holding.getShares());
+            averageBuyPrice = null == holding.getAverageBuyPrice() ? 0L : toAmount(holding.getAverageBuyPrice());
+        }
     }
 
 }
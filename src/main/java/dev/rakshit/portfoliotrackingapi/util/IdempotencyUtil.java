@@ -0,0 +1,62 @@
+package dev.rakshit.portfoliotrackingapi.util;
+
+import dev.rakshit.portfoliotrackingapi.exceptions.UnprocessableEntityException;
+import dev.rakshit.portfoliotrackingapi.models.Trade;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Base64;
+import java.util.Objects;
+
+/**
+ * Tells a retried trade request apart from another trade sent with the same Idempotency-Key
+ */
+public class IdempotencyUtil {
+
+    private static final String SEPARATOR = "|";
+
+    /**
+     * Private Constructor to prevent creation of objects of utility class
+     */
+    private IdempotencyUtil() {
+    }
+
+    /**
+     * Gives SHA-256 hash of the fields of a trade as sent by the client. Prices are hashed by value,
+     * so 12.5 and 12.50 give the same hash
+     *
+     * @param trade Trade from the request body
+     * @return Url safe hash of the trade
+     */
+    public static String getRequestHash(Trade trade) {
+        String request = String.join(SEPARATOR,
+                Objects.toString(trade.getTradeId(), ""),
+                Objects.toString(trade.getTicker(), ""),
+                Objects.toString(trade.getTransactionType(), ""),
+                null == trade.getPrice() ? "" : trade.getPrice().stripTrailingZeros().toPlainString(),
+                Objects.toString(trade.getShares(), ""),
+                Objects.toString(trade.getLastUpdated(), ""));
+        try {
+            byte[] hash = MessageDigest.getInstance("SHA-256").digest(request.getBytes(StandardCharsets.UTF_8));
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(hash);
+        } catch (NoSuchAlgorithmException noSuchAlgorithmException) {
+            throw new IllegalStateException("SHA-256 is not available", noSuchAlgorithmException);
+        }
+    }
+
+    /**
+     * Checks that a request reusing an Idempotency-Key is a retry of the request which first used it.
+     * Throws UnprocessableEntityException if their hashes differ. Requests without a hash, such as trades
+     * added before hashes were kept, are taken as retries
+     *
+     * @param requestHash Hash of the request reusing the key
+     * @param storedHash  Hash of the request which first used the key
+     */
+    public static void checkSameRequest(String requestHash, String storedHash) {
+        if (null != requestHash && null != storedHash && !requestHash.equals(storedHash)) {
+            throw new UnprocessableEntityException("Idempotency-Key was already used for another trade");
+        }
+    }
+
+}
@@ -0,0 +1,56 @@
+package dev.rakshit.portfoliotrackingapi.util;
+
+import dev.rakshit.portfoliotrackingapi.exceptions.BadRequestException;
+import dev.rakshit.portfoliotrackingapi.models.TradeCursor;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.Base64;
+
+/**
+ * Encodes cursors of trade pages as opaque url safe tokens
+ */
+public class PageTokenUtil {
+
+    private static final String SEPARATOR = "|";
+
+    /**
+     * Private Constructor to prevent creation of objects of utility class
+     */
+    private PageTokenUtil() {
+    }
+
+    /**
+     * Encodes cursor into page token
+     *
+     * @param cursor Cursor to be encoded
+     * @return Page token for the cursor
+     */
+    public static String toPageToken(TradeCursor cursor) {
+        String token = cursor.getLastUpdated() + SEPARATOR + cursor.getTradeId();
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(token.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Decodes page token into cursor. Throws BadRequestException if it is not a valid page token
+     *
+     * @param pageToken Page token to be decoded
+     * @return Cursor of the page token
+     */
+    public static TradeCursor toCursor(String pageToken) {
+        try {
+            String token = new String(Base64.getUrlDecoder().decode(pageToken), StandardCharsets.UTF_8);
+            int separatorIndex = token.lastIndexOf(SEPARATOR);
+            if (0 > separatorIndex) {
+                throw new BadRequestException("Invalid page token");
+            }
+            return new TradeCursor(
+                    LocalDateTime.parse(token.substring(0, separatorIndex)),
+                    Long.valueOf(token.substring(separatorIndex + 1)));
+        } catch (IllegalArgumentException | DateTimeParseException exception) {
+            throw new BadRequestException("Invalid page token");
+        }
+    }
+
+}
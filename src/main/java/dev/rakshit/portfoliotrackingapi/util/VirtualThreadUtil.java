@@ -0,0 +1,95 @@
+package dev.rakshit.portfoliotrackingapi.util;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Creates virtual threads when the application runs on Java 21 or later. The application is built for Java 8,
+ * so the virtual thread API is looked up by reflection
+ */
+public class VirtualThreadUtil {
+
+    private static final Method OF_VIRTUAL = findMethod(Thread.class, "ofVirtual");
+
+    /**
+     * Private Constructor to prevent creation of objects of utility class
+     */
+    private VirtualThreadUtil() {
+    }
+
+    /**
+     * @return true if the running JVM can create virtual threads
+     */
+    public static boolean isSupported() {
+        return null != OF_VIRTUAL;
+    }
+
+    /**
+     * Creates factory of virtual threads named prefix followed by a counter.
+     * Throws IllegalStateException if the running JVM can not create virtual threads
+     *
+     * @param prefix Prefix of the names of the threads
+     * @return Factory of virtual threads
+     */
+    public static ThreadFactory getThreadFactory(String prefix) {
+        if (!isSupported()) {
+            throw new IllegalStateException("Virtual threads need Java 21 or later, running on Java "
+                    + System.getProperty("java.version"));
+        }
+        try {
+            Object builder = OF_VIRTUAL.invoke(null);
+            Class<?> builderClass = Class.forName("java.lang.Thread$Builder");
+            builder = builderClass.getMethod("name", String.class, long.class).invoke(builder, prefix, 0L);
+            return (ThreadFactory) builderClass.getMethod("factory").invoke(builder);
+        } catch (ReflectiveOperationException exception) {
+            throw new IllegalStateException("Virtual threads could not be created", getCause(exception));
+        }
+    }
+
+    /**
+     * Creates executor starting a new virtual thread for each task, named prefix followed by a counter.
+     * Throws IllegalStateException if the running JVM can not create virtual threads
+     *
+     * @param prefix Prefix of the names of the threads
+     * @return Executor running each task on a virtual thread of it's own
+     */
+    public static ExecutorService newVirtualThreadPerTaskExecutor(String prefix) {
+        ThreadFactory threadFactory = getThreadFactory(prefix);
+        try {
+            return (ExecutorService) Executors.class.getMethod("newThreadPerTaskExecutor", ThreadFactory.class)
+                    .invoke(null, threadFactory);
+        } catch (ReflectiveOperationException exception) {
+            throw new IllegalStateException("Virtual threads could not be created", getCause(exception));
+        }
+    }
+
+    /**
+     * @return true if thread is a virtual thread
+     */
+    public static boolean isVirtual(Thread thread) {
+        if (!isSupported()) {
+            return false;
+        }
+        try {
+            return (Boolean) Thread.class.getMethod("isVirtual").invoke(thread);
+        } catch (ReflectiveOperationException exception) {
+            return false;
+        }
+    }
+
+    private static Method findMethod(Class<?> type, String name) {
+        try {
+            return type.getMethod(name);
+        } catch (NoSuchMethodException noSuchMethodException) {
+            return null;
+        }
+    }
+
+    private static Throwable getCause(ReflectiveOperationException exception) {
+        return exception instanceof InvocationTargetException ? exception.getCause() : exception;
+    }
+
+}
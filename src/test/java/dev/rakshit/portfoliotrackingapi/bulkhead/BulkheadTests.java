@@ -0,0 +1,168 @@
+package dev.rakshit.portfoliotrackingapi.bulkhead;
+
+import dev.rakshit.portfoliotrackingapi.config.BulkheadConfig;
+import dev.rakshit.portfoliotrackingapi.exceptions.ServiceUnavailableException;
+import dev.rakshit.portfoliotrackingapi.exceptions.TooManyRequestsException;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class BulkheadTests {
+
+    private final MeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    @Test
+    public void testRequestIsRejectedWhenQueueIsFull() throws Exception {
+        Bulkhead bulkhead = new Bulkhead("write", 1, 1, Duration.ofSeconds(10), 1, meterRegistry);
+        bulkhead.enter();
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            Future<?> waiting = executor.submit(() -> {
+                bulkhead.enter();
+                bulkhead.exit();
+            });
+            while (0 == bulkhead.getQueued()) {
+                Thread.sleep(5);
+            }
+            assertEquals(1.0, meterRegistry.get(Bulkhead.METRIC_NAME + ".queued").tag("bulkhead", "write").gauge().value());
+
+            assertThrows(TooManyRequestsException.class, bulkhead::enter);
+            bulkhead.exit();
+            waiting.get(10, TimeUnit.SECONDS);
+        } finally {
+            executor.shutdownNow();
+        }
+        assertEquals(1.0, getRejected("write", "QUEUE_FULL"));
+        assertEquals(0, bulkhead.getQueued());
+        assertEquals(0, bulkhead.getActive());
+        assertEquals(2, meterRegistry.get(Bulkhead.METRIC_NAME + ".wait").tag("bulkhead", "write").timer().count());
+    }
+
+    @Test
+    public void testRequestIsRejectedWhenItWaitsTooLong() {
+        Bulkhead bulkhead = new Bulkhead("read", 1, 5, Duration.ofMillis(20), 1, meterRegistry);
+        bulkhead.enter();
+
+        assertThrows(ServiceUnavailableException.class, bulkhead::enter);
+
+        assertEquals(1.0, getRejected("read", "TIMED_OUT"));
+        assertEquals(1, bulkhead.getActive());
+        assertEquals(0, bulkhead.getQueued());
+    }
+
+    @Test
+    public void testConnectionsAreTakenFromBudget() {
+        Bulkhead bulkhead = new Bulkhead("write", 5, 0, Duration.ofMillis(20), 2, meterRegistry);
+        bulkhead.acquireConnection();
+        bulkhead.acquireConnection();
+
+        assertThrows(ServiceUnavailableException.class, bulkhead::acquireConnection);
+        assertEquals(2, bulkhead.getActiveConnections());
+        bulkhead.releaseConnection();
+        bulkhead.acquireConnection();
+
+        assertEquals(1.0, getRejected("write", "CONNECTION_TIMED_OUT"));
+    }
+
+    @Test
+    public void testInvalidBulkhead() {
+        assertThrows(IllegalArgumentException.class, () -> new Bulkhead("read", 0, 1, Duration.ZERO, 1, meterRegistry));
+        assertThrows(IllegalArgumentException.class, () -> new Bulkhead("read", 1, -1, Duration.ZERO, 1, meterRegistry));
+        assertThrows(IllegalArgumentException.class, () -> new Bulkhead("read", 1, 1, Duration.ZERO, 0, meterRegistry));
+    }
+
+    /**
+     * With the default bounds on virtual threads, more requests than Tomcat's 200 threads run at once and only
+     * connections are bounded
+     */
+    @Test
+    public void testRequestsOnVirtualThreadsAreBoundedByConnectionsOnly() {
+        BulkheadConfig bulkheadConfig = new BulkheadConfig();
+        Bulkhead readBulkhead = bulkheadConfig.readBulkhead(meterRegistry, 100, 50, Duration.ofMillis(20), 6, true);
+        Bulkhead writeBulkhead = bulkheadConfig.writeBulkhead(meterRegistry, 20, 30, Duration.ofMillis(20), 4, true);
+
+        for (int request = 0; request < 1000; request++) {
+            readBulkhead.enter();
+            writeBulkhead.enter();
+        }
+        for (int connection = 0; connection < 4; connection++) {
+            writeBulkhead.acquireConnection();
+        }
+
+        assertEquals(1000, readBulkhead.getActive());
+        assertEquals(1000, writeBulkhead.getActive());
+        assertThrows(ServiceUnavailableException.class, writeBulkhead::acquireConnection);
+        readBulkhead.acquireConnection();
+        assertEquals(1, readBulkhead.getActiveConnections());
+        assertEquals(0.0, getRejected("read", "QUEUE_FULL") + getRejected("write", "QUEUE_FULL"));
+    }
+
+    @Test
+    public void testRequestsOnPlatformThreadsAreBoundedByMaxConcurrent() {
+        Bulkhead writeBulkhead = new BulkheadConfig().writeBulkhead(meterRegistry, 20, 0, Duration.ZERO, 4, false);
+
+        for (int request = 0; request < 20; request++) {
+            writeBulkhead.enter();
+        }
+
+        assertThrows(TooManyRequestsException.class, writeBulkhead::enter);
+    }
+
+    @Test
+    public void testReadsRunWhileWriteBulkheadIsFull() throws Exception {
+        Bulkhead readBulkhead = new Bulkhead("read", 1, 0, Duration.ZERO, 1, meterRegistry);
+        Bulkhead writeBulkhead = new Bulkhead("write", 1, 0, Duration.ZERO, 1, meterRegistry);
+        BulkheadFilter filter = new BulkheadFilter(readBulkhead, writeBulkhead, "/holdings/refresh");
+        writeBulkhead.enter();
+        List<String> bulkheads = new ArrayList<>();
+
+        MockHttpServletResponse write = filter(filter, "POST", "/trades", bulkheads);
+        MockHttpServletResponse refresh = filter(filter, "GET", "/holdings/refresh", bulkheads);
+        MockHttpServletResponse read = filter(filter, "GET", "/holdings", bulkheads);
+        MockHttpServletResponse health = filter(filter, "GET", "/actuator/health", bulkheads);
+
+        assertEquals(HttpStatus.TOO_MANY_REQUESTS.value(), write.getStatus());
+        assertEquals("1", write.getHeader(HttpHeaders.RETRY_AFTER));
+        assertEquals(HttpStatus.TOO_MANY_REQUESTS.value(), refresh.getStatus());
+        assertEquals(HttpStatus.OK.value(), read.getStatus());
+        assertEquals(HttpStatus.OK.value(), health.getStatus());
+        assertEquals("[read, none]", bulkheads.toString());
+        assertEquals(0, readBulkhead.getActive());
+        assertFalse(BulkheadFilter.getCurrentBulkhead().isPresent());
+        assertEquals(2.0, getRejected("write", "QUEUE_FULL"));
+    }
+
+    private MockHttpServletResponse filter(BulkheadFilter filter, String method, String path, List<String> bulkheads)
+            throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest(method, path);
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        filter.doFilter(request, response, (filteredRequest, filteredResponse) -> bulkheads.add(
+                BulkheadFilter.getCurrentBulkhead().map(Bulkhead::getName).orElse("none")));
+        return response;
+    }
+
+    private double getRejected(String bulkhead, String reason) {
+        return meterRegistry.get(Bulkhead.METRIC_NAME + ".rejected")
+                .tag("bulkhead", bulkhead)
+                .tag("reason", reason)
+                .counter()
+                .count();
+    }
+
+}
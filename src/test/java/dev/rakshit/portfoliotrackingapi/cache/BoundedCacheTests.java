@@ -0,0 +1,146 @@
+package dev.rakshit.portfoliotrackingapi.cache;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class BoundedCacheTests {
+
+    @Test
+    public void testGetCountsHitsAndMisses() {
+        BoundedCache<String, Integer> cache = BoundedCache.create(EvictionPolicy.LRU, 2);
+        cache.put("WIPRO", 1);
+        assertThat(cache.get("WIPRO")).hasValue(1);
+        assertThat(cache.get("TCS")).isEmpty();
+        assertEquals(1, cache.getHitCount());
+        assertEquals(1, cache.getMissCount());
+        assertEquals(1, cache.getPutCount());
+    }
+
+    @Test
+    public void testLruEvictsLeastRecentlyUsed() {
+        BoundedCache<String, Integer> cache = BoundedCache.create(EvictionPolicy.LRU, 2);
+        cache.put("WIPRO", 1);
+        cache.put("TCS", 2);
+        cache.get("WIPRO");
+        cache.put("GODREJIND", 3);
+        assertThat(cache.get("TCS")).isEmpty();
+        assertThat(cache.get("WIPRO")).hasValue(1);
+        assertThat(cache.get("GODREJIND")).hasValue(3);
+        assertEquals(2, cache.size());
+        assertEquals(1, cache.getEvictionCount());
+    }
+
+    @Test
+    public void testLfuEvictsLeastFrequentlyUsed() {
+        BoundedCache<String, Integer> cache = BoundedCache.create(EvictionPolicy.LFU, 2);
+        cache.put("WIPRO", 1);
+        cache.put("TCS", 2);
+        cache.get("WIPRO");
+        cache.get("WIPRO");
+        cache.get("TCS");
+        cache.put("GODREJIND", 3);
+        assertThat(cache.get("TCS")).isEmpty();
+        assertThat(cache.get("WIPRO")).hasValue(1);
+        cache.put("INFY", 4);
+        assertThat(cache.get("GODREJIND")).isEmpty();
+        assertThat(cache.get("WIPRO")).hasValue(1);
+        assertThat(cache.get("INFY")).hasValue(4);
+        assertEquals(2, cache.getEvictionCount());
+    }
+
+    @Test
+    public void testLfuEvictsAfterRemove() {
+        BoundedCache<String, Integer> cache = BoundedCache.create(EvictionPolicy.LFU, 2);
+        cache.put("WIPRO", 1);
+        cache.put("TCS", 2);
+        cache.get("TCS");
+        cache.get("WIPRO");
+        cache.get("WIPRO");
+        cache.remove("TCS");
+        cache.put("TCS", 2);
+        cache.get("TCS");
+        cache.get("TCS");
+        cache.get("TCS");
+        cache.put("GODREJIND", 3);
+        assertThat(cache.get("WIPRO")).isEmpty();
+        assertThat(cache.get("TCS")).hasValue(2);
+        assertEquals(1, cache.getEvictionCount());
+    }
+
+    @Test
+    public void testPutIfAbsentKeepsCachedValue() {
+        BoundedCache<String, Integer> cache = BoundedCache.create(EvictionPolicy.LRU, 2);
+        cache.put("WIPRO", 1);
+        cache.putIfAbsent("WIPRO", 2);
+        assertThat(cache.get("WIPRO")).hasValue(1);
+    }
+
+    @Test
+    public void testPutIfAbsentReturnsCachedValue() {
+        BoundedCache<String, Integer> cache = BoundedCache.create(EvictionPolicy.LRU, 2);
+        assertThat(cache.putIfAbsent("WIPRO", 1)).isEmpty();
+        assertThat(cache.putIfAbsent("WIPRO", 2)).hasValue(1);
+    }
+
+    @Test
+    public void testRemoveOfValueKeepsNewerValue() {
+        BoundedCache<String, Integer> cache = BoundedCache.create(EvictionPolicy.LRU, 2);
+        cache.put("WIPRO", 2);
+        cache.remove("WIPRO", 1);
+        assertThat(cache.get("WIPRO")).hasValue(2);
+        cache.remove("WIPRO", 2);
+        assertThat(cache.get("WIPRO")).isEmpty();
+    }
+
+    @Test
+    public void testExpiringCacheExpiresEntriesAfterTimeToLive() {
+        AtomicLong now = new AtomicLong();
+        BoundedCache<String, Integer> cache = new ExpiringCache<>(10, Duration.ofSeconds(10), now::get);
+        cache.put("WIPRO", 1);
+        now.addAndGet(Duration.ofSeconds(5).toNanos());
+        cache.put("TCS", 2);
+        now.addAndGet(Duration.ofSeconds(6).toNanos());
+        assertThat(cache.get("WIPRO")).isEmpty();
+        assertThat(cache.get("TCS")).hasValue(2);
+        assertEquals(1, cache.size());
+        now.addAndGet(Duration.ofSeconds(4).toNanos());
+        assertThat(cache.get("TCS")).isEmpty();
+        assertEquals(0, cache.size());
+        assertEquals(0, cache.getEvictionCount());
+    }
+
+    @Test
+    public void testExpiringCacheEvictsOldestEntryWhenFull() {
+        AtomicLong now = new AtomicLong();
+        BoundedCache<String, Integer> cache = new ExpiringCache<>(2, Duration.ofSeconds(10), now::get);
+        cache.put("WIPRO", 1);
+        cache.put("TCS", 2);
+        cache.get("WIPRO");
+        cache.put("GODREJIND", 3);
+        assertThat(cache.get("WIPRO")).isEmpty();
+        assertThat(cache.get("TCS")).hasValue(2);
+        assertThat(cache.get("GODREJIND")).hasValue(3);
+        assertEquals(1, cache.getEvictionCount());
+    }
+
+    @Test
+    public void testCacheOfZeroSizeCachesNothing() {
+        BoundedCache<String, Integer> cache = BoundedCache.create(EvictionPolicy.LFU, 0);
+        cache.put("WIPRO", 1);
+        assertThat(cache.get("WIPRO")).isEmpty();
+        assertEquals(0, cache.size());
+        assertEquals(0, cache.getEvictionCount());
+    }
+
+    @Test
+    public void testCacheOfNegativeSize() {
+        assertThrows(IllegalArgumentException.class, () -> BoundedCache.create(EvictionPolicy.LRU, -1));
+    }
+
+}
@@ -0,0 +1,93 @@
+package dev.rakshit.portfoliotrackingapi.cache;
+
+import dev.rakshit.portfoliotrackingapi.models.Holding;
+import dev.rakshit.portfoliotrackingapi.models.Trade;
+import dev.rakshit.portfoliotrackingapi.models.TransactionType;
+import dev.rakshit.portfoliotrackingapi.repository.HoldingJdbcRepository;
+import dev.rakshit.portfoliotrackingapi.service.PortfolioTrackingService;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Primary;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@SpringBootTest(properties = "portfolio.snapshots.enabled=false")
+public class HoldingCacheTests {
+
+    private static final AtomicReference<Runnable> AFTER_NEXT_LOAD = new AtomicReference<>();
+
+    @Autowired
+    private HoldingCache holdingCache;
+
+    @Autowired
+    private PortfolioTrackingService portfolioTrackingService;
+
+    @Test
+    public void testHoldingLoadedBeforeItsDeleteIsNotCached() {
+        Trade trade = portfolioTrackingService.addTrade(getTrade("CACHERACE1", TransactionType.BUY, 10));
+        holdingCache.evict("CACHERACE1");
+        AFTER_NEXT_LOAD.set(() -> portfolioTrackingService.deleteTrade(trade.getTradeId()));
+
+        Optional<Holding> loadedHolding = holdingCache.findById("CACHERACE1");
+
+        assertTrue(loadedHolding.isPresent());
+        assertFalse(holdingCache.findById("CACHERACE1").isPresent());
+    }
+
+    @Test
+    public void testHoldingLoadedBeforeItsUpdateIsNotCached() {
+        portfolioTrackingService.addTrade(getTrade("CACHERACE2", TransactionType.BUY, 10));
+        holdingCache.evict("CACHERACE2");
+        AFTER_NEXT_LOAD.set(() -> {
+            portfolioTrackingService.addTrade(getTrade("CACHERACE2", TransactionType.BUY, 5));
+            holdingCache.evict("CACHERACE2");
+        });
+
+        assertEquals(BigInteger.valueOf(10), holdingCache.findById("CACHERACE2").get().getShares());
+        assertEquals(BigInteger.valueOf(15), holdingCache.findById("CACHERACE2").get().getShares());
+    }
+
+    private Trade getTrade(String ticker, TransactionType transactionType, long shares) {
+        return Trade.builder()
+                .ticker(ticker)
+                .transactionType(transactionType)
+                .price(BigDecimal.TEN)
+                .shares(BigInteger.valueOf(shares))
+                .build();
+    }
+
+    /**
+     * Runs a write once the next holding is read from db, before the cache gets it, like a write racing the read
+     */
+    @TestConfiguration
+    static class RacingWriteConfig {
+
+        @Bean
+        @Primary
+        HoldingJdbcRepository racingHoldingJdbcRepository() {
+            return new HoldingJdbcRepository() {
+                @Override
+                public Optional<Holding> findById(String ticker) {
+                    Optional<Holding> holding = super.findById(ticker);
+                    Runnable write = AFTER_NEXT_LOAD.getAndSet(null);
+                    if (null != write) {
+                        write.run();
+                    }
+                    return holding;
+                }
+            };
+        }
+
+    }
+
+}
@@ -0,0 +1,125 @@
+package dev.rakshit.portfoliotrackingapi.cache;
+
+import dev.rakshit.portfoliotrackingapi.models.Holding;
+import dev.rakshit.portfoliotrackingapi.models.Trade;
+import dev.rakshit.portfoliotrackingapi.models.TransactionType;
+import dev.rakshit.portfoliotrackingapi.repository.HoldingJdbcRepository;
+import dev.rakshit.portfoliotrackingapi.repository.HoldingRepository;
+import dev.rakshit.portfoliotrackingapi.service.PortfolioTrackingService;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.time.LocalDateTime;
+import java.util.Collections;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@SpringBootTest(properties = {
+        "portfolio.holdings.write-behind.enabled=true",
+        "portfolio.holdings.write-behind.flush-interval=PT1H",
+        "portfolio.holdings.write-behind.max-dirty=3"
+})
+public class HoldingWriteBehindTests {
+
+    @Autowired
+    private PortfolioTrackingService portfolioTrackingService;
+
+    @Autowired
+    private HoldingWriteBehind holdingWriteBehind;
+
+    @Autowired
+    private HoldingRepository holdingRepository;
+
+    @Autowired
+    private HoldingJdbcRepository holdingJdbcRepository;
+
+    @Test
+    public void testChangesOfTickerAreWrittenOnceOnFlush() {
+        for (int i = 0; i < 20; i++) {
+            portfolioTrackingService.addTrade(getTrade("WIPRO", TransactionType.BUY, 1));
+        }
+        assertFalse(holdingRepository.findById("WIPRO").isPresent());
+        assertEquals(BigInteger.valueOf(20), portfolioTrackingService.getHolding("WIPRO").get().getShares());
+        assertTrue(portfolioTrackingService.getHoldings().stream().anyMatch(holding -> "WIPRO".equals(holding.getTicker())));
+
+        holdingWriteBehind.flush();
+
+        Holding holding = holdingRepository.findById("WIPRO").get();
+        assertEquals(BigInteger.valueOf(20), holding.getShares());
+        assertEquals(Long.valueOf(0), holding.getVersion());
+        assertEquals(0, holdingWriteBehind.getDirtyCount());
+    }
+
+    @Test
+    public void testClosedHoldingIsDeletedOnFlush() {
+        portfolioTrackingService.addTrade(getTrade("TCS", TransactionType.BUY, 5));
+        holdingWriteBehind.flush();
+        portfolioTrackingService.addTrade(getTrade("TCS", TransactionType.SELL, 5));
+        assertFalse(portfolioTrackingService.getHolding("TCS").isPresent());
+        assertTrue(holdingRepository.findById("TCS").isPresent());
+
+        portfolioTrackingService.addTrade(getTrade("TCS", TransactionType.BUY, 2));
+        portfolioTrackingService.addTrade(getTrade("TCS", TransactionType.SELL, 2));
+        holdingWriteBehind.flush();
+
+        assertFalse(holdingRepository.findById("TCS").isPresent());
+        assertFalse(portfolioTrackingService.getHolding("TCS").isPresent());
+    }
+
+    @Test
+    public void testMaxDirtyHoldingsStartFlush() throws InterruptedException {
+        portfolioTrackingService.addTrade(getTrade("INFY", TransactionType.BUY, 1));
+        portfolioTrackingService.addTrade(getTrade("HCL", TransactionType.BUY, 1));
+        portfolioTrackingService.addTrade(getTrade("ITC", TransactionType.BUY, 1));
+        for (int i = 0; i < 100 && 0 < holdingWriteBehind.getDirtyCount(); i++) {
+            Thread.sleep(50);
+        }
+        assertEquals(0, holdingWriteBehind.getDirtyCount());
+        Optional<Holding> holding = holdingRepository.findById("ITC");
+        assertTrue(holding.isPresent());
+        assertEquals(BigInteger.ONE, holding.get().getShares());
+    }
+
+    @Test
+    public void testHoldingChangedInDbIsRebuiltWithoutDroppingOtherHoldingsOfFlush() {
+        portfolioTrackingService.addTrade(getTrade("ONGC", TransactionType.BUY, 4));
+        portfolioTrackingService.addTrade(getTrade("NTPC", TransactionType.BUY, 4));
+        holdingWriteBehind.flush();
+        portfolioTrackingService.addTrade(getTrade("ONGC", TransactionType.SELL, 1));
+        portfolioTrackingService.addTrade(getTrade("NTPC", TransactionType.SELL, 1));
+        holdingJdbcRepository.saveAll(Collections.singletonList(Holding.builder()
+                .ticker("ONGC")
+                .shares(BigInteger.valueOf(100))
+                .totalPrice(BigDecimal.valueOf(100))
+                .averageBuyPrice(BigDecimal.ONE)
+                .lastUpdated(LocalDateTime.now())
+                .build()));
+
+        holdingWriteBehind.flush();
+
+        assertEquals(0, holdingWriteBehind.getDirtyCount());
+        Holding cleanHolding = holdingRepository.findById("NTPC").get();
+        assertEquals(BigInteger.valueOf(3), cleanHolding.getShares());
+        assertEquals(Long.valueOf(1), cleanHolding.getVersion());
+        Holding rebuiltHolding = holdingRepository.findById("ONGC").get();
+        assertEquals(BigInteger.valueOf(3), rebuiltHolding.getShares());
+        assertEquals(0, BigDecimal.valueOf(30).compareTo(rebuiltHolding.getTotalPrice()));
+        assertEquals(BigInteger.valueOf(3), portfolioTrackingService.getHolding("ONGC").get().getShares());
+    }
+
+    private Trade getTrade(String ticker, TransactionType transactionType, int shares) {
+        return Trade.builder()
+                .ticker(ticker)
+                .transactionType(transactionType)
+                .price(BigDecimal.TEN)
+                .shares(BigInteger.valueOf(shares))
+                .build();
+    }
+
+}
@@ -0,0 +1,99 @@
+package dev.rakshit.portfoliotrackingapi.lock;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class TickerLocksTests {
+
+    @Test
+    public void testStripesAreRoundedUpToPowerOfTwo() {
+        assertEquals(64, new TickerLocks(64).getStripes());
+        assertEquals(64, new TickerLocks(33).getStripes());
+        assertEquals(1, new TickerLocks(1).getStripes());
+        assertThrows(IllegalArgumentException.class, () -> new TickerLocks(0));
+    }
+
+    @Test
+    public void testWritesOfSameTickerAreSerialized() throws Exception {
+        TickerLocks tickerLocks = new TickerLocks(16);
+        int[] counter = new int[1];
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            Future<?>[] futures = new Future<?>[4];
+            for (int thread = 0; thread < futures.length; thread++) {
+                futures[thread] = executor.submit(() -> {
+                    for (int i = 0; i < 10000; i++) {
+                        tickerLocks.withLock("WIPRO", () -> counter[0]++);
+                    }
+                });
+            }
+            for (Future<?> future : futures) {
+                future.get(10, TimeUnit.SECONDS);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        assertEquals(40000, counter[0]);
+    }
+
+    @Test
+    public void testWritesOfTickersOnDifferentStripesRunInParallel() throws Exception {
+        TickerLocks tickerLocks = new TickerLocks(64);
+        assertNotEquals(tickerLocks.stripeOf("WIPRO"), tickerLocks.stripeOf("TCS"));
+        CountDownLatch locked = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            Future<Boolean> holder = executor.submit(() -> tickerLocks.withLock("WIPRO", () -> {
+                locked.countDown();
+                try {
+                    return release.await(10, TimeUnit.SECONDS);
+                } catch (InterruptedException interruptedException) {
+                    return false;
+                }
+            }));
+            assertTrue(locked.await(10, TimeUnit.SECONDS));
+            assertTrue(tickerLocks.withLock("TCS", () -> true));
+            release.countDown();
+            assertTrue(holder.get(10, TimeUnit.SECONDS));
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testTickersLockedInAnyOrderDoNotDeadlock() throws Exception {
+        TickerLocks tickerLocks = new TickerLocks(64);
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            Future<?> forward = executor.submit(() -> {
+                for (int i = 0; i < 10000; i++) {
+                    tickerLocks.withLocks(Arrays.asList("WIPRO", "TCS"), () -> null);
+                }
+            });
+            Future<?> backward = executor.submit(() -> {
+                for (int i = 0; i < 10000; i++) {
+                    tickerLocks.withLocks(Arrays.asList("TCS", "WIPRO"), () -> null);
+                }
+            });
+            forward.get(10, TimeUnit.SECONDS);
+            backward.get(10, TimeUnit.SECONDS);
+        } finally {
+            executor.shutdownNow();
+        }
+        assertEquals(1, tickerLocks.withLocks(Collections.singletonList("WIPRO"), () -> 1));
+    }
+
+}
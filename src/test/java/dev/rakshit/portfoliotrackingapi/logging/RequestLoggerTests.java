@@ -0,0 +1,84 @@
+package dev.rakshit.portfoliotrackingapi.logging;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.Collections;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class RequestLoggerTests {
+
+    @Test
+    public void testLinesAreDroppedWhenQueueIsFull() {
+        RequestLogger requestLogger = new RequestLogger(2, 1, Collections.emptyMap(), Duration.ofSeconds(10));
+
+        assertTrue(requestLogger.log(getEntry()));
+        assertTrue(requestLogger.log(getEntry()));
+        assertFalse(requestLogger.log(getEntry()));
+        assertFalse(requestLogger.log(getEntry()));
+
+        assertEquals(2, requestLogger.getQueuedLines());
+        assertEquals(2, requestLogger.getDroppedLines());
+    }
+
+    @Test
+    public void testQueuedLinesAreWrittenBeforeShutdown() {
+        RequestLogger requestLogger = new RequestLogger(10, 1, Collections.emptyMap(), Duration.ofSeconds(10));
+        requestLogger.log(getEntry());
+        requestLogger.log(getEntry());
+        requestLogger.log(getEntry());
+
+        requestLogger.start();
+        requestLogger.shutdown();
+
+        assertEquals(3, requestLogger.getWrittenLines());
+        assertEquals(0, requestLogger.getQueuedLines());
+        assertEquals(0, requestLogger.getDroppedLines());
+    }
+
+    @Test
+    public void testEndpointsAreSampledAtTheirRate() {
+        Map<String, Double> sampleRates = RequestLogger.parseSampleRates("GET /holdings=0, GET  /holdings/{ticker}=1");
+        RequestLogger requestLogger = new RequestLogger(10, 0, sampleRates, Duration.ofSeconds(10));
+
+        assertFalse(requestLogger.isSampled("GET", "/holdings", 200));
+        assertTrue(requestLogger.isSampled("GET", "/holdings/{ticker}", 404));
+        assertFalse(requestLogger.isSampled("POST", "/trades", 201));
+        assertTrue(requestLogger.isSampled("GET", "/holdings", 500));
+    }
+
+    @Test
+    public void testInvalidSampleRatesAreRejected() {
+        assertThrows(IllegalArgumentException.class, () -> RequestLogger.parseSampleRates("GET /holdings=2"));
+        assertThrows(IllegalArgumentException.class, () -> RequestLogger.parseSampleRates("GET /holdings"));
+        assertTrue(RequestLogger.parseSampleRates("").isEmpty());
+    }
+
+    @Test
+    public void testEntryIsFormattedAsNameValuePairs() {
+        RequestLogEntry entry = RequestLogEntry.builder()
+                .method("GET")
+                .uri("/trades/{id}")
+                .status(200)
+                .latencyMicros(250)
+                .fields(Collections.singletonMap("tradeId", "7"))
+                .build();
+
+        assertEquals("method=GET uri=/trades/{id} status=200 latencyMicros=250 tradeId=7", entry.format());
+    }
+
+    private RequestLogEntry getEntry() {
+        return RequestLogEntry.builder()
+                .method("GET")
+                .uri("/holdings")
+                .status(200)
+                .latencyMicros(100)
+                .build();
+    }
+
+}
@@ -0,0 +1,131 @@
+package dev.rakshit.portfoliotrackingapi.metrics;
+
+import dev.rakshit.portfoliotrackingapi.models.Trade;
+import dev.rakshit.portfoliotrackingapi.models.TransactionType;
+import dev.rakshit.portfoliotrackingapi.service.PortfolioTrackingService;
+import dev.rakshit.portfoliotrackingapi.util.HoldingUtil;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+public class MetricsTests {
+
+    @Autowired
+    private TestRestTemplate restTemplate;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Test
+    public void testTradeOutcomesAreCountedByTypeAndReason() {
+        double added = getTradeCount("BUY", "ADDED", "NONE");
+        double noSharesToSell = getTradeCount("SELL", "REJECTED", "NO_SHARES_TO_SELL");
+        double sharesZero = getTradeCount("BUY", "REJECTED", "SHARES_ZERO");
+
+        assertEquals(HttpStatus.CREATED, postTrade(getTrade("METRICS1", TransactionType.BUY, 5)).getStatusCode());
+        assertEquals(HttpStatus.BAD_REQUEST, postTrade(getTrade("METRICS2", TransactionType.SELL, 5)).getStatusCode());
+        assertEquals(HttpStatus.BAD_REQUEST, postTrade(getTrade("METRICS1", TransactionType.BUY, 0)).getStatusCode());
+
+        assertEquals(added + 1, getTradeCount("BUY", "ADDED", "NONE"));
+        assertEquals(noSharesToSell + 1, getTradeCount("SELL", "REJECTED", "NO_SHARES_TO_SELL"));
+        assertEquals(sharesZero + 1, getTradeCount("BUY", "REJECTED", "SHARES_ZERO"));
+    }
+
+    @Test
+    public void testServiceAndHoldingCalculationsAreTimed() {
+        long submitTrade = getTimerCount(PortfolioTrackingService.TIMER_NAME, "method", "submitTrade");
+        long addTradeToHolding = getTimerCount(HoldingUtil.TIMER_NAME, "operation", "addTradeToHolding");
+
+        postTrade(getTrade("METRICS3", TransactionType.BUY, 5));
+
+        assertEquals(submitTrade + 1, getTimerCount(PortfolioTrackingService.TIMER_NAME, "method", "submitTrade"));
+        assertEquals(addTradeToHolding + 1, getTimerCount(HoldingUtil.TIMER_NAME, "operation", "addTradeToHolding"));
+    }
+
+    @Test
+    public void testRepositoryCallsOfRequestAreCounted() {
+        Trade trade = postTrade(getTrade("METRICS4", TransactionType.BUY, 5)).getBody();
+        long findById = getRepositoryCallCount("TradeRepository", "findById");
+
+        assertEquals(HttpStatus.OK, restTemplate.getForEntity("/trades/" + trade.getTradeId(), Trade.class).getStatusCode());
+
+        assertEquals(findById + 1, getRepositoryCallCount("TradeRepository", "findById"));
+        DistributionSummary callsPerRequest = meterRegistry.get(RepositoryCallsFilter.METRIC_NAME)
+                .tag("method", "GET")
+                .tag("uri", "/trades/{id}")
+                .summary();
+        assertEquals(1.0, callsPerRequest.max());
+    }
+
+    @Test
+    public void testMetricsAreScrapedInPrometheusFormat() {
+        postTrade(getTrade("METRICS5", TransactionType.BUY, 5));
+
+        ResponseEntity<String> response = restTemplate.getForEntity("/actuator/prometheus", String.class);
+
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        assertTrue(response.getBody().contains("portfolio_service_seconds_bucket{"));
+        assertTrue(response.getBody().contains("portfolio_holding_util_seconds_bucket{"));
+        assertTrue(response.getBody().contains("portfolio_repository_seconds_count{"));
+        assertTrue(response.getBody().contains("portfolio_repository_calls_per_request_bucket{"));
+        assertTrue(response.getBody().contains("portfolio_trades_total{"));
+    }
+
+    private ResponseEntity<Trade> postTrade(Trade trade) {
+        return restTemplate.postForEntity("/trades", trade, Trade.class);
+    }
+
+    private double getTradeCount(String type, String outcome, String reason) {
+        return Optional.ofNullable(meterRegistry.find(TradeMetrics.METRIC_NAME)
+                .tag("type", type)
+                .tag("outcome", outcome)
+                .tag("reason", reason)
+                .counter())
+                .map(Counter::count)
+                .orElse(0.0);
+    }
+
+    private long getRepositoryCallCount(String repository, String method) {
+        return meterRegistry.find(RepositoryMetrics.METRIC_NAME)
+                .tag("repository", repository)
+                .tag("method", method)
+                .timers()
+                .stream()
+                .mapToLong(Timer::count)
+                .sum();
+    }
+
+    private long getTimerCount(String name, String tagKey, String tagValue) {
+        return meterRegistry.find(name)
+                .tag(tagKey, tagValue)
+                .timers()
+                .stream()
+                .mapToLong(Timer::count)
+                .sum();
+    }
+
+    private Trade getTrade(String ticker, TransactionType transactionType, int shares) {
+        return Trade.builder()
+                .ticker(ticker)
+                .transactionType(transactionType)
+                .shares(BigInteger.valueOf(shares))
+                .price(BigDecimal.valueOf(100))
+                .build();
+    }
+
+}
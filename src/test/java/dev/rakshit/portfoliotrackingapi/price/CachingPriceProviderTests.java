@@ -0,0 +1,132 @@
+package dev.rakshit.portfoliotrackingapi.price;
+
+import dev.rakshit.portfoliotrackingapi.cache.BoundedCache;
+import dev.rakshit.portfoliotrackingapi.cache.EvictionPolicy;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class CachingPriceProviderTests {
+
+    private static final String TICKER1 = "WIPRO";
+    private static final String TICKER2 = "TCS";
+    private static final String TICKER3 = "GODREJIND";
+    private static final Instant START = Instant.parse("2020-01-01T10:00:00Z");
+
+    private InMemoryPriceProvider inMemoryPriceProvider;
+    private List<Collection<String>> calls;
+    private List<Runnable> tasks;
+    private MutableClock clock;
+    private CachingPriceProvider priceProvider;
+
+    @BeforeEach
+    public void setUp() {
+        inMemoryPriceProvider = new InMemoryPriceProvider(null);
+        inMemoryPriceProvider.setPrice(TICKER1, BigDecimal.valueOf(500));
+        inMemoryPriceProvider.setPrice(TICKER2, BigDecimal.valueOf(900));
+        calls = new ArrayList<>();
+        tasks = new ArrayList<>();
+        clock = new MutableClock(START);
+        PriceProvider countingPriceProvider = tickers -> {
+            calls.add(new ArrayList<>(tickers));
+            return inMemoryPriceProvider.getPrices(tickers);
+        };
+        priceProvider = new CachingPriceProvider(countingPriceProvider, BoundedCache.create(EvictionPolicy.LRU, 10),
+                Duration.ofMinutes(1), Duration.ofMinutes(5), tasks::add, clock);
+    }
+
+    @Test
+    public void testGetPricesFetchesMissingQuotesInOneCall() {
+        Map<String, BigDecimal> prices = priceProvider.getPrices(Arrays.asList(TICKER1, TICKER2, TICKER3));
+        assertEquals(BigDecimal.valueOf(500), prices.get(TICKER1));
+        assertEquals(BigDecimal.valueOf(900), prices.get(TICKER2));
+        assertThat(prices).doesNotContainKey(TICKER3);
+        assertEquals(1, calls.size());
+    }
+
+    @Test
+    public void testGetPricesServesFreshQuotesFromCache() {
+        priceProvider.getPrices(Arrays.asList(TICKER1, TICKER2));
+        inMemoryPriceProvider.setPrice(TICKER1, BigDecimal.valueOf(550));
+        clock.advance(Duration.ofSeconds(59));
+        assertEquals(BigDecimal.valueOf(500), priceProvider.getPrices(Arrays.asList(TICKER1, TICKER2)).get(TICKER1));
+        assertEquals(1, calls.size());
+        assertThat(tasks).isEmpty();
+    }
+
+    @Test
+    public void testGetPricesServesStaleQuotesWhileRevalidating() {
+        priceProvider.getPrices(Arrays.asList(TICKER1, TICKER2));
+        inMemoryPriceProvider.setPrice(TICKER1, BigDecimal.valueOf(550));
+        clock.advance(Duration.ofMinutes(2));
+        assertEquals(BigDecimal.valueOf(500), priceProvider.getPrices(Arrays.asList(TICKER1, TICKER2)).get(TICKER1));
+        assertEquals(BigDecimal.valueOf(500), priceProvider.getPrices(Collections.singletonList(TICKER1)).get(TICKER1));
+        assertEquals(1, calls.size());
+        assertEquals(1, tasks.size());
+        tasks.get(0).run();
+        assertEquals(Arrays.asList(TICKER1, TICKER2), calls.get(1));
+        assertEquals(BigDecimal.valueOf(550), priceProvider.getPrices(Collections.singletonList(TICKER1)).get(TICKER1));
+        assertEquals(2, calls.size());
+    }
+
+    @Test
+    public void testGetPricesFetchesExpiredQuotes() {
+        priceProvider.getPrices(Collections.singletonList(TICKER1));
+        inMemoryPriceProvider.setPrice(TICKER1, BigDecimal.valueOf(550));
+        clock.advance(Duration.ofMinutes(6));
+        assertEquals(BigDecimal.valueOf(550), priceProvider.getPrices(Collections.singletonList(TICKER1)).get(TICKER1));
+        assertEquals(2, calls.size());
+        assertThat(tasks).isEmpty();
+    }
+
+    @Test
+    public void testInMemoryPriceProviderGivesDefaultPrice() {
+        InMemoryPriceProvider defaultPriceProvider = new InMemoryPriceProvider(BigDecimal.valueOf(100));
+        defaultPriceProvider.setPrice(TICKER1, BigDecimal.valueOf(500));
+        assertThat(defaultPriceProvider.getPrice(TICKER1)).hasValue(BigDecimal.valueOf(500));
+        assertThat(defaultPriceProvider.getPrice(TICKER3)).hasValue(BigDecimal.valueOf(100));
+    }
+
+    private static class MutableClock extends Clock {
+        private Instant instant;
+
+        private MutableClock(Instant instant) {
+            this.instant = instant;
+        }
+
+        private void advance(Duration duration) {
+            instant = instant.plus(duration);
+        }
+
+        @Override
+        public ZoneOffset getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone(ZoneId zone) {
+            return this;
+        }
+
+        @Override
+        public Instant instant() {
+            return instant;
+        }
+    }
+
+}
@@ -0,0 +1,263 @@
+package dev.rakshit.portfoliotrackingapi.reactive;
+
+import dev.rakshit.portfoliotrackingapi.models.Holding;
+import dev.rakshit.portfoliotrackingapi.models.HoldingCheckpoint;
+import dev.rakshit.portfoliotrackingapi.models.Trade;
+import dev.rakshit.portfoliotrackingapi.models.TransactionType;
+import dev.rakshit.portfoliotrackingapi.repository.HoldingCheckpointRepository;
+import dev.rakshit.portfoliotrackingapi.repository.HoldingRepository;
+import dev.rakshit.portfoliotrackingapi.repository.TradeJdbcRepository;
+import dev.rakshit.portfoliotrackingapi.util.HoldingUtil;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.web.server.LocalServerPort;
+import org.springframework.http.HttpStatus;
+import org.springframework.test.web.reactive.server.WebTestClient;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.math.RoundingMode;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT,
+        properties = "spring.main.web-application-type=reactive")
+public class ReactivePortfolioTrackingTests {
+
+    @LocalServerPort
+    private int port;
+
+    @Autowired
+    private WebTestClient webTestClient;
+
+    @Autowired
+    private HoldingRepository holdingRepository;
+
+    @Autowired
+    private HoldingCheckpointRepository holdingCheckpointRepository;
+
+    @Autowired
+    private TradeJdbcRepository tradeJdbcRepository;
+
+    @Test
+    public void testAddedTradesUpdateHolding() {
+        postTrade(getTrade("REACTIVE1", TransactionType.BUY, 10, "100"), HttpStatus.CREATED);
+        postTrade(getTrade("REACTIVE1", TransactionType.BUY, 10, "200"), HttpStatus.CREATED);
+        postTrade(getTrade("REACTIVE1", TransactionType.SELL, 5, "300"), HttpStatus.CREATED);
+
+        Holding holding = webTestClient.get().uri("/holdings/REACTIVE1")
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody(Holding.class)
+                .returnResult()
+                .getResponseBody();
+
+        assertEquals(BigInteger.valueOf(15), holding.getShares());
+        assertEquals(0, new BigDecimal("150").compareTo(holding.getAverageBuyPrice()));
+        assertHoldingMatchesTrades("REACTIVE1");
+    }
+
+    @Test
+    public void testInvalidTradesAreRejected() {
+        postTrade(getTrade("REACTIVE2", TransactionType.SELL, 5, "100"), HttpStatus.BAD_REQUEST);
+        postTrade(getTrade("REACTIVE2", TransactionType.BUY, 0, "100"), HttpStatus.BAD_REQUEST);
+
+        webTestClient.get().uri("/holdings/REACTIVE2").exchange().expectStatus().isNotFound();
+        webTestClient.get().uri("/trades/abc").exchange().expectStatus().isBadRequest();
+    }
+
+    @Test
+    public void testUpdatedTradeMovesSharesBetweenTickersAndInvalidatesCheckpoints() {
+        Trade trade = postTrade(getTrade("REACTIVE3", TransactionType.BUY, 10, "100"), HttpStatus.CREATED);
+        postTrade(getTrade("REACTIVE3", TransactionType.BUY, 5, "100"), HttpStatus.CREATED);
+
+        trade.setTicker("REACTIVE4");
+        trade.setPrice(new BigDecimal("50"));
+        Trade updatedTrade = postTrade(trade, HttpStatus.OK);
+
+        assertEquals("REACTIVE4", updatedTrade.getTicker());
+        assertEquals(BigInteger.valueOf(5), holdingRepository.findById("REACTIVE3").get().getShares());
+        assertEquals(BigInteger.valueOf(10), holdingRepository.findById("REACTIVE4").get().getShares());
+        assertHoldingMatchesTrades("REACTIVE3");
+        assertHoldingMatchesTrades("REACTIVE4");
+        assertTrue(holdingCheckpointRepository.findById("REACTIVE3").map(HoldingCheckpoint::isStale).orElse(false));
+        assertTrue(holdingCheckpointRepository.findById("REACTIVE4").map(HoldingCheckpoint::isStale).orElse(false));
+    }
+
+    @Test
+    public void testDeletingLastTradeDeletesHolding() {
+        Trade trade = postTrade(getTrade("REACTIVE5", TransactionType.BUY, 10, "100"), HttpStatus.CREATED);
+
+        webTestClient.delete().uri("/trades/" + trade.getTradeId()).exchange().expectStatus().isOk();
+
+        webTestClient.get().uri("/trades/" + trade.getTradeId()).exchange().expectStatus().isNotFound();
+        webTestClient.delete().uri("/trades/" + trade.getTradeId()).exchange().expectStatus().isNotFound();
+        assertFalse(holdingRepository.findById("REACTIVE5").isPresent());
+    }
+
+    @Test
+    public void testBackdatedWritesRecomputeHoldingInExecutionOrder() {
+        LocalDateTime time = LocalDateTime.of(2021, 4, 1, 10, 0);
+        Trade buy = postTrade(getTrade("REACTIVE8", TransactionType.BUY, 10, "100", time), HttpStatus.CREATED);
+        postTrade(getTrade("REACTIVE8", TransactionType.BUY, 5, "200", time.plusDays(2)), HttpStatus.CREATED);
+
+        Trade sell = postTrade(getTrade("REACTIVE8", TransactionType.SELL, 5, "300", time.plusDays(1)), HttpStatus.CREATED);
+        assertHolding("REACTIVE8", 10, "150", time.plusDays(2));
+
+        sell.setShares(BigInteger.valueOf(6));
+        postTrade(sell, HttpStatus.OK);
+        assertHolding("REACTIVE8", 9, "155.555556", time.plusDays(2));
+
+        webTestClient.delete().uri("/trades/" + buy.getTradeId()).exchange().expectStatus().isBadRequest();
+        postTrade(getTrade("REACTIVE8", TransactionType.SELL, 5, "300", time.minusDays(1)), HttpStatus.BAD_REQUEST);
+        assertHolding("REACTIVE8", 9, "155.555556", time.plusDays(2));
+
+        webTestClient.delete().uri("/trades/" + sell.getTradeId()).exchange().expectStatus().isOk();
+        assertHolding("REACTIVE8", 15, "133.333333", time.plusDays(2));
+        assertHoldingMatchesTrades("REACTIVE8");
+    }
+
+    @Test
+    public void testRetriedTradeWithIdempotencyKeyIsAddedOnce() {
+        Trade trade = getTrade("REACTIVE9", TransactionType.BUY, 10, "100");
+        Trade addedTrade = postTrade(trade, "reactive-key-1", HttpStatus.CREATED);
+        Trade retriedTrade = postTrade(trade, "reactive-key-1", HttpStatus.CREATED);
+
+        assertEquals(addedTrade.getTradeId(), retriedTrade.getTradeId());
+        assertEquals(BigInteger.valueOf(10), holdingRepository.findById("REACTIVE9").get().getShares());
+        postTrade(getTrade("REACTIVE9", TransactionType.BUY, 20, "100"), "reactive-key-1", HttpStatus.UNPROCESSABLE_ENTITY);
+        assertEquals(BigInteger.valueOf(10), holdingRepository.findById("REACTIVE9").get().getShares());
+    }
+
+    @Test
+    public void testConcurrentRequestsWithIdempotencyKeyAddOneTrade() {
+        WebClient webClient = WebClient.create("http://localhost:" + port);
+
+        List<Long> tradeIds = Flux.range(0, 16)
+                .flatMap(index -> webClient.post().uri("/trades")
+                        .header("Idempotency-Key", "reactive-key-2")
+                        .bodyValue(getTrade("REACTIVE10", TransactionType.BUY, 3, "100"))
+                        .exchange()
+                        .flatMap(response -> 201 == response.rawStatusCode()
+                                ? response.bodyToMono(Trade.class).map(Trade::getTradeId)
+                                : response.releaseBody().then(Mono.empty())), 16)
+                .collectList()
+                .block(Duration.ofMinutes(1));
+
+        assertNotNull(tradeIds);
+        assertFalse(tradeIds.isEmpty());
+        assertEquals(1, tradeIds.stream().distinct().count());
+        assertEquals(1, tradeJdbcRepository.findByIdempotencyKeys(Collections.singletonList("reactive-key-2")).size());
+        assertEquals(BigInteger.valueOf(3), holdingRepository.findById("REACTIVE10").get().getShares());
+    }
+
+    /**
+     * Buys only, so that the holding does not depend on the order in which the trades were applied
+     */
+    @Test
+    public void testConcurrentTradesOfTickerGiveHoldingOfAllTradesAdded() {
+        WebClient webClient = WebClient.create("http://localhost:" + port);
+
+        List<Integer> statuses = Flux.range(0, 64)
+                .flatMap(index -> webClient.post().uri("/trades")
+                        .bodyValue(getTrade("REACTIVE6", TransactionType.BUY, 1 + index % 5, String.valueOf(100 + index)))
+                        .exchange()
+                        .flatMap(response -> response.releaseBody().thenReturn(response.rawStatusCode())), 32)
+                .collectList()
+                .block(Duration.ofMinutes(1));
+
+        assertNotNull(statuses);
+        assertTrue(statuses.stream().allMatch(status -> 201 == status || 409 == status));
+        assertHoldingMatchesTrades("REACTIVE6");
+    }
+
+    @Test
+    public void testPortfolioAndReturnsAreGiven() {
+        postTrade(getTrade("REACTIVE7", TransactionType.BUY, 10, "100"), HttpStatus.CREATED);
+
+        webTestClient.get().uri("/portfolio?limit=1").exchange()
+                .expectStatus().isOk()
+                .expectBody().jsonPath("$[?(@.ticker == 'REACTIVE7')].trades.length()").isEqualTo(1);
+        webTestClient.get().uri("/portfolio?limit=0").exchange().expectStatus().isBadRequest();
+        webTestClient.get().uri("/returns").exchange().expectStatus().isOk();
+        webTestClient.get().uri("/trades?ticker=REACTIVE7").exchange()
+                .expectStatus().isOk()
+                .expectBody().jsonPath("$.length()").isEqualTo(1);
+    }
+
+    /**
+     * Checks the holding in db, comparing average buy price at the scale it is stored with
+     */
+    private void assertHolding(String ticker, long shares, String averageBuyPrice, LocalDateTime lastUpdated) {
+        Holding holding = holdingRepository.findById(ticker).get();
+        assertEquals(BigInteger.valueOf(shares), holding.getShares());
+        assertEquals(new BigDecimal(averageBuyPrice).setScale(holding.getAverageBuyPrice().scale(), RoundingMode.HALF_UP),
+                holding.getAverageBuyPrice());
+        assertEquals(lastUpdated, holding.getLastUpdated());
+    }
+
+    /**
+     * Checks that the holding in db is the one calculated from all the trades of it's ticker in db.
+     * Average buy price is compared at the scale it is stored with
+     */
+    private void assertHoldingMatchesTrades(String ticker) {
+        List<Holding> expected = HoldingUtil.getHoldingsFromTrades(
+                tradeJdbcRepository.findByTickers(Collections.singletonList(ticker), null));
+        Optional<Holding> holding = holdingRepository.findById(ticker);
+        if (expected.isEmpty()) {
+            assertFalse(holding.isPresent());
+            return;
+        }
+        assertTrue(holding.isPresent());
+        assertEquals(expected.get(0).getShares(), holding.get().getShares());
+        assertEquals(0, expected.get(0).getTotalPrice().compareTo(holding.get().getTotalPrice()));
+        BigDecimal averageBuyPrice = holding.get().getAverageBuyPrice();
+        assertEquals(expected.get(0).getAverageBuyPrice().setScale(averageBuyPrice.scale(), RoundingMode.HALF_UP), averageBuyPrice);
+    }
+
+    private Trade postTrade(Trade trade, HttpStatus status) {
+        return postTrade(trade, null, status);
+    }
+
+    private Trade postTrade(Trade trade, String idempotencyKey, HttpStatus status) {
+        return webTestClient.post().uri("/trades")
+                .headers(headers -> {
+                    if (null != idempotencyKey) {
+                        headers.set("Idempotency-Key", idempotencyKey);
+                    }
+                })
+                .bodyValue(trade)
+                .exchange()
+                .expectStatus().isEqualTo(status)
+                .expectBody(Trade.class)
+                .returnResult()
+                .getResponseBody();
+    }
+
+    private Trade getTrade(String ticker, TransactionType type, long shares, String price) {
+        return getTrade(ticker, type, shares, price, null);
+    }
+
+    private Trade getTrade(String ticker, TransactionType type, long shares, String price, LocalDateTime lastUpdated) {
+        return Trade.builder()
+                .ticker(ticker)
+                .transactionType(type)
+                .shares(BigInteger.valueOf(shares))
+                .price(new BigDecimal(price))
+                .lastUpdated(lastUpdated)
+                .build();
+    }
+
+}
@@ -0,0 +1,243 @@
+package dev.rakshit.portfoliotrackingapi.repository;
+
+import dev.rakshit.portfoliotrackingapi.models.Portfolio;
+import dev.rakshit.portfoliotrackingapi.models.Trade;
+import dev.rakshit.portfoliotrackingapi.models.TradeCursor;
+import dev.rakshit.portfoliotrackingapi.models.TradeFilter;
+import dev.rakshit.portfoliotrackingapi.models.TransactionType;
+import dev.rakshit.portfoliotrackingapi.service.PortfolioTrackingService;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT, properties = {
+        "portfolio.snapshots.enabled=false",
+        "portfolio.query.in-batch-size=2"
+})
+public class TradeJdbcRepositoryTests {
+
+    private static final String NEXT_PAGE_TOKEN = "X-Next-Page-Token";
+    private static final LocalDateTime TIME = LocalDateTime.of(2019, 7, 1, 10, 0);
+
+    @Autowired
+    private TradeJdbcRepository tradeJdbcRepository;
+
+    @Autowired
+    private PortfolioTrackingService portfolioTrackingService;
+
+    @Autowired
+    private TestRestTemplate restTemplate;
+
+    /**
+     * Trades executed at the same time are added between trades executed after and before them, so that the order
+     * of their ids is not the order of their times
+     */
+    @Test
+    public void testPagesOfTradesExecutedAtTheSameTimeHaveEveryTradeOnce() {
+        List<Trade> trades = new ArrayList<>();
+        trades.add(addTrade("PAGEA1", TransactionType.BUY, TIME.plusHours(1)));
+        trades.add(addTrade("PAGEA1", TransactionType.BUY, TIME.plusHours(1)));
+        for (int i = 0; i < 7; i++) {
+            trades.add(addTrade("PAGEA1", TransactionType.BUY, TIME));
+        }
+        trades.add(addTrade("PAGEA1", TransactionType.BUY, TIME.minusHours(1)));
+        List<Long> expected = trades.stream()
+                .sorted(Comparator.comparing(Trade::getLastUpdated).thenComparing(Trade::getTradeId))
+                .map(Trade::getTradeId)
+                .collect(Collectors.toList());
+
+        assertEquals(expected, walkPages("/trades?ticker=PAGEA1", 3, 4));
+        assertEquals(expected, walkPages("/trades?ticker=PAGEA1", 5, 2));
+        assertEquals(expected, walkPages("/trades?ticker=PAGEA1", 10, 1));
+    }
+
+    @Test
+    public void testPagesHaveOnlyTradesMatchingFilters() {
+        addTrade("PAGEB1", TransactionType.BUY, TIME);
+        addTrade("PAGEB1", TransactionType.SELL, TIME.plusHours(1));
+        addTrade("PAGEB1", TransactionType.SELL, TIME.plusHours(2));
+        addTrade("PAGEB1", TransactionType.BUY, TIME.plusHours(3));
+        addTrade("PAGEB2", TransactionType.BUY, TIME);
+        addTrade("PAGEB2", TransactionType.SELL, TIME.plusHours(1));
+
+        assertPages(TradeFilter.builder().ticker("PAGEB1").build(),
+                trade -> "PAGEB1".equals(trade.getTicker()), 4);
+        assertPages(TradeFilter.builder().ticker("PAGEB1").transactionType(TransactionType.SELL).build(),
+                trade -> "PAGEB1".equals(trade.getTicker()) && TransactionType.SELL == trade.getTransactionType(), 2);
+        assertPages(TradeFilter.builder().ticker("PAGEB1").from(TIME.plusHours(1)).build(),
+                trade -> "PAGEB1".equals(trade.getTicker()) && !trade.getLastUpdated().isBefore(TIME.plusHours(1)), 3);
+        assertPages(TradeFilter.builder().ticker("PAGEB1").to(TIME.plusHours(2)).build(),
+                trade -> "PAGEB1".equals(trade.getTicker()) && trade.getLastUpdated().isBefore(TIME.plusHours(2)), 2);
+        assertPages(TradeFilter.builder().transactionType(TransactionType.SELL).from(TIME.plusHours(1)).to(TIME.plusHours(2)).build(),
+                trade -> trade.getTicker().startsWith("PAGEB") && TransactionType.SELL == trade.getTransactionType(), 2);
+
+        List<Trade> trades = walkPages(TradeFilter.builder().transactionType(TransactionType.SELL).build(), 2);
+        assertTrue(trades.stream().allMatch(trade -> TransactionType.SELL == trade.getTransactionType()));
+        assertEquals(3, trades.stream().filter(trade -> trade.getTicker().startsWith("PAGEB")).count());
+    }
+
+    @Test
+    public void testInvalidPagesAreRejected() {
+        assertEquals(HttpStatus.BAD_REQUEST, restTemplate.getForEntity("/trades?limit=0", String.class).getStatusCode());
+        assertEquals(HttpStatus.BAD_REQUEST, restTemplate.getForEntity("/trades?pageToken=abc", String.class).getStatusCode());
+        assertEquals(HttpStatus.NOT_FOUND, restTemplate.getForEntity("/trades?ticker=PAGEC1", String.class).getStatusCode());
+    }
+
+    /**
+     * Five tickers are read in three IN lists of two tickers. Each ticker has a trade executed last which is added
+     * before two trades executed earlier, so that it's latest trades are not the ones with the highest ids
+     */
+    @Test
+    public void testTradesOfTickersSplitAcrossInListsKeepLatestTradesOfEachTicker() {
+        List<String> tickers = Arrays.asList("PORTA1", "PORTA2", "PORTA3", "PORTA4", "PORTA5");
+        Map<String, List<Long>> tradesByTicker = new LinkedHashMap<>();
+        Map<String, List<Long>> latestTradesByTicker = new LinkedHashMap<>();
+        for (String ticker : tickers) {
+            Trade last = addTrade(ticker, TransactionType.BUY, TIME.plusHours(2));
+            Trade first = addTrade(ticker, TransactionType.BUY, TIME);
+            Trade middle = addTrade(ticker, TransactionType.BUY, TIME.plusHours(1));
+            Trade lastOfSameTime = addTrade(ticker, TransactionType.BUY, TIME.plusHours(2));
+            tradesByTicker.put(ticker, getTradeIds(Arrays.asList(last, first, middle, lastOfSameTime)));
+            latestTradesByTicker.put(ticker, getTradeIds(Arrays.asList(last, lastOfSameTime)));
+        }
+
+        assertEquals(tradesByTicker, groupByTicker(tradeJdbcRepository.findByTickers(tickers, null)));
+        assertEquals(latestTradesByTicker, groupByTicker(tradeJdbcRepository.findByTickers(tickers, 2)));
+        assertEquals(tradesByTicker, groupByTicker(tradeJdbcRepository.findByTickers(tickers, 4)));
+
+        ResponseEntity<Portfolio[]> response = restTemplate.getForEntity("/portfolio?limit=2", Portfolio[].class);
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        Map<String, List<Trade>> portfolio = Arrays.stream(response.getBody())
+                .filter(value -> tickers.contains(value.getTicker()))
+                .collect(Collectors.toMap(Portfolio::getTicker, Portfolio::getTrades, (first, second) -> first, LinkedHashMap::new));
+        assertEquals(tickers, new ArrayList<>(portfolio.keySet()));
+        portfolio.forEach((ticker, trades) -> assertEquals(latestTradesByTicker.get(ticker), getTradeIds(trades)));
+    }
+
+    @Test
+    public void testPortfolioWithTradeLimitNotAboveZeroIsRejected() {
+        addTrade("PORTB1", TransactionType.BUY, TIME);
+
+        assertEquals(HttpStatus.BAD_REQUEST, restTemplate.getForEntity("/portfolio?limit=0", String.class).getStatusCode());
+        assertEquals(HttpStatus.BAD_REQUEST, restTemplate.getForEntity("/portfolio?limit=-1", String.class).getStatusCode());
+        assertEquals(HttpStatus.OK, restTemplate.getForEntity("/portfolio?limit=1", String.class).getStatusCode());
+    }
+
+    /**
+     * Groups ids of trades by ticker, checking the trades are ordered by ticker and trade id
+     */
+    private Map<String, List<Long>> groupByTicker(List<Trade> trades) {
+        for (int i = 1; i < trades.size(); i++) {
+            Trade previous = trades.get(i - 1);
+            Trade trade = trades.get(i);
+            int byTicker = previous.getTicker().compareTo(trade.getTicker());
+            assertTrue(0 > byTicker || (0 == byTicker && previous.getTradeId() < trade.getTradeId()));
+        }
+        return trades.stream()
+                .collect(Collectors.groupingBy(Trade::getTicker, LinkedHashMap::new,
+                        Collectors.mapping(Trade::getTradeId, Collectors.toList())));
+    }
+
+    private List<Long> getTradeIds(List<Trade> trades) {
+        return trades.stream()
+                .map(Trade::getTradeId)
+                .sorted()
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * Walks the pages of GET /trades, checking that only the last page has no next page token
+     *
+     * @return Ids of the trades of all pages, in the order they were given
+     */
+    private List<Long> walkPages(String uri, int limit, int pages) {
+        List<Long> tradeIds = new ArrayList<>();
+        String pageToken = null;
+        for (int page = 1; page <= pages; page++) {
+            String pageUri = uri + "&limit=" + limit + (null == pageToken ? "" : "&pageToken=" + pageToken);
+            ResponseEntity<Trade[]> response = restTemplate.getForEntity(pageUri, Trade[].class);
+            assertEquals(HttpStatus.OK, response.getStatusCode());
+            assertTrue(response.getBody().length <= limit);
+            Arrays.stream(response.getBody()).forEach(trade -> tradeIds.add(trade.getTradeId()));
+            pageToken = response.getHeaders().getFirst(NEXT_PAGE_TOKEN);
+            if (page < pages) {
+                assertNotNull(pageToken, "No next page token on page " + page);
+            } else {
+                assertNull(pageToken, "Next page token on last page");
+            }
+        }
+        return tradeIds;
+    }
+
+    /**
+     * Checks that walking the pages of a filter gives the trades which match it, in order, for every page size
+     */
+    private void assertPages(TradeFilter filter, Predicate<Trade> matches, int count) {
+        List<Trade> expected = walkPages(filter, 1000).stream()
+                .filter(matches)
+                .collect(Collectors.toList());
+        assertEquals(count, expected.size());
+        for (int limit = 1; limit <= count + 1; limit++) {
+            List<Trade> trades = walkPages(filter, limit);
+            assertTrue(trades.stream().allMatch(matches), filter.toString());
+            assertEquals(expected, trades, filter.toString());
+        }
+    }
+
+    /**
+     * Walks the pages of TradeJdbcRepository.findPage, starting each page after the last trade of the previous one
+     */
+    private List<Trade> walkPages(TradeFilter filter, int limit) {
+        List<Trade> trades = new ArrayList<>();
+        TradeCursor cursor = null;
+        List<Trade> page;
+        do {
+            page = tradeJdbcRepository.findPage(filter, cursor, limit);
+            assertTrue(page.size() <= limit);
+            trades.addAll(page);
+            if (!page.isEmpty()) {
+                Trade lastTrade = page.get(page.size() - 1);
+                cursor = new TradeCursor(lastTrade.getLastUpdated(), lastTrade.getTradeId());
+            }
+        } while (page.size() == limit);
+        assertEquals(trades.size(), trades.stream().map(Trade::getTradeId).distinct().count());
+        for (int i = 1; i < trades.size(); i++) {
+            Trade previous = trades.get(i - 1);
+            Trade trade = trades.get(i);
+            assertTrue(previous.getLastUpdated().isBefore(trade.getLastUpdated())
+                    || (previous.getLastUpdated().equals(trade.getLastUpdated()) && previous.getTradeId() < trade.getTradeId()));
+        }
+        return trades;
+    }
+
+    private Trade addTrade(String ticker, TransactionType transactionType, LocalDateTime lastUpdated) {
+        return portfolioTrackingService.addTrade(Trade.builder()
+                .ticker(ticker)
+                .transactionType(transactionType)
+                .price(BigDecimal.TEN)
+                .shares(TransactionType.BUY == transactionType ? BigInteger.TEN : BigInteger.ONE)
+                .lastUpdated(lastUpdated)
+                .build());
+    }
+
+}
@@ -0,0 +1,218 @@
+package dev.rakshit.portfoliotrackingapi.sequencer;
+
+import dev.rakshit.portfoliotrackingapi.exceptions.ConflictException;
+import dev.rakshit.portfoliotrackingapi.exceptions.InvalidTransactionException;
+import dev.rakshit.portfoliotrackingapi.exceptions.ServiceUnavailableException;
+import dev.rakshit.portfoliotrackingapi.exceptions.UnprocessableEntityException;
+import dev.rakshit.portfoliotrackingapi.models.Holding;
+import dev.rakshit.portfoliotrackingapi.models.Trade;
+import dev.rakshit.portfoliotrackingapi.models.TransactionType;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.OptimisticLockingFailureException;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class TradeSequencerTests {
+
+    private static final String TICKER1 = "WIPRO";
+    private static final String TICKER2 = "TCS";
+
+    private InMemoryLaneStore laneStore;
+    private TradeSequencer tradeSequencer;
+
+    @BeforeEach
+    public void setUp() {
+        laneStore = new InMemoryLaneStore();
+        tradeSequencer = new TradeSequencer(laneStore, 2, 100, 10, 3);
+        tradeSequencer.start();
+    }
+
+    @AfterEach
+    public void tearDown() {
+        tradeSequencer.shutdown();
+    }
+
+    @Test
+    public void testTradesOfTickerAreAddedInOrder() throws Exception {
+        List<CompletableFuture<Trade>> futures = new ArrayList<>();
+        for (int i = 0; i < 50; i++) {
+            futures.add(tradeSequencer.submit(getTrade(0 == i % 2 ? TICKER1 : TICKER2, TransactionType.BUY, 10 + i, 2)));
+        }
+        futures.add(tradeSequencer.submit(getTrade(TICKER1, TransactionType.SELL, 500, 50)));
+        for (CompletableFuture<Trade> future : futures) {
+            assertNotNull(future.get(10, TimeUnit.SECONDS).getTradeId());
+        }
+        assertEquals(51, laneStore.trades.size());
+        assertFalse(laneStore.holdings.containsKey(TICKER1));
+        Holding holding = laneStore.holdings.get(TICKER2);
+        assertEquals(BigInteger.valueOf(50), holding.getShares());
+        assertEquals(0, new BigDecimal("35").compareTo(holding.getAverageBuyPrice()));
+    }
+
+    @Test
+    public void testInvalidTradeFailsWithoutStoppingOtherTrades() throws Exception {
+        CompletableFuture<Trade> sell = tradeSequencer.submit(getTrade(TICKER1, TransactionType.SELL, 10, 1));
+        CompletableFuture<Trade> buy = tradeSequencer.submit(getTrade(TICKER1, TransactionType.BUY, 10, 1));
+        ExecutionException exception = assertThrows(ExecutionException.class, () -> sell.get(10, TimeUnit.SECONDS));
+        assertThat(exception.getCause())
+                .isInstanceOf(InvalidTransactionException.class)
+                .hasMessage("No shares available to sell");
+        assertNotNull(buy.get(10, TimeUnit.SECONDS).getTradeId());
+        assertEquals(BigInteger.ONE, laneStore.holdings.get(TICKER1).getShares());
+    }
+
+    @Test
+    public void testHoldingChangedInStoreIsReadAgain() throws Exception {
+        tradeSequencer.submit(getTrade(TICKER1, TransactionType.BUY, 10, 5)).get(10, TimeUnit.SECONDS);
+        changeHolding(TICKER1, 100);
+        tradeSequencer.submit(getTrade(TICKER1, TransactionType.BUY, 10, 10)).get(10, TimeUnit.SECONDS);
+        assertEquals(BigInteger.valueOf(110), laneStore.holdings.get(TICKER1).getShares());
+        assertEquals(1, laneStore.conflicts.get());
+    }
+
+    @Test
+    public void testTradeRejectedOnHoldingInMemoryIsCheckedAgain() throws Exception {
+        tradeSequencer.submit(getTrade(TICKER1, TransactionType.BUY, 10, 5)).get(10, TimeUnit.SECONDS);
+        changeHolding(TICKER1, 100);
+        tradeSequencer.submit(getTrade(TICKER1, TransactionType.SELL, 10, 50)).get(10, TimeUnit.SECONDS);
+        assertEquals(BigInteger.valueOf(50), laneStore.holdings.get(TICKER1).getShares());
+        assertEquals(0, laneStore.conflicts.get());
+    }
+
+    @Test
+    public void testConflictOnEveryAttemptFailsTrades() throws Exception {
+        laneStore.alwaysConflict = true;
+        CompletableFuture<Trade> future = tradeSequencer.submit(getTrade(TICKER1, TransactionType.BUY, 10, 5));
+        ExecutionException exception = assertThrows(ExecutionException.class, () -> future.get(10, TimeUnit.SECONDS));
+        assertThat(exception.getCause()).isInstanceOf(ConflictException.class);
+        assertEquals(3, laneStore.conflicts.get());
+        assertThat(laneStore.trades).isEmpty();
+    }
+
+    @Test
+    public void testTradeWithIdempotencyKeyAlreadyTakenIsNotAddedAgain() throws Exception {
+        Trade trade = getTrade(TICKER1, TransactionType.BUY, 10, 5);
+        trade.setIdempotencyKey("KEY1");
+        trade.setRequestHash("HASH1");
+        Trade addedTrade = tradeSequencer.submit(trade).get(10, TimeUnit.SECONDS);
+        List<CompletableFuture<Trade>> futures = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            futures.add(tradeSequencer.submit(getTrade(TICKER1, TransactionType.BUY, 10, 1)));
+            Trade retry = getTrade(TICKER1, TransactionType.BUY, 10, 5);
+            retry.setIdempotencyKey(0 == i % 2 ? "KEY1" : "KEY2");
+            retry.setRequestHash(0 == i % 2 ? "HASH1" : "HASH2");
+            futures.add(tradeSequencer.submit(retry));
+        }
+        Trade reusedKey = getTrade(TICKER1, TransactionType.BUY, 10, 50);
+        reusedKey.setIdempotencyKey("KEY2");
+        reusedKey.setRequestHash("HASH3");
+        CompletableFuture<Trade> reusedKeyFuture = tradeSequencer.submit(reusedKey);
+
+        for (int i = 0; i < futures.size(); i += 2) {
+            assertNotNull(futures.get(i).get(10, TimeUnit.SECONDS).getTradeId());
+        }
+        assertEquals(addedTrade.getTradeId(), futures.get(1).get(10, TimeUnit.SECONDS).getTradeId());
+        assertEquals(futures.get(3).get(10, TimeUnit.SECONDS).getTradeId(), futures.get(7).get(10, TimeUnit.SECONDS).getTradeId());
+        ExecutionException exception = assertThrows(ExecutionException.class, () -> reusedKeyFuture.get(10, TimeUnit.SECONDS));
+        assertThat(exception.getCause()).isInstanceOf(UnprocessableEntityException.class);
+        assertEquals(7, laneStore.trades.size());
+        assertEquals(BigInteger.valueOf(15), laneStore.holdings.get(TICKER1).getShares());
+    }
+
+    @Test
+    public void testTradeSubmittedAfterShutdownIsRejected() {
+        tradeSequencer.shutdown();
+        CompletableFuture<Trade> future = tradeSequencer.submit(getTrade(TICKER1, TransactionType.BUY, 10, 5));
+        ExecutionException exception = assertThrows(ExecutionException.class, () -> future.get(10, TimeUnit.SECONDS));
+        assertThat(exception.getCause()).isInstanceOf(ServiceUnavailableException.class);
+    }
+
+    /**
+     * Changes holding in the store as if it was written by someone other than the sequencer
+     */
+    private void changeHolding(String ticker, int shares) {
+        Holding holding = laneStore.holdings.get(ticker);
+        holding.setShares(BigInteger.valueOf(shares));
+        holding.setTotalPrice(BigDecimal.valueOf(shares * 10L));
+        holding.setVersion(holding.getVersion() + 1);
+    }
+
+    private Trade getTrade(String ticker, TransactionType transactionType, int price, int shares) {
+        return Trade.builder()
+                .ticker(ticker)
+                .transactionType(transactionType)
+                .price(BigDecimal.valueOf(price))
+                .shares(BigInteger.valueOf(shares))
+                .lastUpdated(LocalDateTime.now())
+                .build();
+    }
+
+    /**
+     * Keeps copies of the holdings written and fails writes of holdings whose version does not match
+     */
+    private static class InMemoryLaneStore implements LaneStore {
+        private final Map<String, Holding> holdings = new ConcurrentHashMap<>();
+        private final List<Trade> trades = new ArrayList<>();
+        private final AtomicLong tradeIds = new AtomicLong();
+        private final AtomicInteger conflicts = new AtomicInteger();
+        private volatile boolean alwaysConflict;
+
+        @Override
+        public List<Holding> findHoldings(Collection<String> tickers) {
+            return tickers.stream()
+                    .map(holdings::get)
+                    .filter(Objects::nonNull)
+                    .map(holding -> holding.toBuilder().build())
+                    .collect(Collectors.toList());
+        }
+
+        @Override
+        public synchronized List<Trade> findTrades(Collection<String> idempotencyKeys) {
+            return trades.stream()
+                    .filter(trade -> idempotencyKeys.contains(trade.getIdempotencyKey()))
+                    .collect(Collectors.toList());
+        }
+
+        @Override
+        public synchronized void write(List<Trade> newTrades, List<Holding> changedHoldings, List<Holding> closedHoldings) {
+            List<Holding> writtenHoldings = new ArrayList<>(changedHoldings);
+            writtenHoldings.addAll(closedHoldings);
+            boolean changed = writtenHoldings.stream().anyMatch(holding -> !Objects.equals(holding.getVersion(),
+                    holdings.containsKey(holding.getTicker()) ? holdings.get(holding.getTicker()).getVersion() : null));
+            if (alwaysConflict || changed) {
+                conflicts.incrementAndGet();
+                throw new OptimisticLockingFailureException("Holding was changed");
+            }
+            newTrades.forEach(trade -> trade.setTradeId(tradeIds.incrementAndGet()));
+            trades.addAll(newTrades);
+            changedHoldings.forEach(holding -> {
+                holding.setVersion(null == holding.getVersion() ? 0L : holding.getVersion() + 1);
+                holdings.put(holding.getTicker(), holding.toBuilder().build());
+            });
+            closedHoldings.forEach(holding -> holdings.remove(holding.getTicker()));
+        }
+    }
+
+}
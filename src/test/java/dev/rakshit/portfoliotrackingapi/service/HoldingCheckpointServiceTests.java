@@ -0,0 +1,240 @@
+package dev.rakshit.portfoliotrackingapi.service;
+
+import dev.rakshit.portfoliotrackingapi.exceptions.InvalidTransactionException;
+import dev.rakshit.portfoliotrackingapi.models.Holding;
+import dev.rakshit.portfoliotrackingapi.models.HoldingCheckpoint;
+import dev.rakshit.portfoliotrackingapi.models.Trade;
+import dev.rakshit.portfoliotrackingapi.models.TransactionType;
+import dev.rakshit.portfoliotrackingapi.repository.HoldingCheckpointRepository;
+import dev.rakshit.portfoliotrackingapi.repository.HoldingJdbcRepository;
+import dev.rakshit.portfoliotrackingapi.repository.TradeJdbcRepository;
+import dev.rakshit.portfoliotrackingapi.repository.TradeRepository;
+import dev.rakshit.portfoliotrackingapi.util.HoldingUtil;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.math.RoundingMode;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+@SpringBootTest
+public class HoldingCheckpointServiceTests {
+
+    private static final String CLOSED_TICKER = "SQLREBUILDCLOSED";
+
+    @Autowired
+    private HoldingCheckpointService holdingCheckpointService;
+
+    @Autowired
+    private HoldingJdbcRepository holdingJdbcRepository;
+
+    @Autowired
+    private HoldingCheckpointRepository holdingCheckpointRepository;
+
+    @Autowired
+    private TradeJdbcRepository tradeJdbcRepository;
+
+    @Autowired
+    private TradeRepository tradeRepository;
+
+    /**
+     * Trades are generated in execution order in groups of three executed at the same time, and the groups are
+     * added in shuffled order, so that trade ids break the ties of a group and many trades are added after
+     * trades executed later. Both rebuilds are checked against the trades replayed one by one with
+     * addTradeInOrder in execution order
+     */
+    @Test
+    public void testRebuildInDbMatchesRebuildFromTradesInMemory() {
+        Random random = new Random(22);
+        List<String> tickers = new ArrayList<>();
+        for (int i = 0; i < 40; i++) {
+            tickers.add("SQLREBUILD" + i);
+        }
+        Map<String, Long> heldShares = new HashMap<>();
+        List<List<Trade>> tradeGroups = new ArrayList<>();
+        LocalDateTime time = LocalDateTime.of(2021, 6, 1, 0, 0);
+        for (int i = 0; i < 3000; i++) {
+            String ticker = tickers.get(random.nextInt(tickers.size()));
+            long held = heldShares.getOrDefault(ticker, 0L);
+            boolean sell = 0 < held && 2 == i % 3;
+            long shares = sell
+                    ? (0 == random.nextInt(4) ? held : 1 + random.nextInt((int) Math.min(held, 50)))
+                    : 1 + random.nextInt(100);
+            heldShares.put(ticker, sell ? held - shares : held + shares);
+            if (0 == i % 3) {
+                tradeGroups.add(new ArrayList<>());
+            }
+            tradeGroups.get(tradeGroups.size() - 1).add(getTrade(ticker, sell ? TransactionType.SELL : TransactionType.BUY,
+                    shares, BigDecimal.valueOf(1 + random.nextInt(1000000), 2), time.plusSeconds(i / 3)));
+        }
+        Collections.shuffle(tradeGroups, random);
+        List<Trade> trades = tradeGroups.stream()
+                .flatMap(List::stream)
+                .collect(Collectors.toList());
+        tradeJdbcRepository.saveAll(trades);
+        holdingJdbcRepository.saveAll(Collections.singletonList(Holding.builder()
+                .ticker(CLOSED_TICKER)
+                .shares(BigInteger.TEN)
+                .totalPrice(BigDecimal.TEN)
+                .averageBuyPrice(BigDecimal.ONE)
+                .lastUpdated(time)
+                .build()));
+        List<String> allTickers = new ArrayList<>(tickers);
+        allTickers.add(CLOSED_TICKER);
+
+        holdingCheckpointService.rebuildHoldings();
+        Map<String, Holding> rebuiltInMemory = getHoldings(allTickers);
+        Map<String, HoldingCheckpoint> checkpointsInMemory = getCheckpoints(tickers);
+        holdingCheckpointService.rebuildHoldingsInDb();
+        Map<String, Holding> rebuiltInDb = getHoldings(allTickers);
+        Map<String, HoldingCheckpoint> checkpointsInDb = getCheckpoints(tickers);
+
+        Map<String, Holding> expected = replayInOrder(trades);
+        assertFalse(rebuiltInDb.containsKey(CLOSED_TICKER));
+        assertEquals(expected.keySet(), rebuiltInDb.keySet());
+        assertEquals(rebuiltInMemory.keySet(), rebuiltInDb.keySet());
+        assertFalse(expected.size() == tickers.size(), "Some tickers are expected to be closed");
+        expected.forEach((ticker, holding) -> {
+            Holding inDb = rebuiltInDb.get(ticker);
+            Holding inMemory = rebuiltInMemory.get(ticker);
+            assertEquals(holding.getShares(), inDb.getShares(), ticker);
+            assertEquals(holding.getTotalPrice().setScale(inDb.getTotalPrice().scale(), RoundingMode.HALF_UP),
+                    inDb.getTotalPrice(), ticker);
+            assertEquals(holding.getAverageBuyPrice().setScale(inDb.getAverageBuyPrice().scale(), RoundingMode.HALF_UP),
+                    inDb.getAverageBuyPrice(), ticker);
+            assertEquals(holding.getLastUpdated(), inDb.getLastUpdated(), ticker);
+            assertEquals(inMemory.getTotalPrice(), inDb.getTotalPrice(), ticker);
+            assertEquals(inMemory.getAverageBuyPrice(), inDb.getAverageBuyPrice(), ticker);
+            assertEquals(inMemory.getLastUpdated(), inDb.getLastUpdated(), ticker);
+            assertEquals(inMemory.getVersion() + 1, inDb.getVersion(), ticker);
+        });
+        assertEquals(checkpointsInMemory.keySet(), checkpointsInDb.keySet());
+        checkpointsInMemory.forEach((ticker, checkpoint) -> {
+            HoldingCheckpoint inDb = checkpointsInDb.get(ticker);
+            assertEquals(checkpoint.getShares(), inDb.getShares(), ticker);
+            assertEquals(0, checkpoint.getTotalPrice().compareTo(inDb.getTotalPrice()), ticker);
+            assertEquals(0, checkpoint.getAverageBuyPrice().compareTo(inDb.getAverageBuyPrice()), ticker);
+            assertEquals(checkpoint.getLastTradeId(), inDb.getLastTradeId(), ticker);
+            assertEquals(checkpoint.getLastUpdated(), inDb.getLastUpdated(), ticker);
+            assertFalse(inDb.isStale(), ticker);
+        });
+    }
+
+    @Test
+    public void testRebuildInDbRejectsOversoldTrades() {
+        String ticker = "SQLREBUILDOVERSOLD";
+        LocalDateTime time = LocalDateTime.of(2021, 9, 1, 0, 0);
+        List<Trade> trades = new ArrayList<>();
+        trades.add(getTrade(ticker, TransactionType.BUY, 5, BigDecimal.TEN, time.plusDays(1)));
+        trades.add(getTrade(ticker, TransactionType.SELL, 5, BigDecimal.TEN, time));
+        tradeJdbcRepository.saveAll(trades);
+        try {
+            InvalidTransactionException exception = assertThrows(InvalidTransactionException.class,
+                    () -> holdingCheckpointService.rebuildHoldingsInDb());
+            assertEquals(InvalidTransactionException.Reason.HOLDING_SHARES_NEGATIVE, exception.getReason());
+        } finally {
+            trades.forEach(trade -> tradeRepository.deleteById(trade.getTradeId()));
+        }
+    }
+
+    @Test
+    public void testRefreshAfterRebuildInDbReplaysOnlyNewTrades() {
+        String ticker = "SQLREBUILDNEXT";
+        tradeJdbcRepository.saveAll(new ArrayList<>(Collections.singletonList(
+                getTrade(ticker, TransactionType.BUY, 10, new BigDecimal("12.34"), LocalDateTime.of(2021, 7, 1, 0, 0)))));
+        holdingCheckpointService.rebuildHoldingsInDb();
+        List<Trade> trades = new ArrayList<>();
+        trades.add(getTrade(ticker, TransactionType.BUY, 5, new BigDecimal("20.01"), LocalDateTime.of(2021, 7, 2, 0, 0)));
+        trades.add(getTrade(ticker, TransactionType.SELL, 3, new BigDecimal("25.00"), LocalDateTime.of(2021, 7, 3, 0, 0)));
+        tradeJdbcRepository.saveAll(trades);
+
+        holdingCheckpointService.refreshHoldings();
+
+        Holding holding = holdingJdbcRepository.findAllById(Collections.singletonList(ticker)).get(0);
+        assertEquals(BigInteger.valueOf(12), holding.getShares());
+        assertEquals(new BigDecimal("178.76"), holding.getTotalPrice());
+        assertEquals(new BigDecimal("14.90"), holding.getAverageBuyPrice());
+    }
+
+    @Test
+    public void testRefreshesReplayTradesInExecutionOrder() {
+        String ticker = "REFRESHINORDER";
+        LocalDateTime time = LocalDateTime.of(2021, 8, 1, 0, 0);
+        List<Trade> trades = new ArrayList<>();
+        trades.add(getTrade(ticker, TransactionType.BUY, 10, BigDecimal.valueOf(100), time));
+        trades.add(getTrade(ticker, TransactionType.SELL, 5, BigDecimal.valueOf(300), time.plusDays(1)));
+        trades.add(getTrade(ticker, TransactionType.BUY, 5, BigDecimal.valueOf(200), time.plusDays(2)));
+        tradeJdbcRepository.saveAll(trades);
+
+        holdingCheckpointService.refreshHoldings();
+        assertHolding(ticker, 10, "1500", "150", time.plusDays(2));
+        holdingCheckpointService.rebuildHoldings();
+        assertHolding(ticker, 10, "1500", "150", time.plusDays(2));
+        holdingCheckpointService.rebuildHoldingsInDb();
+        assertHolding(ticker, 10, "1500", "150", time.plusDays(2));
+
+        tradeJdbcRepository.saveAll(new ArrayList<>(Collections.singletonList(
+                getTrade(ticker, TransactionType.SELL, 5, BigDecimal.valueOf(300), time.plusDays(1).plusHours(1)))));
+        holdingCheckpointService.refreshHoldings();
+        assertHolding(ticker, 5, "1000", "200", time.plusDays(2));
+    }
+
+    private void assertHolding(String ticker, long shares, String totalPrice, String averageBuyPrice,
+                               LocalDateTime lastUpdated) {
+        Holding holding = holdingJdbcRepository.findById(ticker).orElseThrow(AssertionError::new);
+        assertEquals(BigInteger.valueOf(shares), holding.getShares());
+        assertEquals(0, new BigDecimal(totalPrice).compareTo(holding.getTotalPrice()), holding.toString());
+        assertEquals(0, new BigDecimal(averageBuyPrice).compareTo(holding.getAverageBuyPrice()), holding.toString());
+        assertEquals(lastUpdated, holding.getLastUpdated());
+    }
+
+    /**
+     * Gives the holdings of trades added to each ticker one by one in execution order
+     */
+    private Map<String, Holding> replayInOrder(List<Trade> trades) {
+        Map<String, Holding> holdings = new HashMap<>();
+        trades.stream()
+                .sorted(Comparator.comparing(Trade::getLastUpdated).thenComparing(Trade::getTradeId))
+                .forEach(trade -> HoldingUtil.addTradeInOrder(
+                        holdings.computeIfAbsent(trade.getTicker(), HoldingUtil::getEmptyHolding), trade));
+        holdings.values().removeIf(holding -> 0 == holding.getShares().signum());
+        return holdings;
+    }
+
+    private Map<String, Holding> getHoldings(List<String> tickers) {
+        return holdingJdbcRepository.findAllById(tickers).stream()
+                .collect(Collectors.toMap(Holding::getTicker, Function.identity()));
+    }
+
+    private Map<String, HoldingCheckpoint> getCheckpoints(List<String> tickers) {
+        return holdingCheckpointRepository.findAllById(tickers).stream()
+                .collect(Collectors.toMap(HoldingCheckpoint::getTicker, Function.identity()));
+    }
+
+    private Trade getTrade(String ticker, TransactionType transactionType, long shares, BigDecimal price,
+                           LocalDateTime lastUpdated) {
+        return Trade.builder()
+                .ticker(ticker)
+                .transactionType(transactionType)
+                .shares(BigInteger.valueOf(shares))
+                .price(price)
+                .lastUpdated(lastUpdated)
+                .build();
+    }
+
+}
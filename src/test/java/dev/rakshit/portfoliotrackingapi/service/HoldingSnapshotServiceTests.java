@@ -0,0 +1,301 @@
+package dev.rakshit.portfoliotrackingapi.service;
+
+import dev.rakshit.portfoliotrackingapi.exceptions.InvalidTransactionException;
+import dev.rakshit.portfoliotrackingapi.exceptions.InvalidTransactionException.Reason;
+import dev.rakshit.portfoliotrackingapi.lock.TickerLocks;
+import dev.rakshit.portfoliotrackingapi.models.Holding;
+import dev.rakshit.portfoliotrackingapi.models.Trade;
+import dev.rakshit.portfoliotrackingapi.models.TransactionType;
+import dev.rakshit.portfoliotrackingapi.repository.TradeJdbcRepository;
+import dev.rakshit.portfoliotrackingapi.util.HoldingUtil;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT, properties = {
+        "portfolio.snapshots.enabled=false",
+        "portfolio.snapshots.interval=PT1H"
+})
+public class HoldingSnapshotServiceTests {
+
+    @Autowired
+    private HoldingSnapshotService holdingSnapshotService;
+
+    @Autowired
+    private PortfolioTrackingService portfolioTrackingService;
+
+    @Autowired
+    private TradeJdbcRepository tradeJdbcRepository;
+
+    @Autowired
+    private TickerLocks tickerLocks;
+
+    @Autowired
+    private TestRestTemplate restTemplate;
+
+    @Test
+    public void testHoldingsAsOfMatchTradesExecutedUpToThatTime() {
+        Random random = new Random(20);
+        List<String> tickers = Arrays.asList("SNAPSHOTA1", "SNAPSHOTA2", "SNAPSHOTA3");
+        Map<String, Integer> shares = new HashMap<>();
+        LocalDateTime time = LocalDateTime.of(2020, 3, 1, 0, 0);
+        List<LocalDateTime> times = new ArrayList<>();
+        for (int i = 0; i < 300; i++) {
+            time = time.plusMinutes(random.nextInt(30));
+            String ticker = tickers.get(random.nextInt(tickers.size()));
+            int held = shares.getOrDefault(ticker, 0);
+            if (0 < held && random.nextBoolean()) {
+                int sold = 1 + random.nextInt(held);
+                portfolioTrackingService.addTrade(getTrade(ticker, TransactionType.SELL, sold, 1 + random.nextInt(100), time));
+                shares.put(ticker, held - sold);
+            } else {
+                int bought = 1 + random.nextInt(20);
+                portfolioTrackingService.addTrade(getTrade(ticker, TransactionType.BUY, bought, 1 + random.nextInt(100), time));
+                shares.put(ticker, held + bought);
+            }
+            times.add(time);
+        }
+        times.add(LocalDateTime.of(2020, 2, 1, 0, 0));
+        times.add(LocalDateTime.of(2020, 3, 1, 12, 0));
+        times.add(LocalDateTime.of(2020, 3, 1, 12, 0, 0, 1));
+        times.add(time.plusDays(1));
+
+        assertTrue(0 < holdingSnapshotService.takeSnapshots());
+        assertEquals(0, holdingSnapshotService.takeSnapshots());
+
+        times.forEach(asOf -> assertHoldingsAsOf("SNAPSHOTA", asOf));
+    }
+
+    @Test
+    public void testSnapshotsAreCorrectedForTradesWrittenAfterThem() {
+        LocalDateTime start = LocalDateTime.of(2020, 6, 1, 0, 0);
+        List<Trade> trades = new ArrayList<>();
+        for (int i = 0; i < 24; i++) {
+            trades.add(portfolioTrackingService.addTrade(getTrade("SNAPSHOTB1", TransactionType.BUY, 1 + i, 10 + i, start.plusMinutes(45 * i))));
+        }
+        holdingSnapshotService.takeSnapshots();
+        List<LocalDateTime> times = new ArrayList<>();
+        for (int i = 0; i < 40; i++) {
+            times.add(start.plusMinutes(30 * i));
+        }
+
+        portfolioTrackingService.addTrade(getTrade("SNAPSHOTB1", TransactionType.SELL, 3, 50, start.plusMinutes(100)));
+        portfolioTrackingService.addTrade(getTrade("SNAPSHOTB2", TransactionType.BUY, 7, 20, start.plusMinutes(200)));
+        Trade trade = trades.get(5);
+        Trade newTrade = getTrade("SNAPSHOTB1", TransactionType.BUY, 40, 15, start.plusMinutes(500));
+        newTrade.setTradeId(trade.getTradeId());
+        portfolioTrackingService.updateTrade(trade, newTrade);
+        portfolioTrackingService.deleteTrade(trades.get(10).getTradeId());
+
+        times.forEach(asOf -> assertHoldingsAsOf("SNAPSHOTB", asOf));
+        assertEquals(BigInteger.valueOf(7), getHoldingsAsOf("SNAPSHOTB", start.plusMinutes(200)).get(1).getShares());
+    }
+
+    @Test
+    public void testHoldingsAsOfAreServedByGetHoldings() {
+        LocalDateTime time = LocalDateTime.of(2020, 9, 1, 10, 15);
+        portfolioTrackingService.addTrade(getTrade("SNAPSHOTC1", TransactionType.BUY, 5, 10, time));
+        portfolioTrackingService.addTrade(getTrade("SNAPSHOTC1", TransactionType.BUY, 5, 30, time.plusHours(3)));
+
+        ResponseEntity<Holding[]> response = restTemplate.getForEntity("/holdings?asOf=2020-09-01T12:00:00", Holding[].class);
+
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        Holding holding = Arrays.stream(response.getBody())
+                .filter(value -> "SNAPSHOTC1".equals(value.getTicker()))
+                .findFirst()
+                .get();
+        assertEquals(BigInteger.valueOf(5), holding.getShares());
+        assertEquals(0, BigDecimal.TEN.compareTo(holding.getAverageBuyPrice()));
+        assertEquals(LocalDateTime.of(2020, 9, 1, 12, 0), holding.getLastUpdated());
+        assertEquals(HttpStatus.NOT_FOUND, restTemplate.getForEntity("/holdings?asOf=1990-01-01T00:00:00", String.class).getStatusCode());
+        assertFalse(portfolioTrackingService.getHoldingsAsOf(LocalDateTime.of(1990, 1, 1, 0, 0)).stream()
+                .anyMatch(value -> value.getTicker().startsWith("SNAPSHOT")));
+    }
+
+    @Test
+    public void testHoldingsAsOfNowAreTheHoldingsKept() {
+        LocalDateTime time = LocalDateTime.of(2020, 9, 15, 10, 0);
+        portfolioTrackingService.addTrade(getTrade("SNAPSHOTF1", TransactionType.BUY, 10, 100, time));
+        portfolioTrackingService.addTrade(getTrade("SNAPSHOTF1", TransactionType.SELL, 5, 120, time.plusHours(1)));
+        portfolioTrackingService.addTrade(getTrade("SNAPSHOTF1", TransactionType.BUY, 5, 200, time.plusHours(2)));
+
+        List<Holding> holdings = getHoldingsAsOf("SNAPSHOTF", LocalDateTime.now());
+
+        assertEquals(describe("SNAPSHOTF", Collections.singletonList(portfolioTrackingService.getHolding("SNAPSHOTF1").get())),
+                describe("SNAPSHOTF", holdings));
+        assertEquals(0, BigDecimal.valueOf(150).compareTo(holdings.get(0).getAverageBuyPrice()));
+    }
+
+    @Test
+    public void testHoldingsAsOfAreReadWhileTickersAreLocked() throws Exception {
+        LocalDateTime time = LocalDateTime.of(2020, 9, 20, 10, 0);
+        portfolioTrackingService.addTrade(getTrade("SNAPSHOTG1", TransactionType.BUY, 4, 25, time));
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            List<Holding> holdings = tickerLocks.withAllLocks(() -> {
+                try {
+                    return executor.submit(() -> getHoldingsAsOf("SNAPSHOTG", time)).get(10, TimeUnit.SECONDS);
+                } catch (Exception exception) {
+                    throw new IllegalStateException(exception);
+                }
+            });
+
+            assertEquals(Collections.singletonList("SNAPSHOTG1 4 25 100"), describe("SNAPSHOTG", holdings));
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testHoldingIsRecomputedWhenEarlierTradeIsChanged() {
+        Random random = new Random(21);
+        LocalDateTime time = LocalDateTime.of(2020, 10, 1, 0, 0);
+        List<Trade> trades = new ArrayList<>();
+        for (int i = 0; i < 60; i++) {
+            time = time.plusMinutes(random.nextInt(20));
+            TransactionType transactionType = 3 == i % 4 ? TransactionType.SELL : TransactionType.BUY;
+            trades.add(portfolioTrackingService.addTrade(getTrade("SNAPSHOTD1", transactionType, 1 + random.nextInt(3),
+                    1 + random.nextInt(100), time)));
+            if (30 == i) {
+                holdingSnapshotService.takeSnapshots();
+            }
+        }
+
+        for (int i = 0; i < 10; i++) {
+            Trade trade = trades.remove(random.nextInt(trades.size()));
+            if (TransactionType.SELL == trade.getTransactionType() || random.nextBoolean()) {
+                portfolioTrackingService.deleteTrade(trade.getTradeId());
+            } else {
+                Trade newTrade = getTrade("SNAPSHOTD1", TransactionType.BUY, 1 + random.nextInt(5), 1 + random.nextInt(100),
+                        trade.getLastUpdated().plusMinutes(random.nextInt(600) - 300));
+                newTrade.setTradeId(trade.getTradeId());
+                trades.add(portfolioTrackingService.updateTrade(trade, newTrade));
+            }
+            assertEquals(describe("SNAPSHOTD1", replayTrades(
+                            tradeJdbcRepository.findByTickerAndLastUpdatedAfter("SNAPSHOTD1", null))),
+                    describe("SNAPSHOTD1", portfolioTrackingService.getHolding("SNAPSHOTD1")
+                            .map(Collections::singletonList)
+                            .orElse(Collections.emptyList())));
+        }
+    }
+
+    @Test
+    public void testHoldingDependsOnlyOnTheOrderTradesWereExecutedIn() {
+        LocalDateTime time = LocalDateTime.of(2020, 12, 1, 10, 0);
+        Trade buy = portfolioTrackingService.addTrade(getTrade("SNAPSHOTH1", TransactionType.BUY, 10, 100, time));
+        Trade sell = portfolioTrackingService.addTrade(getTrade("SNAPSHOTH1", TransactionType.SELL, 5, 120, time.plusHours(1)));
+        portfolioTrackingService.addTrade(getTrade("SNAPSHOTH1", TransactionType.BUY, 5, 200, time.plusHours(2)));
+        assertEquals(Collections.singletonList("SNAPSHOTH1 10 150 1500"), describeHolding("SNAPSHOTH1"));
+
+        Trade sameBuy = getTrade("SNAPSHOTH1", TransactionType.BUY, 10, 100, time);
+        sameBuy.setTradeId(buy.getTradeId());
+        portfolioTrackingService.updateTrade(buy, sameBuy);
+        assertEquals(Collections.singletonList("SNAPSHOTH1 10 150 1500"), describeHolding("SNAPSHOTH1"));
+
+        Trade laterSell = getTrade("SNAPSHOTH1", TransactionType.SELL, 5, 120, time.plusHours(3));
+        laterSell.setTradeId(sell.getTradeId());
+        portfolioTrackingService.updateTrade(sell, laterSell);
+        assertEquals(Collections.singletonList("SNAPSHOTH1 10 133.333333 1333.333333"), describeHolding("SNAPSHOTH1"));
+
+        Trade earlierSell = getTrade("SNAPSHOTH1", TransactionType.SELL, 5, 120, time.plusHours(1));
+        earlierSell.setTradeId(sell.getTradeId());
+        portfolioTrackingService.updateTrade(laterSell, earlierSell);
+        assertEquals(Collections.singletonList("SNAPSHOTH1 10 150 1500"), describeHolding("SNAPSHOTH1"));
+
+        portfolioTrackingService.addTrade(getTrade("SNAPSHOTH1", TransactionType.BUY, 5, 100, time.minusHours(1)));
+        assertEquals(describe("SNAPSHOTH1", replayTrades(tradeJdbcRepository.findByTickerAndLastUpdatedAfter("SNAPSHOTH1", null))),
+                describeHolding("SNAPSHOTH1"));
+        assertEquals(Collections.singletonList("SNAPSHOTH1 15 133.333333 2000"), describeHolding("SNAPSHOTH1"));
+        assertEquals(time.plusHours(2), portfolioTrackingService.getHolding("SNAPSHOTH1").get().getLastUpdated());
+    }
+
+    @Test
+    public void testChangeLeavingMoreSharesSoldThanBoughtIsRejected() {
+        LocalDateTime time = LocalDateTime.of(2020, 11, 1, 0, 0);
+        Trade buy = portfolioTrackingService.addTrade(getTrade("SNAPSHOTE1", TransactionType.BUY, 10, 10, time));
+        portfolioTrackingService.addTrade(getTrade("SNAPSHOTE1", TransactionType.BUY, 5, 20, time.plusHours(2)));
+        portfolioTrackingService.addTrade(getTrade("SNAPSHOTE1", TransactionType.SELL, 12, 30, time.plusHours(4)));
+        Holding holding = portfolioTrackingService.getHolding("SNAPSHOTE1").get();
+
+        InvalidTransactionException exception = assertThrows(InvalidTransactionException.class,
+                () -> portfolioTrackingService.deleteTrade(buy.getTradeId()));
+
+        assertEquals(Reason.HOLDING_SHARES_NEGATIVE, exception.getReason());
+        assertTrue(portfolioTrackingService.getTrade(buy.getTradeId()).isPresent());
+        assertEquals(holding.getShares(), portfolioTrackingService.getHolding("SNAPSHOTE1").get().getShares());
+        assertEquals(0, holding.getTotalPrice().compareTo(portfolioTrackingService.getHolding("SNAPSHOTE1").get().getTotalPrice()));
+    }
+
+    private void assertHoldingsAsOf(String prefix, LocalDateTime asOf) {
+        List<Holding> expected = replayTrades(tradeJdbcRepository.findByLastUpdated(null, asOf));
+        assertEquals(describe(prefix, expected), describe(prefix, getHoldingsAsOf(prefix, asOf)), "Holdings as of " + asOf);
+    }
+
+    /**
+     * Applies trades one after the other in the order given, as adding them in that order does
+     */
+    private List<Holding> replayTrades(List<Trade> trades) {
+        Map<String, Holding> holdings = new HashMap<>();
+        trades.forEach(trade -> HoldingUtil.addTradeToHolding(
+                holdings.computeIfAbsent(trade.getTicker(), HoldingUtil::getEmptyHolding), trade));
+        return holdings.values().stream()
+                .filter(holding -> 0 < holding.getShares().signum())
+                .collect(Collectors.toList());
+    }
+
+    private List<Holding> getHoldingsAsOf(String prefix, LocalDateTime asOf) {
+        return portfolioTrackingService.getHoldingsAsOf(asOf).stream()
+                .filter(holding -> holding.getTicker().startsWith(prefix))
+                .collect(Collectors.toList());
+    }
+
+    private List<String> describeHolding(String ticker) {
+        return describe(ticker, portfolioTrackingService.getHolding(ticker)
+                .map(Collections::singletonList)
+                .orElse(Collections.emptyList()));
+    }
+
+    private List<String> describe(String prefix, List<Holding> holdings) {
+        return holdings.stream()
+                .filter(holding -> holding.getTicker().startsWith(prefix))
+                .map(holding -> String.join(" ", holding.getTicker(), holding.getShares().toString(),
+                        holding.getAverageBuyPrice().stripTrailingZeros().toPlainString(),
+                        holding.getTotalPrice().stripTrailingZeros().toPlainString()))
+                .sorted()
+                .collect(Collectors.toList());
+    }
+
+    private Trade getTrade(String ticker, TransactionType transactionType, int shares, int price, LocalDateTime lastUpdated) {
+        return Trade.builder()
+                .ticker(ticker)
+                .transactionType(transactionType)
+                .price(BigDecimal.valueOf(price))
+                .shares(BigInteger.valueOf(shares))
+                .lastUpdated(lastUpdated)
+                .build();
+    }
+
+}
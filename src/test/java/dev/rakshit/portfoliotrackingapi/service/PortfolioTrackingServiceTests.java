@@ -0,0 +1,333 @@
+package dev.rakshit.portfoliotrackingapi.service;
+
+import dev.rakshit.portfoliotrackingapi.cache.BoundedCache;
+import dev.rakshit.portfoliotrackingapi.cache.IdempotentResponse;
+import dev.rakshit.portfoliotrackingapi.controller.PortfolioTrackingController;
+import dev.rakshit.portfoliotrackingapi.exceptions.InvalidTransactionException;
+import dev.rakshit.portfoliotrackingapi.exceptions.UnprocessableEntityException;
+import dev.rakshit.portfoliotrackingapi.models.Holding;
+import dev.rakshit.portfoliotrackingapi.models.Trade;
+import dev.rakshit.portfoliotrackingapi.models.TransactionType;
+import dev.rakshit.portfoliotrackingapi.repository.HoldingJdbcRepository;
+import dev.rakshit.portfoliotrackingapi.repository.TradeJdbcRepository;
+import dev.rakshit.portfoliotrackingapi.util.IdempotencyUtil;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.sql.CallableStatement;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@SpringBootTest(properties = "portfolio.snapshots.enabled=false")
+public class PortfolioTrackingServiceTests {
+
+    private static final StatementCounter STATEMENT_COUNTER = new StatementCounter();
+
+    @Autowired
+    private PortfolioTrackingService portfolioTrackingService;
+
+    @Autowired
+    private HoldingJdbcRepository holdingJdbcRepository;
+
+    @Autowired
+    private TradeJdbcRepository tradeJdbcRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private PortfolioTrackingController portfolioTrackingController;
+
+    @Autowired
+    private BoundedCache<String, IdempotentResponse<ResponseEntity<Trade>>> tradeResponses;
+
+    @Test
+    public void testTradeIsAddedInTwoStatementsWhenHoldingIsCached() {
+        List<String> firstTrade = countStatements(() -> addTrade(getTrade("FUSEDA1", TransactionType.BUY, 10, "12.50")));
+        List<String> secondTrade = countStatements(() -> addTrade(getTrade("FUSEDA1", TransactionType.BUY, 10, "13.50")));
+        List<String> thirdTrade = countStatements(() -> addTrade(getTrade("FUSEDA1", TransactionType.SELL, 5, "20.00")));
+
+        assertEquals(3, firstTrade.size(), firstTrade.toString());
+        assertEquals(1, countOn(firstTrade, "select", "holdings"), firstTrade.toString());
+        assertEquals(2, secondTrade.size(), secondTrade.toString());
+        assertEquals(1, countOn(secondTrade, "merge", "holdings"), secondTrade.toString());
+        assertEquals(1, countOn(secondTrade, "insert", "trades"), secondTrade.toString());
+        assertEquals(2, thirdTrade.size(), thirdTrade.toString());
+        Holding holding = holdingJdbcRepository.findById("FUSEDA1").get();
+        assertEquals(BigInteger.valueOf(15), holding.getShares());
+        assertEquals(new BigDecimal("195.00"), holding.getTotalPrice());
+        assertEquals(2L, holding.getVersion());
+    }
+
+    @Test
+    public void testHoldingIsReadOnceAndWrittenOnceWhenTradeIsUpdated() {
+        Trade trade = addTrade(getTrade("FUSEDB1", TransactionType.BUY, 10, "12.50"));
+        addTrade(getTrade("FUSEDB1", TransactionType.BUY, 10, "13.50"));
+        Trade newTrade = getTrade("FUSEDB1", TransactionType.BUY, 20, "12.50");
+        newTrade.setTradeId(trade.getTradeId());
+
+        List<String> statements = countStatements(() -> portfolioTrackingService.updateTrade(trade, newTrade));
+
+        assertEquals(0, countOn(statements, "select", "holdings"), statements.toString());
+        assertEquals(1, countOn(statements, "merge", "holdings"), statements.toString());
+        assertEquals(1, countOn(statements, "update", "trades"), statements.toString());
+        Holding holding = holdingJdbcRepository.findById("FUSEDB1").get();
+        assertEquals(BigInteger.valueOf(30), holding.getShares());
+        assertEquals(new BigDecimal("385.00"), holding.getTotalPrice());
+    }
+
+    @Test
+    public void testHoldingChangedAfterItWasCachedIsReadAgain() {
+        addTrade(getTrade("FUSEDC1", TransactionType.BUY, 10, "10.00"));
+        jdbcTemplate.update("UPDATE holdings SET shares = 12, total_price = 120, version = version + 1 WHERE ticker = ?", "FUSEDC1");
+
+        List<String> statements = countStatements(() -> addTrade(getTrade("FUSEDC1", TransactionType.BUY, 8, "11.00")));
+
+        assertEquals(2, countOn(statements, "merge", "holdings"), statements.toString());
+        assertEquals(1, countOn(statements, "select", "holdings"), statements.toString());
+        assertEquals(1, countOn(statements, "insert", "trades"), statements.toString());
+        Holding holding = holdingJdbcRepository.findById("FUSEDC1").get();
+        assertEquals(BigInteger.valueOf(20), holding.getShares());
+        assertEquals(new BigDecimal("208.00"), holding.getTotalPrice());
+        assertEquals(2L, holding.getVersion());
+    }
+
+    @Test
+    public void testRetryWithSameIdempotencyKeyIsReplayedWithoutDb() {
+        ResponseEntity<Trade> response = portfolioTrackingController
+                .addOrUpdateTrade(getTrade("IDEMA1", TransactionType.BUY, 10, "12.50"), "IDEMA1-KEY").join();
+        List<ResponseEntity<Trade>> retries = new ArrayList<>();
+
+        List<String> statements = countStatements(() -> retries.add(portfolioTrackingController
+                .addOrUpdateTrade(getTrade("IDEMA1", TransactionType.BUY, 10, "12.50"), "IDEMA1-KEY").join()));
+
+        assertEquals(0, statements.size(), statements.toString());
+        assertEquals(HttpStatus.CREATED, retries.get(0).getStatusCode());
+        assertEquals(response.getBody().getTradeId(), retries.get(0).getBody().getTradeId());
+        assertEquals(BigInteger.valueOf(10), holdingJdbcRepository.findById("IDEMA1").get().getShares());
+    }
+
+    @Test
+    public void testRetryWithIdempotencyKeyNoLongerCachedFindsAddedTrade() {
+        ResponseEntity<Trade> response = portfolioTrackingController
+                .addOrUpdateTrade(getTrade("IDEMB1", TransactionType.BUY, 10, "12.50"), "IDEMB1-KEY").join();
+        tradeResponses.clear();
+        List<ResponseEntity<Trade>> retries = new ArrayList<>();
+
+        List<String> statements = countStatements(() -> retries.add(portfolioTrackingController
+                .addOrUpdateTrade(getTrade("IDEMB1", TransactionType.BUY, 10, "12.50"), "IDEMB1-KEY").join()));
+
+        assertEquals(1, statements.size(), statements.toString());
+        assertEquals(1, countOn(statements, "select", "trades"), statements.toString());
+        assertEquals(response.getBody().getTradeId(), retries.get(0).getBody().getTradeId());
+        Holding holding = holdingJdbcRepository.findById("IDEMB1").get();
+        assertEquals(BigInteger.valueOf(10), holding.getShares());
+        assertEquals(new BigDecimal("125.00"), holding.getTotalPrice());
+    }
+
+    @Test
+    public void testFailedRequestIsNotReplayed() {
+        assertThrows(InvalidTransactionException.class, () -> portfolioTrackingController
+                .addOrUpdateTrade(getTrade("IDEMC1", TransactionType.SELL, 10, "12.50"), "IDEMC1-KEY"));
+        assertFalse(tradeResponses.get("IDEMC1-KEY").isPresent());
+
+        ResponseEntity<Trade> response = portfolioTrackingController
+                .addOrUpdateTrade(getTrade("IDEMC1", TransactionType.BUY, 10, "12.50"), "IDEMC1-KEY").join();
+
+        assertEquals(HttpStatus.CREATED, response.getStatusCode());
+        assertEquals(BigInteger.valueOf(10), holdingJdbcRepository.findById("IDEMC1").get().getShares());
+    }
+
+    @Test
+    public void testIdempotencyKeyReusedForAnotherTradeIsRejected() {
+        ResponseEntity<Trade> response = portfolioTrackingController
+                .addOrUpdateTrade(getTrade("IDEMD1", TransactionType.BUY, 10, "12.50"), "IDEMD1-KEY").join();
+
+        assertThrows(UnprocessableEntityException.class, () -> portfolioTrackingController
+                .addOrUpdateTrade(getTrade("IDEMD1", TransactionType.BUY, 20, "12.50"), "IDEMD1-KEY"));
+        tradeResponses.clear();
+        assertThrows(UnprocessableEntityException.class, () -> portfolioTrackingController
+                .addOrUpdateTrade(getTrade("IDEMD2", TransactionType.BUY, 10, "12.50"), "IDEMD1-KEY"));
+        ResponseEntity<Trade> retry = portfolioTrackingController
+                .addOrUpdateTrade(getTrade("IDEMD1", TransactionType.BUY, 10, "12.5"), "IDEMD1-KEY").join();
+
+        assertEquals(response.getBody().getTradeId(), retry.getBody().getTradeId());
+        assertEquals(BigInteger.valueOf(10), holdingJdbcRepository.findById("IDEMD1").get().getShares());
+        assertFalse(holdingJdbcRepository.findById("IDEMD2").isPresent());
+    }
+
+    @Test
+    public void testIdempotencyKeyTakenWhileWaitingForLockReturnsAddedTrade() {
+        Trade trade = getTrade("IDEME1", TransactionType.BUY, 10, "12.50");
+        trade.setIdempotencyKey("IDEME1-KEY");
+        trade.setRequestHash(IdempotencyUtil.getRequestHash(trade));
+        Trade addedTrade = addTrade(trade);
+        Trade retry = getTrade("IDEME1", TransactionType.BUY, 10, "12.50");
+        retry.setIdempotencyKey("IDEME1-KEY");
+        retry.setRequestHash(addedTrade.getRequestHash());
+
+        assertEquals(addedTrade.getTradeId(), portfolioTrackingService.addTrade(retry).getTradeId());
+        assertEquals(BigInteger.valueOf(10), holdingJdbcRepository.findById("IDEME1").get().getShares());
+        Trade duplicate = getTrade("IDEME2", TransactionType.BUY, 10, "12.50");
+        duplicate.setIdempotencyKey("IDEME1-KEY");
+        duplicate.setLastUpdated(LocalDateTime.now());
+        DataIntegrityViolationException exception = assertThrows(DataIntegrityViolationException.class,
+                () -> tradeJdbcRepository.save(duplicate));
+        assertTrue(TradeJdbcRepository.isIdempotencyKeyTaken(exception));
+        assertFalse(TradeJdbcRepository.isIdempotencyKeyTaken(new DataIntegrityViolationException("Duplicate holding")));
+    }
+
+    private Trade addTrade(Trade trade) {
+        portfolioTrackingService.isValidTrade(trade);
+        Trade addedTrade = portfolioTrackingService.submitTrade(trade).join();
+        assertNotNull(addedTrade.getTradeId());
+        return addedTrade;
+    }
+
+    private List<String> countStatements(Supplier<?> write) {
+        STATEMENT_COUNTER.start();
+        try {
+            write.get();
+        } finally {
+            STATEMENT_COUNTER.stop();
+        }
+        return STATEMENT_COUNTER.getStatements();
+    }
+
+    private long countOn(List<String> statements, String command, String table) {
+        return statements.stream()
+                .map(statement -> statement.toLowerCase(Locale.ROOT))
+                .filter(statement -> statement.startsWith(command))
+                .filter(statement -> statement.matches("(?s).*\\b" + table + "\\b.*"))
+                .count();
+    }
+
+    private Trade getTrade(String ticker, TransactionType transactionType, int shares, String price) {
+        return Trade.builder()
+                .ticker(ticker)
+                .transactionType(transactionType)
+                .shares(BigInteger.valueOf(shares))
+                .price(new BigDecimal(price))
+                .build();
+    }
+
+    /**
+     * Wraps the DataSource so that statements run on the test thread are recorded
+     */
+    @TestConfiguration
+    static class StatementCountingConfig {
+
+        @Bean
+        static BeanPostProcessor statementCountingPostProcessor() {
+            return new BeanPostProcessor() {
+                @Override
+                public Object postProcessAfterInitialization(Object bean, String beanName) {
+                    if (!(bean instanceof DataSource)) {
+                        return bean;
+                    }
+                    return new DelegatingDataSource((DataSource) bean) {
+                        @Override
+                        public Connection getConnection() throws SQLException {
+                            return STATEMENT_COUNTER.wrap(super.getConnection());
+                        }
+
+                        @Override
+                        public Connection getConnection(String username, String password) throws SQLException {
+                            return STATEMENT_COUNTER.wrap(super.getConnection(username, password));
+                        }
+                    };
+                }
+            };
+        }
+
+    }
+
+    /**
+     * Records the SQL of every statement executed on the thread counting them. A JDBC batch is one statement
+     */
+    static class StatementCounter {
+
+        private final List<String> statements = Collections.synchronizedList(new ArrayList<>());
+
+        private volatile Thread countingThread;
+
+        void start() {
+            statements.clear();
+            countingThread = Thread.currentThread();
+        }
+
+        void stop() {
+            countingThread = null;
+        }
+
+        List<String> getStatements() {
+            return statements.stream()
+                    .map(statement -> statement.trim().replaceAll("\\s+", " "))
+                    .collect(Collectors.toList());
+        }
+
+        Connection wrap(Connection connection) {
+            return (Connection) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[]{Connection.class},
+                    (proxy, method, args) -> {
+                        Object result = invoke(connection, method, args);
+                        if (result instanceof CallableStatement) {
+                            return wrap((Statement) result, CallableStatement.class, (String) args[0]);
+                        } else if (result instanceof PreparedStatement) {
+                            return wrap((Statement) result, PreparedStatement.class, (String) args[0]);
+                        } else if (result instanceof Statement) {
+                            return wrap((Statement) result, Statement.class, null);
+                        }
+                        return result;
+                    });
+        }
+
+        private Object wrap(Statement statement, Class<? extends Statement> type, String sql) {
+            return Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[]{type}, (proxy, method, args) -> {
+                if (method.getName().startsWith("execute") && Thread.currentThread() == countingThread) {
+                    statements.add(null != args && 0 < args.length && args[0] instanceof String ? (String) args[0] : sql);
+                }
+                return invoke(statement, method, args);
+            });
+        }
+
+        private static Object invoke(Object target, Method method, Object[] args) throws Throwable {
+            try {
+                return method.invoke(target, args);
+            } catch (InvocationTargetException invocationTargetException) {
+                throw invocationTargetException.getCause();
+            }
+        }
+
+    }
+
+}
@@ -0,0 +1,182 @@
+package dev.rakshit.portfoliotrackingapi.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import dev.rakshit.portfoliotrackingapi.exceptions.InvalidTransactionException.Reason;
+import dev.rakshit.portfoliotrackingapi.models.Holding;
+import dev.rakshit.portfoliotrackingapi.models.Trade;
+import dev.rakshit.portfoliotrackingapi.models.TradeBatchFailure;
+import dev.rakshit.portfoliotrackingapi.models.TradeBatchResult;
+import dev.rakshit.portfoliotrackingapi.models.TransactionType;
+import dev.rakshit.portfoliotrackingapi.repository.TradeJdbcRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+
+import java.io.ByteArrayInputStream;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT, properties = {
+        "portfolio.snapshots.enabled=false",
+        "portfolio.trades.batch.transaction-size=3",
+        "portfolio.trades.batch.max-size=6"
+})
+public class TradeBatchServiceTests {
+
+    @Autowired
+    private TestRestTemplate restTemplate;
+
+    @Autowired
+    private TradeBatchService tradeBatchService;
+
+    @Autowired
+    private PortfolioTrackingService portfolioTrackingService;
+
+    @Autowired
+    private TradeJdbcRepository tradeJdbcRepository;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Test
+    public void testOversellOfBackdatedTradeRejectsOnlyItsTicker() throws Exception {
+        LocalDateTime time = LocalDateTime.of(2021, 3, 1, 10, 0);
+        portfolioTrackingService.addTrade(getTrade("BATCHOVERSOLD", TransactionType.BUY, 10, time));
+        portfolioTrackingService.addTrade(getTrade("BATCHOVERSOLD", TransactionType.SELL, 10, time.plusDays(2)));
+
+        TradeBatchResult result = addTrades(Arrays.asList(
+                getTrade("BATCHCLEAN", TransactionType.BUY, 3, time),
+                getTrade("BATCHOVERSOLD", TransactionType.SELL, 5, time.plusDays(1)),
+                getTrade("BATCHCLEAN", TransactionType.BUY, 2, time.plusDays(1))));
+
+        assertEquals(3, result.getReceived());
+        assertEquals(2, result.getAdded());
+        assertEquals(Collections.singletonList(TradeBatchFailure.builder()
+                .index(1)
+                .ticker("BATCHOVERSOLD")
+                .reason(Reason.HOLDING_SHARES_NEGATIVE.getMessage())
+                .build()), result.getFailures());
+        Holding holding = portfolioTrackingService.getHolding("BATCHCLEAN").get();
+        assertEquals(BigInteger.valueOf(5), holding.getShares());
+        assertEquals(time.plusDays(1), holding.getLastUpdated());
+        assertEquals(2, tradeJdbcRepository.findByTickerAndLastUpdatedAfter("BATCHOVERSOLD", null).size());
+        assertFalse(portfolioTrackingService.getHolding("BATCHOVERSOLD").isPresent());
+    }
+
+    @Test
+    public void testFailedTradesAreReportedWithoutStoppingTheBatch() {
+        ResponseEntity<TradeBatchResult> response = postBatch("[" +
+                "{\"ticker\":\"BATCHITEM1\",\"transactionType\":\"BUY\",\"price\":10,\"shares\":5}," +
+                "{\"ticker\":\"BATCHITEM1\",\"transactionType\":\"BUY\",\"price\":\"ten\",\"shares\":1}," +
+                "{\"tradeId\":1,\"ticker\":\"BATCHITEM1\",\"transactionType\":\"BUY\",\"price\":10,\"shares\":1}," +
+                "null," +
+                "{\"ticker\":\"BATCHITEM1\",\"transactionType\":\"SELL\",\"price\":10,\"shares\":6}," +
+                "{\"ticker\":\"BATCHITEM2\",\"transactionType\":\"SELL\",\"price\":10,\"shares\":1}" +
+                "]");
+
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        TradeBatchResult result = response.getBody();
+        assertEquals(6, result.getReceived());
+        assertEquals(1, result.getAdded());
+        assertEquals(5, result.getFailed());
+        assertEquals(Arrays.asList(
+                getFailure(1, null, Reason.TRADE_UNREADABLE),
+                getFailure(2, "BATCHITEM1", Reason.TRADE_ID_GIVEN),
+                getFailure(3, null, Reason.TRADE_EMPTY),
+                getFailure(4, "BATCHITEM1", Reason.HOLDING_SHARES_NEGATIVE),
+                getFailure(5, "BATCHITEM2", Reason.NO_SHARES_TO_SELL)), result.getFailures());
+        assertEquals(BigInteger.valueOf(5), portfolioTrackingService.getHolding("BATCHITEM1").get().getShares());
+        assertEquals(1, tradeJdbcRepository.findByTickerAndLastUpdatedAfter("BATCHITEM1", null).size());
+        assertFalse(portfolioTrackingService.getHolding("BATCHITEM2").isPresent());
+    }
+
+    /**
+     * Tickers of four and two trades fill two transactions of three trades. The second transaction is rejected
+     * after the first one committed
+     */
+    @Test
+    public void testTradesSpreadAcrossTransactionsAreAddedPerTransaction() throws Exception {
+        LocalDateTime time = LocalDateTime.of(2021, 5, 1, 10, 0);
+        portfolioTrackingService.addTrade(getTrade("BATCHCHUNK2", TransactionType.BUY, 4, time));
+        portfolioTrackingService.addTrade(getTrade("BATCHCHUNK2", TransactionType.SELL, 4, time.plusDays(2)));
+
+        TradeBatchResult result = addTrades(Arrays.asList(
+                getTrade("BATCHCHUNK1", TransactionType.BUY, 4, time),
+                getTrade("BATCHCHUNK1", TransactionType.BUY, 3, time.plusDays(1)),
+                getTrade("BATCHCHUNK1", TransactionType.SELL, 2, time.plusDays(2)),
+                getTrade("BATCHCHUNK1", TransactionType.BUY, 1, time.plusDays(3)),
+                getTrade("BATCHCHUNK2", TransactionType.SELL, 1, time.plusDays(1)),
+                getTrade("BATCHCHUNK2", TransactionType.BUY, 2, time.plusDays(3))));
+
+        assertEquals(6, result.getReceived());
+        assertEquals(4, result.getAdded());
+        assertEquals(Arrays.asList(
+                getFailure(4, "BATCHCHUNK2", Reason.HOLDING_SHARES_NEGATIVE),
+                getFailure(5, "BATCHCHUNK2", Reason.HOLDING_SHARES_NEGATIVE)), result.getFailures());
+        Holding holding = portfolioTrackingService.getHolding("BATCHCHUNK1").get();
+        assertEquals(BigInteger.valueOf(6), holding.getShares());
+        assertEquals(time.plusDays(3), holding.getLastUpdated());
+        assertEquals(4, tradeJdbcRepository.findByTickerAndLastUpdatedAfter("BATCHCHUNK1", null).size());
+        assertEquals(2, tradeJdbcRepository.findByTickerAndLastUpdatedAfter("BATCHCHUNK2", null).size());
+        assertFalse(portfolioTrackingService.getHolding("BATCHCHUNK2").isPresent());
+    }
+
+    @Test
+    public void testBatchOfMoreThanMaxSizeTradesIsRejected() throws Exception {
+        List<Trade> trades = Collections.nCopies(7, getTrade("BATCHMAX", TransactionType.BUY, 1, null));
+
+        ResponseEntity<String> response = restTemplate.postForEntity("/trades/batch",
+                getRequest(objectMapper.writeValueAsString(trades)), String.class);
+
+        assertEquals(HttpStatus.BAD_REQUEST, response.getStatusCode());
+        assertFalse(portfolioTrackingService.getHolding("BATCHMAX").isPresent());
+        assertEquals(HttpStatus.BAD_REQUEST, restTemplate.postForEntity("/trades/batch",
+                getRequest("{\"ticker\":\"BATCHMAX\"}"), String.class).getStatusCode());
+    }
+
+    private ResponseEntity<TradeBatchResult> postBatch(String trades) {
+        return restTemplate.postForEntity("/trades/batch", getRequest(trades), TradeBatchResult.class);
+    }
+
+    private HttpEntity<String> getRequest(String body) {
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(MediaType.APPLICATION_JSON);
+        return new HttpEntity<>(body, headers);
+    }
+
+    private TradeBatchFailure getFailure(int index, String ticker, Reason reason) {
+        return TradeBatchFailure.builder()
+                .index(index)
+                .ticker(ticker)
+                .reason(reason.getMessage())
+                .build();
+    }
+
+    private TradeBatchResult addTrades(List<Trade> trades) throws Exception {
+        return tradeBatchService.addTrades(new ByteArrayInputStream(objectMapper.writeValueAsBytes(trades)));
+    }
+
+    private Trade getTrade(String ticker, TransactionType transactionType, long shares, LocalDateTime lastUpdated) {
+        return Trade.builder()
+                .ticker(ticker)
+                .transactionType(transactionType)
+                .price(BigDecimal.TEN)
+                .shares(BigInteger.valueOf(shares))
+                .lastUpdated(lastUpdated)
+                .build();
+    }
+
+}
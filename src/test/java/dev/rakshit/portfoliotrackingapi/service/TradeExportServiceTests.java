@@ -0,0 +1,129 @@
+package dev.rakshit.portfoliotrackingapi.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import dev.rakshit.portfoliotrackingapi.models.Trade;
+import dev.rakshit.portfoliotrackingapi.models.TransactionType;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.util.StreamUtils;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT,
+        properties = "portfolio.snapshots.enabled=false")
+public class TradeExportServiceTests {
+
+    private static final LocalDateTime TIME = LocalDateTime.of(2021, 6, 1, 10, 0);
+
+    @Autowired
+    private PortfolioTrackingService portfolioTrackingService;
+
+    @Autowired
+    private TestRestTemplate restTemplate;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Test
+    public void testTradesAreExportedAsNdjson() throws IOException {
+        Trade buy = portfolioTrackingService.addTrade(getTrade("EXPORTA1", TransactionType.BUY, 10, "12.5", TIME));
+        Trade sell = portfolioTrackingService.addTrade(getTrade("EXPORTA1", TransactionType.SELL, 4, "20", TIME.plusHours(1)));
+
+        ResponseEntity<byte[]> response = restTemplate.getForEntity("/trades/export", byte[].class);
+
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        assertEquals("application/x-ndjson", response.getHeaders().getContentType().toString());
+        assertEquals("trades.ndjson", response.getHeaders().getContentDisposition().getFilename());
+        assertNull(response.getHeaders().getFirst(HttpHeaders.CONTENT_ENCODING));
+        String body = new String(response.getBody(), StandardCharsets.UTF_8);
+        assertTrue(body.endsWith("\n"));
+        List<Trade> trades = new ArrayList<>();
+        for (String line : body.split("\n")) {
+            trades.add(objectMapper.readValue(line, Trade.class));
+        }
+        List<Trade> exportedTrades = trades.stream()
+                .filter(trade -> "EXPORTA1".equals(trade.getTicker()))
+                .collect(Collectors.toList());
+        assertEquals(2, exportedTrades.size());
+        assertSameTrade(buy, exportedTrades.get(0));
+        assertSameTrade(sell, exportedTrades.get(1));
+    }
+
+    @Test
+    public void testTradesAreExportedAsCsvWithTickersQuoted() {
+        Trade plain = portfolioTrackingService.addTrade(getTrade("EXPORTB1", TransactionType.BUY, 10, "12.50", TIME));
+        Trade quoted = portfolioTrackingService.addTrade(getTrade("EXPORT,\"B2\"", TransactionType.BUY, 3, "7", TIME));
+
+        ResponseEntity<String> response = restTemplate.getForEntity("/trades/export?format=CSV", String.class);
+
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        assertEquals("text/csv", response.getHeaders().getContentType().toString());
+        assertEquals("trades.csv", response.getHeaders().getContentDisposition().getFilename());
+        List<String> lines = Arrays.asList(response.getBody().split("\n"));
+        assertEquals("trade_id,ticker,transaction_type,price,shares,last_updated", lines.get(0));
+        assertTrue(lines.contains(plain.getTradeId() + ",EXPORTB1,BUY,12.50,10,2021-06-01T10:00:00"), lines.toString());
+        assertTrue(lines.contains(quoted.getTradeId() + ",\"EXPORT,\"\"B2\"\"\",BUY,7.00,3,2021-06-01T10:00:00"),
+                lines.toString());
+    }
+
+    @Test
+    public void testGzippedExportsUnzipToPlainExports() throws IOException {
+        portfolioTrackingService.addTrade(getTrade("EXPORTC1", TransactionType.BUY, 10, "12.5", TIME));
+
+        for (String format : Arrays.asList("NDJSON", "CSV")) {
+            ResponseEntity<byte[]> gzipped = restTemplate.getForEntity("/trades/export?gzip=true&format=" + format, byte[].class);
+            ResponseEntity<byte[]> plain = restTemplate.getForEntity("/trades/export?format=" + format, byte[].class);
+
+            assertEquals(HttpStatus.OK, gzipped.getStatusCode());
+            assertEquals("gzip", gzipped.getHeaders().getFirst(HttpHeaders.CONTENT_ENCODING));
+            assertArrayEquals(plain.getBody(), gunzip(gzipped.getBody()));
+        }
+    }
+
+    private void assertSameTrade(Trade expected, Trade actual) {
+        assertEquals(expected.getTradeId(), actual.getTradeId());
+        assertEquals(expected.getTicker(), actual.getTicker());
+        assertEquals(expected.getTransactionType(), actual.getTransactionType());
+        assertEquals(0, expected.getPrice().compareTo(actual.getPrice()));
+        assertEquals(expected.getShares(), actual.getShares());
+        assertEquals(expected.getLastUpdated(), actual.getLastUpdated());
+    }
+
+    private static byte[] gunzip(byte[] bytes) throws IOException {
+        try (InputStream inputStream = new GZIPInputStream(new ByteArrayInputStream(bytes))) {
+            return StreamUtils.copyToByteArray(inputStream);
+        }
+    }
+
+    private Trade getTrade(String ticker, TransactionType transactionType, long shares, String price, LocalDateTime lastUpdated) {
+        return Trade.builder()
+                .ticker(ticker)
+                .transactionType(transactionType)
+                .price(new BigDecimal(price))
+                .shares(BigInteger.valueOf(shares))
+                .lastUpdated(lastUpdated)
+                .build();
+    }
+
+}
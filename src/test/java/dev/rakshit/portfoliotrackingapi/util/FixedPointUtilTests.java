@@ -0,0 +1,69 @@
+package dev.rakshit.portfoliotrackingapi.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+
+import static dev.rakshit.portfoliotrackingapi.util.FixedPointUtil.*;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class FixedPointUtilTests {
+
+    @Test
+    public void testToAmountWithoutRounding() {
+        assertEquals(150_000_000L, toAmount(BigDecimal.valueOf(150)));
+        assertEquals(12_345_000L, toAmount(new BigDecimal("12.345")));
+        assertEquals(1_000_000_000L, toAmount(new BigDecimal("1E+3")));
+    }
+
+    @Test
+    public void testToAmountRoundsHalfEven() {
+        assertEquals(1_234_568L, toAmount(new BigDecimal("1.2345675")));
+        assertEquals(1_234_566L, toAmount(new BigDecimal("1.2345665")));
+        assertEquals(-1_234_568L, toAmount(new BigDecimal("-1.2345675")));
+    }
+
+    @Test
+    public void testToAmountOverflow() {
+        assertThrows(ArithmeticException.class, () -> toAmount(BigDecimal.valueOf(Long.MAX_VALUE)));
+    }
+
+    @Test
+    public void testToQuantityOverflow() {
+        assertThrows(ArithmeticException.class, () -> toQuantity(BigInteger.valueOf(Long.MAX_VALUE).add(BigInteger.ONE)));
+    }
+
+    @Test
+    public void testToBigDecimal() {
+        assertEquals(BigDecimal.valueOf(3000), toBigDecimal(3_000_000_000L));
+        assertEquals(new BigDecimal("12.5"), toBigDecimal(12_500_000L));
+        assertEquals(new BigDecimal("0.000001"), toBigDecimal(1L));
+        assertEquals(BigDecimal.ZERO, toBigDecimal(0L));
+    }
+
+    @Test
+    public void testDivideRoundsHalfEven() {
+        assertEquals(3L, divide(10L, 3L));
+        assertEquals(4L, divide(7L, 2L));
+        assertEquals(2L, divide(5L, 2L));
+        assertEquals(-4L, divide(-7L, 2L));
+        assertEquals(-2L, divide(5L, -2L));
+        assertEquals(-3L, divide(-8L, 3L));
+    }
+
+    @Test
+    public void testMultiplyDivideWithoutIntermediateOverflow() {
+        long amount = 4_000_000_000_000_000_000L;
+        assertEquals(amount, multiplyDivide(amount, 10L, 10L));
+        assertEquals(amount / 2, multiplyDivide(amount, 1_000_000L, 2_000_000L));
+    }
+
+    @Test
+    public void testMultiplyOverflow() {
+        assertThrows(ArithmeticException.class, () -> multiply(Long.MAX_VALUE / 2, 3L));
+        assertThrows(ArithmeticException.class, () -> multiplyDivide(Long.MAX_VALUE / 2, 3L, 1L));
+    }
+
+}
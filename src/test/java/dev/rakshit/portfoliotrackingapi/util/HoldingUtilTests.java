@@ -2,17 +2,20 @@ package dev.rakshit.portfoliotrackingapi.util;
 
 import dev.rakshit.portfoliotrackingapi.exceptions.InvalidTransactionException;
 import dev.rakshit.portfoliotrackingapi.models.Holding;
+import dev.rakshit.portfoliotrackingapi.models.HoldingCheckpoint;
 import dev.rakshit.portfoliotrackingapi.models.Trade;
 import dev.rakshit.portfoliotrackingapi.models.TransactionType;
 import org.junit.jupiter.api.Test;
 
 import java.math.BigDecimal;
 import java.math.BigInteger;
-import java.math.MathContext;
 import java.time.LocalDateTime;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 
 import static dev.rakshit.portfoliotrackingapi.util.HoldingUtil.*;
 import static org.assertj.core.api.Assertions.assertThat;
@@ -261,6 +264,51 @@ public class HoldingUtilTests {
         assertEquals(expectedMessage, actualMessage);
     }
 
+    @Test
+    public void testAddBuyTradeToHoldingOfSharesMoreThanInteger() {
+        Holding holding = Holding.builder()
+                .ticker(TICKER1)
+                .totalPrice(BigDecimal.valueOf(300000000000L))
+                .shares(BigInteger.valueOf(3000000000L))
+                .averageBuyPrice(BigDecimal.valueOf(100))
+                .build();
+        Trade trade = Trade.builder()
+                .ticker(TICKER1)
+                .transactionType(TransactionType.BUY)
+                .price(BigDecimal.valueOf(200))
+                .shares(BigInteger.valueOf(1000000000L))
+                .build();
+        Holding expectedHolding = Holding.builder()
+                .ticker(TICKER1)
+                .totalPrice(BigDecimal.valueOf(500000000000L))
+                .shares(BigInteger.valueOf(4000000000L))
+                .averageBuyPrice(BigDecimal.valueOf(125))
+                .lastUpdated(LocalDateTime.now())
+                .build();
+        Holding actualHolding = addTradeToHolding(holding, trade);
+        assertThat(actualHolding).isEqualToIgnoringGivenFields(expectedHolding, LAST_UPDATED);
+    }
+
+    @Test
+    public void testAddBuyTradeToHoldingCausingOverflow() {
+        Holding holding = Holding.builder()
+                .ticker(TICKER1)
+                .totalPrice(BigDecimal.valueOf(1000))
+                .shares(BigInteger.valueOf(10))
+                .averageBuyPrice(BigDecimal.valueOf(100))
+                .build();
+        Trade trade = Trade.builder()
+                .ticker(TICKER1)
+                .transactionType(TransactionType.BUY)
+                .price(BigDecimal.valueOf(100))
+                .shares(BigInteger.valueOf(Long.MAX_VALUE))
+                .build();
+        Exception exception = assertThrows(InvalidTransactionException.class, () -> addTradeToHolding(holding, trade));
+        assertEquals("Invalid Transaction Causing Overflow", exception.getMessage());
+        assertEquals(BigInteger.valueOf(10), holding.getShares());
+        assertEquals(BigDecimal.valueOf(1000), holding.getTotalPrice());
+    }
+
     @Test
     public void testDeleteSellTradeToHoldingOfSamePrice() {
         Holding holding = Holding.builder()
@@ -336,6 +384,24 @@ public class HoldingUtilTests {
         assertThat(actualHolding).isEqualToIgnoringGivenFields(expectedHolding, LAST_UPDATED);
     }
 
+    @Test
+    public void testDeleteSellTradeDoesNotChangeTrade() {
+        Holding holding = Holding.builder()
+                .ticker(TICKER1)
+                .totalPrice(BigDecimal.valueOf(2000))
+                .shares(BigInteger.valueOf(20))
+                .averageBuyPrice(BigDecimal.valueOf(100))
+                .build();
+        Trade trade = Trade.builder()
+                .ticker(TICKER1)
+                .transactionType(TransactionType.SELL)
+                .price(BigDecimal.valueOf(150))
+                .shares(BigInteger.valueOf(10))
+                .build();
+        deleteTradeFromHolding(holding, trade);
+        assertEquals(TransactionType.SELL, trade.getTransactionType());
+    }
+
     @Test
     public void testDeleteBuyTradeToHoldingSameShares() {
         Holding holding = Holding.builder()
@@ -953,9 +1019,9 @@ public class HoldingUtilTests {
                 .build();
         Holding holding = Holding.builder()
                 .ticker(TICKER1)
-                .totalPrice(BigDecimal.valueOf(212500).divide(BigDecimal.valueOf(45), MathContext.DECIMAL128))
+                .totalPrice(new BigDecimal("4642.857143"))
                 .shares(BigInteger.valueOf(10))
-                .averageBuyPrice(BigDecimal.valueOf(21250).divide(BigDecimal.valueOf(45), MathContext.DECIMAL128))
+                .averageBuyPrice(new BigDecimal("464.285714"))
                 .build();
         List<Trade> trades = Arrays.asList(trade1, trade2, trade3, trade4);
         List<Holding> expectedHoldings = Collections.singletonList(holding);
@@ -1053,9 +1119,9 @@ public class HoldingUtilTests {
                 .build();
         Holding holding1 = Holding.builder()
                 .ticker(TICKER1)
-                .totalPrice(BigDecimal.valueOf(212500).divide(BigDecimal.valueOf(45), MathContext.DECIMAL128))
+                .totalPrice(new BigDecimal("4642.857143"))
                 .shares(BigInteger.valueOf(10))
-                .averageBuyPrice(BigDecimal.valueOf(21250).divide(BigDecimal.valueOf(45), MathContext.DECIMAL128))
+                .averageBuyPrice(new BigDecimal("464.285714"))
                 .build();
         Holding holding2 = Holding.builder()
                 .ticker(TICKER3)
@@ -1080,4 +1146,231 @@ public class HoldingUtilTests {
         assertThat(actualHoldings).isEqualTo(expectedHoldings);
     }
 
+    @Test
+    public void testGetHoldingsFromTradesDoesNotChangeTrades() {
+        Trade trade1 = Trade.builder()
+                .ticker(TICKER1)
+                .transactionType(TransactionType.BUY)
+                .price(BigDecimal.valueOf(500))
+                .shares(BigInteger.valueOf(20))
+                .lastUpdated(LocalDateTime.now())
+                .build();
+        Trade trade2 = Trade.builder()
+                .ticker(TICKER1)
+                .transactionType(TransactionType.SELL)
+                .price(BigDecimal.valueOf(900))
+                .shares(BigInteger.valueOf(10))
+                .lastUpdated(LocalDateTime.now())
+                .build();
+        getHoldingsFromTrades(Arrays.asList(trade1, trade2));
+        assertEquals(BigDecimal.valueOf(500), trade1.getPrice());
+        assertEquals(BigInteger.valueOf(20), trade1.getShares());
+        assertEquals(BigDecimal.valueOf(900), trade2.getPrice());
+        assertEquals(BigInteger.valueOf(10), trade2.getShares());
+    }
+
+    @Test
+    public void testCollectTradesInParallel() {
+        String[] tickers = {TICKER1, TICKER2, TICKER3};
+        List<Trade> trades = IntStream.range(0, 10000)
+                .mapToObj(i -> Trade.builder()
+                        .tradeId((long) i + 1)
+                        .ticker(tickers[i % tickers.length])
+                        .transactionType(10 <= i && 0 == i % 5 ? TransactionType.SELL : TransactionType.BUY)
+                        .price(BigDecimal.valueOf(100 + i % 97, 2))
+                        .shares(BigInteger.valueOf(0 == i % 5 ? 1 : 1 + i % 7))
+                        .build())
+                .collect(Collectors.toList());
+        Map<String, HoldingAccumulator> sequential = trades.stream().collect(groupingByTicker());
+        Map<String, HoldingAccumulator> parallel = trades.parallelStream().collect(groupingByTicker());
+        assertThat(parallel.keySet()).isEqualTo(sequential.keySet());
+        sequential.forEach((ticker, accumulator) -> {
+            assertThat(parallel.get(ticker).toCheckpoint())
+                    .isEqualToIgnoringGivenFields(accumulator.toCheckpoint(), LAST_UPDATED);
+            assertThat(parallel.get(ticker).toHolding().get())
+                    .isEqualToIgnoringGivenFields(accumulator.toHolding().get(), LAST_UPDATED);
+        });
+    }
+
+    @Test
+    public void testGetHoldingsFromTradesInExecutionOrder() {
+        LocalDateTime time = LocalDateTime.of(2021, 1, 1, 0, 0);
+        Trade trade1 = Trade.builder()
+                .tradeId(3L)
+                .ticker(TICKER1)
+                .transactionType(TransactionType.BUY)
+                .price(BigDecimal.valueOf(200))
+                .shares(BigInteger.valueOf(5))
+                .lastUpdated(time.plusDays(2))
+                .build();
+        Trade trade2 = Trade.builder()
+                .tradeId(1L)
+                .ticker(TICKER1)
+                .transactionType(TransactionType.BUY)
+                .price(BigDecimal.valueOf(100))
+                .shares(BigInteger.valueOf(10))
+                .lastUpdated(time)
+                .build();
+        Trade trade3 = Trade.builder()
+                .tradeId(2L)
+                .ticker(TICKER1)
+                .transactionType(TransactionType.SELL)
+                .price(BigDecimal.valueOf(300))
+                .shares(BigInteger.valueOf(5))
+                .lastUpdated(time.plusDays(1))
+                .build();
+        Holding expectedHolding = Holding.builder()
+                .ticker(TICKER1)
+                .totalPrice(BigDecimal.valueOf(1500))
+                .shares(BigInteger.valueOf(10))
+                .averageBuyPrice(BigDecimal.valueOf(150))
+                .lastUpdated(time.plusDays(2))
+                .build();
+        assertThat(getHoldingsFromTrades(Arrays.asList(trade1, trade2, trade3)))
+                .containsExactly(expectedHolding);
+    }
+
+    @Test
+    public void testGetHoldingsFromTradesOverselling() {
+        LocalDateTime time = LocalDateTime.of(2021, 1, 1, 0, 0);
+        Trade trade1 = Trade.builder()
+                .tradeId(1L)
+                .ticker(TICKER1)
+                .transactionType(TransactionType.BUY)
+                .price(BigDecimal.valueOf(100))
+                .shares(BigInteger.valueOf(10))
+                .lastUpdated(time.plusDays(1))
+                .build();
+        Trade trade2 = Trade.builder()
+                .tradeId(2L)
+                .ticker(TICKER1)
+                .transactionType(TransactionType.SELL)
+                .price(BigDecimal.valueOf(100))
+                .shares(BigInteger.valueOf(5))
+                .lastUpdated(time)
+                .build();
+        InvalidTransactionException exception = assertThrows(InvalidTransactionException.class,
+                () -> getHoldingsFromTrades(Arrays.asList(trade1, trade2)));
+        assertEquals(InvalidTransactionException.Reason.HOLDING_SHARES_NEGATIVE, exception.getReason());
+    }
+
+    @Test
+    public void testGetHoldingFromCheckpoint() {
+        LocalDateTime time = LocalDateTime.of(2021, 1, 1, 0, 0);
+        HoldingCheckpoint checkpoint = getEmptyCheckpoint(TICKER1);
+        Trade trade1 = Trade.builder()
+                .tradeId(1L)
+                .ticker(TICKER1)
+                .transactionType(TransactionType.BUY)
+                .price(BigDecimal.valueOf(500))
+                .shares(BigInteger.valueOf(20))
+                .lastUpdated(time)
+                .build();
+        Trade trade2 = Trade.builder()
+                .tradeId(2L)
+                .ticker(TICKER1)
+                .transactionType(TransactionType.SELL)
+                .price(BigDecimal.valueOf(900))
+                .shares(BigInteger.valueOf(10))
+                .lastUpdated(time.plusDays(1))
+                .build();
+        Trade trade3 = Trade.builder()
+                .tradeId(4L)
+                .ticker(TICKER1)
+                .transactionType(TransactionType.BUY)
+                .price(BigDecimal.valueOf(450))
+                .shares(BigInteger.valueOf(25))
+                .lastUpdated(time.plusDays(2))
+                .build();
+        Trade trade4 = Trade.builder()
+                .tradeId(3L)
+                .ticker(TICKER1)
+                .transactionType(TransactionType.SELL)
+                .price(BigDecimal.valueOf(600))
+                .shares(BigInteger.valueOf(25))
+                .lastUpdated(time.plusDays(3))
+                .build();
+        Holding expectedHolding = Holding.builder()
+                .ticker(TICKER1)
+                .totalPrice(new BigDecimal("4642.857143"))
+                .shares(BigInteger.valueOf(10))
+                .averageBuyPrice(new BigDecimal("464.285714"))
+                .lastUpdated(time.plusDays(3))
+                .build();
+        HoldingCheckpoint actualCheckpoint = addTradesToCheckpoint(checkpoint, Arrays.asList(trade1, trade2, trade3, trade4))
+                .orElseThrow(AssertionError::new);
+        assertEquals(4L, actualCheckpoint.getLastTradeId());
+        assertEquals(time.plusDays(3), actualCheckpoint.getLastUpdated());
+        assertThat(getHoldingFromCheckpoint(actualCheckpoint)).contains(expectedHolding);
+    }
+
+    @Test
+    public void testAddTradesToCheckpointSkipsCoveredTrades() {
+        LocalDateTime time = LocalDateTime.of(2021, 1, 1, 0, 0);
+        HoldingCheckpoint checkpoint = HoldingCheckpoint.builder()
+                .ticker(TICKER1)
+                .shares(BigInteger.valueOf(10))
+                .totalPrice(BigDecimal.valueOf(1000))
+                .averageBuyPrice(BigDecimal.valueOf(100))
+                .lastTradeId(2L)
+                .lastUpdated(time.plusDays(1))
+                .build();
+        Trade coveredTrade = Trade.builder()
+                .tradeId(2L)
+                .ticker(TICKER1)
+                .transactionType(TransactionType.BUY)
+                .price(BigDecimal.valueOf(100))
+                .shares(BigInteger.valueOf(10))
+                .lastUpdated(time.plusDays(1))
+                .build();
+        Trade newTrade = Trade.builder()
+                .tradeId(3L)
+                .ticker(TICKER1)
+                .transactionType(TransactionType.BUY)
+                .price(BigDecimal.valueOf(200))
+                .shares(BigInteger.valueOf(10))
+                .lastUpdated(time.plusDays(1))
+                .build();
+        HoldingCheckpoint actualCheckpoint = addTradesToCheckpoint(checkpoint, Arrays.asList(coveredTrade, newTrade))
+                .orElseThrow(AssertionError::new);
+        assertEquals(BigInteger.valueOf(20), actualCheckpoint.getShares());
+        assertEquals(BigDecimal.valueOf(3000), actualCheckpoint.getTotalPrice());
+        assertEquals(BigDecimal.valueOf(150), actualCheckpoint.getAverageBuyPrice());
+        assertEquals(3L, actualCheckpoint.getLastTradeId());
+    }
+
+    @Test
+    public void testAddBackdatedTradesToCheckpoint() {
+        LocalDateTime time = LocalDateTime.of(2021, 1, 1, 0, 0);
+        HoldingCheckpoint checkpoint = HoldingCheckpoint.builder()
+                .ticker(TICKER1)
+                .shares(BigInteger.valueOf(10))
+                .totalPrice(BigDecimal.valueOf(1000))
+                .averageBuyPrice(BigDecimal.valueOf(100))
+                .lastTradeId(2L)
+                .lastUpdated(time.plusDays(1))
+                .build();
+        Trade backdatedTrade = Trade.builder()
+                .tradeId(3L)
+                .ticker(TICKER1)
+                .transactionType(TransactionType.SELL)
+                .price(BigDecimal.valueOf(200))
+                .shares(BigInteger.valueOf(5))
+                .lastUpdated(time)
+                .build();
+        assertThat(addTradesToCheckpoint(checkpoint, Collections.singletonList(backdatedTrade))).isEmpty();
+    }
+
+    @Test
+    public void testGetHoldingFromCheckpointWithNoShares() {
+        HoldingCheckpoint checkpoint = HoldingCheckpoint.builder()
+                .ticker(TICKER2)
+                .shares(BigInteger.ZERO)
+                .totalPrice(BigDecimal.ZERO)
+                .averageBuyPrice(BigDecimal.ZERO)
+                .lastTradeId(8L)
+                .build();
+        assertThat(getHoldingFromCheckpoint(checkpoint)).isEmpty();
+    }
+
 }
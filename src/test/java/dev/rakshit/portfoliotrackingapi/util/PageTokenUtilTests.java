@@ -0,0 +1,43 @@
+package dev.rakshit.portfoliotrackingapi.util;
+
+import dev.rakshit.portfoliotrackingapi.exceptions.BadRequestException;
+import dev.rakshit.portfoliotrackingapi.models.TradeCursor;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.Base64;
+
+import static dev.rakshit.portfoliotrackingapi.util.PageTokenUtil.*;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class PageTokenUtilTests {
+
+    @Test
+    public void testPageTokenToCursor() {
+        TradeCursor cursor = new TradeCursor(LocalDateTime.of(2020, 1, 1, 10, 0, 0, 123456789), 42L);
+        assertEquals(cursor, toCursor(toPageToken(cursor)));
+    }
+
+    @Test
+    public void testPageTokenIsUrlSafe() {
+        TradeCursor cursor = new TradeCursor(LocalDateTime.of(2020, 1, 1, 10, 0), Long.MAX_VALUE);
+        assertEquals(-1, toPageToken(cursor).indexOf('+'));
+        assertEquals(-1, toPageToken(cursor).indexOf('/'));
+        assertEquals(-1, toPageToken(cursor).indexOf('='));
+    }
+
+    @Test
+    public void testInvalidPageToken() {
+        assertThrows(BadRequestException.class, () -> toCursor("not a token"));
+        assertThrows(BadRequestException.class, () -> toCursor(encode("2020-01-01T10:00")));
+        assertThrows(BadRequestException.class, () -> toCursor(encode("2020-01-01T10:00|abc")));
+        assertThrows(BadRequestException.class, () -> toCursor(encode("yesterday|42")));
+    }
+
+    private static String encode(String token) {
+        return Base64.getUrlEncoder().encodeToString(token.getBytes(StandardCharsets.UTF_8));
+    }
+
+}
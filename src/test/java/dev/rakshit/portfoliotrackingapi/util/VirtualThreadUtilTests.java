@@ -0,0 +1,41 @@
+package dev.rakshit.portfoliotrackingapi.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.assumeFalse;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+public class VirtualThreadUtilTests {
+
+    @Test
+    public void testTasksRunOnVirtualThreadsNamedByPrefix() throws Exception {
+        assumeTrue(VirtualThreadUtil.isSupported(), "Virtual threads need Java 21 or later");
+        ExecutorService executor = VirtualThreadUtil.newVirtualThreadPerTaskExecutor("test-");
+        try {
+            Future<Thread> thread = executor.submit(Thread::currentThread);
+
+            assertTrue(VirtualThreadUtil.isVirtual(thread.get(10, TimeUnit.SECONDS)));
+            assertTrue(thread.get().getName().startsWith("test-"));
+            assertFalse(VirtualThreadUtil.isVirtual(Thread.currentThread()));
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void testVirtualThreadsAreRejectedOnOlderJava() {
+        assumeFalse(VirtualThreadUtil.isSupported(), "Running on Java 21 or later");
+
+        assertThrows(IllegalStateException.class, () -> VirtualThreadUtil.getThreadFactory("test-"));
+        assertThrows(IllegalStateException.class, () -> VirtualThreadUtil.newVirtualThreadPerTaskExecutor("test-"));
+        assertFalse(VirtualThreadUtil.isVirtual(Thread.currentThread()));
+    }
+
+}